@@ -0,0 +1,26 @@
+package linda;
+
+import java.util.concurrent.CompletableFuture;
+
+/** Asynchronous interface to a Linda implementation.
+ * Pending operations do not hold a thread: the returned future is completed when a matching tuple appears.
+ * Dependent stages may run in the thread that completes the future (typically a writer),
+ * so they should not block; use the <code>...Async</code> variants of {@link CompletableFuture} otherwise.
+ */
+public interface AsyncLinda {
+
+    /** Adds a tuple t to the tuplespace.
+     * The future is completed with t once the tuple has been added. If the tuplespace is full, the caller
+     * is not blocked: the write waits for room according to the overflow policy, and the future fails
+     * with {@link SpaceFullException} if the write is rejected. */
+    public CompletableFuture<Tuple> writeAsync(Tuple t);
+
+    /** Returns a future completed with a tuple matching the template, which is removed from the tuplespace.
+     * Cancelling the future withdraws the request; a tuple taken meanwhile is put back in the tuplespace. */
+    public CompletableFuture<Tuple> takeAsync(Tuple template);
+
+    /** Returns a future completed with a tuple matching the template, which is left in the tuplespace.
+     * Cancelling the future withdraws the request. */
+    public CompletableFuture<Tuple> readAsync(Tuple template);
+
+}
@@ -1,12 +1,22 @@
 package linda;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /** The class helps to transform a callback to behave asynchronously.
  * The callback fires exactly once.
  * The callback fires asynchronously with other threads and may do whatever it wants (it may block).
  * @author philippe.queinnec@enseeiht.fr
  */
 public class AsynchronousCallback implements Callback {
-        
+
+    /** Threads shared by all asynchronous callbacks: idle threads are reused instead of starting one per call.
+     * They are not daemons, as before, and end shortly after the last call so that the JVM may exit. */
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            2, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> new Thread(r, "linda-async-callback"));
+
     private Callback cb;
 
     public AsynchronousCallback (Callback cb) { this.cb = cb; }
@@ -14,10 +24,6 @@ public class AsynchronousCallback implements Callback {
     /** Asynchronous call: the associated callback is concurrently run and this one immediately returns.
      * */
     public void call(final Tuple t) {
-        new Thread() {
-            public void run() {
-                cb.call(t);
-            }
-        }.start();
+        EXECUTOR.execute(() -> cb.call(t));
     }
 }
@@ -0,0 +1,21 @@
+package linda;
+
+import java.time.Duration;
+
+/** Lease of a tuple written with {@link Linda#write(Tuple, Duration)}.
+ * When the lease expires, the tuple is removed from the tuplespace (unless it has been taken before).
+ */
+public interface Lease {
+
+    /** Extends the lease: the tuple now expires after the given duration, counted from now.
+     * Returns false if the tuple is no longer in the tuplespace (expired, taken or cancelled). */
+    public boolean renew(Duration duration);
+
+    /** Removes the tuple from the tuplespace now.
+     * Returns false if the tuple was no longer in the tuplespace. */
+    public boolean cancel();
+
+    /** Returns true if the tuple is still in the tuplespace under this lease. */
+    public boolean isActive();
+
+}
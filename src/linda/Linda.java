@@ -1,6 +1,8 @@
 package linda;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /** Public interface to a Linda implementation.
  * @author philippe.queinnec@enseeiht.fr
@@ -10,6 +12,16 @@ public interface Linda {
     /** Adds a tuple t to the tuplespace. */
     public void write(Tuple t);
 
+    /** Adds a tuple t to the tuplespace for a limited duration.
+     * The tuple is removed when the lease expires, unless it has been taken before;
+     * expiry is approximate (a tuple may remain visible slightly after its deadline).
+     * The returned lease can be renewed or cancelled. */
+    public Lease write(Tuple t, Duration lease);
+
+    /** Adds all the tuples to the tuplespace, as a single operation.
+     * Waiting operations and callbacks are examined once for the whole batch. */
+    public void writeAll(Collection<Tuple> tuples);
+
     /** Returns a tuple matching the template and removes it from the tuplespace.
      * Blocks if no corresponding tuple is found. */
     public Tuple take(Tuple template);
@@ -18,6 +30,16 @@ public interface Linda {
      * Blocks if no corresponding tuple is found. */
     public Tuple read(Tuple template);
 
+    /** Returns a tuple matching the template and removes it from the tuplespace.
+     * Blocks at most the given time if no corresponding tuple is found; returns null on timeout.
+     * A zero or negative timeout makes a single attempt, as {@link #tryTake(Tuple)}. */
+    public Tuple take(Tuple template, long timeout, TimeUnit unit);
+
+    /** Returns a tuple matching the template and leaves it in the tuplespace.
+     * Blocks at most the given time if no corresponding tuple is found; returns null on timeout.
+     * A zero or negative timeout makes a single attempt, as {@link #tryRead(Tuple)}. */
+    public Tuple read(Tuple template, long timeout, TimeUnit unit);
+
     /** Returns a tuple matching the template and removes it from the tuplespace.
      * Returns null if none found. */
     public Tuple tryTake(Tuple template);
@@ -40,6 +62,30 @@ public interface Linda {
      */
     public Collection<Tuple> readAll(Tuple template);
 
+    /** Returns a cursor over the tuples matching the template, which are left in the tuplespace.
+     * Tuples are fetched by batches of at most batchSize, the tuplespace being released between batches:
+     * unlike readAll, a large result neither blocks the tuplespace nor needs to fit in a single collection.
+     * Same weak consistency as readAll (see {@link TupleCursor}).
+     */
+    public TupleCursor readCursor(Tuple template, int batchSize);
+
+    /** Returns a cursor over the tuples matching the template, which are removed from the tuplespace
+     * batch by batch (at most batchSize at a time) as the cursor advances.
+     * Same weak consistency as takeAll (see {@link TupleCursor}).
+     */
+    public TupleCursor takeCursor(Tuple template, int batchSize);
+
+    /** Returns n tuples matching the template and removes them from the tuplespace.
+     * Blocks until n corresponding tuples are present, then takes them at once.
+     * Returns an empty collection if the waiting thread is interrupted.
+     */
+    public Collection<Tuple> takeN(Tuple template, int n);
+
+    /** Returns at most max tuples matching the template and leaves them in the tuplespace.
+     * Returns an empty collection if none found (never blocks).
+     */
+    public Collection<Tuple> readN(Tuple template, int max);
+
     public enum eventMode { READ, TAKE };
     public enum eventTiming { IMMEDIATE, FUTURE };
 
@@ -0,0 +1,15 @@
+package linda;
+
+/** Thrown by a write when the tuplespace has reached its capacity and the overflow policy gives up:
+ * immediately (reject), after a timeout, or when the waiting writer is interrupted.
+ * The tuples of the failed write have not been added.
+ */
+public class SpaceFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SpaceFullException(String message) {
+        super(message);
+    }
+
+}
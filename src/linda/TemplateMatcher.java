@@ -0,0 +1,121 @@
+package linda;
+
+import java.io.Serializable;
+import java.lang.reflect.Modifier;
+
+/** A template compiled into a flat array of component checks.
+ * The shape analysis of the template (value, class or nested tuple, final class or not) is done once,
+ * then {@link #matches(Tuple)} only runs the specialized check of each component.
+ * Checks are run cheapest first: values, then exact classes, then assignable classes, then nested templates.
+ * Tuples being immutable, the compiled form is cached in the template itself.
+ * Matching rules are those of {@link Tuple#matches(Tuple)}.
+ */
+public final class TemplateMatcher {
+
+    /** The tuple component must be equal to the template value. */
+    private static final byte EQUALS = 0;
+    /** The template component is a final class: only this exact class (or itself as a class value) matches. */
+    private static final byte EXACT_CLASS = 1;
+    /** The template component is a non final class or an interface: instances and subclasses match. */
+    private static final byte ASSIGNABLE_CLASS = 2;
+    /** The template component is a tuple: the tuple component must recursively match it. */
+    private static final byte NESTED = 3;
+
+    private final int arity;
+    /** Kind of each check, in evaluation order. */
+    private final byte[] kinds;
+    /** Position in the tuple of the component tested by each check. */
+    private final int[] positions;
+    /** Template component of each check. */
+    private final Serializable[] operands;
+    /** Signature every matching tuple has, or 0 if matching tuples may have various signatures. */
+    private final int requiredSignature;
+
+    private TemplateMatcher(Tuple template) {
+        this.arity = template.size();
+        this.kinds = new byte[arity];
+        this.positions = new int[arity];
+        this.operands = new Serializable[arity];
+        int n = 0;
+        boolean plainValues = true;
+        for (byte kind = EQUALS; kind <= NESTED; kind++) {
+            for (int i = 0; i < arity; i++) {
+                Serializable c = template.get(i);
+                if (kindOf(c) == kind) {
+                    kinds[n] = kind;
+                    positions[n] = i;
+                    operands[n] = c;
+                    n++;
+                    plainValues &= (kind == EQUALS) && isPlainValue(c);
+                }
+            }
+        }
+        this.requiredSignature = plainValues ? template.signature() : 0;
+    }
+
+    private static byte kindOf(Serializable c) {
+        if (c instanceof Tuple) {
+            return NESTED;
+        } else if (c instanceof Class) {
+            Class<?> k = (Class<?>) c;
+            return (Modifier.isFinal(k.getModifiers()) && !k.isArray()) ? EXACT_CLASS : ASSIGNABLE_CLASS;
+        } else {
+            return EQUALS;
+        }
+    }
+
+    /** Values only equal to instances of their own class: a component equal to such a value has the same class. */
+    private static boolean isPlainValue(Serializable c) {
+        return c instanceof String || c instanceof Integer || c instanceof Long || c instanceof Boolean
+            || c instanceof Character || c instanceof Short || c instanceof Byte || c instanceof Enum;
+    }
+
+    /** Returns the compiled form of the given template, compiling it if needed.
+     * @param template the template to compile.
+     */
+    public static TemplateMatcher forTemplate(Tuple template) {
+        TemplateMatcher m = template.matcher;
+        if (m == null) {
+            m = new TemplateMatcher(template);
+            template.matcher = m;
+        }
+        return m;
+    }
+
+    /** Returns the number of components of the compiled template. */
+    public int arity() {
+        return arity;
+    }
+
+    /** Returns true if the tuple matches the compiled template.
+     * @param t the tuple to test.
+     */
+    public boolean matches(Tuple t) {
+        if (t.size() != arity)
+          return false;
+        if (requiredSignature != 0 && t.signature() != requiredSignature)
+          return false;
+        for (int i = 0; i < arity; i++) {
+            Serializable c = t.get(positions[i]);
+            Serializable operand = operands[i];
+            switch (kinds[i]) {
+            case EQUALS:
+                if (! c.equals(operand))
+                  return false;
+                break;
+            case EXACT_CLASS:
+                if (c instanceof Class ? c != operand : c.getClass() != operand)
+                  return false;
+                break;
+            case ASSIGNABLE_CLASS:
+                if (c instanceof Class ? ! ((Class<?>) operand).isAssignableFrom((Class<?>) c) : ! ((Class<?>) operand).isInstance(c))
+                  return false;
+                break;
+            default: // NESTED
+                if (! (c instanceof Tuple) || ! forTemplate((Tuple) operand).matches((Tuple) c))
+                  return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,19 +1,41 @@
 package linda;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
 import java.util.StringTokenizer;
 
 /** Representation of a tuple.
+ * A tuple is an immutable list of components, stored in an array.
+ * It keeps its hash code and its type signature (see {@link #signature()}).
+ * A tuple whose components are themselves immutable is frozen (see {@link #isFrozen()}) and can be shared without copy.
  * @author philippe.queinnec@enseeiht.fr
  */
-public class Tuple extends LinkedList<Serializable> implements Serializable {
+public class Tuple extends AbstractList<Serializable> implements RandomAccess, Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+
+    private final Serializable[] components;
+
+    /** Cached hash code, 0 if not yet computed. */
+    private transient int hash;
+
+    /** Type signature, see {@link #signature()}. */
+    private transient int signature;
+
+    /** True if all the components are immutable, see {@link #isFrozen()}. */
+    private transient boolean frozen;
+
+    /** Compiled form of this tuple used as a template, see {@link TemplateMatcher#forTemplate(Tuple)}. */
+    transient TemplateMatcher matcher;
 
     /** Creates a new tuple.
      * Example :
@@ -21,26 +43,144 @@ public class Tuple extends LinkedList<Serializable> implements Serializable {
      * new Tuple(4, Integer.class, "foo".getclass(), Boolean.class)  -> [ 4 ?Integer ?String ?Boolean ]
      */
     public Tuple(Serializable... components) {
+        this(components, false);
+    }
+
+    /** The array is copied unless owned is true, i.e. the caller hands it over. */
+    private Tuple(Serializable[] components, boolean owned) {
+        this.components = owned ? components : components.clone();
+        this.signature = computeSignature(this.components);
+        this.frozen = computeFrozen(this.components);
+    }
+
+    /** Creates a tuple that takes ownership of the given array, for decoders (see {@link TupleCodec}). */
+    static Tuple wrap(Serializable[] components) {
+        return new Tuple(components, true);
+    }
+
+    /** Creates a new tuple holding the elements of a collection, in iteration order.
+     * Example: Tuple.copyOf(List.of(4, "foo")) -> [ 4 "foo" ]
+     *
+     * @param components the components of the tuple.
+     * @return a new tuple.
+     */
+    public static Tuple copyOf(Collection<? extends Serializable> components) {
+        return new Tuple(components.toArray(new Serializable[components.size()]), true);
+    }
+
+    @Override
+    public Serializable get(int index) {
+        return components[index];
+    }
+
+    @Override
+    public int size() {
+        return components.length;
+    }
+
+    /** Returns the type signature of this tuple: a hash of its arity and of the class of each component.
+     * Tuples with different signatures do not have the same component classes.
+     */
+    public int signature() {
+        return signature;
+    }
+
+    /** Returns true if this tuple is frozen: all its components are immutable values
+     * (strings, boxed primitives, characters, booleans, classes, enum constants or frozen tuples).
+     * A frozen tuple can be shared between threads and callers without any copy;
+     * otherwise a component may be modified and {@link #deepclone()} must be used to isolate the tuple.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private static boolean computeFrozen(Serializable[] components) {
+        for (Serializable c : components) {
+            if (! isImmutable(c))
+              return false;
+        }
+        return true;
+    }
+
+    private static boolean isImmutable(Serializable c) {
+        return c == null || c instanceof String || c instanceof Integer || c instanceof Long
+            || c instanceof Boolean || c instanceof Character || c instanceof Double || c instanceof Float
+            || c instanceof Short || c instanceof Byte || c instanceof Class || c instanceof Enum
+            || (c instanceof Tuple && ((Tuple) c).frozen);
+    }
+
+    private static int computeSignature(Serializable[] components) {
+        int s = components.length;
         for (Serializable c : components) {
-            this.add(c);
+            s = 31 * s + (c == null ? 0 : c.getClass().getName().hashCode());
+        }
+        return s;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(components);
+            hash = h;
         }
+        return h;
     }
 
-    private static boolean matches(Serializable thiscomponent, Serializable templatecomponent) {
-        if (templatecomponent instanceof Tuple) {
-            if (! (thiscomponent instanceof Tuple))
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+          return true;
+        if (o instanceof Tuple) {
+            Tuple other = (Tuple) o;
+            if (other.components.length != components.length)
+              return false;
+            if (hash != 0 && other.hash != 0 && hash != other.hash)
               return false;
-            else
-              return ((Tuple)thiscomponent).matches((Tuple)templatecomponent);
-        } else if (templatecomponent instanceof Class) {
-            if (thiscomponent instanceof Class)
-              return ((Class<?>)templatecomponent).isAssignableFrom((Class<?>)thiscomponent);
-            else
-              return ((Class<?>) templatecomponent).isInstance(thiscomponent);
-        } else {
-            return thiscomponent.equals(templatecomponent);
+            return Arrays.equals(components, other.components);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return components.clone();
+    }
+
+    /** Tuples are serialized in their {@link TupleCodec} form, see {@link SerializedForm}. */
+    private Object writeReplace() throws ObjectStreamException {
+        try {
+            return new SerializedForm(TupleCodec.encode(this));
+        } catch (IOException e) {
+            throw new NotSerializableException("Tuple component is not serializable: " + e.getMessage());
+        }
+    }
+
+    /** Tuples are only read through their {@link SerializedForm}. */
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("Tuple must be read through its serialized form");
+    }
+
+    /** Serialized form of a tuple: its {@link TupleCodec} encoding, much smaller than the component array
+     * with its class descriptors. Used by RMI calls and by any other object stream. */
+    private static final class SerializedForm implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] encoded;
+
+        SerializedForm(byte[] encoded) {
+            this.encoded = encoded;
         }
 
+        private Object readResolve() throws ObjectStreamException {
+            try {
+                return TupleCodec.decode(encoded);
+            } catch (IOException e) {
+                InvalidObjectException invalid = new InvalidObjectException("Invalid encoded tuple: " + e.getMessage());
+                invalid.initCause(e);
+                throw invalid;
+            }
+        }
     }
 
     /** Returns true if this tuple matches the given template.
@@ -55,20 +195,12 @@ public class Tuple extends LinkedList<Serializable> implements Serializable {
      *   [ 3 5 "foo" ] matches [ 3 5 "foo" ], [ ?Integer 5 "foo" ], [ ?Integer ?Integer ?String ]
      *   [ 3 ?Integer [ 6 7 ] [ 7 8 ] ] matches [ ?Integer ?Integer [ ?Integer 7 ] ?Tuple ], [3 ?Integer ?Tuple ?Tuple ]
      *
+     *   The template is compiled once into a {@link TemplateMatcher}, cached in the template.
+     *
      *   @param template the template which this tuple is compared to.
      */
     public boolean matches(Tuple template) {
-        if (this.size() != template.size())
-          return false;
-        Iterator<Serializable> itthis = this.iterator();
-        Iterator<Serializable> itmotif = template.iterator();
-        while (itthis.hasNext()) {
-            Serializable othis = itthis.next();
-            Serializable omotif = itmotif.next();
-            if (! matches(othis, omotif))
-              return false;
-        }
-        return true;
+        return TemplateMatcher.forTemplate(template).matches(this);
     }
 
     /** Returns true if this tuple (seen as a template) contains <code>t</code>.
@@ -82,16 +214,13 @@ public class Tuple extends LinkedList<Serializable> implements Serializable {
      * @return a deep copy of this object
      */
     /* Les éléments types sont représentés par des instances de Class, qui n'est pas cloneable.
-     * Le plus simple de passer par une sérialisation/desérialisation ce qui marche pour toutes les classes qui implantent serializable.
+     * On passe par l'encodage binaire (TupleCodec) : les composants immuables sont recréés directement,
+     * les autres passent par une sérialisation/desérialisation, ce qui marche pour toutes les classes qui implantent serializable.
      */
     public Tuple deepclone() {
         Tuple copy = null;
         try {
-            ByteArrayOutputStream buf = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream (buf);
-            out.writeObject (this);
-            ObjectInputStream in = new ObjectInputStream (new ByteArrayInputStream (buf.toByteArray()));
-            copy = (Tuple) in.readObject();
+            copy = TupleCodec.copy(this);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -104,7 +233,7 @@ public class Tuple extends LinkedList<Serializable> implements Serializable {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("[");
-        for (Object o : this) {
+        for (Serializable o : components) {
             if (o instanceof Class) {
                 sb.append(" ?" + ((Class<?>)o).getName());
             } else if (o instanceof String) {
@@ -126,11 +255,11 @@ public class Tuple extends LinkedList<Serializable> implements Serializable {
      * @throws TupleFormatException
      */
     private static Tuple valueOf(StringTokenizer stk) throws TupleFormatException {
-        Tuple res = new Tuple();
+        List<Serializable> res = new ArrayList<>();
         while (stk.hasMoreTokens()) {
             String token = stk.nextToken();
             if (token.equals("]"))
-              return res; // BEWARE
+              return copyOf(res); // BEWARE
             if (token.startsWith("\"") && token.endsWith("\"")) {
                 String val = token.substring(1, token.length()-1);
                 res.add(val);
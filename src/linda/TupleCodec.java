@@ -0,0 +1,438 @@
+package linda;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Compact binary encoding of tuples, used for copies, persistence and transport instead of Java serialization.
+ *
+ * A tuple is its arity (varint) followed by its components, each introduced by a one-byte tag:
+ * <pre>
+ *   NULL                         TRUE, FALSE
+ *   INTEGER, SHORT, BYTE  zigzag varint          LONG        zigzag varint
+ *   CHARACTER             varint                 DOUBLE, FLOAT  raw IEEE bits
+ *   STRING                varint length, UTF-8   TUPLE       nested tuple
+ *   CLASS_REF             varint index in the class table
+ *   CLASS_NEW             class name, appended to the class table
+ *   SERIALIZED            varint length, Java serialization of the component (any other Serializable)
+ * </pre>
+ * The class table starts with the usual template classes (Integer, String, Tuple, ...), so that a template
+ * class is usually a single byte; other classes are interned the first time a {@link Writer} meets them
+ * and referred to by index afterwards. A {@link Reader} must therefore read what a single writer wrote,
+ * in the same order.
+ */
+public final class TupleCodec {
+
+    private static final int NULL = 0;
+    private static final int INTEGER = 1;
+    private static final int LONG = 2;
+    private static final int STRING = 3;
+    private static final int TRUE = 4;
+    private static final int FALSE = 5;
+    private static final int CHARACTER = 6;
+    private static final int TUPLE = 7;
+    private static final int CLASS_REF = 8;
+    private static final int CLASS_NEW = 9;
+    private static final int DOUBLE = 10;
+    private static final int FLOAT = 11;
+    private static final int SHORT = 12;
+    private static final int BYTE = 13;
+    private static final int SERIALIZED = 14;
+
+    /** Nesting limit when decoding, against corrupted or hostile input. */
+    private static final int MAX_DEPTH = 256;
+
+    /** Classes known in advance by every writer and reader, in this order. Never reorder: it is part of the format. */
+    private static final Class<?>[] WELL_KNOWN = {
+        Object.class, Serializable.class, Integer.class, Long.class, String.class, Boolean.class,
+        Character.class, Tuple.class, Double.class, Float.class, Short.class, Byte.class,
+        Number.class, Comparable.class, CharSequence.class,
+    };
+    private static final Map<Class<?>, Integer> WELL_KNOWN_INDEX = new HashMap<>();
+    static {
+        for (int i = 0; i < WELL_KNOWN.length; i++) {
+            WELL_KNOWN_INDEX.put(WELL_KNOWN[i], i);
+        }
+    }
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+    static {
+        for (Class<?> c : new Class<?>[] { int.class, long.class, boolean.class, char.class, double.class,
+                float.class, short.class, byte.class, void.class }) {
+            PRIMITIVES.put(c.getName(), c);
+        }
+    }
+
+    private TupleCodec() {
+    }
+
+    /** Encodes a single tuple. */
+    public static byte[] encode(Tuple t) throws IOException {
+        Writer writer = new Writer();
+        writer.write(t);
+        return writer.toByteArray();
+    }
+
+    /** Decodes a tuple encoded by {@link #encode(Tuple)}. */
+    public static Tuple decode(byte[] bytes) throws IOException {
+        return new Reader(bytes).read();
+    }
+
+    /** Returns a deep copy of a tuple: immutable components are shared, others are copied through serialization. */
+    public static Tuple copy(Tuple t) throws IOException {
+        return decode(encode(t));
+    }
+
+    /** Encodes a sequence of tuples into a growing buffer, interning the classes they refer to. */
+    public static final class Writer {
+        private byte[] buf = new byte[256];
+        private int count;
+        /** Classes interned by this writer, numbered after the well-known ones. Created on first use. */
+        private Map<Class<?>, Integer> classes;
+
+        public void write(Tuple t) throws IOException {
+            writeVarInt(t.size());
+            for (Serializable c : t) {
+                writeComponent(c);
+            }
+        }
+
+        /** Number of bytes written so far. */
+        public int size() {
+            return count;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(buf, 0, count);
+        }
+
+        /** Forgets the bytes and the interned classes: what follows can be read by a new reader. */
+        public void reset() {
+            count = 0;
+            classes = null;
+        }
+
+        private void writeComponent(Serializable c) throws IOException {
+            if (c == null) {
+                writeByte(NULL);
+            } else if (c instanceof Integer) {
+                writeByte(INTEGER);
+                writeVarLong(zigzag((Integer) c));
+            } else if (c instanceof String) {
+                writeByte(STRING);
+                writeString((String) c);
+            } else if (c instanceof Class) {
+                writeClass((Class<?>) c);
+            } else if (c instanceof Tuple) {
+                writeByte(TUPLE);
+                write((Tuple) c);
+            } else if (c instanceof Long) {
+                writeByte(LONG);
+                writeVarLong(zigzag((Long) c));
+            } else if (c instanceof Boolean) {
+                writeByte((Boolean) c ? TRUE : FALSE);
+            } else if (c instanceof Character) {
+                writeByte(CHARACTER);
+                writeVarLong((Character) c);
+            } else if (c instanceof Double) {
+                writeByte(DOUBLE);
+                writeFixedLong(Double.doubleToRawLongBits((Double) c));
+            } else if (c instanceof Float) {
+                writeByte(FLOAT);
+                writeFixedInt(Float.floatToRawIntBits((Float) c));
+            } else if (c instanceof Short) {
+                writeByte(SHORT);
+                writeVarLong(zigzag((Short) c));
+            } else if (c instanceof Byte) {
+                writeByte(BYTE);
+                writeVarLong(zigzag((Byte) c));
+            } else {
+                writeByte(SERIALIZED);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(c);
+                }
+                writeVarInt(bytes.size());
+                ensure(bytes.size());
+                System.arraycopy(bytes.toByteArray(), 0, buf, count, bytes.size());
+                count += bytes.size();
+            }
+        }
+
+        private void writeClass(Class<?> c) {
+            Integer index = WELL_KNOWN_INDEX.get(c);
+            if (index == null && classes != null) {
+                index = classes.get(c);
+            }
+            if (index != null) {
+                writeByte(CLASS_REF);
+                writeVarInt(index);
+                return;
+            }
+            if (classes == null) {
+                classes = new HashMap<>();
+            }
+            classes.put(c, WELL_KNOWN.length + classes.size());
+            writeByte(CLASS_NEW);
+            writeString(c.getName());
+        }
+
+        private void writeString(String s) {
+            int length = s.length();
+            int i = 0;
+            while (i < length && s.charAt(i) < 0x80) {
+                i++;
+            }
+            if (i == length) {
+                // Common case: ASCII, one byte per character
+                writeVarInt(length);
+                ensure(length);
+                for (int j = 0; j < length; j++) {
+                    buf[count++] = (byte) s.charAt(j);
+                }
+            } else {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buf, count, bytes.length);
+                count += bytes.length;
+            }
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        private void writeVarInt(int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[count++] = (byte) v;
+        }
+
+        private void writeFixedLong(long v) {
+            writeFixedInt((int) (v >>> 32));
+            writeFixedInt((int) v);
+        }
+
+        private void writeFixedInt(int v) {
+            ensure(4);
+            buf[count++] = (byte) (v >>> 24);
+            buf[count++] = (byte) (v >>> 16);
+            buf[count++] = (byte) (v >>> 8);
+            buf[count++] = (byte) v;
+        }
+
+        private void ensure(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+            }
+        }
+
+        private static long zigzag(long v) {
+            return (v << 1) ^ (v >> 63);
+        }
+    }
+
+    /** Decodes the tuples written by a single {@link Writer}, in order. */
+    public static final class Reader {
+        private final byte[] buf;
+        private int pos;
+        private final int limit;
+        private List<Class<?>> classes;
+
+        public Reader(byte[] bytes) {
+            this(bytes, 0, bytes.length);
+        }
+
+        public Reader(byte[] bytes, int offset, int length) {
+            this.buf = bytes;
+            this.pos = offset;
+            this.limit = offset + length;
+        }
+
+        public boolean hasRemaining() {
+            return pos < limit;
+        }
+
+        public Tuple read() throws IOException {
+            return readTuple(0);
+        }
+
+        private Tuple readTuple(int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                throw new StreamCorruptedException("Tuple nested too deeply");
+            }
+            int arity = readVarInt();
+            if (arity < 0 || arity > limit - pos) {
+                throw new StreamCorruptedException("Invalid tuple arity: " + arity);
+            }
+            Serializable[] components = new Serializable[arity];
+            for (int i = 0; i < arity; i++) {
+                components[i] = readComponent(depth);
+            }
+            return Tuple.wrap(components);
+        }
+
+        private Serializable readComponent(int depth) throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case INTEGER:
+                    return (int) unzigzag(readVarLong());
+                case LONG:
+                    return unzigzag(readVarLong());
+                case STRING:
+                    return readString();
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case CHARACTER:
+                    return (char) readVarLong();
+                case TUPLE:
+                    return readTuple(depth + 1);
+                case CLASS_REF:
+                    return classAt(readVarInt());
+                case CLASS_NEW:
+                    return internClass(readString());
+                case DOUBLE:
+                    return Double.longBitsToDouble(readFixedLong());
+                case FLOAT:
+                    return Float.intBitsToFloat(readFixedInt());
+                case SHORT:
+                    return (short) unzigzag(readVarLong());
+                case BYTE:
+                    return (byte) unzigzag(readVarLong());
+                case SERIALIZED:
+                    return readSerialized();
+                default:
+                    throw new StreamCorruptedException("Unknown component tag: " + tag);
+            }
+        }
+
+        private Class<?> classAt(int index) throws IOException {
+            if (index >= 0 && index < WELL_KNOWN.length) {
+                return WELL_KNOWN[index];
+            }
+            int local = index - WELL_KNOWN.length;
+            if (classes == null || local < 0 || local >= classes.size()) {
+                throw new StreamCorruptedException("Unknown class reference: " + index);
+            }
+            return classes.get(local);
+        }
+
+        private Class<?> internClass(String name) throws IOException {
+            Class<?> c = PRIMITIVES.get(name);
+            if (c == null) {
+                try {
+                    c = Class.forName(name, false, loader());
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown class in tuple: " + name, e);
+                }
+            }
+            if (classes == null) {
+                classes = new ArrayList<>();
+            }
+            classes.add(c);
+            return c;
+        }
+
+        private static ClassLoader loader() {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            return loader != null ? loader : TupleCodec.class.getClassLoader();
+        }
+
+        private Serializable readSerialized() throws IOException {
+            int length = readLength();
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf, pos, length))) {
+                pos += length;
+                return (Serializable) in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown class in tuple component", e);
+            }
+        }
+
+        private String readString() throws IOException {
+            int length = readLength();
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        private int readLength() throws IOException {
+            int length = readVarInt();
+            if (length < 0 || length > limit - pos) {
+                throw new EOFException("Truncated tuple");
+            }
+            return length;
+        }
+
+        private int readByte() throws IOException {
+            if (pos >= limit) {
+                throw new EOFException("Truncated tuple");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        private int readVarInt() throws IOException {
+            long v = readVarLong();
+            if (v > 0xFFFFFFFFL) {
+                throw new StreamCorruptedException("Invalid varint");
+            }
+            return (int) v;
+        }
+
+        private long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new StreamCorruptedException("Invalid varint");
+        }
+
+        private long readFixedLong() throws IOException {
+            return ((long) readFixedInt() << 32) | (readFixedInt() & 0xFFFFFFFFL);
+        }
+
+        private int readFixedInt() throws IOException {
+            int v = 0;
+            for (int i = 0; i < 4; i++) {
+                v = (v << 8) | readByte();
+            }
+            return v;
+        }
+
+        private static long unzigzag(long v) {
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package linda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** Cursor over the tuples matching a template, fetched by batches.
+ * Consistency is as weak as for {@link Linda#readAll(Tuple)}: the tuplespace is not locked between batches,
+ * so a matching tuple written or removed during the iteration may or may not be returned.
+ * A matching tuple present during the whole iteration is returned, and no tuple is returned twice.
+ * The cursor is closed when exhausted; it should be closed explicitly when abandoned before
+ * (a remote cursor holds resources on the server).
+ */
+public abstract class TupleCursor implements Iterator<Tuple>, AutoCloseable {
+
+    private List<Tuple> batch = Collections.emptyList();
+    private int position = 0;
+    private boolean exhausted = false;
+
+    /** Fetches the next batch of tuples; returns an empty list when there is no more tuple. */
+    protected abstract List<Tuple> fetch();
+
+    /** Returns the next batch of tuples (the rest of the current batch if next() was used), or an empty list at the end. */
+    public List<Tuple> nextBatch() {
+        if (position < batch.size()) {
+            List<Tuple> rest = new ArrayList<>(batch.subList(position, batch.size()));
+            position = batch.size();
+            return rest;
+        }
+        if (!fetchBatch()) {
+            return Collections.emptyList();
+        }
+        position = batch.size();
+        return batch;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < batch.size() || fetchBatch();
+    }
+
+    @Override
+    public Tuple next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.get(position++);
+    }
+
+    /** Releases the resources of the cursor. Does nothing by default. */
+    @Override
+    public void close() {
+    }
+
+    private boolean fetchBatch() {
+        if (exhausted) {
+            return false;
+        }
+        batch = fetch();
+        position = 0;
+        if (batch.isEmpty()) {
+            exhausted = true;
+            close();
+            return false;
+        }
+        return true;
+    }
+}
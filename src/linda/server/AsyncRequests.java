@@ -0,0 +1,219 @@
+package linda.server;
+
+import java.rmi.RemoteException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import linda.Callback;
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+import linda.shm.EventRegistration;
+import linda.shm.LeasedCallback;
+
+/**
+ * Demandes asynchrones des clients, côté serveur.
+ * Une demande n'occupe aucun thread du serveur : elle est enregistrée auprès de l'espace de tuples,
+ * et le tuple est envoyé au canal de réponse du client dès qu'il apparaît.
+ * Les callbacks des clients passent par le même canal : un enregistrement est une demande qui reste en place
+ * jusqu'à son déclenchement, identifiée elle aussi par un numéro choisi par le client.
+ * Les tuples partent par la file de livraison du client (voir {@link ClientQueues}) :
+ * l'espace de tuples n'attend pas un client lent. Un tuple pris qui n'est pas livré est rendu à l'espace
+ * avec son bail.
+ */
+class AsyncRequests {
+
+    /** Enregistrement révocable d'un callback, par exemple {@link linda.shm.CentralizedLinda#registerEvent}. */
+    interface Registrar {
+        EventRegistration register(eventMode mode, eventTiming timing, Tuple template, Callback callback);
+    }
+
+    private final Registrar registrar;
+    /** Demandes asynchrones en attente : des callbacks IMMEDIATE, retirés de l'espace si leur client est déconnecté. */
+    private final Map<Key, Registration> pending = new ConcurrentHashMap<>();
+    /** Callbacks enregistrés et pas encore déclenchés, retirés de l'espace si leur client est déconnecté. */
+    private final Map<Key, Registration> registrations = new ConcurrentHashMap<>();
+    /** Numéros des enregistrements de callbacks distants (interface d'origine), qui n'en ont pas. */
+    private final AtomicLong nextCallbackId = new AtomicLong();
+    private final ClientQueues queues;
+
+    /** putBack rend à l'espace les tuples pris qui n'ont pas pu être livrés (voir {@link ClientQueues.PutBack}). */
+    AsyncRequests(Registrar registrar, ClientQueues.PutBack putBack) {
+        this(registrar, putBack, ClientQueuePolicy.fromSystemProperties());
+    }
+
+    AsyncRequests(Registrar registrar, ClientQueues.PutBack putBack, ClientQueuePolicy policy) {
+        this.registrar = registrar;
+        this.queues = new ClientQueues(putBack, policy, this::disconnected);
+    }
+
+    /** Enregistre une demande ; retourne immédiatement. */
+    void submit(eventMode mode, Tuple template, ReplyChannel replyTo, long requestId) {
+        register(pending, new Key(replyTo, requestId), mode, eventTiming.IMMEDIATE, template,
+                (t, leaseExpiryMillis) -> reply(mode, replyTo, requestId, t, leaseExpiryMillis));
+    }
+
+    /** Retire une demande, ou un callback enregistré avec ce canal. Retourne faux s'il était déjà satisfait. */
+    boolean cancel(ReplyChannel replyTo, long requestId) {
+        Key key = new Key(replyTo, requestId);
+        Registration registration = pending.remove(key);
+        if (registration == null) {
+            registration = registrations.remove(key);
+        }
+        if (registration == null) {
+            return false;
+        }
+        // Encore en cours d'enregistrement : register le retirera en voyant qu'il n'est plus connu
+        EventRegistration handle = registration.handle;
+        return handle == null || handle.cancel();
+    }
+
+    /**
+     * Enregistre un callback pour un client : à son déclenchement, le tuple est transmis au canal replyTo
+     * avec le numéro registrationId, puis l'enregistrement est oublié.
+     */
+    void register(eventMode mode, eventTiming timing, Tuple template, ReplyChannel replyTo, long registrationId) {
+        register(registrations, new Key(replyTo, registrationId), mode, timing, template,
+                (t, leaseExpiryMillis) -> reply(mode, replyTo, registrationId, t, leaseExpiryMillis));
+    }
+
+    /**
+     * Enregistre un callback distant exporté par le client : à son déclenchement, le tuple passe
+     * par la file de livraison propre à ce callback.
+     */
+    void register(eventMode mode, eventTiming timing, Tuple template, RemoteCallback callback) {
+        register(registrations, new Key(callback, -nextCallbackId.incrementAndGet()), mode, timing, template,
+                (t, leaseExpiryMillis) -> queues.submit(callback, (requestIds, tuples) -> call(callback, tuples),
+                        mode, 0, t, leaseExpiryMillis));
+    }
+
+    private void register(Map<Key, Registration> into, Key key, eventMode mode, eventTiming timing, Tuple template,
+                          LeasedCallback fire) {
+        Registration registration = new Registration();
+        into.put(key, registration);
+        registration.handle = registrar.register(mode, timing, template, (LeasedCallback) (t, leaseExpiryMillis) -> {
+            into.remove(key, registration);
+            fire.call(t, leaseExpiryMillis);
+        });
+        // Déclenché aussitôt (IMMEDIATE), ou client déconnecté pendant l'enregistrement : rien à garder
+        if (into.get(key) != registration) {
+            registration.handle.cancel();
+        }
+    }
+
+    /**
+     * Interface d'origine : un appel par tuple. Un tuple n'est marqué accepté qu'une fois son appel réussi ;
+     * au premier échec, celui-ci et les suivants sont rendus.
+     */
+    private static boolean[] call(RemoteCallback callback, Tuple[] tuples) {
+        boolean[] accepted = new boolean[tuples.length];
+        for (int i = 0; i < tuples.length; i++) {
+            try {
+                callback.call(tuples[i]);
+            } catch (RemoteException | RuntimeException e) {
+                System.err.println("Erreur lors de la livraison au client: " + e);
+                break;
+            }
+            accepted[i] = true;
+        }
+        return accepted;
+    }
+
+    /**
+     * Attend, avec la politique BLOCK, que les files de livraison pleines aient de la place.
+     * Appelé par le thread du client qui écrit, avant l'écriture : le producteur est freiné, jamais les threads
+     * qui livrent les callbacks de l'espace.
+     */
+    void awaitDeliveryRoom() {
+        queues.awaitRoom();
+    }
+
+    /** Retourne l'état des files de livraison des clients qui ont des livraisons en attente. */
+    List<ClientQueueStats> queueStats() {
+        return queues.stats();
+    }
+
+    /** Retourne le nombre de demandes en attente. */
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /** Retourne le nombre de callbacks enregistrés et pas encore déclenchés. */
+    int registrationCount() {
+        return registrations.size();
+    }
+
+    /** Retourne le nombre de clients distincts ayant une demande ou un callback en attente. */
+    int channelCount() {
+        Set<Object> channels = new HashSet<>();
+        for (Key key : pending.keySet()) {
+            channels.add(key.client);
+        }
+        for (Key key : registrations.keySet()) {
+            channels.add(key.client);
+        }
+        return channels.size();
+    }
+
+    private void reply(eventMode mode, ReplyChannel replyTo, long requestId, Tuple t, long leaseExpiryMillis) {
+        queues.submit(replyTo, replyTo::deliverAll, mode, requestId, t, leaseExpiryMillis);
+    }
+
+    /** Client déconnecté pour file pleine : ses demandes en attente et ses callbacks sont retirés de l'espace. */
+    private void disconnected(Object client) {
+        withdraw(pending, client);
+        withdraw(registrations, client);
+    }
+
+    /** Retire de l'espace les enregistrements de ce client. */
+    private static void withdraw(Map<Key, Registration> from, Object client) {
+        from.entrySet().removeIf(entry -> {
+            if (!entry.getKey().client.equals(client)) {
+                return false;
+            }
+            // Encore en cours d'enregistrement : register le retirera en voyant qu'il n'est plus connu
+            EventRegistration handle = entry.getValue().handle;
+            if (handle != null) {
+                handle.cancel();
+            }
+            return true;
+        });
+    }
+
+    /** Callback enregistré dans l'espace pour un client. */
+    private static final class Registration {
+        volatile EventRegistration handle;
+    }
+
+    /**
+     * Une demande est identifiée par le client (son canal de réponse, ou son callback distant)
+     * et le numéro qu'il lui a donné.
+     */
+    private static final class Key {
+        final Object client;
+        final long requestId;
+
+        Key(Object client, long requestId) {
+            this.client = client;
+            this.requestId = requestId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return requestId == other.requestId && client.equals(other.client);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(client, requestId);
+        }
+    }
+}
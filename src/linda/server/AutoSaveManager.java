@@ -7,33 +7,145 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Gestionnaire de sauvegarde périodique
+ * Gestionnaire de sauvegarde automatique, piloté par les compteurs de modifications de l'espace.
+ *
+ * L'espace est examiné toutes les {@link #CHECK_INTERVAL_MILLIS} ms :
+ * - un espace non modifié depuis la dernière sauvegarde n'est jamais sauvegardé ;
+ * - un espace modifié est sauvegardé au plus tard après l'intervalle de sauvegarde ;
+ * - il l'est plus tôt dès que saveAfterMutations modifications ou saveAfterBytes octets modifiés
+ *   sont atteints, sauf en pleine rafale d'écritures (plus de burstMutationsPerSecond), où la
+ *   sauvegarde anticipée est reportée jusqu'à l'accalmie ou l'échéance de l'intervalle ;
+ * - deux sauvegardes sont espacées d'au moins 1 / {@link #MAX_SAVE_DUTY_CYCLE} fois la durée de la
+ *   précédente, pour que les sauvegardes n'occupent pas le disque en continu quand elles s'allongent.
  */
 public class AutoSaveManager {
+
+    /** Période d'examen des compteurs. */
+    public static final long CHECK_INTERVAL_MILLIS = 200;
+    /** Fraction maximale du temps passée à sauvegarder. */
+    public static final double MAX_SAVE_DUTY_CYCLE = 0.1;
+
+    public static final long DEFAULT_SAVE_AFTER_MUTATIONS = 100_000;
+    public static final long DEFAULT_SAVE_AFTER_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_BURST_MUTATIONS_PER_SECOND = 50_000;
+
     private final PersistentCentralizedLinda linda;
     private final ScheduledExecutorService scheduler;
     private final int saveIntervalSeconds;
+    private final long saveAfterMutations;
+    private final long saveAfterBytes;
+    private final long burstMutationsPerSecond;
+    private final long checkIntervalMillis;
+
+    // État de l'examen, accédé uniquement par le thread du planificateur
+    private long lastSaveNanos;
+    private long lastCheckNanos;
+    private long lastCheckMutations;
+
+    // Métriques du gestionnaire
+    private volatile long autoSaves;
+    private volatile long skippedCleanChecks;
+    private volatile long deferredSaves;
+    private volatile long failedSaves;
 
     public AutoSaveManager(PersistentCentralizedLinda linda, int saveIntervalSeconds) {
+        this(linda, saveIntervalSeconds, DEFAULT_SAVE_AFTER_MUTATIONS, DEFAULT_SAVE_AFTER_BYTES,
+                DEFAULT_BURST_MUTATIONS_PER_SECOND, CHECK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param saveIntervalSeconds délai maximal entre une modification et sa sauvegarde
+     * @param saveAfterMutations nombre de modifications déclenchant une sauvegarde anticipée
+     * @param saveAfterBytes volume modifié (estimé) déclenchant une sauvegarde anticipée
+     * @param burstMutationsPerSecond débit de modifications au-delà duquel les sauvegardes anticipées sont reportées
+     * @param checkIntervalMillis période d'examen des compteurs
+     */
+    public AutoSaveManager(PersistentCentralizedLinda linda, int saveIntervalSeconds, long saveAfterMutations,
+                           long saveAfterBytes, long burstMutationsPerSecond, long checkIntervalMillis) {
+        if (saveAfterMutations <= 0 || saveAfterBytes <= 0 || burstMutationsPerSecond <= 0 || checkIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Seuils de sauvegarde invalides");
+        }
         this.linda = linda;
         this.saveIntervalSeconds = saveIntervalSeconds;
+        this.saveAfterMutations = saveAfterMutations;
+        this.saveAfterBytes = saveAfterBytes;
+        this.burstMutationsPerSecond = burstMutationsPerSecond;
+        this.checkIntervalMillis = checkIntervalMillis;
         this.scheduler = Executors.newScheduledThreadPool(1);
     }
 
     /**
-     * Démarre la sauvegarde automatique périodique
+     * Démarre la sauvegarde automatique
      */
     public void startAutoSave() {
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                linda.saveTupleSpace();
-                System.out.println("Sauvegarde automatique effectuée");
-            } catch (Exception e) {
-                System.err.println("Erreur lors de la sauvegarde automatique: " + e.getMessage());
+        scheduler.execute(() -> {
+            lastSaveNanos = System.nanoTime();
+            lastCheckNanos = lastSaveNanos;
+            lastCheckMutations = linda.mutationCount();
+        });
+        scheduler.scheduleWithFixedDelay(this::check, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+
+        System.out.println("Sauvegarde automatique démarrée (intervalle: " + saveIntervalSeconds + "s, anticipée après "
+                + saveAfterMutations + " modifications ou " + saveAfterBytes + " octets)");
+    }
+
+    /** Examine les compteurs de l'espace et sauvegarde si nécessaire. */
+    private void check() {
+        long now = System.nanoTime();
+        long mutations = linda.mutationCount();
+        long elapsedSinceCheck = Math.max(1, now - lastCheckNanos);
+        double rate = (mutations - lastCheckMutations) * 1e9 / elapsedSinceCheck;
+        lastCheckNanos = now;
+        lastCheckMutations = mutations;
+
+        if (linda.mutationsSinceSave() == 0) {
+            skippedCleanChecks++;
+            return;
+        }
+        long sinceSave = now - lastSaveNanos;
+        // Espacement minimal proportionnel à la durée de la dernière sauvegarde
+        long minGap = (long) (TimeUnit.MILLISECONDS.toNanos(linda.lastSaveDurationMillis()) / MAX_SAVE_DUTY_CYCLE);
+        boolean due = sinceSave >= TimeUnit.SECONDS.toNanos(saveIntervalSeconds);
+        boolean early = linda.mutationsSinceSave() >= saveAfterMutations || linda.bytesChangedSinceSave() >= saveAfterBytes;
+        boolean burst = rate > burstMutationsPerSecond;
+        if (sinceSave < minGap || !(due || (early && !burst))) {
+            if (early || due) {
+                deferredSaves++;
             }
-        }, saveIntervalSeconds, saveIntervalSeconds, TimeUnit.SECONDS);
+            return;
+        }
+        try {
+            linda.saveTupleSpace();
+            autoSaves++;
+            System.out.println("Sauvegarde automatique effectuée (" + linda.lastSaveBytes() + " octets en "
+                    + linda.lastSaveDurationMillis() + " ms)");
+        } catch (Exception e) {
+            failedSaves++;
+            System.err.println("Erreur lors de la sauvegarde automatique: " + e.getMessage());
+        } finally {
+            // Un échec n'est pas retenté avant l'intervalle suivant
+            lastSaveNanos = System.nanoTime();
+        }
+    }
+
+    /** Nombre de sauvegardes effectuées par le gestionnaire. */
+    public long autoSaveCount() {
+        return autoSaves;
+    }
+
+    /** Nombre d'examens sans sauvegarde parce que l'espace n'avait pas été modifié. */
+    public long skippedCleanChecks() {
+        return skippedCleanChecks;
+    }
+
+    /** Nombre d'examens où une sauvegarde attendue a été reportée (rafale d'écritures ou espacement minimal). */
+    public long deferredSaves() {
+        return deferredSaves;
+    }
 
-        System.out.println("Sauvegarde automatique démarrée (intervalle: " + saveIntervalSeconds + "s)");
+    /** Nombre de sauvegardes automatiques en échec. */
+    public long failedSaves() {
+        return failedSaves;
     }
 
     /**
@@ -0,0 +1,105 @@
+package linda.server;
+
+/**
+ * File de livraison de chaque client du serveur : les tuples destinés à un client (réponses asynchrones,
+ * callbacks) y attendent qu'un thread de livraison les lui transmette, si bien qu'un client lent ne ralentit
+ * que lui-même. Quand la file d'un client est pleine, la politique de débordement s'applique :
+ * on abandonne la livraison la plus ancienne d'un tuple lu ({@link Overflow#DROP_OLDEST}, par défaut),
+ * on déconnecte le client ({@link Overflow#DISCONNECT}) : ses demandes et callbacks sont retirés et plus rien
+ * ne lui est livré, ou on freine les producteurs ({@link Overflow#BLOCK}) : toute écriture d'un client
+ * attend qu'aucune file ne soit pleine. Avec BLOCK, un seul client bloqué arrête donc tous les écrivains ;
+ * les threads qui livrent les callbacks de l'espace, eux, n'attendent jamais.
+ * Un tuple retiré (TAKE) n'est jamais abandonné, le client l'attendant ; s'il n'est pas livré (client déconnecté),
+ * il est rendu à l'espace avec son bail.
+ * Les livraisons en attente partent ensemble, par lots d'au plus {@link #batch()} tuples par appel au client.
+ */
+public final class ClientQueuePolicy {
+
+    /** Capacité par défaut de la file d'un client. */
+    public static final int DEFAULT_CAPACITY = 10_000;
+    /** Nombre maximal par défaut de tuples transmis en un appel au client. */
+    public static final int DEFAULT_BATCH = 256;
+
+    /** Politique appliquée quand la file d'un client est pleine. */
+    public enum Overflow { BLOCK, DROP_OLDEST, DISCONNECT }
+
+    private final int capacity;
+    private final Overflow overflow;
+    private final int batch;
+
+    private ClientQueuePolicy(int capacity, Overflow overflow, int batch) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacité de file invalide: " + capacity);
+        }
+        if (batch <= 0) {
+            throw new IllegalArgumentException("Taille de lot invalide: " + batch);
+        }
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.batch = batch;
+    }
+
+    /**
+     * File bornée à capacity livraisons ; au-delà, les écritures des clients attendent qu'elle se vide
+     * (contre-pression sur les producteurs, quel que soit le client lent).
+     */
+    public static ClientQueuePolicy block(int capacity) {
+        return new ClientQueuePolicy(capacity, Overflow.BLOCK, DEFAULT_BATCH);
+    }
+
+    /**
+     * File bornée à capacity livraisons ; au-delà, la plus ancienne livraison d'un tuple lu (READ) est abandonnée.
+     * Les tuples pris (TAKE) restent en file : leur nombre est borné par les demandes du client.
+     */
+    public static ClientQueuePolicy dropOldest(int capacity) {
+        return new ClientQueuePolicy(capacity, Overflow.DROP_OLDEST, DEFAULT_BATCH);
+    }
+
+    /** File bornée à capacity livraisons ; au-delà, le client est déconnecté. */
+    public static ClientQueuePolicy disconnect(int capacity) {
+        return new ClientQueuePolicy(capacity, Overflow.DISCONNECT, DEFAULT_BATCH);
+    }
+
+    /** Même politique, avec au plus batch tuples par appel au client (1 : un appel par tuple). */
+    public ClientQueuePolicy withBatch(int batch) {
+        return new ClientQueuePolicy(capacity, overflow, batch);
+    }
+
+    /**
+     * Politique lue dans les propriétés système {@code linda.clientQueue} (capacité, {@value #DEFAULT_CAPACITY}
+     * par défaut), {@code linda.clientOverflow} ({@code drop_oldest} par défaut, {@code disconnect} ou {@code block})
+     * et {@code linda.clientBatch} (tuples par appel, {@value #DEFAULT_BATCH} par défaut).
+     */
+    public static ClientQueuePolicy fromSystemProperties() {
+        int capacity = Integer.getInteger("linda.clientQueue", DEFAULT_CAPACITY);
+        int batch = Integer.getInteger("linda.clientBatch", DEFAULT_BATCH);
+        String overflow = System.getProperty("linda.clientOverflow", "drop_oldest");
+        switch (overflow.toLowerCase()) {
+            case "block":
+                return block(capacity).withBatch(batch);
+            case "drop_oldest":
+                return dropOldest(capacity).withBatch(batch);
+            case "disconnect":
+                return disconnect(capacity).withBatch(batch);
+            default:
+                throw new IllegalArgumentException("Politique de débordement inconnue: " + overflow);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public Overflow overflow() {
+        return overflow;
+    }
+
+    public int batch() {
+        return batch;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientQueuePolicy[" + capacity + " deliveries, " + overflow + ", batch " + batch + "]";
+    }
+}
@@ -0,0 +1,61 @@
+package linda.server;
+
+import java.io.Serializable;
+
+/**
+ * État de la file de livraison d'un client, pour repérer les clients lents.
+ * Le retard est l'âge de la plus ancienne livraison pas encore acceptée par le client (0 si la file est vide).
+ */
+public final class ClientQueueStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String client;
+    private final int depth;
+    private final long lagMillis;
+    private final long delivered;
+    private final long dropped;
+    private final boolean disconnected;
+
+    ClientQueueStats(String client, int depth, long lagMillis, long delivered, long dropped, boolean disconnected) {
+        this.client = client;
+        this.depth = depth;
+        this.lagMillis = lagMillis;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.disconnected = disconnected;
+    }
+
+    /** Description du client (son point d'accès). */
+    public String client() {
+        return client;
+    }
+
+    /** Nombre de livraisons en attente, y compris celle en cours. */
+    public int depth() {
+        return depth;
+    }
+
+    public long lagMillis() {
+        return lagMillis;
+    }
+
+    public long delivered() {
+        return delivered;
+    }
+
+    /** Livraisons abandonnées : file pleine ou client déconnecté. */
+    public long dropped() {
+        return dropped;
+    }
+
+    public boolean isDisconnected() {
+        return disconnected;
+    }
+
+    @Override
+    public String toString() {
+        return client + ": depth=" + depth + " lag=" + lagMillis + "ms delivered=" + delivered
+                + " dropped=" + dropped + (disconnected ? " DISCONNECTED" : "");
+    }
+}
@@ -0,0 +1,308 @@
+package linda.server;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import linda.Linda.eventMode;
+import linda.Tuple;
+
+/**
+ * Files de livraison des clients, côté serveur (voir {@link ClientQueuePolicy}).
+ * Chaque client a sa file, vidée dans l'ordre par au plus un thread de livraison à la fois :
+ * un client bloqué n'immobilise qu'un thread, et l'espace de tuples ne l'attend jamais.
+ * Déposer une livraison ne bloque pas : avec la politique BLOCK, ce sont les écrivains qui attendent,
+ * avant d'écrire, que les files pleines se vident (voir {@link #awaitRoom}).
+ * Tout ce qui s'est accumulé pendant une livraison part dans la suivante, en un seul appel au client
+ * (au plus {@link ClientQueuePolicy#batch()} tuples) : une rafale d'écritures coûte un aller-retour
+ * par client et non un par tuple.
+ */
+class ClientQueues {
+
+    /** Appel au client : retourne pour chaque tuple vrai s'il l'a accepté. */
+    interface Delivery {
+        boolean[] deliver(long[] requestIds, Tuple[] tuples) throws RemoteException;
+    }
+
+    /** Remise dans l'espace d'un tuple pris mais pas livré, par exemple {@link linda.shm.CentralizedLinda#putBack}. */
+    interface PutBack {
+        void putBack(Tuple t, long leaseExpiryMillis);
+    }
+
+    private final PutBack putBack;
+    private final ClientQueuePolicy policy;
+    /** Appelé avec le client quand il est déconnecté. */
+    private final Consumer<Object> onDisconnect;
+    private final Map<Object, ClientQueue> queues = new ConcurrentHashMap<>();
+    /** Files pleines avec la politique BLOCK ; les écrivains attendent qu'il n'y en ait plus. */
+    private final ReentrantLock roomLock = new ReentrantLock();
+    private final Condition roomAvailable = roomLock.newCondition();
+    private int fullQueues = 0;
+    private final ExecutorService deliverers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "linda-client-delivery");
+        t.setDaemon(true);
+        return t;
+    });
+
+    ClientQueues(PutBack putBack, ClientQueuePolicy policy, Consumer<Object> onDisconnect) {
+        this.putBack = putBack;
+        this.policy = policy;
+        this.onDisconnect = onDisconnect;
+    }
+
+    /**
+     * Place dans la file du client le tuple de sa demande requestId, qui lui sera transmis par delivery.
+     * Un tuple pris (TAKE) sous bail porte l'échéance de ce bail (0 sinon), qu'il retrouve s'il est rendu à l'espace.
+     * Ne bloque jamais : l'appelant est souvent un thread de livraison des callbacks de l'espace, ou l'écrivain.
+     */
+    void submit(Object client, Delivery delivery, eventMode mode, long requestId, Tuple t, long leaseExpiryMillis) {
+        Entry entry = new Entry(mode, requestId, t, leaseExpiryMillis);
+        while (true) {
+            ClientQueue queue = queues.computeIfAbsent(client, c -> new ClientQueue(c, delivery));
+            if (queue.offer(entry)) {
+                return;
+            }
+            // File retirée entre-temps car vide : on en crée une autre
+        }
+    }
+
+    /**
+     * Attend, avec la politique BLOCK, qu'aucune file ne soit pleine. Les autres politiques ne bloquent jamais.
+     * Un thread interrompu cesse d'attendre (l'interruption reste signalée).
+     */
+    void awaitRoom() {
+        if (policy.overflow() != ClientQueuePolicy.Overflow.BLOCK) {
+            return;
+        }
+        roomLock.lock();
+        try {
+            while (fullQueues > 0) {
+                roomAvailable.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            roomLock.unlock();
+        }
+    }
+
+    /** Retourne l'état des files qui ont des livraisons en attente ou dont le client est déconnecté. */
+    List<ClientQueueStats> stats() {
+        List<ClientQueueStats> stats = new ArrayList<>();
+        for (ClientQueue queue : queues.values()) {
+            stats.add(queue.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Le tuple n'a pas été livré : s'il avait été retiré, il est rendu à l'espace avec son bail.
+     * La remise n'attend pas la place : elle se fait depuis un thread de livraison.
+     */
+    private void undeliver(Entry entry) {
+        if (entry.mode == eventMode.TAKE) {
+            putBack.putBack(entry.tuple, entry.leaseExpiryMillis);
+        }
+    }
+
+    private static final class Entry {
+        final eventMode mode;
+        final long requestId;
+        final Tuple tuple;
+        final long leaseExpiryMillis;
+        final long enqueuedNanos = System.nanoTime();
+
+        Entry(eventMode mode, long requestId, Tuple tuple, long leaseExpiryMillis) {
+            this.mode = mode;
+            this.requestId = requestId;
+            this.tuple = tuple;
+            this.leaseExpiryMillis = leaseExpiryMillis;
+        }
+    }
+
+    private final class ClientQueue {
+        private final Object client;
+        private final Delivery delivery;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        /** Livraison en cours, retirée de entries (vide s'il n'y en a pas). */
+        private List<Entry> inFlight = List.of();
+        private boolean draining = false;
+        /** Retirée de la table (vide, ou client déconnecté) : plus rien n'y entre. */
+        private boolean retired = false;
+        /** Comptée dans fullQueues (politique BLOCK). */
+        private boolean full = false;
+        private boolean disconnected = false;
+        private long delivered = 0;
+        private long dropped = 0;
+
+        ClientQueue(Object client, Delivery delivery) {
+            this.client = client;
+            this.delivery = delivery;
+        }
+
+        /** Retourne faux si la file a été retirée : l'appelant doit en obtenir une nouvelle. */
+        boolean offer(Entry entry) {
+            List<Entry> undelivered = new ArrayList<>();
+            boolean disconnecting = false;
+            lock.lock();
+            try {
+                if (retired) {
+                    return false;
+                }
+                if (disconnected) {
+                    dropped++;
+                    undelivered.add(entry);
+                    return true;
+                }
+                // Avec BLOCK, la file dépasse sa capacité le temps que les écrivains s'arrêtent
+                while (entries.size() >= policy.capacity() && policy.overflow() != ClientQueuePolicy.Overflow.BLOCK
+                        && !disconnected) {
+                    if (policy.overflow() == ClientQueuePolicy.Overflow.DROP_OLDEST) {
+                        // Un tuple pris (TAKE) n'est jamais abandonné : le client attend cette réponse
+                        if (!dropOldestRead()) {
+                            if (entry.mode == eventMode.READ) {
+                                dropped++;
+                                return true;
+                            }
+                            // Que des tuples pris en file : leur nombre est borné par les demandes du client
+                            break;
+                        }
+                        dropped++;
+                    } else {
+                        disconnected = true;
+                        disconnecting = true;
+                        dropped += entries.size();
+                        undelivered.addAll(entries);
+                        entries.clear();
+                    }
+                }
+                if (disconnected) {
+                    dropped++;
+                    undelivered.add(entry);
+                    return true;
+                }
+                entries.add(entry);
+                updateFull();
+                if (!draining) {
+                    draining = true;
+                    deliverers.execute(this::drain);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+                for (Entry e : undelivered) {
+                    undeliver(e);
+                }
+                if (disconnecting) {
+                    System.err.println("Client déconnecté, file de livraison pleine (" + policy.capacity() + "): " + client);
+                    onDisconnect.accept(client);
+                }
+            }
+        }
+
+        /** Retire la plus ancienne livraison d'un tuple lu (READ), verrou de la file détenu ; faux s'il n'y en a pas. */
+        private boolean dropOldestRead() {
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                if (it.next().mode == eventMode.READ) {
+                    it.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void drain() {
+            while (true) {
+                List<Entry> batch;
+                lock.lock();
+                try {
+                    inFlight = List.of();
+                    if (disconnected || entries.isEmpty()) {
+                        // File vide ou client déconnecté : retirée pour que les clients disparus ne s'accumulent pas
+                        draining = false;
+                        retired = true;
+                        queues.remove(client, this);
+                        return;
+                    }
+                    batch = new ArrayList<>(Math.min(entries.size(), policy.batch()));
+                    while (batch.size() < policy.batch() && !entries.isEmpty()) {
+                        batch.add(entries.poll());
+                    }
+                    inFlight = batch;
+                    updateFull();
+                } finally {
+                    lock.unlock();
+                }
+
+                long[] requestIds = new long[batch.size()];
+                Tuple[] tuples = new Tuple[batch.size()];
+                for (int i = 0; i < batch.size(); i++) {
+                    requestIds[i] = batch.get(i).requestId;
+                    tuples[i] = batch.get(i).tuple;
+                }
+                boolean[] accepted;
+                try {
+                    accepted = delivery.deliver(requestIds, tuples);
+                } catch (RemoteException | RuntimeException e) {
+                    System.err.println("Erreur lors de la livraison au client: " + e);
+                    accepted = new boolean[batch.size()];
+                }
+                int count = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    if (i < accepted.length && accepted[i]) {
+                        count++;
+                    } else {
+                        undeliver(batch.get(i));
+                    }
+                }
+
+                lock.lock();
+                try {
+                    delivered += count;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /** Tient fullQueues à jour après un changement de la file, verrou de la file détenu. */
+        private void updateFull() {
+            boolean nowFull = policy.overflow() == ClientQueuePolicy.Overflow.BLOCK && entries.size() >= policy.capacity();
+            if (nowFull == full) {
+                return;
+            }
+            full = nowFull;
+            roomLock.lock();
+            try {
+                fullQueues += nowFull ? 1 : -1;
+                if (!nowFull) {
+                    roomAvailable.signalAll();
+                }
+            } finally {
+                roomLock.unlock();
+            }
+        }
+
+        ClientQueueStats stats() {
+            lock.lock();
+            try {
+                Entry oldest = inFlight.isEmpty() ? entries.peek() : inFlight.get(0);
+                long lag = (oldest == null) ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.enqueuedNanos);
+                int depth = entries.size() + inFlight.size();
+                return new ClientQueueStats(String.valueOf(client), depth, lag, delivered, dropped, disconnected);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
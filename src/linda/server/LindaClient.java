@@ -1,35 +1,90 @@
 package linda.server;
 
+import linda.AsyncLinda;
 import linda.Callback;
+import linda.Lease;
 import linda.Linda;
 import linda.Tuple;
+import linda.TupleCursor;
+import linda.shm.Occupancy;
 
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
 import java.net.URI;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /** Client part of a client/server implementation of Linda.
  * It implements the Linda interface and propagates everything to the server it is connected to.
  * */
-public class LindaClient implements Linda {
-    
+public class LindaClient implements Linda, AsyncLinda {
+
+    /** Durée maximale d'un appel bloquant sur le serveur : take/read bloquants sont découpés en appels de cette durée,
+     * pour que le thread du serveur soit libéré si ce client disparaît. */
+    private static final long BLOCKING_SLICE_SECONDS = 30;
+
     private LindaRemote lindaRemote;
+    /** Vrai pour le transport RMI : le canal de réponse et les callbacks doivent alors être exportés. */
+    private boolean rmi = true;
+    /** Canal de réponse aux demandes asynchrones, créé à la première demande. */
+    private ReplyChannelImpl replyChannel;
+    /** Thread des écritures asynchrones : elles sont transmises dans l'ordre. */
+    private final ExecutorService asyncWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "linda-async-write");
+        t.setDaemon(true);
+        return t;
+    });
     // Garder une référence à tous les CallbackAdapter créés
     private Map<Callback, RemoteCallback> callbackAdapters;
+    /** File des écritures en pipeline, null si chaque write attend le serveur. */
+    private final WritePipeline pipeline;
     
-    /** Initializes the Linda implementation.
-     *  @param serverURI the URI of the server, e.g. "rmi://localhost:4000/LindaServer" or "//localhost:4000/LindaServer".
+    /** Initializes the Linda implementation. The transport is chosen from the URI scheme:
+     *  RMI for "rmi://localhost:4000/LindaServer" or "//localhost:4000/LindaServer",
+     *  the binary NIO protocol of {@link NioLindaServer} for "nio://localhost:4001".
+     *  Writes are pipelined if the system properties ask for it (see {@link WritePipelining#fromSystemProperties()}).
+     *  @param serverURI the URI of the server.
      */
     public LindaClient(String serverURI) {
+        this(serverURI, WritePipelining.fromSystemProperties());
+    }
+
+    /** Initializes the Linda implementation with the given write pipelining policy.
+     *  With pipelining, write returns as soon as the tuple is queued locally; see {@link #flush()}.
+     *  @param serverURI the URI of the server.
+     *  @param pipelining how writes are shipped to the server.
+     */
+    public LindaClient(String serverURI, WritePipelining pipelining) {
+        connect(serverURI);
+        pipeline = pipelining.isEnabled() ? new WritePipeline(lindaRemote, pipelining) : null;
+    }
+
+    private void connect(String serverURI) {
         try {
             callbackAdapters = new HashMap<>();
 
+            if (serverURI.startsWith("nio://")) {
+                URI uri = new URI(serverURI);
+                int port = (uri.getPort() == -1) ? NioLindaServer.DEFAULT_PORT : uri.getPort();
+                lindaRemote = new NioLindaStub(uri.getHost(), port);
+                rmi = false;
+                System.out.println("Connected to Linda server at: " + serverURI);
+                return;
+            }
+
             System.setProperty("java.rmi.server.hostname", "127.0.0.1");
 
             URI uri;
@@ -69,6 +124,10 @@ public class LindaClient implements Linda {
     
     @Override
     public void write(Tuple t) {
+        if (pipeline != null) {
+            pipeline.write(Collections.singletonList(t));
+            return;
+        }
         try {
             lindaRemote.write(t);
         } catch (RemoteException e) {
@@ -76,11 +135,54 @@ public class LindaClient implements Linda {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Sends the pipelined writes without waiting for the linger time and waits until the server has acknowledged them.
+     * Rethrows the failure of a batch rejected since the last operation. Does nothing if writes are not pipelined.
+     */
+    public void flush() {
+        if (pipeline != null) {
+            pipeline.flush();
+        }
+    }
+
+    @Override
+    public Lease write(Tuple t, Duration lease) {
+        flush();
+        try {
+            return new RemoteLease(lindaRemote.writeLeased(t, lease.toMillis()));
+        } catch (RemoteException e) {
+            System.err.println("Error during write call: " + e);
+            throw new RuntimeException(e);
+        }
+    }
+    
+    @Override
+    public void writeAll(Collection<Tuple> tuples) {
+        if (pipeline != null) {
+            pipeline.write(tuples);
+            return;
+        }
+        try {
+            // Un seul appel distant pour tout le lot
+            lindaRemote.writeAll(new ArrayList<>(tuples));
+        } catch (RemoteException e) {
+            System.err.println("Error during writeAll call: " + e);
+            throw new RuntimeException(e);
+        }
+    }
     
     @Override
     public Tuple take(Tuple template) {
+        flush();
         try {
-            return lindaRemote.take(template);
+            Tuple result;
+            while ((result = lindaRemote.take(template, BLOCKING_SLICE_SECONDS, TimeUnit.SECONDS)) == null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+            }
+            return result;
         } catch (RemoteException e) {
             System.err.println("Error during take call: " + e);
             throw new RuntimeException(e);
@@ -89,8 +191,37 @@ public class LindaClient implements Linda {
     
     @Override
     public Tuple read(Tuple template) {
+        flush();
+        try {
+            Tuple result;
+            while ((result = lindaRemote.read(template, BLOCKING_SLICE_SECONDS, TimeUnit.SECONDS)) == null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+            }
+            return result;
+        } catch (RemoteException e) {
+            System.err.println("Error during read call: " + e);
+            throw new RuntimeException(e);
+        }
+    }
+    
+    @Override
+    public Tuple take(Tuple template, long timeout, TimeUnit unit) {
+        flush();
         try {
-            return lindaRemote.read(template);
+            return lindaRemote.take(template, timeout, unit);
+        } catch (RemoteException e) {
+            System.err.println("Error during take call: " + e);
+            throw new RuntimeException(e);
+        }
+    }
+    
+    @Override
+    public Tuple read(Tuple template, long timeout, TimeUnit unit) {
+        flush();
+        try {
+            return lindaRemote.read(template, timeout, unit);
         } catch (RemoteException e) {
             System.err.println("Error during read call: " + e);
             throw new RuntimeException(e);
@@ -99,6 +230,7 @@ public class LindaClient implements Linda {
     
     @Override
     public Tuple tryTake(Tuple template) {
+        flush();
         try {
             return lindaRemote.tryTake(template);
         } catch (RemoteException e) {
@@ -109,6 +241,7 @@ public class LindaClient implements Linda {
     
     @Override
     public Tuple tryRead(Tuple template) {
+        flush();
         try {
             return lindaRemote.tryRead(template);
         } catch (RemoteException e) {
@@ -119,6 +252,7 @@ public class LindaClient implements Linda {
     
     @Override
     public Collection<Tuple> takeAll(Tuple template) {
+        flush();
         try {
             return lindaRemote.takeAll(template);
         } catch (RemoteException e) {
@@ -129,6 +263,7 @@ public class LindaClient implements Linda {
     
     @Override
     public Collection<Tuple> readAll(Tuple template) {
+        flush();
         try {
             return lindaRemote.readAll(template);
         } catch (RemoteException e) {
@@ -138,30 +273,189 @@ public class LindaClient implements Linda {
     }
     
     @Override
-    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, Callback callback) {
+    public TupleCursor readCursor(Tuple template, int batchSize) {
+        return openCursor(template, false, batchSize);
+    }
+    
+    @Override
+    public TupleCursor takeCursor(Tuple template, int batchSize) {
+        return openCursor(template, true, batchSize);
+    }
+    
+    /** Curseur distant : un appel par morceau, le serveur ne garde que la position du curseur. */
+    private TupleCursor openCursor(Tuple template, boolean take, int batchSize) {
+        flush();
+        final long cursorId;
         try {
-            // Vérification de la validité du mode et du timing
-            final Callback cb = callback;
+            cursorId = lindaRemote.openCursor(template, take, batchSize);
+        } catch (RemoteException e) {
+            System.err.println("Error during openCursor call: " + e);
+            throw new RuntimeException(e);
+        }
+        return new TupleCursor() {
+            private boolean closed = false;
             
-            // On crée un RemoteCallback qui encapsule le Callback local
-            lindaRemote.eventRegisterCallback(mode, timing, template, 
-                new RemoteCallbackImpl(new Callback() {
-                    @Override
-                    public void call(Tuple t) {
-                        cb.call(t);
+            @Override
+            protected List<Tuple> fetch() {
+                try {
+                    List<Tuple> batch = lindaRemote.nextBatch(cursorId);
+                    if (batch.isEmpty()) {
+                        // Le serveur a fermé le curseur
+                        closed = true;
                     }
-                })
-            );
+                    return batch;
+                } catch (RemoteException e) {
+                    System.err.println("Error during nextBatch call: " + e);
+                    throw new RuntimeException(e);
+                }
+            }
             
+            @Override
+            public void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    lindaRemote.closeCursor(cursorId);
+                } catch (RemoteException e) {
+                    System.err.println("Error during closeCursor call: " + e);
+                }
+            }
+        };
+    }
+    
+    @Override
+    public Collection<Tuple> takeN(Tuple template, int n) {
+        flush();
+        try {
+            return lindaRemote.takeN(template, n);
+        } catch (RemoteException e) {
+            System.err.println("Error during takeN call: " + e);
+            throw new RuntimeException(e);
+        }
+    }
+    
+    @Override
+    public Collection<Tuple> readN(Tuple template, int max) {
+        flush();
+        try {
+            return lindaRemote.readN(template, max);
+        } catch (RemoteException e) {
+            System.err.println("Error during readN call: " + e);
+            throw new RuntimeException(e);
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Tuple> writeAsync(Tuple t) {
+        return CompletableFuture.supplyAsync(() -> {
+            write(t);
+            return t;
+        }, asyncWriter);
+    }
+    
+    @Override
+    public CompletableFuture<Tuple> takeAsync(Tuple template) {
+        return submitAsync(eventMode.TAKE, template);
+    }
+    
+    @Override
+    public CompletableFuture<Tuple> readAsync(Tuple template) {
+        return submitAsync(eventMode.READ, template);
+    }
+    
+    /**
+     * Envoie une demande asynchrone : l'appel distant retourne immédiatement,
+     * le serveur répondra sur le canal de réponse avec le numéro de la demande.
+     */
+    private CompletableFuture<Tuple> submitAsync(eventMode mode, Tuple template) {
+        flush();
+        final ReplyChannelImpl channel;
+        try {
+            channel = replyChannel();
+        } catch (RemoteException e) {
+            System.err.println("Error during " + (mode == eventMode.TAKE ? "takeAsync" : "readAsync") + " call: " + e);
+            CompletableFuture<Tuple> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        final long[] requestId = new long[1];
+        CompletableFuture<Tuple> future = new CompletableFuture<Tuple>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    channel.forget(requestId[0]);
+                    try {
+                        lindaRemote.cancelAsync(channel, requestId[0]);
+                    } catch (RemoteException e) {
+                        System.err.println("Error during cancelAsync call: " + e);
+                    }
+                }
+                return cancelled;
+            }
+        };
+        requestId[0] = channel.expect(future);
+        try {
+            if (mode == eventMode.TAKE) {
+                lindaRemote.takeAsync(template, channel, requestId[0]);
+            } else {
+                lindaRemote.readAsync(template, channel, requestId[0]);
+            }
+        } catch (RemoteException e) {
+            System.err.println("Error during " + (mode == eventMode.TAKE ? "takeAsync" : "readAsync") + " call: " + e);
+            channel.forget(requestId[0]);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    private synchronized ReplyChannelImpl replyChannel() throws RemoteException {
+        if (replyChannel == null) {
+            ReplyChannelImpl channel = new ReplyChannelImpl();
+            if (rmi) {
+                UnicastRemoteObject.exportObject(channel, 0);
+            }
+            replyChannel = channel;
+        }
+        return replyChannel;
+    }
+    
+    @Override
+    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, Callback callback) {
+        flush();
+        try {
+            // Le callback reste local : le serveur transmet l'événement au canal de réponse avec son numéro
+            ReplyChannelImpl channel = replyChannel();
+            long registrationId = channel.register(callback);
+            try {
+                lindaRemote.eventRegister(mode, timing, template, channel, registrationId);
+            } catch (RemoteException | RuntimeException e) {
+                channel.forget(registrationId);
+                throw e;
+            }
         } catch (RemoteException e) {
             System.err.println("Error during eventRegister call: " + e);
             e.printStackTrace();
             throw new RuntimeException(e);
         }
     }
+
+    /** Returns the number of objects this client has exported for the server to call back: at most one, its reply channel
+     *  shared by all async requests and callbacks (none with the NIO transport, which calls back over its connection). */
+    public synchronized int exportedObjectCount() {
+        return (rmi && replyChannel != null) ? 1 : 0;
+    }
+
+    /** Returns the number of callbacks registered by this client that have not fired yet. */
+    public synchronized int callbackRegistrationCount() {
+        return (replyChannel == null) ? 0 : replyChannel.registrationCount();
+    }
     
     @Override
     public void debug(String prefix) {
+        flush();
         try {
             lindaRemote.debug(prefix);
         } catch (RemoteException e) {
@@ -169,4 +463,54 @@ public class LindaClient implements Linda {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    /** Returns the occupancy of the server's tuplespace with respect to its capacity limits. */
+    public Occupancy occupancy() {
+        flush();
+        try {
+            return lindaRemote.occupancy();
+        } catch (RemoteException e) {
+            System.err.println("Error during occupancy call: " + e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Bail d'un tuple écrit par ce client, géré par le serveur. */
+    private final class RemoteLease implements Lease {
+        private final long leaseId;
+
+        RemoteLease(long leaseId) {
+            this.leaseId = leaseId;
+        }
+
+        @Override
+        public boolean renew(Duration duration) {
+            try {
+                return lindaRemote.renewLease(leaseId, duration.toMillis());
+            } catch (RemoteException e) {
+                System.err.println("Error during renewLease call: " + e);
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            try {
+                return lindaRemote.cancelLease(leaseId);
+            } catch (RemoteException e) {
+                System.err.println("Error during cancelLease call: " + e);
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            try {
+                return lindaRemote.isLeaseActive(leaseId);
+            } catch (RemoteException e) {
+                System.err.println("Error during isLeaseActive call: " + e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -3,9 +3,12 @@ package linda.server;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import linda.Linda.eventMode;
 import linda.Linda.eventTiming;
 import linda.Tuple;
+import linda.shm.Occupancy;
 
 /**
  * Interface distante pour le serveur Linda.
@@ -16,6 +19,31 @@ public interface LindaRemote extends Remote {
      */
     void write(Tuple t) throws RemoteException;
     
+    /**
+     * Ajoute plusieurs tuples en un seul appel.
+     */
+    void writeAll(Collection<Tuple> tuples) throws RemoteException;
+
+    /**
+     * Ajoute un tuple pour la durée donnée et retourne l'identifiant de son bail.
+     */
+    long writeLeased(Tuple t, long leaseMillis) throws RemoteException;
+
+    /**
+     * Prolonge un bail ; retourne faux si le tuple n'est plus dans l'espace.
+     */
+    boolean renewLease(long leaseId, long leaseMillis) throws RemoteException;
+
+    /**
+     * Retire le tuple d'un bail ; retourne faux s'il n'était plus dans l'espace.
+     */
+    boolean cancelLease(long leaseId) throws RemoteException;
+
+    /**
+     * Retourne vrai si le tuple d'un bail est toujours dans l'espace.
+     */
+    boolean isLeaseActive(long leaseId) throws RemoteException;
+
     /**
      * Retire et retourne un tuple correspondant au motif.
      */
@@ -26,6 +54,33 @@ public interface LindaRemote extends Remote {
      */
     Tuple read(Tuple template) throws RemoteException;
     
+    /**
+     * Comme take, mais bloque au plus le délai indiqué ; retourne null à l'échéance.
+     * Le thread du serveur est alors libéré, même si le client a disparu entre-temps.
+     */
+    Tuple take(Tuple template, long timeout, TimeUnit unit) throws RemoteException;
+
+    /**
+     * Comme read, mais bloque au plus le délai indiqué ; retourne null à l'échéance.
+     */
+    Tuple read(Tuple template, long timeout, TimeUnit unit) throws RemoteException;
+
+    /**
+     * Demande asynchrone de take : retourne immédiatement, le tuple sera transmis à replyTo
+     * avec le numéro de demande requestId.
+     */
+    void takeAsync(Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException;
+
+    /**
+     * Demande asynchrone de read, comme takeAsync.
+     */
+    void readAsync(Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException;
+
+    /**
+     * Annule une demande asynchrone, ou un callback enregistré avec ce canal. Retourne faux s'il était déjà satisfait.
+     */
+    boolean cancelAsync(ReplyChannel replyTo, long requestId) throws RemoteException;
+
     /**
      * Version non bloquante de take.
      */
@@ -46,6 +101,32 @@ public interface LindaRemote extends Remote {
      */
     Collection<Tuple> readAll(Tuple template) throws RemoteException;
     
+    /**
+     * Ouvre un curseur sur les tuples correspondant au motif (retirés si take est vrai),
+     * parcouru par morceaux d'au plus batchSize tuples. Retourne son identifiant.
+     */
+    long openCursor(Tuple template, boolean take, int batchSize) throws RemoteException;
+
+    /**
+     * Retourne le morceau suivant d'un curseur ; une liste vide signale la fin (le curseur est alors fermé).
+     */
+    List<Tuple> nextBatch(long cursorId) throws RemoteException;
+
+    /**
+     * Ferme un curseur abandonné avant la fin.
+     */
+    void closeCursor(long cursorId) throws RemoteException;
+
+    /**
+     * Retire et retourne n tuples correspondant au motif, en bloquant jusqu'à ce qu'ils soient présents.
+     */
+    Collection<Tuple> takeN(Tuple template, int n) throws RemoteException;
+
+    /**
+     * Lit et retourne au plus max tuples correspondant au motif sans les retirer.
+     */
+    Collection<Tuple> readN(Tuple template, int max) throws RemoteException;
+
     /**
      * Enregistre un callback pour être notifié lors de l'apparition d'un tuple.
      */
@@ -55,7 +136,18 @@ public interface LindaRemote extends Remote {
      * Nouvelle méthode pour enregistrement de callback avec implémentation directe.
      */
     void eventRegisterCallback(eventMode mode, eventTiming timing, Tuple template, RemoteCallback callback) throws RemoteException;
+
+    /**
+     * Enregistre un callback dont l'événement sera transmis au canal de réponse du client avec le numéro
+     * registrationId : un seul objet exporté par client, quel que soit le nombre d'enregistrements.
+     */
+    void eventRegister(eventMode mode, eventTiming timing, Tuple template, ReplyChannel replyTo, long registrationId) throws RemoteException;
     
+    /**
+     * Retourne l'occupation de l'espace par rapport à ses limites de capacité.
+     */
+    Occupancy occupancy() throws RemoteException;
+
     /**
      * Affiche des informations de débogage.
      */
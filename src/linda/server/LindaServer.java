@@ -5,35 +5,94 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.io.Serializable;
 
-import linda.Callback;
-import linda.Linda;
 import linda.Tuple;
 import linda.Linda.eventMode;
 import linda.Linda.eventTiming;
-import linda.shm.CentralizedLinda;
+import linda.shm.CallbackDispatcher;
+import linda.shm.Occupancy;
+import linda.shm.PartitionedLinda;
+import linda.shm.SpaceLimits;
 
 /**
- * Serveur Linda qui utilise CentralizedLinda en interne.
+ * Serveur Linda qui utilise PartitionedLinda en interne.
  */
 public class LindaServer extends UnicastRemoteObject implements LindaRemote {
     
     private static final long serialVersionUID = 1L;
-    private Linda linda;
+    /** Threads livrant les callbacks distants : un client lent ne bloque pas les écrivains. */
+    static final int CALLBACK_THREADS = 4;
+    /** Au-delà, l'écrivain livre lui-même les callbacks (contre-pression). */
+    static final int CALLBACK_QUEUE_CAPACITY = 10_000;
+    private final PartitionedLinda linda;
+    private final AsyncRequests asyncRequests;
+    private final ServerCursors cursors;
+    private final ServerLeases leases;
     
     /**
-     * Constructeur du serveur Linda.
+     * Constructeur du serveur Linda. La capacité de l'espace est lue dans les propriétés système
+     * (voir {@link SpaceLimits#fromSystemProperties()}), sans limite par défaut.
      */
     public LindaServer() throws RemoteException {
-        this.linda = new CentralizedLinda();
+        this(SpaceLimits.fromSystemProperties());
+    }
+    
+    /**
+     * Serveur dont l'espace est borné : un producteur trop rapide est freiné ou refusé selon la politique.
+     */
+    public LindaServer(SpaceLimits limits) throws RemoteException {
+        this(limits, ClientQueuePolicy.fromSystemProperties());
+    }
+    
+    /**
+     * Serveur borné dont les livraisons aux clients suivent la politique donnée : taille de la file de chaque client
+     * et sort d'un client trop lent.
+     */
+    public LindaServer(SpaceLimits limits, ClientQueuePolicy clientQueues) throws RemoteException {
+        // Espace partitionné : les clients qui travaillent sur des familles de tuples différentes ne se bloquent pas
+        this.linda = new PartitionedLinda(4 * Runtime.getRuntime().availableProcessors(),
+                CallbackDispatcher.boundedPool(CALLBACK_THREADS, CALLBACK_QUEUE_CAPACITY), limits);
+        this.asyncRequests = new AsyncRequests(linda::registerEvent, linda::putBack, clientQueues);
+        this.cursors = new ServerCursors(linda);
+        this.leases = new ServerLeases(linda::write);
     }
     
     @Override
     public void write(Tuple t) throws RemoteException {
+        asyncRequests.awaitDeliveryRoom();
         linda.write(t);
     }
     
+    @Override
+    public void writeAll(Collection<Tuple> tuples) throws RemoteException {
+        asyncRequests.awaitDeliveryRoom();
+        linda.writeAll(tuples);
+    }
+    
+    @Override
+    public long writeLeased(Tuple t, long leaseMillis) throws RemoteException {
+        asyncRequests.awaitDeliveryRoom();
+        return leases.write(t, leaseMillis);
+    }
+    
+    @Override
+    public boolean renewLease(long leaseId, long leaseMillis) throws RemoteException {
+        return leases.renew(leaseId, leaseMillis);
+    }
+    
+    @Override
+    public boolean cancelLease(long leaseId) throws RemoteException {
+        return leases.cancel(leaseId);
+    }
+    
+    @Override
+    public boolean isLeaseActive(long leaseId) throws RemoteException {
+        return leases.isActive(leaseId);
+    }
+    
     @Override
     public Tuple take(Tuple template) throws RemoteException {
         return linda.take(template);
@@ -44,6 +103,31 @@ public class LindaServer extends UnicastRemoteObject implements LindaRemote {
         return linda.read(template);
     }
     
+    @Override
+    public Tuple take(Tuple template, long timeout, TimeUnit unit) throws RemoteException {
+        return linda.take(template, timeout, unit);
+    }
+    
+    @Override
+    public Tuple read(Tuple template, long timeout, TimeUnit unit) throws RemoteException {
+        return linda.read(template, timeout, unit);
+    }
+    
+    @Override
+    public void takeAsync(Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException {
+        asyncRequests.submit(eventMode.TAKE, template, replyTo, requestId);
+    }
+    
+    @Override
+    public void readAsync(Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException {
+        asyncRequests.submit(eventMode.READ, template, replyTo, requestId);
+    }
+    
+    @Override
+    public boolean cancelAsync(ReplyChannel replyTo, long requestId) throws RemoteException {
+        return asyncRequests.cancel(replyTo, requestId);
+    }
+    
     @Override
     public Tuple tryTake(Tuple template) throws RemoteException {
         return linda.tryTake(template);
@@ -64,19 +148,35 @@ public class LindaServer extends UnicastRemoteObject implements LindaRemote {
         return linda.readAll(template);
     }
     
+    @Override
+    public long openCursor(Tuple template, boolean take, int batchSize) throws RemoteException {
+        return cursors.open(template, take, batchSize);
+    }
+    
+    @Override
+    public List<Tuple> nextBatch(long cursorId) throws RemoteException {
+        return cursors.next(cursorId);
+    }
+    
+    @Override
+    public void closeCursor(long cursorId) throws RemoteException {
+        cursors.close(cursorId);
+    }
+    
+    @Override
+    public Collection<Tuple> takeN(Tuple template, int n) throws RemoteException {
+        return linda.takeN(template, n);
+    }
+    
+    @Override
+    public Collection<Tuple> readN(Tuple template, int max) throws RemoteException {
+        return linda.readN(template, max);
+    }
+    
     @Override
     public void eventRegister(eventMode mode, eventTiming timing, Tuple template, RemoteCallback callback) throws RemoteException {
-        // Adaptateur pour transformer le RemoteCallback en Callback local
-        linda.eventRegister(mode, timing, template, new Callback() {
-            @Override
-            public void call(Tuple t) {
-                try {
-                    callback.call(t);
-                } catch (RemoteException e) {
-                    System.err.println("Erreur lors de l'appel du callback distant: " + e);
-                }
-            }
-        });
+        // Le callback passe par sa file de livraison : un client lent ne bloque pas les écrivains
+        asyncRequests.register(mode, timing, template, callback);
     }
     
     @Override
@@ -85,9 +185,40 @@ public class LindaServer extends UnicastRemoteObject implements LindaRemote {
         eventRegister(mode, timing, template, callback);
     }
     
+    @Override
+    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, ReplyChannel replyTo, long registrationId) throws RemoteException {
+        asyncRequests.register(mode, timing, template, replyTo, registrationId);
+    }
+    
+    @Override
+    public Occupancy occupancy() throws RemoteException {
+        return linda.occupancy();
+    }
+    
     @Override
     public void debug(String prefix) throws RemoteException {
         linda.debug(prefix);
+        System.out.println(prefix + " Remote clients: " + clientChannelCount() + " reply channels, "
+                + asyncRequests.pendingCount() + " pending async requests, "
+                + asyncRequests.registrationCount() + " callback registrations");
+        for (ClientQueueStats stats : clientQueueStats()) {
+            System.out.println(prefix + "   " + stats);
+        }
+    }
+
+    /** Retourne le nombre de clients joignables par un canal de réponse, c'est-à-dire de connexions du serveur vers les clients. */
+    public int clientChannelCount() {
+        return asyncRequests.channelCount();
+    }
+
+    /** Retourne l'état des files de livraison des clients qui attendent des tuples, pour repérer les clients lents. */
+    public List<ClientQueueStats> clientQueueStats() {
+        return asyncRequests.queueStats();
+    }
+
+    /** Retourne le nombre de callbacks distants enregistrés et pas encore déclenchés. */
+    public int callbackRegistrationCount() {
+        return asyncRequests.registrationCount();
     }
     
     /**
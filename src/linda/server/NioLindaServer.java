@@ -0,0 +1,505 @@
+package linda.server;
+
+import static linda.server.NioProtocol.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+
+/**
+ * Serveur Linda accessible par le transport NIO (voir {@link NioProtocol}), adresse "nio://hôte:port".
+ *
+ * Un seul thread sélecteur accepte les connexions et lit les trames ; les requêtes sont exécutées par un pool
+ * de travail de taille fixe, et les réponses écrites par le thread qui les produit tant que le socket les accepte.
+ * Les opérations qui peuvent attendre un tuple (take, read, takeN) ou de la place dans un espace borné (écritures)
+ * passent par un second pool, non borné, pour ne jamais épuiser le pool de travail. Les réponses aux demandes asynchrones et les callbacks sont
+ * renvoyés sur la connexion du client : il n'ouvre aucun port.
+ *
+ * Les requêtes sont transmises à un {@link LindaRemote} local, par exemple un {@link LindaServer} :
+ * les mêmes curseurs, baux et demandes asynchrones servent aux deux transports.
+ */
+public class NioLindaServer implements Closeable {
+
+    /** Port par défaut des adresses "nio://hôte". */
+    public static final int DEFAULT_PORT = 4001;
+    /** Taille par défaut du pool de travail. */
+    public static final int DEFAULT_WORKERS = Integer.getInteger("linda.nio.workers",
+            Runtime.getRuntime().availableProcessors());
+
+    private final LindaRemote target;
+    private final ServerSocketChannel acceptor;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final ExecutorService blocking;
+    private final Thread selectorThread;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+
+    /**
+     * Démarre le serveur sur le port donné (0 pour un port libre) avec le pool de travail par défaut.
+     */
+    public NioLindaServer(LindaRemote target, int port) throws IOException {
+        this(target, port, DEFAULT_WORKERS);
+    }
+
+    /**
+     * Démarre le serveur sur le port donné (0 pour un port libre) avec workerThreads threads de travail.
+     */
+    public NioLindaServer(LindaRemote target, int port, int workerThreads) throws IOException {
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("workerThreads doit être positif: " + workerThreads);
+        }
+        this.target = target;
+        this.selector = Selector.open();
+        this.acceptor = ServerSocketChannel.open();
+        acceptor.bind(new InetSocketAddress(port));
+        acceptor.configureBlocking(false);
+        acceptor.register(selector, SelectionKey.OP_ACCEPT);
+        this.workers = Executors.newFixedThreadPool(workerThreads, daemon("linda-nio-worker"));
+        this.blocking = Executors.newCachedThreadPool(daemon("linda-nio-blocking"));
+        this.selectorThread = new Thread(this::run, "linda-nio-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Retourne le port d'écoute, utile si le serveur a été démarré sur le port 0. */
+    public int port() {
+        try {
+            return ((InetSocketAddress) acceptor.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("Serveur fermé", e);
+        }
+    }
+
+    /** Retourne le nombre de clients connectés. */
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    /** Ferme le port d'écoute et toutes les connexions. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Connection c : connections) {
+            c.close();
+        }
+        selector.close();
+        acceptor.close();
+        workers.shutdownNow();
+        blocking.shutdownNow();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable() && !c.decoder.read(c.channel, c::received)) {
+                            c.close();
+                            continue;
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            c.flush();
+                        }
+                    } catch (IOException e) {
+                        c.close();
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Erreur du sélecteur NIO: " + e);
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = acceptor.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection c = new Connection(channel);
+        c.key = channel.register(selector, SelectionKey.OP_READ, c);
+        connections.add(c);
+    }
+
+    /** Exécute une requête et retourne sa réponse. */
+    private Frame execute(Connection c, byte op, FrameReader in) throws IOException {
+        Frame reply = new Frame(RESPONSE, in.id);
+        reply.out.writeByte(OK);
+        switch (op) {
+            case WRITE:
+                target.write(in.readTuple());
+                break;
+            case WRITE_ALL:
+                target.writeAll(in.readTuples());
+                break;
+            case WRITE_LEASED:
+                reply.out.writeLong(target.writeLeased(in.readTuple(), in.readLong()));
+                break;
+            case RENEW_LEASE:
+                reply.out.writeBoolean(target.renewLease(in.readLong(), in.readLong()));
+                break;
+            case CANCEL_LEASE:
+                reply.out.writeBoolean(target.cancelLease(in.readLong()));
+                break;
+            case IS_LEASE_ACTIVE:
+                reply.out.writeBoolean(target.isLeaseActive(in.readLong()));
+                break;
+            case TAKE:
+                reply.writeTuple(target.take(in.readTuple()));
+                break;
+            case READ:
+                reply.writeTuple(target.read(in.readTuple()));
+                break;
+            case TAKE_TIMEOUT:
+                reply.writeTuple(target.take(in.readTuple(), in.readLong(), TimeUnit.NANOSECONDS));
+                break;
+            case READ_TIMEOUT:
+                reply.writeTuple(target.read(in.readTuple(), in.readLong(), TimeUnit.NANOSECONDS));
+                break;
+            case TAKE_ASYNC:
+            case READ_ASYNC: {
+                Tuple template = in.readTuple();
+                long requestId = in.readLong();
+                c.asyncRequests.add(requestId);
+                if (op == TAKE_ASYNC) {
+                    target.takeAsync(template, c.replies, requestId);
+                } else {
+                    target.readAsync(template, c.replies, requestId);
+                }
+                break;
+            }
+            case CANCEL_ASYNC: {
+                long requestId = in.readLong();
+                c.asyncRequests.remove(requestId);
+                reply.out.writeBoolean(target.cancelAsync(c.replies, requestId));
+                break;
+            }
+            case TRY_TAKE:
+                reply.writeTuple(target.tryTake(in.readTuple()));
+                break;
+            case TRY_READ:
+                reply.writeTuple(target.tryRead(in.readTuple()));
+                break;
+            case TAKE_ALL:
+                reply.writeTuples(target.takeAll(in.readTuple()));
+                break;
+            case READ_ALL:
+                reply.writeTuples(target.readAll(in.readTuple()));
+                break;
+            case OPEN_CURSOR:
+                reply.out.writeLong(target.openCursor(in.readTuple(), in.readBoolean(), in.readInt()));
+                break;
+            case NEXT_BATCH:
+                reply.writeTuples(target.nextBatch(in.readLong()));
+                break;
+            case CLOSE_CURSOR:
+                target.closeCursor(in.readLong());
+                break;
+            case TAKE_N:
+                reply.writeTuples(target.takeN(in.readTuple(), in.readInt()));
+                break;
+            case READ_N:
+                reply.writeTuples(target.readN(in.readTuple(), in.readInt()));
+                break;
+            case EVENT_REGISTER: {
+                eventMode mode = eventMode.values()[in.readByte()];
+                eventTiming timing = eventTiming.values()[in.readByte()];
+                Tuple template = in.readTuple();
+                long registrationId = in.readLong();
+                c.asyncRequests.add(registrationId);
+                target.eventRegister(mode, timing, template, c.replies, registrationId);
+                break;
+            }
+            case OCCUPANCY:
+                reply.writeObject(target.occupancy());
+                break;
+            case DEBUG:
+                target.debug(in.readUTF());
+                break;
+            default:
+                throw new IOException("Opération inconnue: " + op);
+        }
+        return reply;
+    }
+
+    /** Connexion d'un client. */
+    private final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        final FrameDecoder decoder = new FrameDecoder();
+        /** Trames en attente d'écriture, dans l'ordre ; sert aussi de verrou d'écriture. */
+        private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+        private boolean writeInterest = false;
+        /** Appels du serveur vers ce client en attente de leur résultat. */
+        private final Map<Long, CompletableFuture<FrameReader>> calls = new ConcurrentHashMap<>();
+        private final AtomicLong nextCallId = new AtomicLong();
+        /** Demandes asynchrones et callbacks enregistrés en cours, annulés si le client se déconnecte. */
+        final Set<Long> asyncRequests = ConcurrentHashMap.newKeySet();
+        /** Canal de réponse de ce client : les tuples repartent sur la connexion. */
+        final ReplyChannel replies = new ReplyChannel() {
+            @Override
+            public boolean deliver(long requestId, Tuple t) throws RemoteException {
+                return deliverAll(new long[] { requestId }, new Tuple[] { t })[0];
+            }
+
+            @Override
+            public boolean[] deliverAll(long[] requestIds, Tuple[] tuples) throws RemoteException {
+                return Connection.this.deliver(requestIds, tuples);
+            }
+        };
+        private volatile boolean open = true;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /** Appelé par le thread sélecteur pour chaque trame reçue. */
+        void received(FrameReader in) throws IOException {
+            if (in.type == REQUEST) {
+                byte op = in.readByte();
+                try {
+                    (mayBlock(op) ? blocking : workers).execute(() -> handle(op, in));
+                } catch (RejectedExecutionException e) {
+                    // Serveur en cours d'arrêt
+                }
+            } else if (in.type == CALL_RESULT) {
+                CompletableFuture<FrameReader> call = calls.remove(in.id);
+                if (call != null) {
+                    call.complete(in);
+                }
+            } else {
+                throw new IOException("Trame inattendue: " + in.type);
+            }
+        }
+
+        private void handle(byte op, FrameReader in) {
+            Frame reply;
+            try {
+                reply = execute(this, op, in);
+            } catch (Exception e) {
+                try {
+                    reply = new Frame(RESPONSE, in.id);
+                    reply.out.writeByte(ERROR);
+                    reply.writeException(e);
+                } catch (IOException ex) {
+                    close();
+                    return;
+                }
+            }
+            send(reply);
+        }
+
+        /**
+         * Réponses à des demandes asynchrones ou callbacks, en une trame :
+         * retourne pour chaque tuple vrai si le client l'attendait encore.
+         */
+        private boolean[] deliver(long[] requestIds, Tuple[] tuples) throws RemoteException {
+            for (long requestId : requestIds) {
+                asyncRequests.remove(requestId);
+            }
+            FrameReader result = call(requestIds, tuples);
+            try {
+                boolean[] accepted = new boolean[tuples.length];
+                for (int i = 0; i < accepted.length; i++) {
+                    accepted[i] = result.readBoolean();
+                }
+                return accepted;
+            } catch (IOException e) {
+                throw new RemoteException("Réponse du client invalide", e);
+            }
+        }
+
+        /** Transmet des tuples au canal de réponse du client et attend son résultat, comme le ferait un appel RMI. */
+        private FrameReader call(long[] requestIds, Tuple[] tuples) throws RemoteException {
+            long callId = nextCallId.incrementAndGet();
+            CompletableFuture<FrameReader> result = new CompletableFuture<>();
+            calls.put(callId, result);
+            try {
+                Frame frame = new Frame(CALL, callId);
+                frame.out.writeInt(requestIds.length);
+                for (long requestId : requestIds) {
+                    frame.out.writeLong(requestId);
+                }
+                frame.writeTuples(Arrays.asList(tuples));
+                if (!open) {
+                    // Fermée avant l'enregistrement de l'appel : close() ne le terminera pas
+                    throw new RemoteException("Client déconnecté");
+                }
+                send(frame);
+                FrameReader in = result.get();
+                if (in.readByte() == ERROR) {
+                    throw new RemoteException("Erreur chez le client", (Throwable) in.readObject());
+                }
+                return in;
+            } catch (RemoteException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new RemoteException("Erreur de communication avec le client", e);
+            } catch (ExecutionException e) {
+                throw new RemoteException("Client déconnecté", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemoteException("Appel du client interrompu", e);
+            } finally {
+                calls.remove(callId);
+            }
+        }
+
+        /** Envoie une trame : écrite tout de suite si possible, sinon par le sélecteur quand le socket se libère. */
+        void send(Frame frame) {
+            synchronized (outbound) {
+                if (!open) {
+                    return;
+                }
+                outbound.add(frame.toBuffer());
+                if (writeInterest) {
+                    return;
+                }
+                try {
+                    flushLocked();
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            synchronized (outbound) {
+                flushLocked();
+            }
+        }
+
+        private void flushLocked() throws IOException {
+            while (!outbound.isEmpty()) {
+                ByteBuffer head = outbound.peek();
+                channel.write(head);
+                if (head.hasRemaining()) {
+                    if (!writeInterest) {
+                        writeInterest = true;
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        selector.wakeup();
+                    }
+                    return;
+                }
+                outbound.poll();
+            }
+            if (writeInterest) {
+                writeInterest = false;
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        void close() {
+            synchronized (outbound) {
+                if (!open) {
+                    return;
+                }
+                open = false;
+                outbound.clear();
+            }
+            connections.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+            for (CompletableFuture<FrameReader> call : calls.values()) {
+                call.completeExceptionally(new ClosedChannelException());
+            }
+            // Les demandes asynchrones et les callbacks de ce client ne seront plus jamais lus
+            for (Long requestId : asyncRequests) {
+                try {
+                    target.cancelAsync(replies, requestId);
+                } catch (RemoteException e) {
+                    System.err.println("Erreur lors de l'annulation d'une demande asynchrone: " + e);
+                }
+            }
+            asyncRequests.clear();
+        }
+    }
+
+    /**
+     * Démarre un serveur Linda accessible par le transport NIO.
+     * @param args Arguments de la ligne de commande ([port] [threads de travail])
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length > 2) {
+                System.err.println("Usage: java linda.server.NioLindaServer [port] [workers]");
+                System.exit(1);
+            }
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            int workerThreads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WORKERS;
+
+            LindaServer server = new LindaServer();
+            // Utilisé localement uniquement : pas d'export RMI
+            UnicastRemoteObject.unexportObject(server, true);
+            NioLindaServer nio = new NioLindaServer(server, port, workerThreads);
+
+            System.out.println("Serveur Linda démarré sur: nio://localhost:" + nio.port()
+                    + " (" + workerThreads + " threads de travail)");
+        } catch (Exception e) {
+            System.err.println("Erreur lors du démarrage du serveur: " + e);
+            e.printStackTrace();
+        }
+    }
+}
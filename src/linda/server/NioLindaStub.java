@@ -0,0 +1,377 @@
+package linda.server;
+
+import static linda.server.NioProtocol.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+import linda.shm.Occupancy;
+
+/**
+ * Côté client du transport NIO : implémente LindaRemote sur une seule connexion à un {@link NioLindaServer}.
+ *
+ * Chaque appel envoie une requête numérotée puis attend la réponse portant le même numéro ;
+ * plusieurs threads peuvent ainsi avoir des appels en cours sur la connexion, un thread lecteur
+ * distribuant les réponses. Les canaux de réponse et les callbacks restent locaux : le serveur
+ * les appelle par la même connexion, sans export RMI.
+ */
+final class NioLindaStub implements LindaRemote {
+
+    /** Arguments d'une requête. */
+    private interface Arguments {
+        void write(Frame request) throws IOException;
+    }
+
+    /** Lecture du résultat d'une requête. */
+    private interface Result<T> {
+        T read(FrameReader response) throws IOException;
+    }
+
+    private static final Arguments NO_ARGUMENTS = request -> { };
+    private static final Result<Void> NO_RESULT = response -> null;
+
+    private final SocketChannel channel;
+    private final Object writeLock = new Object();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, CompletableFuture<FrameReader>> pending = new ConcurrentHashMap<>();
+    /** Canaux des demandes asynchrones et des callbacks en cours, par numéro de demande. */
+    private final Map<Long, ReplyChannel> replyChannels = new ConcurrentHashMap<>();
+    /** Numéros des callbacks enregistrés par eventRegisterCallback, négatifs pour ne pas croiser ceux du client. */
+    private final AtomicLong nextCallbackId = new AtomicLong();
+    /** Exécute les appels du serveur, hors du thread lecteur : un callback peut lui-même appeler le serveur. */
+    private final ExecutorService callRunner = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "linda-nio-call");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile IOException failure;
+
+    NioLindaStub(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Thread reader = new Thread(this::readLoop, "linda-nio-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private <T> T call(byte op, Arguments args, Result<T> result) throws RemoteException {
+        long id = nextRequestId.incrementAndGet();
+        CompletableFuture<FrameReader> response = new CompletableFuture<>();
+        pending.put(id, response);
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            Frame request = new Frame(REQUEST, id);
+            request.out.writeByte(op);
+            args.write(request);
+            send(request);
+            FrameReader in = response.get();
+            if (in.readByte() == ERROR) {
+                Object error = in.readObject();
+                if (error instanceof RuntimeException) {
+                    // Comme RMI : les exceptions d'exécution du serveur parviennent telles quelles
+                    throw (RuntimeException) error;
+                }
+                if (error instanceof Error) {
+                    throw (Error) error;
+                }
+                if (error instanceof RemoteException) {
+                    throw (RemoteException) error;
+                }
+                throw new RemoteException("Erreur du serveur", (Throwable) error);
+            }
+            return result.read(in);
+        } catch (RemoteException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RemoteException("Erreur de communication avec le serveur", e);
+        } catch (ExecutionException e) {
+            throw new RemoteException("Connexion au serveur perdue", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Appel interrompu", e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    private void send(Frame frame) throws IOException {
+        ByteBuffer buffer = frame.toBuffer();
+        synchronized (writeLock) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private void readLoop() {
+        FrameDecoder decoder = new FrameDecoder();
+        try {
+            while (decoder.read(channel, this::received)) {
+                // Les trames sont traitées par received
+            }
+            fail(new EOFException("Connexion fermée par le serveur"));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void received(FrameReader in) throws IOException {
+        if (in.type == RESPONSE) {
+            CompletableFuture<FrameReader> response = pending.remove(in.id);
+            if (response != null) {
+                response.complete(in);
+            }
+        } else if (in.type == CALL) {
+            callRunner.execute(() -> called(in));
+        } else {
+            throw new IOException("Trame inattendue: " + in.type);
+        }
+    }
+
+    /** Exécute un appel du serveur (un ou plusieurs tuples, livrés dans l'ordre) et lui renvoie son résultat. */
+    private void called(FrameReader in) {
+        try {
+            Frame result = new Frame(CALL_RESULT, in.id);
+            try {
+                long[] requestIds = new long[in.readInt()];
+                for (int i = 0; i < requestIds.length; i++) {
+                    requestIds[i] = in.readLong();
+                }
+                List<Tuple> tuples = in.readTuples();
+                result.out.writeByte(OK);
+                for (int i = 0; i < requestIds.length; i++) {
+                    ReplyChannel replyTo = replyChannels.remove(requestIds[i]);
+                    result.out.writeBoolean(replyTo != null && replyTo.deliver(requestIds[i], tuples.get(i)));
+                }
+            } catch (Exception e) {
+                result = new Frame(CALL_RESULT, in.id);
+                result.out.writeByte(ERROR);
+                result.writeException(e);
+            }
+            send(result);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // Déjà fermée
+        }
+        for (CompletableFuture<FrameReader> response : pending.values()) {
+            response.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void write(Tuple t) throws RemoteException {
+        call(WRITE, request -> request.writeTuple(t), NO_RESULT);
+    }
+
+    @Override
+    public void writeAll(Collection<Tuple> tuples) throws RemoteException {
+        call(WRITE_ALL, request -> request.writeTuples(tuples), NO_RESULT);
+    }
+
+    @Override
+    public long writeLeased(Tuple t, long leaseMillis) throws RemoteException {
+        return call(WRITE_LEASED, request -> {
+            request.writeTuple(t);
+            request.out.writeLong(leaseMillis);
+        }, FrameReader::readLong);
+    }
+
+    @Override
+    public boolean renewLease(long leaseId, long leaseMillis) throws RemoteException {
+        return call(RENEW_LEASE, request -> {
+            request.out.writeLong(leaseId);
+            request.out.writeLong(leaseMillis);
+        }, FrameReader::readBoolean);
+    }
+
+    @Override
+    public boolean cancelLease(long leaseId) throws RemoteException {
+        return call(CANCEL_LEASE, request -> request.out.writeLong(leaseId), FrameReader::readBoolean);
+    }
+
+    @Override
+    public boolean isLeaseActive(long leaseId) throws RemoteException {
+        return call(IS_LEASE_ACTIVE, request -> request.out.writeLong(leaseId), FrameReader::readBoolean);
+    }
+
+    @Override
+    public Tuple take(Tuple template) throws RemoteException {
+        return call(TAKE, request -> request.writeTuple(template), FrameReader::readTuple);
+    }
+
+    @Override
+    public Tuple read(Tuple template) throws RemoteException {
+        return call(READ, request -> request.writeTuple(template), FrameReader::readTuple);
+    }
+
+    @Override
+    public Tuple take(Tuple template, long timeout, TimeUnit unit) throws RemoteException {
+        return call(TAKE_TIMEOUT, request -> {
+            request.writeTuple(template);
+            request.out.writeLong(unit.toNanos(timeout));
+        }, FrameReader::readTuple);
+    }
+
+    @Override
+    public Tuple read(Tuple template, long timeout, TimeUnit unit) throws RemoteException {
+        return call(READ_TIMEOUT, request -> {
+            request.writeTuple(template);
+            request.out.writeLong(unit.toNanos(timeout));
+        }, FrameReader::readTuple);
+    }
+
+    @Override
+    public void takeAsync(Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException {
+        submitAsync(TAKE_ASYNC, template, replyTo, requestId);
+    }
+
+    @Override
+    public void readAsync(Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException {
+        submitAsync(READ_ASYNC, template, replyTo, requestId);
+    }
+
+    /** Le numéro de demande suffit à retrouver le canal : un client n'a qu'un canal de réponse, pour ses demandes et ses callbacks. */
+    private void submitAsync(byte op, Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException {
+        replyChannels.put(requestId, replyTo);
+        try {
+            call(op, request -> {
+                request.writeTuple(template);
+                request.out.writeLong(requestId);
+            }, NO_RESULT);
+        } catch (RemoteException | RuntimeException e) {
+            replyChannels.remove(requestId);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean cancelAsync(ReplyChannel replyTo, long requestId) throws RemoteException {
+        replyChannels.remove(requestId);
+        return call(CANCEL_ASYNC, request -> request.out.writeLong(requestId), FrameReader::readBoolean);
+    }
+
+    @Override
+    public Tuple tryTake(Tuple template) throws RemoteException {
+        return call(TRY_TAKE, request -> request.writeTuple(template), FrameReader::readTuple);
+    }
+
+    @Override
+    public Tuple tryRead(Tuple template) throws RemoteException {
+        return call(TRY_READ, request -> request.writeTuple(template), FrameReader::readTuple);
+    }
+
+    @Override
+    public Collection<Tuple> takeAll(Tuple template) throws RemoteException {
+        return call(TAKE_ALL, request -> request.writeTuple(template), FrameReader::readTuples);
+    }
+
+    @Override
+    public Collection<Tuple> readAll(Tuple template) throws RemoteException {
+        return call(READ_ALL, request -> request.writeTuple(template), FrameReader::readTuples);
+    }
+
+    @Override
+    public long openCursor(Tuple template, boolean take, int batchSize) throws RemoteException {
+        return call(OPEN_CURSOR, request -> {
+            request.writeTuple(template);
+            request.out.writeBoolean(take);
+            request.out.writeInt(batchSize);
+        }, FrameReader::readLong);
+    }
+
+    @Override
+    public List<Tuple> nextBatch(long cursorId) throws RemoteException {
+        return call(NEXT_BATCH, request -> request.out.writeLong(cursorId), FrameReader::readTuples);
+    }
+
+    @Override
+    public void closeCursor(long cursorId) throws RemoteException {
+        call(CLOSE_CURSOR, request -> request.out.writeLong(cursorId), NO_RESULT);
+    }
+
+    @Override
+    public Collection<Tuple> takeN(Tuple template, int n) throws RemoteException {
+        return call(TAKE_N, request -> {
+            request.writeTuple(template);
+            request.out.writeInt(n);
+        }, FrameReader::readTuples);
+    }
+
+    @Override
+    public Collection<Tuple> readN(Tuple template, int max) throws RemoteException {
+        return call(READ_N, request -> {
+            request.writeTuple(template);
+            request.out.writeInt(max);
+        }, FrameReader::readTuples);
+    }
+
+    @Override
+    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, RemoteCallback callback) throws RemoteException {
+        // Un callback ne sert qu'une fois : le canal est oublié dès la livraison
+        eventRegister(mode, timing, template, (requestId, t) -> {
+            callback.call(t);
+            return true;
+        }, -nextCallbackId.incrementAndGet());
+    }
+
+    @Override
+    public void eventRegisterCallback(eventMode mode, eventTiming timing, Tuple template, RemoteCallback callback) throws RemoteException {
+        eventRegister(mode, timing, template, callback);
+    }
+
+    @Override
+    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, ReplyChannel replyTo, long registrationId) throws RemoteException {
+        replyChannels.put(registrationId, replyTo);
+        try {
+            call(EVENT_REGISTER, request -> {
+                request.out.writeByte(mode.ordinal());
+                request.out.writeByte(timing.ordinal());
+                request.writeTuple(template);
+                request.out.writeLong(registrationId);
+            }, NO_RESULT);
+        } catch (RemoteException | RuntimeException e) {
+            replyChannels.remove(registrationId);
+            throw e;
+        }
+    }
+
+    @Override
+    public Occupancy occupancy() throws RemoteException {
+        return call(OCCUPANCY, NO_ARGUMENTS, response -> (Occupancy) response.readObject());
+    }
+
+    @Override
+    public void debug(String prefix) throws RemoteException {
+        call(DEBUG, request -> request.out.writeUTF(prefix), NO_RESULT);
+    }
+}
@@ -0,0 +1,254 @@
+package linda.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import linda.Tuple;
+import linda.TupleCodec;
+
+/**
+ * Protocole binaire du transport NIO entre LindaClient et NioLindaServer.
+ *
+ * Chaque trame est précédée de sa longueur (int) et commence par son type (octet) et un numéro (long) :
+ * - REQUEST, client vers serveur : numéro choisi par le client, code d'opération puis arguments ;
+ * - RESPONSE, serveur vers client : numéro de la requête, statut, puis résultat ou exception ;
+ * - CALL, serveur vers client : tuples de demandes asynchrones ou de callbacks, numéroté par le serveur
+ *   (nombre, numéros des demandes, puis les tuples dans le même ordre) ;
+ * - CALL_RESULT, client vers serveur : statut, puis pour chaque tuple d'un CALL s'il a été accepté.
+ * Les numéros permettent d'avoir plusieurs appels en cours sur une même connexion, dans les deux sens,
+ * et d'y répondre dans le désordre. Les tuples sont codés par TupleCodec ; les autres objets
+ * (exceptions, occupation) par la sérialisation Java.
+ */
+final class NioProtocol {
+
+    /** Taille maximale d'une trame, contre un flux corrompu. */
+    static final int MAX_FRAME = 64 << 20;
+    /** Type et numéro, présents dans toute trame. */
+    static final int HEADER = 9;
+
+    static final byte REQUEST = 1;
+    static final byte RESPONSE = 2;
+    static final byte CALL = 3;
+    static final byte CALL_RESULT = 4;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    static final byte WRITE = 1;
+    static final byte WRITE_ALL = 2;
+    static final byte WRITE_LEASED = 3;
+    static final byte RENEW_LEASE = 4;
+    static final byte CANCEL_LEASE = 5;
+    static final byte IS_LEASE_ACTIVE = 6;
+    static final byte TAKE = 7;
+    static final byte READ = 8;
+    static final byte TAKE_TIMEOUT = 9;
+    static final byte READ_TIMEOUT = 10;
+    static final byte TAKE_ASYNC = 11;
+    static final byte READ_ASYNC = 12;
+    static final byte CANCEL_ASYNC = 13;
+    static final byte TRY_TAKE = 14;
+    static final byte TRY_READ = 15;
+    static final byte TAKE_ALL = 16;
+    static final byte READ_ALL = 17;
+    static final byte OPEN_CURSOR = 18;
+    static final byte NEXT_BATCH = 19;
+    static final byte CLOSE_CURSOR = 20;
+    static final byte TAKE_N = 21;
+    static final byte READ_N = 22;
+    static final byte EVENT_REGISTER = 23;
+    static final byte OCCUPANCY = 24;
+    static final byte DEBUG = 25;
+
+    private NioProtocol() {
+    }
+
+    /**
+     * Vrai si l'opération peut attendre, un tuple ou de la place dans un espace borné (politique BLOCK ou TIMEOUT) :
+     * elle ne doit pas occuper un thread du pool de travail, sans quoi les retraits qui libéreraient la place
+     * attendraient derrière elle.
+     */
+    static boolean mayBlock(byte op) {
+        return op == TAKE || op == READ || op == TAKE_TIMEOUT || op == READ_TIMEOUT || op == TAKE_N
+                || op == WRITE || op == WRITE_ALL || op == WRITE_LEASED;
+    }
+
+    /** Trame en cours d'écriture ; la longueur est complétée par toBuffer. */
+    static final class Frame extends ByteArrayOutputStream {
+        final long id;
+        final DataOutputStream out = new DataOutputStream(this);
+
+        Frame(byte type, long id) throws IOException {
+            super(128);
+            this.id = id;
+            out.writeInt(0);
+            out.writeByte(type);
+            out.writeLong(id);
+        }
+
+        /** Écrit un tuple, éventuellement null. */
+        void writeTuple(Tuple t) throws IOException {
+            out.writeBoolean(t != null);
+            if (t != null) {
+                byte[] bytes = TupleCodec.encode(t);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        /** Écrit une collection de tuples avec un seul codeur, qui ne décrit chaque classe qu'une fois. */
+        void writeTuples(Collection<Tuple> tuples) throws IOException {
+            TupleCodec.Writer codec = new TupleCodec.Writer();
+            for (Tuple t : tuples) {
+                codec.write(t);
+            }
+            out.writeInt(tuples.size());
+            out.writeInt(codec.size());
+            codec.writeTo(out);
+        }
+
+        void writeObject(Object o) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(o);
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+
+        /** Écrit une exception ; si elle n'est pas sérialisable, seul son message est transmis. */
+        void writeException(Throwable e) throws IOException {
+            int mark = count;
+            try {
+                writeObject(e);
+            } catch (NotSerializableException ex) {
+                count = mark;
+                writeObject(new RemoteException(e.toString()));
+            }
+        }
+
+        /** Retourne la trame prête à envoyer, sans copie. */
+        ByteBuffer toBuffer() {
+            int length = count - 4;
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    /** Trame reçue, dont le type et le numéro sont déjà lus. */
+    static final class FrameReader extends DataInputStream {
+        final byte type;
+        final long id;
+
+        FrameReader(byte[] payload) throws IOException {
+            super(new ByteArrayInputStream(payload));
+            this.type = readByte();
+            this.id = readLong();
+        }
+
+        Tuple readTuple() throws IOException {
+            if (!readBoolean()) {
+                return null;
+            }
+            return TupleCodec.decode(readBytes());
+        }
+
+        List<Tuple> readTuples() throws IOException {
+            int n = readInt();
+            byte[] bytes = readBytes();
+            // Chaque tuple encodé occupe au moins un octet
+            if (n < 0 || n > bytes.length) {
+                throw new IOException("Nombre de tuples invalide dans la trame: " + n);
+            }
+            TupleCodec.Reader codec = new TupleCodec.Reader(bytes);
+            List<Tuple> tuples = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                tuples.add(codec.read());
+            }
+            return tuples;
+        }
+
+        Object readObject() throws IOException {
+            byte[] bytes = readBytes();
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Classe inconnue dans la trame", e);
+            }
+        }
+
+        /** Lit un bloc précédé de sa longueur, qui ne peut pas dépasser le reste de la trame. */
+        private byte[] readBytes() throws IOException {
+            int length = readInt();
+            if (length < 0 || length > available()) {
+                throw new IOException("Longueur invalide dans la trame: " + length + " octets");
+            }
+            byte[] bytes = new byte[length];
+            readFully(bytes);
+            return bytes;
+        }
+    }
+
+    /** Traitement d'une trame reçue. */
+    interface FrameHandler {
+        void frame(FrameReader in) throws IOException;
+    }
+
+    /** Découpe le flux d'un canal en trames. */
+    static final class FrameDecoder {
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /** Lit ce que le canal peut fournir et traite chaque trame complète. Retourne faux en fin de flux. */
+        boolean read(ReadableByteChannel channel, FrameHandler handler) throws IOException {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+            buffer.flip();
+            int needed = 0;
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt(buffer.position());
+                if (length < HEADER || length > MAX_FRAME) {
+                    throw new IOException("Trame invalide: " + length + " octets");
+                }
+                if (buffer.remaining() < 4 + length) {
+                    needed = 4 + length;
+                    break;
+                }
+                buffer.getInt();
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                handler.frame(new FrameReader(payload));
+            }
+            buffer.compact();
+            if (needed > buffer.capacity()) {
+                // Trame plus grande que le tampon : on l'agrandit le temps de la recevoir
+                buffer = grow(needed);
+            } else if (buffer.position() == 0 && buffer.capacity() > BUFFER_SIZE) {
+                buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+            return true;
+        }
+
+        private ByteBuffer grow(int capacity) {
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            bigger.put(buffer);
+            return bigger;
+        }
+    }
+}
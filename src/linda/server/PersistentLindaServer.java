@@ -5,12 +5,17 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.Collection;
-import linda.Callback;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import linda.Linda;
 import linda.Tuple;
 import linda.Linda.eventMode;
 import linda.Linda.eventTiming;
+import linda.shm.CallbackDispatcher;
+import linda.shm.JournalPolicy;
+import linda.shm.Occupancy;
 import linda.shm.PersistentCentralizedLinda;
+import linda.shm.SpaceLimits;
 
 /**
  * Serveur Linda avec capacités de persistance
@@ -18,20 +23,56 @@ import linda.shm.PersistentCentralizedLinda;
 public class PersistentLindaServer extends UnicastRemoteObject implements LindaRemote {
     private static final long serialVersionUID = 1L;
     private PersistentCentralizedLinda linda;
+    private final AsyncRequests asyncRequests;
+    private final ServerCursors cursors;
+    private final ServerLeases leases;
 
     public PersistentLindaServer() throws RemoteException {
         this("linda_tuples.ser");
     }
 
+    /**
+     * La capacité de l'espace et son journal sont configurés par les propriétés système,
+     * voir {@link SpaceLimits#fromSystemProperties()} et {@link JournalPolicy#fromSystemProperties()} ;
+     * {@code -Dlinda.lazyRecovery=true} restaure l'espace en arrière-plan.
+     */
     public PersistentLindaServer(String saveFile) throws RemoteException {
-        this.linda = new PersistentCentralizedLinda(saveFile);
+        this(saveFile, SpaceLimits.fromSystemProperties(), JournalPolicy.fromSystemProperties(),
+                Boolean.getBoolean("linda.lazyRecovery"));
+    }
+
+    public PersistentLindaServer(String saveFile, SpaceLimits limits, JournalPolicy journalPolicy) throws RemoteException {
+        this(saveFile, limits, journalPolicy, false);
+    }
+
+    /**
+     * Avec lazyRecovery, le serveur répond dès sa construction : la restauration se poursuit en arrière-plan
+     * et les requêtes attendent qu'elle soit terminée.
+     */
+    public PersistentLindaServer(String saveFile, SpaceLimits limits, JournalPolicy journalPolicy,
+                                 boolean lazyRecovery) throws RemoteException {
+        long start = System.nanoTime();
+        // Un espace journalisé, ou restauré en arrière-plan, est restauré (sauvegarde puis journal) dès sa construction
+        this.linda = new PersistentCentralizedLinda(saveFile,
+                CallbackDispatcher.boundedPool(LindaServer.CALLBACK_THREADS, LindaServer.CALLBACK_QUEUE_CAPACITY),
+                limits, journalPolicy, lazyRecovery);
+        this.asyncRequests = new AsyncRequests(linda::registerEvent, linda::putBack);
+        this.cursors = new ServerCursors(linda);
+        this.leases = new ServerLeases(linda::write);
 
         // Tentative de restauration au démarrage
-        try {
-            linda.loadTupleSpace();
-        } catch (Exception e) {
-            System.out.println("Aucune sauvegarde trouvée ou erreur de chargement: " + e.getMessage());
+        if (!journalPolicy.isEnabled() && !lazyRecovery) {
+            try {
+                linda.loadTupleSpace();
+            } catch (Exception e) {
+                System.out.println("Aucune sauvegarde trouvée ou erreur de chargement: " + e.getMessage());
+            }
+        }
+        if (lazyRecovery) {
+            System.out.println("Serveur disponible en " + elapsedMillis(start) + " ms, restauration en arrière-plan");
         }
+        linda.recovery().thenRun(() ->
+                System.out.println("Espace de tuples prêt en " + elapsedMillis(start) + " ms"));
 
         // Hook d'arrêt pour sauvegarde automatique
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -42,9 +83,37 @@ public class PersistentLindaServer extends UnicastRemoteObject implements LindaR
     // Délégation de toutes les méthodes Linda
     @Override
     public void write(Tuple t) throws RemoteException {
+        asyncRequests.awaitDeliveryRoom();
         linda.write(t);
     }
 
+    @Override
+    public void writeAll(Collection<Tuple> tuples) throws RemoteException {
+        asyncRequests.awaitDeliveryRoom();
+        linda.writeAll(tuples);
+    }
+
+    @Override
+    public long writeLeased(Tuple t, long leaseMillis) throws RemoteException {
+        asyncRequests.awaitDeliveryRoom();
+        return leases.write(t, leaseMillis);
+    }
+
+    @Override
+    public boolean renewLease(long leaseId, long leaseMillis) throws RemoteException {
+        return leases.renew(leaseId, leaseMillis);
+    }
+
+    @Override
+    public boolean cancelLease(long leaseId) throws RemoteException {
+        return leases.cancel(leaseId);
+    }
+
+    @Override
+    public boolean isLeaseActive(long leaseId) throws RemoteException {
+        return leases.isActive(leaseId);
+    }
+
     @Override
     public Tuple take(Tuple template) throws RemoteException {
         return linda.take(template);
@@ -55,6 +124,31 @@ public class PersistentLindaServer extends UnicastRemoteObject implements LindaR
         return linda.read(template);
     }
 
+    @Override
+    public Tuple take(Tuple template, long timeout, TimeUnit unit) throws RemoteException {
+        return linda.take(template, timeout, unit);
+    }
+
+    @Override
+    public Tuple read(Tuple template, long timeout, TimeUnit unit) throws RemoteException {
+        return linda.read(template, timeout, unit);
+    }
+
+    @Override
+    public void takeAsync(Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException {
+        asyncRequests.submit(eventMode.TAKE, template, replyTo, requestId);
+    }
+
+    @Override
+    public void readAsync(Tuple template, ReplyChannel replyTo, long requestId) throws RemoteException {
+        asyncRequests.submit(eventMode.READ, template, replyTo, requestId);
+    }
+
+    @Override
+    public boolean cancelAsync(ReplyChannel replyTo, long requestId) throws RemoteException {
+        return asyncRequests.cancel(replyTo, requestId);
+    }
+
     @Override
     public Tuple tryTake(Tuple template) throws RemoteException {
         return linda.tryTake(template);
@@ -76,27 +170,79 @@ public class PersistentLindaServer extends UnicastRemoteObject implements LindaR
     }
 
     @Override
-    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, RemoteCallback callback) throws RemoteException {
-        linda.eventRegister(mode, timing, template, new Callback() {
-            @Override
-            public void call(Tuple t) {
-                try {
-                    callback.call(t);
-                } catch (RemoteException e) {
-                    System.err.println("Erreur lors de l'appel du callback distant: " + e);
-                }
-            }
-        });
+    public long openCursor(Tuple template, boolean take, int batchSize) throws RemoteException {
+        return cursors.open(template, take, batchSize);
     }
 
+    @Override
+    public List<Tuple> nextBatch(long cursorId) throws RemoteException {
+        return cursors.next(cursorId);
+    }
+
+    @Override
+    public void closeCursor(long cursorId) throws RemoteException {
+        cursors.close(cursorId);
+    }
+
+    @Override
+    public Collection<Tuple> takeN(Tuple template, int n) throws RemoteException {
+        return linda.takeN(template, n);
+    }
+
+    @Override
+    public Collection<Tuple> readN(Tuple template, int max) throws RemoteException {
+        return linda.readN(template, max);
+    }
+
+    @Override
+    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, RemoteCallback callback) throws RemoteException {
+        // Le callback passe par sa file de livraison : un client lent ne bloque pas les écrivains
+        asyncRequests.register(mode, timing, template, callback);
+    }
+    
     @Override
     public void eventRegisterCallback(eventMode mode, eventTiming timing, Tuple template, RemoteCallback callback) throws RemoteException {
         eventRegister(mode, timing, template, callback);
     }
+    
+    @Override
+    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, ReplyChannel replyTo, long registrationId) throws RemoteException {
+        asyncRequests.register(mode, timing, template, replyTo, registrationId);
+    }
+
+    @Override
+    public Occupancy occupancy() throws RemoteException {
+        return linda.occupancy();
+    }
 
     @Override
     public void debug(String prefix) throws RemoteException {
         linda.debug(prefix);
+        System.out.println(prefix + " Remote clients: " + clientChannelCount() + " reply channels, "
+                + asyncRequests.pendingCount() + " pending async requests, "
+                + asyncRequests.registrationCount() + " callback registrations");
+        for (ClientQueueStats stats : clientQueueStats()) {
+            System.out.println(prefix + "   " + stats);
+        }
+    }
+
+    /** Retourne le nombre de clients joignables par un canal de réponse, c'est-à-dire de connexions du serveur vers les clients. */
+    public int clientChannelCount() {
+        return asyncRequests.channelCount();
+    }
+
+    /** Retourne l'état des files de livraison des clients qui attendent des tuples, pour repérer les clients lents. */
+    public List<ClientQueueStats> clientQueueStats() {
+        return asyncRequests.queueStats();
+    }
+
+    /** Retourne le nombre de callbacks distants enregistrés et pas encore déclenchés. */
+    public int callbackRegistrationCount() {
+        return asyncRequests.registrationCount();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
 
     /**
@@ -0,0 +1,30 @@
+package linda.server;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import linda.Tuple;
+
+/**
+ * Interface distante par laquelle le serveur répond aux demandes asynchrones d'un client.
+ * Chaque demande est identifiée par un numéro choisi par le client.
+ */
+public interface ReplyChannel extends Remote {
+
+    /**
+     * Transmet le tuple obtenu pour la demande indiquée.
+     * Retourne faux si le client n'attend plus cette demande (annulée entre-temps).
+     */
+    boolean deliver(long requestId, Tuple t) throws RemoteException;
+
+    /**
+     * Transmet en un seul appel plusieurs tuples, à traiter dans l'ordre ; requestIds[i] est la demande de tuples[i].
+     * Retourne pour chacun ce que retournerait deliver.
+     */
+    default boolean[] deliverAll(long[] requestIds, Tuple[] tuples) throws RemoteException {
+        boolean[] accepted = new boolean[tuples.length];
+        for (int i = 0; i < tuples.length; i++) {
+            accepted[i] = deliver(requestIds[i], tuples[i]);
+        }
+        return accepted;
+    }
+}
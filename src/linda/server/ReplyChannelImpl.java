@@ -0,0 +1,72 @@
+package linda.server;
+
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import linda.Callback;
+import linda.Tuple;
+
+/**
+ * Canal de réponse d'un client : associe les numéros de demande aux futurs en attente
+ * et les numéros d'enregistrement aux callbacks. Un seul canal par client, quel que soit le nombre
+ * de demandes et de callbacks en cours ; les deux partagent la même suite de numéros.
+ * Il n'est exporté que pour le transport RMI : le transport NIO l'appelle localement.
+ */
+public class ReplyChannelImpl implements ReplyChannel {
+
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, CompletableFuture<Tuple>> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Callback> callbacks = new ConcurrentHashMap<>();
+
+    /** Enregistre un futur en attente et retourne le numéro de sa demande. */
+    long expect(CompletableFuture<Tuple> future) {
+        long requestId = nextRequestId.incrementAndGet();
+        pending.put(requestId, future);
+        return requestId;
+    }
+
+    /** Enregistre un callback et retourne le numéro de son enregistrement. */
+    long register(Callback callback) {
+        long registrationId = nextRequestId.incrementAndGet();
+        callbacks.put(registrationId, callback);
+        return registrationId;
+    }
+
+    /** Oublie une demande ou un enregistrement (annulé ou en échec). */
+    void forget(long requestId) {
+        pending.remove(requestId);
+        callbacks.remove(requestId);
+    }
+
+    /** Retourne le nombre de demandes en attente. */
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /** Retourne le nombre de callbacks enregistrés et pas encore déclenchés. */
+    int registrationCount() {
+        return callbacks.size();
+    }
+
+    @Override
+    public boolean deliver(long requestId, Tuple t) throws RemoteException {
+        CompletableFuture<Tuple> future = pending.remove(requestId);
+        if (future != null) {
+            return future.complete(t);
+        }
+        // Un callback ne sert qu'une fois : il est oublié dès son déclenchement
+        Callback callback = callbacks.remove(requestId);
+        if (callback == null) {
+            return false;
+        }
+        try {
+            callback.call(t);
+        } catch (RuntimeException e) {
+            System.err.println("Erreur lors de l'exécution du callback: " + e);
+            e.printStackTrace();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package linda.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import linda.Linda;
+import linda.Tuple;
+import linda.TupleCursor;
+
+/**
+ * Curseurs ouverts par les clients, côté serveur.
+ * Chaque appel distant transmet un morceau ; un curseur inutilisé pendant
+ * {@link #IDLE_TIMEOUT_MINUTES} minutes (client disparu) est fermé à l'ouverture suivante.
+ */
+class ServerCursors {
+
+    static final long IDLE_TIMEOUT_MINUTES = 5;
+
+    private final Linda linda;
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, OpenCursor> open = new ConcurrentHashMap<>();
+
+    ServerCursors(Linda linda) {
+        this.linda = linda;
+    }
+
+    long open(Tuple template, boolean take, int batchSize) {
+        closeIdle();
+        TupleCursor cursor = take ? linda.takeCursor(template, batchSize) : linda.readCursor(template, batchSize);
+        long id = nextId.incrementAndGet();
+        open.put(id, new OpenCursor(cursor));
+        return id;
+    }
+
+    /** Retourne le morceau suivant ; une liste vide signale la fin, et le curseur est alors fermé. */
+    ArrayList<Tuple> next(long cursorId) {
+        OpenCursor entry = open.get(cursorId);
+        if (entry == null) {
+            throw new IllegalStateException("Curseur inconnu ou expiré: " + cursorId);
+        }
+        List<Tuple> batch;
+        synchronized (entry) {
+            entry.lastAccess = System.nanoTime();
+            batch = entry.cursor.nextBatch();
+        }
+        if (batch.isEmpty()) {
+            open.remove(cursorId);
+        }
+        return new ArrayList<>(batch);
+    }
+
+    void close(long cursorId) {
+        OpenCursor entry = open.remove(cursorId);
+        if (entry != null) {
+            entry.cursor.close();
+        }
+    }
+
+    private void closeIdle() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MINUTES.toNanos(IDLE_TIMEOUT_MINUTES);
+        for (Iterator<OpenCursor> it = open.values().iterator(); it.hasNext();) {
+            OpenCursor entry = it.next();
+            if (now - entry.lastAccess > timeout) {
+                it.remove();
+                entry.cursor.close();
+            }
+        }
+    }
+
+    private static final class OpenCursor {
+        final TupleCursor cursor;
+        volatile long lastAccess = System.nanoTime();
+
+        OpenCursor(TupleCursor cursor) {
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package linda.server;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import linda.Lease;
+import linda.Tuple;
+
+/**
+ * Baux des tuples écrits par les clients, côté serveur, désignés par un identifiant numérique.
+ * Un bail est oublié dès qu'il prend fin (tuple expiré, pris ou bail annulé), sans parcourir les autres.
+ */
+class ServerLeases {
+
+    /** Écriture sous bail avec action de fin, par exemple {@link linda.shm.CentralizedLinda#write(Tuple, Duration, Runnable)}. */
+    interface LeasedWriter {
+        Lease write(Tuple t, Duration lease, Runnable onEnd);
+    }
+
+    private final LeasedWriter linda;
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+
+    ServerLeases(LeasedWriter linda) {
+        this.linda = linda;
+    }
+
+    long write(Tuple t, long leaseMillis) {
+        long id = nextId.incrementAndGet();
+        Lease lease = linda.write(t, Duration.ofMillis(leaseMillis), () -> leases.remove(id));
+        leases.put(id, lease);
+        // Bail terminé avant d'être enregistré : son action de fin n'a rien trouvé à retirer
+        if (!lease.isActive()) {
+            leases.remove(id);
+        }
+        return id;
+    }
+
+    boolean renew(long leaseId, long leaseMillis) {
+        Lease lease = leases.get(leaseId);
+        if (lease == null) {
+            return false;
+        }
+        if (!lease.renew(Duration.ofMillis(leaseMillis))) {
+            leases.remove(leaseId);
+            return false;
+        }
+        return true;
+    }
+
+    boolean cancel(long leaseId) {
+        Lease lease = leases.remove(leaseId);
+        return lease != null && lease.cancel();
+    }
+
+    boolean isActive(long leaseId) {
+        Lease lease = leases.get(leaseId);
+        return lease != null && lease.isActive();
+    }
+}
@@ -0,0 +1,182 @@
+package linda.server;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import linda.Tuple;
+import linda.TupleCodec;
+
+/**
+ * File des écritures en pipeline d'un client (voir {@link WritePipelining}).
+ * Un seul thread expédie les lots, dans l'ordre : pendant qu'un lot est en route,
+ * les écritures suivantes s'accumulent dans le lot d'après.
+ * Un tuple modifiable est copié dès son écriture : c'est son état à ce moment qui est envoyé, comme sans pipeline.
+ */
+class WritePipeline {
+
+    private final LindaRemote remote;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final int maxPending;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalé quand l'expéditeur a du travail : premier tuple, lot plein ou flush demandé. */
+    private final Condition ready = lock.newCondition();
+    /** Signalé quand un lot a été acquitté. */
+    private final Condition acked = lock.newCondition();
+    private final List<Tuple> buffer = new ArrayList<>();
+    /** Date d'arrivée du plus ancien tuple de buffer. */
+    private long firstNanos;
+    /** Nombres de tuples écrits et acquittés par le serveur depuis la création ; la différence est dans la file ou en route. */
+    private long written = 0;
+    private long acknowledged = 0;
+    private int flushWaiters = 0;
+    /** Échec d'un lot, signalé à la prochaine opération du client. */
+    private RuntimeException failure;
+
+    private long batches = 0;
+
+    WritePipeline(LindaRemote remote, WritePipelining policy) {
+        this.remote = remote;
+        this.maxBatch = policy.maxBatch();
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(policy.lingerMillis());
+        this.maxPending = WritePipelining.MAX_PENDING_BATCHES * policy.maxBatch();
+        Thread shipper = new Thread(this::ship, "linda-write-pipeline");
+        shipper.setDaemon(true);
+        shipper.start();
+    }
+
+    /** Place les tuples dans la file ; bloque si trop de tuples attendent déjà. */
+    void write(Collection<Tuple> tuples) {
+        List<Tuple> copies = new ArrayList<>(tuples.size());
+        for (Tuple t : tuples) {
+            copies.add(t.isFrozen() ? t : copy(t));
+        }
+        lock.lock();
+        try {
+            throwFailure();
+            for (Tuple t : copies) {
+                while (written - acknowledged >= maxPending) {
+                    acked.awaitUninterruptibly();
+                    throwFailure();
+                }
+                if (buffer.isEmpty()) {
+                    firstNanos = System.nanoTime();
+                    ready.signal();
+                }
+                buffer.add(t);
+                written++;
+                if (buffer.size() == maxBatch) {
+                    ready.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Envoie la file sans attendre la fin du délai et attend que les tuples déjà écrits soient acquittés :
+     * les écritures faites ensuite par d'autres threads ne retardent pas l'appelant.
+     */
+    void flush() {
+        lock.lock();
+        try {
+            long target = written;
+            if (acknowledged < target) {
+                flushWaiters++;
+                try {
+                    ready.signal();
+                    while (acknowledged < target) {
+                        acked.awaitUninterruptibly();
+                    }
+                } finally {
+                    flushWaiters--;
+                }
+            }
+            throwFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Retourne le nombre de lots envoyés. */
+    long batchCount() {
+        lock.lock();
+        try {
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Tuple copy(Tuple t) {
+        try {
+            return TupleCodec.copy(t);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void throwFailure() {
+        if (failure != null) {
+            RuntimeException e = failure;
+            failure = null;
+            throw e;
+        }
+    }
+
+    private void ship() {
+        while (true) {
+            List<Tuple> batch;
+            lock.lock();
+            try {
+                while (buffer.isEmpty()) {
+                    ready.awaitUninterruptibly();
+                }
+                long remaining;
+                while (buffer.size() < maxBatch && flushWaiters == 0
+                        && (remaining = firstNanos + lingerNanos - System.nanoTime()) > 0) {
+                    try {
+                        ready.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        // Le thread d'expédition n'est jamais interrompu volontairement
+                    }
+                }
+                int n = Math.min(buffer.size(), maxBatch);
+                List<Tuple> head = buffer.subList(0, n);
+                batch = new ArrayList<>(head);
+                head.clear();
+            } finally {
+                lock.unlock();
+            }
+
+            RuntimeException error = null;
+            try {
+                remote.writeAll(batch);
+            } catch (RemoteException e) {
+                System.err.println("Error during writeAll call: " + e);
+                error = new RuntimeException(e);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                batches++;
+                acknowledged += batch.size();
+                if (error != null && failure == null) {
+                    failure = error;
+                }
+                acked.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package linda.server;
+
+/**
+ * Écritures en pipeline d'un {@link LindaClient} : write retourne dès que le tuple est placé dans la file locale,
+ * et les tuples sont envoyés au serveur par lots (un seul writeAll), dès que {@code maxBatch} tuples attendent
+ * ou au plus tard {@code lingerMillis} ms après le premier. Le client n'attend les accusés de réception que
+ * lorsque l'ordre l'exige : avant toute autre opération sur l'espace (take, read...) ou sur {@link LindaClient#flush()}.
+ * Une écriture refusée par le serveur est signalée par l'opération suivante du client.
+ */
+public final class WritePipelining {
+
+    /** Nombre de lots qui peuvent attendre l'envoi ; au-delà, write bloque (contre-pression). */
+    static final int MAX_PENDING_BATCHES = 16;
+
+    private static final WritePipelining DISABLED = new WritePipelining(false, 0, 0);
+
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long lingerMillis;
+
+    private WritePipelining(boolean enabled, int maxBatch, long lingerMillis) {
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.lingerMillis = lingerMillis;
+    }
+
+    /** Pas de pipeline : chaque write est un aller-retour vers le serveur. */
+    public static WritePipelining disabled() {
+        return DISABLED;
+    }
+
+    /** Écritures envoyées par lots d'au plus maxBatch tuples, au plus tard lingerMillis ms après le premier. */
+    public static WritePipelining batched(int maxBatch, long lingerMillis) {
+        if (maxBatch <= 0 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Paramètres du pipeline invalides: "
+                    + maxBatch + " tuples, " + lingerMillis + " ms");
+        }
+        return new WritePipelining(true, maxBatch, lingerMillis);
+    }
+
+    /**
+     * Politique lue dans les propriétés système {@code linda.client.pipelining} ({@code false} par défaut),
+     * {@code linda.client.batchTuples} (1000 par défaut) et {@code linda.client.lingerMillis} (5 par défaut).
+     */
+    public static WritePipelining fromSystemProperties() {
+        if (!Boolean.getBoolean("linda.client.pipelining")) {
+            return disabled();
+        }
+        return batched(Integer.getInteger("linda.client.batchTuples", 1000),
+                Long.getLong("linda.client.lingerMillis", 5));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int maxBatch() {
+        return maxBatch;
+    }
+
+    public long lingerMillis() {
+        return lingerMillis;
+    }
+
+    @Override
+    public String toString() {
+        return enabled ? "WritePipelining[batches of " + maxBatch + " tuples or " + lingerMillis + " ms]"
+                       : "WritePipelining[disabled]";
+    }
+}
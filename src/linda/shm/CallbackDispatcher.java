@@ -0,0 +1,228 @@
+package linda.shm;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import linda.Callback;
+import linda.Tuple;
+
+/**
+ * Livraison des callbacks, hors du verrou de l'espace de tuples.
+ *
+ * La décision de déclencher un callback est prise sous le verrou : l'événement est alors déposé
+ * dans la boîte aux lettres du callback ({@link Batch#add}). Une fois le verrou relâché,
+ * les boîtes qui viennent de recevoir un événement sont confiées à l'exécuteur ({@link Batch#submit}).
+ *
+ * Les événements d'un même callback (même objet) sont livrés un par un, dans l'ordre où ils ont été
+ * décidés ; des callbacks différents peuvent être livrés en parallèle.
+ */
+public class CallbackDispatcher {
+
+    /** Nombre maximal d'événements livrés d'affilée par une boîte avant de rendre la main à l'exécuteur. */
+    private static final int MAX_RUN = 64;
+
+    private final Executor executor;
+    /** Vrai si l'exécuteur livre dans le thread appelant : une boîte ne se reprogramme pas, elle boucle. */
+    private final boolean direct;
+    /** Boîtes aux lettres non vides, par callback (identité). */
+    private final Map<Callback, Mailbox> mailboxes = new IdentityHashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+
+    public CallbackDispatcher(Executor executor) {
+        this(executor, false);
+    }
+
+    private CallbackDispatcher(Executor executor, boolean direct) {
+        this.executor = executor;
+        this.direct = direct;
+    }
+
+    /** Livraison par le thread qui a déclenché les callbacks, juste après avoir relâché le verrou. */
+    public static CallbackDispatcher direct() {
+        return new CallbackDispatcher(Runnable::run, true);
+    }
+
+    /**
+     * Livraison par un nombre fixe de threads. Quand la file de l'exécuteur est pleine,
+     * le thread qui a déclenché les callbacks les livre lui-même (hors verrou) : c'est la contre-pression.
+     * Une boîte qui ne peut pas se reprogrammer continue simplement dans le thread qui la livre.
+     */
+    public static CallbackDispatcher boundedPool(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "linda-callback-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new CallbackDispatcher(pool);
+    }
+
+    /** Livraison par un thread virtuel par boîte aux lettres active (Java 21 et plus). */
+    public static CallbackDispatcher virtualThreads() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new CallbackDispatcher((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Threads virtuels indisponibles sur cette JVM", e);
+        }
+    }
+
+    /** Retourne le nombre d'événements décidés mais pas encore livrés. */
+    public int queueDepth() {
+        return queueDepth.get();
+    }
+
+    /** Retourne le nombre d'événements livrés depuis la création. */
+    public long deliveredCount() {
+        return delivered.get();
+    }
+
+    /** Arrête l'exécuteur s'il peut l'être ; les événements en attente sont abandonnés. */
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            for (Runnable task : ((ExecutorService) executor).shutdownNow()) {
+                if (task instanceof Mailbox) {
+                    discard((Mailbox) task);
+                }
+            }
+        }
+    }
+
+    private boolean isShutdown() {
+        return executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown();
+    }
+
+    /** Prépare un lot de livraisons. */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    /** Événements décidés pendant une opération, à livrer une fois le verrou relâché. */
+    public class Batch {
+        private List<Mailbox> toSchedule;
+
+        /** Dépose un événement dans la boîte du callback. À appeler sous le verrou de l'espace. */
+        public void add(Callback callback, Tuple t) {
+            queueDepth.incrementAndGet();
+            Mailbox mailbox;
+            synchronized (mailboxes) {
+                mailbox = mailboxes.computeIfAbsent(callback, Mailbox::new);
+                mailbox.events.add(t);
+                if (mailbox.scheduled) {
+                    return;
+                }
+                mailbox.scheduled = true;
+            }
+            if (toSchedule == null) {
+                toSchedule = new ArrayList<>(2);
+            }
+            toSchedule.add(mailbox);
+        }
+
+        /** Confie à l'exécuteur les boîtes qui viennent de recevoir un événement. À appeler hors verrou. */
+        public void submit() {
+            if (toSchedule == null) {
+                return;
+            }
+            List<Mailbox> mailboxesToRun = toSchedule;
+            toSchedule = null;
+            for (Mailbox mailbox : mailboxesToRun) {
+                if (!trySchedule(mailbox)) {
+                    // File pleine : le thread qui a déclenché les callbacks les livre lui-même
+                    mailbox.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Confie la boîte à l'exécuteur ; retourne faux s'il la refuse parce que sa file est pleine.
+     * Si l'exécuteur est arrêté, les événements sont abandonnés.
+     */
+    private boolean trySchedule(Mailbox mailbox) {
+        try {
+            executor.execute(mailbox);
+            return true;
+        } catch (RuntimeException e) {
+            if (!isShutdown()) {
+                return false;
+            }
+            System.err.println("Error in callback dispatch: " + e);
+            discard(mailbox);
+            return true;
+        }
+    }
+
+    /** Abandonne les événements d'une boîte, l'exécuteur étant arrêté. */
+    private void discard(Mailbox mailbox) {
+        synchronized (mailboxes) {
+            queueDepth.addAndGet(-mailbox.events.size());
+            mailbox.events.clear();
+            mailbox.scheduled = false;
+            mailboxes.remove(mailbox.callback);
+        }
+    }
+
+    /** Événements en attente d'un callback. Au plus une tâche par boîte est confiée à l'exécuteur. */
+    private final class Mailbox implements Runnable {
+        final Callback callback;
+        final ArrayDeque<Tuple> events = new ArrayDeque<>();
+        /** Vrai si une tâche de livraison est en cours ou confiée à l'exécuteur. Protégé par mailboxes. */
+        boolean scheduled;
+
+        Mailbox(Callback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            while (deliver()) {
+                // Laisse la place aux autres boîtes, puis reprend
+                if (!direct && trySchedule(this)) {
+                    return;
+                }
+                // Exécuteur direct ou file pleine : continuer ici plutôt que d'empiler un appel par tranche d'événements
+            }
+        }
+
+        /** Livre au plus MAX_RUN événements ; retourne faux si la boîte s'est vidée. */
+        private boolean deliver() {
+            for (int i = 0; i < MAX_RUN; i++) {
+                Tuple t;
+                synchronized (mailboxes) {
+                    t = events.poll();
+                    if (t == null) {
+                        scheduled = false;
+                        mailboxes.remove(callback);
+                        return false;
+                    }
+                }
+                try {
+                    callback.call(t);
+                } catch (Exception e) {
+                    System.err.println("Error in callback: " + e);
+                } finally {
+                    queueDepth.decrementAndGet();
+                    delivered.incrementAndGet();
+                }
+            }
+            return true;
+        }
+    }
+}
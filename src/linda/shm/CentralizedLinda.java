@@ -1,120 +1,496 @@
 package linda.shm;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.locks.Condition;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import linda.AsyncLinda;
 import linda.Callback;
+import linda.Lease;
 import linda.Linda;
 import linda.Tuple;
+import linda.TupleCursor;
 
 /** Implémentation centralisée de Linda en mémoire partagée. */
-public class CentralizedLinda implements Linda {
+public class CentralizedLinda implements Linda, AsyncLinda {
 
-    final List<Tuple> tupleSpace;
-    private final List<CallbackRegistration> callbacks;
+    final TupleIndex tupleSpace;
+    /** Callbacks enregistrés, indexés par motif. */
+    private final TemplateRegistry<CallbackRegistration> callbacks;
+    /** Threads bloqués dans take/read, indexés par motif. */
+    private final TemplateRegistry<Waiter> waiters;
+    /** Livraison des callbacks déclenchés, une fois le verrou relâché. */
+    private final CallbackDispatcher dispatcher;
+    /** Occupation et limites de l'espace, ou null s'il n'est pas borné. */
+    private final SpaceQuota quota;
+    /** Limites communes aux partitions d'un espace partitionné, ou null. */
+    private final SharedQuota shared;
     final Lock lock;
-    final Condition condition;
 
+    /** Nombre de candidats examinés par morceau d'un curseur, en multiple de la taille des morceaux. */
+    private static final int SCAN_FACTOR = 16;
+
+    /** Durée d'un top de la roue des baux : précision de l'expiration des tuples. */
+    static final long LEASE_TICK_MILLIS = 50;
+    private static final long LEASE_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(LEASE_TICK_MILLIS);
+
+    /** Thread commun qui fait avancer la roue des baux des espaces qui en ont. */
+    private static final ScheduledExecutorService LEASE_REAPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "linda-lease-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Threads communs où les écritures asynchrones attendent la place dans un espace plein. */
+    private static final ExecutorService ASYNC_WRITERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "linda-async-write");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Baux en cours, par numéro d'insertion du tuple (verrou détenu). */
+    private final Map<Long, LeaseEntry> leases = new HashMap<>();
+    /** Échéances des baux, en tops depuis leaseOrigin (verrou détenu). */
+    private final TimingWheel<LeaseEntry> leaseWheel;
+    private final long leaseOrigin = System.nanoTime();
+    /** Tâche périodique d'expiration, active tant qu'il reste des baux (verrou détenu). */
+    private ScheduledFuture<?> leaseReaper;
+    /** Échéance du bail du dernier tuple retiré, 0 s'il n'en avait pas (verrou détenu). */
+    private long removedLeaseExpiry;
+
+    /** Les callbacks sont livrés par le thread qui les déclenche, après avoir relâché le verrou. */
     public CentralizedLinda() {
-        this.tupleSpace = new ArrayList<>();
+        this(CallbackDispatcher.direct());
+    }
+
+    /** Les callbacks sont livrés par le répartiteur donné (par exemple {@link CallbackDispatcher#boundedPool}). */
+    public CentralizedLinda(CallbackDispatcher dispatcher) {
+        this(dispatcher, SpaceLimits.unbounded());
+    }
+
+    /** Espace dont la capacité est bornée : les écritures qui dépasseraient les limites suivent leur politique. */
+    public CentralizedLinda(CallbackDispatcher dispatcher, SpaceLimits limits) {
+        this(dispatcher, limits, null);
+    }
+
+    /** Partition d'un espace partitionné : limites propres (par famille) et limites communes aux partitions. */
+    CentralizedLinda(CallbackDispatcher dispatcher, SpaceLimits limits, SharedQuota shared) {
         this.lock = new ReentrantLock();
-        this.condition = lock.newCondition();
-        this.callbacks = new ArrayList<>();
+        this.quota = limits.isUnbounded() ? null : new SpaceQuota(limits, lock.newCondition());
+        this.shared = shared;
+        this.tupleSpace = new TupleIndex();
+        if (quota != null) {
+            tupleSpace.addObserver(quota);
+        }
+        if (shared != null) {
+            tupleSpace.addObserver(new SharedQuotaObserver());
+        }
+        tupleSpace.addObserver(new LeaseObserver());
+        this.callbacks = new TemplateRegistry<>();
+        this.waiters = new TemplateRegistry<>();
+        this.dispatcher = dispatcher;
+        this.leaseWheel = new TimingWheel<>(0);
+    }
+
+    /** Retourne le répartiteur des callbacks, notamment pour suivre sa file d'attente. */
+    public CallbackDispatcher dispatcher() {
+        return dispatcher;
+    }
+
+    /** Retourne les limites de capacité de l'espace. */
+    public SpaceLimits limits() {
+        return quota != null ? quota.limits() : SpaceLimits.unbounded();
+    }
+
+    /** Retourne l'occupation de l'espace par rapport à ses limites. */
+    public Occupancy occupancy() {
+        lock.lock();
+        try {
+            if (quota == null) {
+                return new Occupancy(tupleSpace.size(), 0, SpaceLimits.UNLIMITED, SpaceLimits.UNLIMITED, 0, 0);
+            }
+            return quota.occupancy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Retourne l'occupation de la famille de ce tuple (même arité, même premier champ) par rapport à ses limites. */
+    public Occupancy occupancy(Tuple family) {
+        lock.lock();
+        try {
+            // L'occupation d'une famille n'est suivie que si les familles sont limitées
+            return quota != null ? quota.occupancy(family)
+                    : new Occupancy(0, 0, SpaceLimits.UNLIMITED, SpaceLimits.UNLIMITED, 0, 0);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void write(Tuple t) {
+        // On clone le tuple pour éviter les modifications externes (inutile s'il est figé), hors verrou
+        Tuple tupleToWrite = share(t);
+        CallbackDispatcher.Batch fired = dispatcher.batch();
+        List<Tuple> toAdd = Collections.singletonList(tupleToWrite);
+        reserve(toAdd);
+        boolean written = false;
         lock.lock();
         try {
-            // On clone le tuple pour éviter les modifications externes
-            Tuple tupleToWrite = t.deepclone();
+            awaitRoom(toAdd);
+            insert(tupleToWrite, fired);
+            written = true;
+        } finally {
+            lock.unlock();
+            if (!written) {
+                unreserve(toAdd);
+            }
+            // Les callbacks sont appelés hors verrou, dans l'ordre où ils ont été déclenchés
+            fired.submit();
+        }
+    }
 
-            // Ajout du tuple dans l'espace de tuples
-            tupleSpace.add(tupleToWrite.deepclone());
+    @Override
+    public Lease write(Tuple t, Duration lease) {
+        return write(t, lease, null);
+    }
 
-            List<CallbackRegistration> matchingCallbacks = new ArrayList<>();
-            for (CallbackRegistration registration : new ArrayList<>(callbacks)) {
-                if (tupleToWrite.matches(registration.template)) {
-                    matchingCallbacks.add(registration);
-                }
+    /**
+     * Comme {@link #write(Tuple, Duration)}, et onEnd est appelé une seule fois quand le bail prend fin
+     * (échu, tuple pris ou bail annulé), éventuellement avant le retour. Il est appelé verrou détenu :
+     * il doit être bref et ne pas utiliser l'espace.
+     */
+    public Lease write(Tuple t, Duration lease, Runnable onEnd) {
+        Tuple tupleToWrite = share(t);
+        long leaseNanos = lease.toNanos();
+        CallbackDispatcher.Batch fired = dispatcher.batch();
+        List<Tuple> toAdd = Collections.singletonList(tupleToWrite);
+        reserve(toAdd);
+        boolean written = false;
+        lock.lock();
+        try {
+            awaitRoom(toAdd);
+            // Un callback TAKE qui prend le tuple aussitôt reçoit l'échéance de son bail
+            long seq = insert(tupleToWrite, expiryMillis(leaseNanos), fired);
+            written = true;
+            return lease(seq, tupleToWrite, leaseNanos, onEnd);
+        } finally {
+            lock.unlock();
+            if (!written) {
+                unreserve(toAdd);
             }
+            fired.submit();
+        }
+    }
 
-            for (CallbackRegistration registration : matchingCallbacks) {
-                if (registration.mode == eventMode.READ) {
-                    callbacks.remove(registration);
-                    try {
-                        registration.callback.call(tupleToWrite.deepclone());
-                    } catch (Exception e) {
-                        System.err.println("Error in callback: " + e);
-                    }
-                }
+    /**
+     * Ajoute les tuples en une seule section critique : les attentes et callbacks concernés
+     * sont examinés pendant cette section, et les callbacks livrés ensemble à la fin.
+     */
+    @Override
+    public void writeAll(Collection<Tuple> tuples) {
+        List<Tuple> tuplesToWrite = new ArrayList<>(tuples.size());
+        for (Tuple t : tuples) {
+            tuplesToWrite.add(share(t));
+        }
+        CallbackDispatcher.Batch fired = dispatcher.batch();
+        // Toute la liste ou rien : l'écrivain attend la place pour l'ensemble
+        reserve(tuplesToWrite);
+        boolean written = false;
+        lock.lock();
+        try {
+            awaitRoom(tuplesToWrite);
+            for (Tuple t : tuplesToWrite) {
+                insert(t, fired);
+            }
+            written = true;
+        } finally {
+            lock.unlock();
+            if (!written) {
+                unreserve(tuplesToWrite);
             }
+            fired.submit();
+        }
+    }
 
-            CallbackRegistration takeCallback = null;
-            for (CallbackRegistration registration : matchingCallbacks) {
-                if (registration.mode == eventMode.TAKE) {
-                    takeCallback = registration;
-                    break;
-                }
+    /**
+     * Rend à l'espace un tuple pris par un callback TAKE qui n'a pas pu le livrer. Le tuple y occupait déjà
+     * sa place : il est remis sans attendre, au-delà des limites de capacité s'il le faut, et sous bail jusqu'à
+     * leaseExpiryMillis (heure murale, voir {@link LeasedCallback}) s'il en avait un. Un bail échu entre-temps
+     * le laisse hors de l'espace.
+     */
+    public void putBack(Tuple t, long leaseExpiryMillis) {
+        long leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseExpiryMillis - System.currentTimeMillis());
+        if (leaseExpiryMillis != 0 && leaseNanos <= 0) {
+            return;
+        }
+        if (shared != null) {
+            shared.add(Collections.singletonList(t));
+        }
+        CallbackDispatcher.Batch fired = dispatcher.batch();
+        lock.lock();
+        try {
+            long seq = insert(t, leaseExpiryMillis, fired);
+            if (leaseExpiryMillis != 0) {
+                lease(seq, t, leaseNanos);
             }
-            if (takeCallback != null) {
-                callbacks.remove(takeCallback);
-                Tuple matchingTuple = findMatchingTuple(takeCallback.template);
-                if (matchingTuple != null) {
-                    tupleSpace.remove(matchingTuple);
-                    try {
-                        takeCallback.callback.call(matchingTuple.deepclone());
-                    } catch (Exception e) {
-                        System.err.println("Error in callback: " + e);
-                    }
+        } finally {
+            lock.unlock();
+            fired.submit();
+        }
+    }
+
+    /** Attend, verrou détenu, la place pour ces tuples si l'espace est borné (voir {@link SpaceLimits}). */
+    private void awaitRoom(List<Tuple> tuplesToWrite) {
+        if (quota != null) {
+            quota.awaitRoom(tuplesToWrite);
+        }
+    }
+
+    /**
+     * Réserve, avant de prendre le verrou, la place pour ces tuples dans les limites communes aux partitions :
+     * l'attente ne bloque pas cette partition, dont les retraits peuvent justement libérer de la place.
+     */
+    private void reserve(List<Tuple> tuplesToWrite) {
+        if (shared != null) {
+            shared.reserve(tuplesToWrite);
+        }
+    }
+
+    /** Rend la place réservée pour une écriture abandonnée (limite par famille, interruption). */
+    private void unreserve(List<Tuple> tuplesToWrite) {
+        if (shared != null) {
+            long bytes = 0;
+            for (Tuple t : tuplesToWrite) {
+                bytes += shared.size(t);
+            }
+            shared.release(tuplesToWrite.size(), bytes);
+        }
+    }
+
+    /**
+     * Ajoute un tuple, verrou détenu : déclenche les callbacks et réveille les attentes qui le concernent.
+     * Retourne son numéro d'insertion.
+     */
+    long insert(Tuple tupleToWrite, CallbackDispatcher.Batch fired) {
+        return insert(tupleToWrite, 0, fired);
+    }
+
+    /** Comme {@link #insert(Tuple, CallbackDispatcher.Batch)}, pour un tuple sous bail jusqu'à leaseExpiryMillis (0 sinon). */
+    long insert(Tuple tupleToWrite, long leaseExpiryMillis, CallbackDispatcher.Batch fired) {
+        // Ajout du tuple dans l'espace de tuples
+        long seq = tupleSpace.insert(tupleToWrite);
+
+        // Seuls les callbacks dont le motif peut correspondre au tuple sont examinés
+        List<CallbackRegistration> matchingCallbacks = callbacks.matching(tupleToWrite);
+
+        CallbackRegistration takeCallback = null;
+        for (CallbackRegistration registration : matchingCallbacks) {
+            if (registration.mode == eventMode.READ) {
+                // Un callback déjà déclenché a pu annuler celui-ci
+                if (callbacks.remove(registration)) {
+                    fired.add(registration.callback, share(tupleToWrite));
                 }
+            } else if (takeCallback == null) {
+                takeCallback = registration;
             }
+        }
+
+        // Un seul callback TAKE peut prendre le tuple écrit, s'il est encore là
+        if (takeCallback != null && takeCallback.isRegistered() && tupleSpace.remove(seq, tupleToWrite)) {
+            callbacks.remove(takeCallback);
+            fired.add(taking(takeCallback.callback, leaseExpiryMillis), tupleToWrite);
+        }
+
+        // Motifs gérés hors de cet espace (partitions)
+        written(tupleToWrite, seq, leaseExpiryMillis, fired);
+
+        // Réveil des seules attentes concernées, si le tuple n'a pas déjà été pris par un callback
+        if (tupleSpace.contains(seq, tupleToWrite)) {
+            wakeWaiters(tupleToWrite, seq);
+        }
+        return seq;
+    }
+
+    /**
+     * Place sous bail, verrou détenu, le tuple inséré sous ce numéro : il sera retiré après la durée donnée.
+     * Le tuple a pu être déjà pris par un callback : le bail retourné est alors inactif.
+     */
+    Lease lease(long seq, Tuple t, long durationNanos) {
+        return lease(seq, t, durationNanos, null);
+    }
+
+    /** Comme {@link #lease(long, Tuple, long)}, avec l'action appelée à la fin du bail (voir {@link #write(Tuple, Duration, Runnable)}). */
+    Lease lease(long seq, Tuple t, long durationNanos, Runnable onEnd) {
+        LeaseEntry entry = new LeaseEntry(seq, t, onEnd);
+        if (!tupleSpace.contains(seq, t)) {
+            entry.ended();
+            return entry;
+        }
+        LeaseEntry previous = leases.put(seq, entry);
+        if (previous != null) {
+            leaseWheel.cancel(previous);
+            previous.ended();
+        }
+        scheduleLease(entry, durationNanos);
+        return entry;
+    }
+
+    /** Termine le bail, verrou détenu : il est oublié et son action de fin appelée. */
+    private void endLease(LeaseEntry entry) {
+        leases.remove(entry.seq, entry);
+        leaseWheel.cancel(entry);
+        entry.ended();
+    }
+
+    /** Top courant de la roue des baux. */
+    private long leaseTick() {
+        return (System.nanoTime() - leaseOrigin) / LEASE_TICK_NANOS;
+    }
 
-            condition.signalAll();
+    /** (Re)planifie l'échéance d'un bail, verrou détenu ; l'expiration n'a jamais lieu avant la durée demandée. */
+    private void scheduleLease(LeaseEntry entry, long durationNanos) {
+        long now = System.nanoTime() - leaseOrigin;
+        // Rattrape la roue avant d'y placer l'échéance (immédiat si elle est vide)
+        expireLeases(now / LEASE_TICK_NANOS);
+        long deadline = now + Math.max(durationNanos, 0);
+        long deadlineTick = deadline / LEASE_TICK_NANOS + (deadline % LEASE_TICK_NANOS == 0 ? 0 : 1);
+        leaseWheel.schedule(entry, deadlineTick);
+        if (leaseReaper == null) {
+            leaseReaper = LEASE_REAPER.scheduleAtFixedRate(this::reapLeases,
+                    LEASE_TICK_MILLIS, LEASE_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        leased(entry.seq, leaseExpiryMillis(entry.seq));
+    }
+
+    /** Tâche périodique : retire les tuples dont le bail est échu, et s'arrête quand il n'y a plus de bail. */
+    private void reapLeases() {
+        lock.lock();
+        try {
+            expireLeases(leaseTick());
+            if (leaseWheel.size() == 0 && leaseReaper != null) {
+                leaseReaper.cancel(false);
+                leaseReaper = null;
+            }
         } finally {
             lock.unlock();
         }
     }
 
+    /** Avance la roue des baux jusqu'au top donné et retire les tuples dont le bail est échu, verrou détenu. */
+    private void expireLeases(long tick) {
+        if (tick <= leaseWheel.currentTick() && leaseWheel.size() > 0) {
+            return;
+        }
+        List<LeaseEntry> expired = new ArrayList<>();
+        leaseWheel.advance(tick, expired);
+        for (LeaseEntry entry : expired) {
+            endLease(entry);
+            tupleSpace.remove(entry.seq, entry.tuple);
+        }
+    }
+
+    /** Retourne vrai si des tuples sont sous bail. Verrou détenu. */
+    boolean hasLeases() {
+        return !leases.isEmpty();
+    }
+
+    /**
+     * Échéance du bail du tuple inséré sous ce numéro, en millisecondes depuis l'époque (heure murale),
+     * ou 0 s'il n'est pas sous bail. Verrou détenu.
+     */
+    long leaseExpiryMillis(long seq) {
+        LeaseEntry entry = leases.get(seq);
+        if (entry == null || !entry.isScheduled()) {
+            return 0;
+        }
+        long remaining = entry.deadline() * LEASE_TICK_NANOS - (System.nanoTime() - leaseOrigin);
+        return expiryMillis(remaining);
+    }
+
+    /** Échéance, en heure murale, d'un bail de cette durée commençant maintenant. */
+    private static long expiryMillis(long durationNanos) {
+        return System.currentTimeMillis() + Math.max(1, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+    }
+
+    /** Échéance du bail du dernier tuple retiré de l'espace, ou 0 s'il n'en avait pas. Verrou détenu. */
+    long removedLeaseExpiry() {
+        return removedLeaseExpiry;
+    }
+
+    /** Callback à déclencher pour un tuple pris sous ce bail : un {@link LeasedCallback} en reçoit l'échéance. */
+    static Callback taking(Callback callback, long leaseExpiryMillis) {
+        if (leaseExpiryMillis == 0 || !(callback instanceof LeasedCallback)) {
+            return callback;
+        }
+        LeasedCallback leased = (LeasedCallback) callback;
+        return t -> leased.call(t, leaseExpiryMillis);
+    }
 
     @Override
     public Tuple take(Tuple template) {
+        return take(template, false, 0L);
+    }
+
+    @Override
+    public Tuple take(Tuple template, long timeout, TimeUnit unit) {
+        return take(template, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    @Override
+    public Tuple read(Tuple template) {
+        return read(template, false, 0L);
+    }
+
+    @Override
+    public Tuple read(Tuple template, long timeout, TimeUnit unit) {
+        return read(template, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /** take, borné par l'échéance (selon System.nanoTime) si timed est vrai. */
+    private Tuple take(Tuple template, boolean timed, long deadline) {
         lock.lock();
         try {
             Tuple result = null;
-            while ((result = findMatchingTuple(template)) == null) {
-                try {
-                    condition.await();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+            Waiter waiter = null;
+            while ((result = tupleSpace.removeMatching(template)) == null) {
+                waiter = awaitMatch(template, eventMode.TAKE, timed, deadline);
+                if (waiter == null) {
                     return null;
                 }
             }
-            tupleSpace.remove(result);
+            if (waiter != null) {
+                passOn(waiter, result);
+            }
             return result;
         } finally {
             lock.unlock();
         }
     }
 
-    @Override
-    public Tuple read(Tuple template) {
+    /** read, borné par l'échéance (selon System.nanoTime) si timed est vrai. */
+    private Tuple read(Tuple template, boolean timed, long deadline) {
         lock.lock();
         try {
             Tuple result = null;
-            while ((result = findMatchingTuple(template)) == null) {
-                try {
-                    condition.await();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+            while ((result = tupleSpace.find(template)) == null) {
+                if (awaitMatch(template, eventMode.READ, timed, deadline) == null) {
                     return null;
                 }
             }
-            return result.deepclone();
+            return share(result);
         } finally {
             lock.unlock();
         }
@@ -124,11 +500,7 @@ public class CentralizedLinda implements Linda {
     public Tuple tryTake(Tuple template) {
         lock.lock();
         try {
-            Tuple result = findMatchingTuple(template);
-            if (result != null) {
-                tupleSpace.remove(result);
-            }
-            return result;
+            return tupleSpace.removeMatching(template);
         } finally {
             lock.unlock();
         }
@@ -138,8 +510,8 @@ public class CentralizedLinda implements Linda {
     public Tuple tryRead(Tuple template) {
         lock.lock();
         try {
-            Tuple result = findMatchingTuple(template);
-            return result != null ? result.deepclone() : null;
+            Tuple result = tupleSpace.find(template);
+            return result != null ? share(result) : null;
         } finally {
             lock.unlock();
         }
@@ -149,13 +521,18 @@ public class CentralizedLinda implements Linda {
     public Collection<Tuple> takeAll(Tuple template) {
         lock.lock();
         try {
-            Collection<Tuple> results = new ArrayList<>();
-            for (Tuple t : tupleSpace) {
-                if (t.matches(template)) {
-                    results.add(t);
-                }
-            }
-            tupleSpace.removeAll(results);
+            return tupleSpace.removeAll(template);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<Tuple> readAll(Tuple template) {
+        lock.lock();
+        try {
+            List<Tuple> results = tupleSpace.findAll(template);
+            results.replaceAll(CentralizedLinda::share);
             return results;
         } finally {
             lock.unlock();
@@ -163,45 +540,171 @@ public class CentralizedLinda implements Linda {
     }
 
     @Override
-    public Collection readAll(Tuple template) {
+    public TupleCursor readCursor(Tuple template, int batchSize) {
+        checkBatchSize(batchSize);
+        return new TupleCursor() {
+            /** Numéro d'insertion du dernier tuple examiné. */
+            private long position = -1;
+
+            @Override
+            protected List<Tuple> fetch() {
+                List<Tuple> batch = new ArrayList<>();
+                // Le nombre de candidats examinés est borné : le verrou est relâché même si peu de tuples correspondent
+                while (batch.isEmpty() && position != TupleIndex.END) {
+                    lock.lock();
+                    try {
+                        position = tupleSpace.findAfter(template, position, batchSize, SCAN_FACTOR * batchSize, batch);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                batch.replaceAll(CentralizedLinda::share);
+                return batch;
+            }
+        };
+    }
+
+    @Override
+    public TupleCursor takeCursor(Tuple template, int batchSize) {
+        checkBatchSize(batchSize);
+        return new TupleCursor() {
+            @Override
+            protected List<Tuple> fetch() {
+                lock.lock();
+                try {
+                    return tupleSpace.removeAll(template, batchSize);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    static void checkBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+    }
+
+    @Override
+    public Collection<Tuple> takeN(Tuple template, int n) {
         lock.lock();
         try {
-            Collection results = new ArrayList<>();
-            for (Tuple t : tupleSpace) {  // Utilisation de tupleSpace pour éviter les modifications concurrentes
-                if (t.matches(template)) {
-                    results.add(t);
+            // Les n tuples sont pris ensemble : deux takeN concurrents ne peuvent pas se bloquer mutuellement
+            while (tupleSpace.findAll(template, n).size() < n) {
+                // Attente en lecture : un réveil destiné à un seul preneur n'est pas consommé sans prendre le tuple
+                if (awaitMatch(template, eventMode.READ, false, 0L) == null) {
+                    return new ArrayList<>();
                 }
             }
+            return tupleSpace.removeAll(template, n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<Tuple> readN(Tuple template, int max) {
+        lock.lock();
+        try {
+            List<Tuple> results = tupleSpace.findAll(template, max);
+            results.replaceAll(CentralizedLinda::share);
             return results;
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Ajoute le tuple s'il y a de la place, sinon le confie à un thread qui l'attend selon la politique
+     * de débordement : l'appelant n'est jamais bloqué. Un refus échoue le futur avec {@link linda.SpaceFullException}.
+     */
+    @Override
+    public CompletableFuture<Tuple> writeAsync(Tuple t) {
+        Tuple tupleToWrite;
+        try {
+            tupleToWrite = share(t);
+            if (tryWrite(tupleToWrite)) {
+                return CompletableFuture.completedFuture(t);
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            write(tupleToWrite);
+            return t;
+        }, ASYNC_WRITERS);
+    }
+
+    /**
+     * Comme {@link #write(Tuple)} pour un tuple déjà partagé, sans attendre : retourne faux si l'espace
+     * est plein et que la politique de débordement ferait attendre l'écrivain.
+     */
+    private boolean tryWrite(Tuple tupleToWrite) {
+        List<Tuple> toAdd = Collections.singletonList(tupleToWrite);
+        if (shared != null && !shared.tryReserve(toAdd)) {
+            return false;
+        }
+        CallbackDispatcher.Batch fired = dispatcher.batch();
+        boolean written = false;
+        lock.lock();
+        try {
+            if (quota == null || quota.tryRoom(toAdd)) {
+                insert(tupleToWrite, fired);
+                written = true;
+            }
+            return written;
+        } finally {
+            lock.unlock();
+            if (!written) {
+                unreserve(toAdd);
+            }
+            fired.submit();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Tuple> takeAsync(Tuple template) {
+        return TupleFuture.register(this, this::registerEvent, eventMode.TAKE, template);
+    }
+
+    @Override
+    public CompletableFuture<Tuple> readAsync(Tuple template) {
+        return TupleFuture.register(this, this::registerEvent, eventMode.READ, template);
+    }
+
     @Override
     public void eventRegister(eventMode mode, eventTiming timing, Tuple template, Callback callback) {
+        registerEvent(mode, timing, template, callback);
+    }
+
+    /**
+     * Comme {@link #eventRegister}, mais retourne l'enregistrement, qui peut être annulé en temps constant.
+     * Si le callback a été déclenché immédiatement, l'enregistrement retourné est déjà inactif.
+     */
+    public EventRegistration registerEvent(eventMode mode, eventTiming timing, Tuple template, Callback callback) {
+        CallbackDispatcher.Batch fired = dispatcher.batch();
         lock.lock();
         try {
-            // Vérification de la validité des paramètres
+            CallbackRegistration registration = new CallbackRegistration(mode, timing, share(template), callback);
             if (timing == eventTiming.IMMEDIATE) {
-                Tuple match = findMatchingTuple(template);
+                Tuple match = (mode == eventMode.TAKE) ? tupleSpace.removeMatching(template) : tupleSpace.find(template);
                 if (match != null) {
                     if (mode == eventMode.TAKE) {
-                        tupleSpace.remove(match);
-                    }
-                    try {
-                        callback.call(match.deepclone());
-                    } catch (Exception e) {
-                        System.err.println("Error in callback: " + e);
+                        fired.add(taking(callback, removedLeaseExpiry), match);
+                    } else {
+                        fired.add(callback, share(match));
                     }
-                    return;
+                    return registration;
                 }
             }
 
             // Enregistrement du callback pour les futurs tuples
-            callbacks.add(new CallbackRegistration(mode, timing, template.deepclone(), callback));
+            callbacks.add(registration);
+            return registration;
         } finally {
             lock.unlock();
+            fired.submit();
         }
     }
 
@@ -211,31 +714,260 @@ public class CentralizedLinda implements Linda {
         try {
             System.out.println(prefix + " Tuples in space: " + tupleSpace);
             System.out.println(prefix + " Registered callbacks: " + callbacks.size());
+            System.out.println(prefix + " Pending callback deliveries: " + dispatcher.queueDepth());
+            System.out.println(prefix + " Blocked take/read: " + waiters.size());
+            if (quota != null) {
+                System.out.println(prefix + " Occupancy: " + quota.occupancy());
+            }
         } finally {
             lock.unlock();
         }
     }
 
-    private Tuple findMatchingTuple(Tuple template) {
-        for (Tuple t : tupleSpace) {
-            if (t.matches(template)) {
-                return t;
+    /**
+     * Attend, verrou détenu, qu'une écriture réveille ce motif, au plus jusqu'à l'échéance si timed est vrai.
+     * Retourne l'attente réveillée, ou null si le thread a été interrompu ou si l'échéance est passée.
+     */
+    private Waiter awaitMatch(Tuple template, eventMode mode, boolean timed, long deadline) {
+        if (timed && deadline - System.nanoTime() <= 0) {
+            return null;
+        }
+        Waiter waiter = new Waiter(template, mode, lock.newCondition());
+        waiters.add(waiter);
+        try {
+            while (!waiter.signalled) {
+                if (!timed) {
+                    waiter.condition.await();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        // Pas de réveil reçu : rien à transmettre
+                        return null;
+                    }
+                    waiter.condition.awaitNanos(remaining);
+                }
             }
+            return waiter;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Le réveil reçu ne doit pas être perdu pour les autres preneurs
+            passOn(waiter, null);
+            return null;
+        } finally {
+            waiters.remove(waiter);
+        }
+    }
+
+    /**
+     * Réveille les attentes dont le motif correspond au tuple écrit : toutes les lectures,
+     * mais au plus un preneur, puisqu'un seul pourra prendre le tuple.
+     */
+    private void wakeWaiters(Tuple t, long seq) {
+        boolean takerWoken = false;
+        for (Waiter waiter : waiters.matching(t)) {
+            if (waiter.mode == eventMode.TAKE) {
+                if (takerWoken) {
+                    continue;
+                }
+                takerWoken = true;
+            }
+            waiters.remove(waiter);
+            waiter.signal(t, seq);
+        }
+    }
+
+    /**
+     * Un preneur réveillé pour un tuple qui ne l'a pas pris (il en a pris un autre, ou a été interrompu)
+     * transmet le réveil à un autre preneur si ce tuple est toujours là.
+     */
+    private void passOn(Waiter waiter, Tuple taken) {
+        Tuple trigger = waiter.trigger;
+        if (waiter.mode == eventMode.TAKE && trigger != null && trigger != taken
+                && tupleSpace.contains(waiter.triggerSeq, trigger)) {
+            wakeWaiters(trigger, waiter.triggerSeq);
+        }
+    }
+
+    /**
+     * Appelé verrou détenu après l'insertion d'un tuple et le déclenchement des callbacks de cet espace.
+     * Permet à une sous-classe de déclencher des callbacks (via {@code fired}) ou de réveiller des attentes
+     * enregistrés ailleurs. Le tuple a pu être pris par un callback TAKE : voir {@code tupleSpace.contains(seq, t)}.
+     * Un callback TAKE qui le prend reçoit l'échéance de son bail, leaseExpiryMillis (voir {@link #taking}).
+     */
+    void written(Tuple t, long seq, long leaseExpiryMillis, CallbackDispatcher.Batch fired) {
+    }
+
+    /** Appelé verrou détenu quand le tuple inséré sous ce numéro est placé (ou replacé) sous bail. */
+    void leased(long seq, long expiryMillis) {
+    }
+
+    /** Oublie tous les baux, par exemple avant le chargement d'un ensemble de tuples. Verrou détenu. */
+    void clearLeases() {
+        for (LeaseEntry entry : leases.values()) {
+            leaseWheel.cancel(entry);
+            entry.ended();
         }
-        return null;
+        leases.clear();
     }
 
-    private static class CallbackRegistration {
+    /** Réveille toutes les attentes, par exemple après le chargement d'un ensemble de tuples. */
+    void wakeAllWaiters() {
+        for (Waiter waiter : waiters.all()) {
+            waiters.remove(waiter);
+            waiter.signal(null, -1);
+        }
+    }
+
+    /** Retourne un tuple qui peut être partagé avec l'appelant : un tuple figé est partagé tel quel,
+     * sinon (composants modifiables) il est cloné. */
+    static Tuple share(Tuple t) {
+        return t.isFrozen() ? t : t.deepclone();
+    }
+
+    private class CallbackRegistration extends TemplateRegistry.Registration implements EventRegistration {
         final eventMode mode;
         final eventTiming timing;
-        final Tuple template;
         final Callback callback;
 
         public CallbackRegistration(eventMode mode, eventTiming timing, Tuple template, Callback callback) {
+            super(template);
             this.mode = mode;
             this.timing = timing;
-            this.template = template;
             this.callback = callback;
         }
+
+        @Override
+        public boolean cancel() {
+            lock.lock();
+            try {
+                return callbacks.remove(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Rend aux limites communes la place des tuples qui quittent cette partition. Les ajouts ne sont pas comptés ici :
+     * la place a été réservée avant l'insertion (voir {@link #reserve}).
+     */
+    private class SharedQuotaObserver implements TupleIndex.Observer {
+        /** Occupation de cette partition, rendue en bloc si elle est vidée. */
+        private long tuples;
+        private long bytes;
+
+        @Override
+        public void added(long seq, Tuple t) {
+            tuples++;
+            bytes += shared.size(t);
+        }
+
+        @Override
+        public void removed(long seq, Tuple t) {
+            long size = shared.size(t);
+            tuples--;
+            bytes -= size;
+            shared.release(1, size);
+        }
+
+        @Override
+        public void cleared() {
+            shared.release(tuples, bytes);
+            tuples = 0;
+            bytes = 0;
+        }
+    }
+
+    /** Un tuple sous bail qui quitte l'espace (pris, retiré) met fin à son bail aussitôt. */
+    private class LeaseObserver implements TupleIndex.Observer {
+        @Override
+        public void added(long seq, Tuple t) {
+        }
+
+        @Override
+        public void removed(long seq, Tuple t) {
+            removedLeaseExpiry = 0;
+            if (!leases.isEmpty()) {
+                LeaseEntry entry = leases.get(seq);
+                if (entry != null) {
+                    removedLeaseExpiry = leaseExpiryMillis(seq);
+                    endLease(entry);
+                }
+            }
+        }
+
+        @Override
+        public void cleared() {
+            clearLeases();
+        }
+    }
+
+    /** Bail d'un tuple : échéance dans la roue des baux, retrouvée par le numéro d'insertion du tuple. */
+    private class LeaseEntry extends TimingWheel.Timer implements Lease {
+        final long seq;
+        final Tuple tuple;
+        /** Action de fin du bail, oubliée une fois appelée (verrou détenu). */
+        private Runnable onEnd;
+
+        LeaseEntry(long seq, Tuple tuple, Runnable onEnd) {
+            this.seq = seq;
+            this.tuple = tuple;
+            this.onEnd = onEnd;
+        }
+
+        /** Verrou détenu. */
+        private boolean held() {
+            return leases.get(seq) == this;
+        }
+
+        /** Appelle l'action de fin du bail, une seule fois. Verrou détenu. */
+        void ended() {
+            if (onEnd != null) {
+                Runnable action = onEnd;
+                onEnd = null;
+                action.run();
+            }
+        }
+
+        @Override
+        public boolean renew(Duration duration) {
+            long durationNanos = duration.toNanos();
+            lock.lock();
+            try {
+                // Un bail échu mais pas encore traité par la tâche d'expiration n'est pas renouvelé
+                expireLeases(leaseTick());
+                if (!held()) {
+                    return false;
+                }
+                scheduleLease(this, durationNanos);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            lock.lock();
+            try {
+                if (!held()) {
+                    return false;
+                }
+                endLease(this);
+                return tupleSpace.remove(seq, tuple);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            lock.lock();
+            try {
+                return held();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 }
@@ -0,0 +1,14 @@
+package linda.shm;
+
+/**
+ * Enregistrement d'un callback auprès d'un espace de tuples, retourné par
+ * {@link CentralizedLinda#registerEvent}. Permet de le retirer en temps constant.
+ */
+public interface EventRegistration {
+
+    /**
+     * Retire l'enregistrement s'il n'a pas encore été déclenché.
+     * @return vrai si l'enregistrement a été retiré, faux s'il avait déjà été déclenché ou retiré.
+     */
+    boolean cancel();
+}
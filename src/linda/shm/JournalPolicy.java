@@ -0,0 +1,67 @@
+package linda.shm;
+
+/**
+ * Validation groupée du journal d'un {@link PersistentCentralizedLinda} : chaque modification est écrite
+ * dans le journal avant la fin de l'opération, puis forcée sur disque (fsync) par lots, dès que
+ * {@code syncEveryRecords} enregistrements attendent ou au plus tard toutes les {@code syncIntervalMillis} ms.
+ * Une opération se termine sans attendre le fsync : l'arrêt brutal du processus ne perd rien,
+ * une panne du système perd au plus ce dernier lot.
+ */
+public final class JournalPolicy {
+
+    private static final JournalPolicy DISABLED = new JournalPolicy(false, 0, 0);
+
+    private final boolean enabled;
+    private final int syncEveryRecords;
+    private final long syncIntervalMillis;
+
+    private JournalPolicy(boolean enabled, int syncEveryRecords, long syncIntervalMillis) {
+        this.enabled = enabled;
+        this.syncEveryRecords = syncEveryRecords;
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    /** Pas de journal : seules les sauvegardes complètes sont durables. */
+    public static JournalPolicy disabled() {
+        return DISABLED;
+    }
+
+    /** Journal forcé sur disque tous les syncEveryRecords enregistrements, ou toutes les syncIntervalMillis ms. */
+    public static JournalPolicy groupCommit(int syncEveryRecords, long syncIntervalMillis) {
+        if (syncEveryRecords <= 0 || syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Paramètres de validation groupée invalides: "
+                    + syncEveryRecords + " enregistrements, " + syncIntervalMillis + " ms");
+        }
+        return new JournalPolicy(true, syncEveryRecords, syncIntervalMillis);
+    }
+
+    /**
+     * Politique lue dans les propriétés système {@code linda.journal} ({@code true} par défaut),
+     * {@code linda.journal.syncRecords} (256 par défaut) et {@code linda.journal.syncMillis} (50 par défaut).
+     */
+    public static JournalPolicy fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("linda.journal", "true"))) {
+            return disabled();
+        }
+        return groupCommit(Integer.getInteger("linda.journal.syncRecords", 256),
+                Long.getLong("linda.journal.syncMillis", 50));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int syncEveryRecords() {
+        return syncEveryRecords;
+    }
+
+    public long syncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return enabled ? "JournalPolicy[sync every " + syncEveryRecords + " records or " + syncIntervalMillis + " ms]"
+                       : "JournalPolicy[disabled]";
+    }
+}
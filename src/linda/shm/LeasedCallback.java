@@ -0,0 +1,22 @@
+package linda.shm;
+
+import linda.Callback;
+import linda.Tuple;
+
+/**
+ * Callback qui reçoit aussi l'échéance du bail du tuple pris (TAKE) : s'il ne peut pas le livrer,
+ * il peut le rendre à l'espace tel qu'il l'a trouvé (voir {@link CentralizedLinda#putBack}).
+ */
+public interface LeasedCallback extends Callback {
+
+    /**
+     * Appelé avec le tuple et l'échéance de son bail, en millisecondes depuis l'époque (heure murale),
+     * ou 0 s'il n'est pas sous bail (toujours 0 en mode READ).
+     */
+    void call(Tuple t, long leaseExpiryMillis);
+
+    @Override
+    default void call(Tuple t) {
+        call(t, 0);
+    }
+}
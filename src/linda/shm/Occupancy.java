@@ -0,0 +1,85 @@
+package linda.shm;
+
+import java.io.Serializable;
+
+/**
+ * Relevé de l'occupation d'un espace de tuples par rapport à ses limites ({@link SpaceLimits}).
+ * La taille en octets est une estimation, tenue seulement si une limite en octets est fixée (0 sinon).
+ */
+public final class Occupancy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long tuples;
+    private final long bytes;
+    private final long maxTuples;
+    private final long maxBytes;
+    private final int blockedWriters;
+    private final long rejectedWrites;
+
+    public Occupancy(long tuples, long bytes, long maxTuples, long maxBytes, int blockedWriters, long rejectedWrites) {
+        this.tuples = tuples;
+        this.bytes = bytes;
+        this.maxTuples = maxTuples;
+        this.maxBytes = maxBytes;
+        this.blockedWriters = blockedWriters;
+        this.rejectedWrites = rejectedWrites;
+    }
+
+    public long tuples() {
+        return tuples;
+    }
+
+    /** Taille estimée des tuples, en octets. */
+    public long bytes() {
+        return bytes;
+    }
+
+    /** Nombre maximal de tuples, ou {@link SpaceLimits#UNLIMITED}. */
+    public long maxTuples() {
+        return maxTuples;
+    }
+
+    /** Taille estimée maximale, ou {@link SpaceLimits#UNLIMITED}. */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /** Nombre d'écrivains qui attendent de la place. */
+    public int blockedWriters() {
+        return blockedWriters;
+    }
+
+    /** Nombre d'écritures refusées (immédiatement, après délai ou par interruption) depuis la création. */
+    public long rejectedWrites() {
+        return rejectedWrites;
+    }
+
+    /** Taux de remplissage : le plus élevé des rapports aux limites, entre 0 et 1 ; 0 sans limite. */
+    public double fillRatio() {
+        return Math.max(ratio(tuples, maxTuples), ratio(bytes, maxBytes));
+    }
+
+    private static double ratio(long used, long max) {
+        return max == SpaceLimits.UNLIMITED ? 0 : Math.min(1.0, (double) used / max);
+    }
+
+    /** Cumul des relevés de deux parties d'un même espace (partitions), sans limites. */
+    Occupancy plus(Occupancy other) {
+        return new Occupancy(tuples + other.tuples, bytes + other.bytes, SpaceLimits.UNLIMITED, SpaceLimits.UNLIMITED,
+                blockedWriters + other.blockedWriters, rejectedWrites + other.rejectedWrites);
+    }
+
+    /** Le même relevé, rapporté à d'autres limites. */
+    Occupancy withLimits(long maxTuples, long maxBytes) {
+        return new Occupancy(tuples, bytes, maxTuples, maxBytes, blockedWriters, rejectedWrites);
+    }
+
+    @Override
+    public String toString() {
+        return "tuples=" + tuples + "/" + (maxTuples == SpaceLimits.UNLIMITED ? "-" : maxTuples)
+                + " bytes=" + bytes + "/" + (maxBytes == SpaceLimits.UNLIMITED ? "-" : maxBytes)
+                + String.format(" fill=%.1f%%", 100 * fillRatio())
+                + " blockedWriters=" + blockedWriters + " rejectedWrites=" + rejectedWrites;
+    }
+}
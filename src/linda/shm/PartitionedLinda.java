@@ -0,0 +1,587 @@
+package linda.shm;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import linda.AsyncLinda;
+import linda.Callback;
+import linda.Lease;
+import linda.Linda;
+import linda.Tuple;
+import linda.TupleCursor;
+
+/**
+ * Implémentation de Linda en mémoire partagée, partitionnée pour les accès concurrents.
+ *
+ * L'espace est découpé en partitions selon l'arité et la valeur du premier champ des tuples.
+ * Chaque partition est un {@link CentralizedLinda} avec son propre verrou, ses attentes et ses callbacks :
+ * les opérations sur des familles de tuples différentes ne se bloquent pas entre elles.
+ *
+ * Un motif dont le premier champ est une valeur concrète ne peut correspondre qu'aux tuples d'une seule
+ * partition, et lui est confié. Les autres motifs (premier champ de type classe ou tuple, motif vide)
+ * couvrent toutes les partitions : leurs verrous sont alors pris dans l'ordre des partitions, et
+ * les attentes et callbacks correspondants sont enregistrés à part, puis examinés à chaque écriture.
+ */
+public class PartitionedLinda implements Linda, AsyncLinda {
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final CallbackDispatcher dispatcher;
+    private final SpaceLimits limits;
+    /** Limites globales, communes aux partitions, ou null si seules les familles sont limitées. */
+    private final SharedQuota shared;
+
+    /** Protège les enregistrements couvrant plusieurs partitions. Toujours pris après les verrous des partitions. */
+    private final Lock spanningLock = new ReentrantLock();
+    private final TemplateRegistry<SpanningRegistration> spanningCallbacks = new TemplateRegistry<>();
+    private final TemplateRegistry<Waiter> spanningWaiters = new TemplateRegistry<>();
+    /** Nombre d'enregistrements couvrant plusieurs partitions : une écriture n'a rien à examiner s'il est nul. */
+    private volatile int spanningCount;
+
+    /** Quatre partitions par processeur. */
+    public PartitionedLinda() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public PartitionedLinda(int partitions) {
+        this(partitions, CallbackDispatcher.direct());
+    }
+
+    /** Le nombre de partitions est arrondi à la puissance de deux supérieure. */
+    public PartitionedLinda(int partitions, CallbackDispatcher dispatcher) {
+        this(partitions, dispatcher, SpaceLimits.unbounded());
+    }
+
+    /**
+     * Espace borné. Les limites globales sont communes à toutes les partitions (voir {@link SharedQuota}) ;
+     * une famille tenant dans une partition, sa limite est appliquée par cette partition.
+     */
+    public PartitionedLinda(int partitions, CallbackDispatcher dispatcher, SpaceLimits limits) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive: " + partitions);
+        }
+        int n = Integer.highestOneBit(partitions);
+        if (n < partitions) {
+            n <<= 1;
+        }
+        this.stripes = new Stripe[n];
+        this.mask = n - 1;
+        this.dispatcher = dispatcher;
+        this.limits = limits;
+        this.shared = limits.globalOnly().isUnbounded() ? null : new SharedQuota(limits);
+        SpaceLimits stripeLimits = limits.familiesOnly();
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe(dispatcher, stripeLimits, shared);
+        }
+    }
+
+    /** Retourne le nombre de partitions. */
+    public int partitions() {
+        return stripes.length;
+    }
+
+    /** Retourne le répartiteur des callbacks, commun à toutes les partitions. */
+    public CallbackDispatcher dispatcher() {
+        return dispatcher;
+    }
+
+    /** Retourne les limites de capacité de l'espace entier. */
+    public SpaceLimits limits() {
+        return limits;
+    }
+
+    /**
+     * Retourne l'occupation cumulée des partitions, rapportée aux limites globales.
+     * Chaque partition est relevée à son tour, sans arrêter les autres.
+     */
+    public Occupancy occupancy() {
+        Occupancy total = stripes[0].occupancy();
+        for (int i = 1; i < stripes.length; i++) {
+            total = total.plus(stripes[i].occupancy());
+        }
+        if (shared != null) {
+            // Remplissage global tenu par les limites communes ; les partitions ajoutent leurs écrivains freinés par famille
+            Occupancy global = shared.occupancy();
+            return new Occupancy(global.tuples(), global.bytes(), limits.maxTuples(), limits.maxBytes(),
+                    global.blockedWriters() + total.blockedWriters(), global.rejectedWrites() + total.rejectedWrites());
+        }
+        return total.withLimits(limits.maxTuples(), limits.maxBytes());
+    }
+
+    /** Retourne l'occupation de la famille de ce tuple (même arité, même premier champ), dans sa partition. */
+    public Occupancy occupancy(Tuple family) {
+        return stripeOf(family).occupancy(family);
+    }
+
+    @Override
+    public void write(Tuple t) {
+        stripeOf(t).write(t);
+    }
+
+    @Override
+    public Lease write(Tuple t, Duration lease) {
+        // Le bail est géré par la roue de la partition du tuple
+        return stripeOf(t).write(t, lease);
+    }
+
+    /** Comme {@link CentralizedLinda#putBack} : rendu à la partition de sa famille. */
+    public void putBack(Tuple t, long leaseExpiryMillis) {
+        stripeOf(t).putBack(t, leaseExpiryMillis);
+    }
+
+    /** Comme {@link CentralizedLinda#write(Tuple, Duration, Runnable)}. */
+    public Lease write(Tuple t, Duration lease, Runnable onEnd) {
+        return stripeOf(t).write(t, lease, onEnd);
+    }
+
+    @Override
+    public Tuple take(Tuple template) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).take(template);
+        }
+        return awaitAcross(template, eventMode.TAKE, false, 0L);
+    }
+
+    @Override
+    public Tuple take(Tuple template, long timeout, TimeUnit unit) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).take(template, timeout, unit);
+        }
+        return awaitAcross(template, eventMode.TAKE, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    @Override
+    public Tuple read(Tuple template) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).read(template);
+        }
+        return awaitAcross(template, eventMode.READ, false, 0L);
+    }
+
+    @Override
+    public Tuple read(Tuple template, long timeout, TimeUnit unit) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).read(template, timeout, unit);
+        }
+        return awaitAcross(template, eventMode.READ, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    @Override
+    public Tuple tryTake(Tuple template) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).tryTake(template);
+        }
+        lockAll();
+        try {
+            return findAcross(template, true);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public Tuple tryRead(Tuple template) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).tryRead(template);
+        }
+        lockAll();
+        try {
+            Tuple result = findAcross(template, false);
+            return result != null ? CentralizedLinda.share(result) : null;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public Collection<Tuple> takeAll(Tuple template) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).takeAll(template);
+        }
+        lockAll();
+        try {
+            List<Tuple> results = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                results.addAll(stripe.tupleSpace.removeAll(template));
+            }
+            return results;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public Collection<Tuple> readAll(Tuple template) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).readAll(template);
+        }
+        lockAll();
+        try {
+            List<Tuple> results = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                results.addAll(stripe.tupleSpace.findAll(template));
+            }
+            results.replaceAll(CentralizedLinda::share);
+            return results;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /** Les tuples sont regroupés par partition ; chaque groupe est écrit en une seule section critique. */
+    @Override
+    public void writeAll(Collection<Tuple> tuples) {
+        List<List<Tuple>> groups = new ArrayList<>(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            groups.add(null);
+        }
+        for (Tuple t : tuples) {
+            int index = stripeIndex(t);
+            if (groups.get(index) == null) {
+                groups.set(index, new ArrayList<>());
+            }
+            groups.get(index).add(t);
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            if (groups.get(i) != null) {
+                stripes[i].writeAll(groups.get(i));
+            }
+        }
+    }
+
+    @Override
+    public TupleCursor readCursor(Tuple template, int batchSize) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).readCursor(template, batchSize);
+        }
+        return acrossStripes(template, batchSize, false);
+    }
+
+    @Override
+    public TupleCursor takeCursor(Tuple template, int batchSize) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).takeCursor(template, batchSize);
+        }
+        return acrossStripes(template, batchSize, true);
+    }
+
+    /** Curseur parcourant les partitions l'une après l'autre : un seul verrou de partition est pris à la fois. */
+    private TupleCursor acrossStripes(Tuple template, int batchSize, boolean take) {
+        CentralizedLinda.checkBatchSize(batchSize);
+        return new TupleCursor() {
+            private int index = 0;
+            private TupleCursor current = null;
+
+            @Override
+            protected List<Tuple> fetch() {
+                while (index < stripes.length) {
+                    if (current == null) {
+                        current = take ? stripes[index].takeCursor(template, batchSize)
+                                       : stripes[index].readCursor(template, batchSize);
+                    }
+                    List<Tuple> batch = current.nextBatch();
+                    if (!batch.isEmpty()) {
+                        return batch;
+                    }
+                    current = null;
+                    index++;
+                }
+                return new ArrayList<>();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Tuple> takeN(Tuple template, int n) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).takeN(template, n);
+        }
+        Collection<Tuple> result = awaitAcross(template, false, 0L, () -> {
+            int available = 0;
+            for (Stripe stripe : stripes) {
+                available += stripe.tupleSpace.findAll(template, n - available).size();
+            }
+            if (available < n) {
+                return null;
+            }
+            List<Tuple> taken = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                taken.addAll(stripe.tupleSpace.removeAll(template, n - taken.size()));
+            }
+            return taken;
+        });
+        return result != null ? result : new ArrayList<>();
+    }
+
+    @Override
+    public Collection<Tuple> readN(Tuple template, int max) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).readN(template, max);
+        }
+        lockAll();
+        try {
+            List<Tuple> results = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                results.addAll(stripe.tupleSpace.findAll(template, max - results.size()));
+            }
+            results.replaceAll(CentralizedLinda::share);
+            return results;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /** Comme {@link CentralizedLinda#writeAsync} : l'écriture n'attend la place que dans un autre thread. */
+    @Override
+    public CompletableFuture<Tuple> writeAsync(Tuple t) {
+        return stripeOf(t).writeAsync(t);
+    }
+
+    @Override
+    public CompletableFuture<Tuple> takeAsync(Tuple template) {
+        return TupleFuture.register(this, this::registerEvent, eventMode.TAKE, template);
+    }
+
+    @Override
+    public CompletableFuture<Tuple> readAsync(Tuple template) {
+        return TupleFuture.register(this, this::registerEvent, eventMode.READ, template);
+    }
+
+    @Override
+    public void eventRegister(eventMode mode, eventTiming timing, Tuple template, Callback callback) {
+        registerEvent(mode, timing, template, callback);
+    }
+
+    /** Comme {@link CentralizedLinda#registerEvent}. */
+    public EventRegistration registerEvent(eventMode mode, eventTiming timing, Tuple template, Callback callback) {
+        if (!spansStripes(template)) {
+            return stripeOf(template).registerEvent(mode, timing, template, callback);
+        }
+        CallbackDispatcher.Batch fired = dispatcher.batch();
+        SpanningRegistration registration = new SpanningRegistration(mode, CentralizedLinda.share(template), callback);
+        lockAll();
+        try {
+            if (timing == eventTiming.IMMEDIATE) {
+                Tuple match = findAcross(template, mode == eventMode.TAKE);
+                if (match != null) {
+                    if (mode == eventMode.TAKE) {
+                        // Le tuple pris vient de la partition de sa famille
+                        fired.add(CentralizedLinda.taking(callback, stripeOf(match).removedLeaseExpiry()), match);
+                    } else {
+                        fired.add(callback, CentralizedLinda.share(match));
+                    }
+                    return registration;
+                }
+            }
+            // Toutes les partitions sont verrouillées : aucune écriture ne peut passer entre la recherche et l'enregistrement
+            spanningLock.lock();
+            try {
+                spanningCallbacks.add(registration);
+                updateSpanningCount();
+            } finally {
+                spanningLock.unlock();
+            }
+            return registration;
+        } finally {
+            unlockAll();
+            fired.submit();
+        }
+    }
+
+    @Override
+    public void debug(String prefix) {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i].debug(prefix + " [partition " + i + "]");
+        }
+        spanningLock.lock();
+        try {
+            System.out.println(prefix + " Callbacks spanning partitions: " + spanningCallbacks.size());
+            System.out.println(prefix + " Blocked take/read spanning partitions: " + spanningWaiters.size());
+        } finally {
+            spanningLock.unlock();
+        }
+    }
+
+    /** Un motif sans premier champ concret peut correspondre à des tuples de toutes les partitions. */
+    private static boolean spansStripes(Tuple template) {
+        return TemplateRegistry.isWildcard(template);
+    }
+
+    /** Partition d'un tuple, ou du motif (non joker) dont il a la même arité et le même premier champ. */
+    private Stripe stripeOf(Tuple t) {
+        return stripes[stripeIndex(t)];
+    }
+
+    private int stripeIndex(Tuple t) {
+        int h = t.size();
+        if (h > 0) {
+            Serializable lead = t.get(0);
+            h = 31 * h + (lead == null ? 0 : lead.hashCode());
+        }
+        // Brassage : les valeurs de tête sont souvent des petits entiers ou des chaînes proches
+        h *= 0x9E3779B9;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    /** Cherche un tuple dans toutes les partitions, et le retire si demandé. Tous les verrous doivent être détenus. */
+    private Tuple findAcross(Tuple template, boolean remove) {
+        for (Stripe stripe : stripes) {
+            Tuple result = remove ? stripe.tupleSpace.removeMatching(template) : stripe.tupleSpace.find(template);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /** take/read bloquant d'un motif couvrant toutes les partitions. */
+    private Tuple awaitAcross(Tuple template, eventMode mode, boolean timed, long deadline) {
+        if (mode == eventMode.TAKE) {
+            return awaitAcross(template, timed, deadline, () -> findAcross(template, true));
+        }
+        return awaitAcross(template, timed, deadline, () -> {
+            Tuple result = findAcross(template, false);
+            return result != null ? CentralizedLinda.share(result) : null;
+        });
+    }
+
+    /**
+     * Opération bloquante sur un motif couvrant toutes les partitions, bornée par l'échéance si timed est vrai.
+     * La tentative est exécutée avec tous les verrous des partitions, et recommencée à chaque écriture
+     * d'un tuple correspondant tant qu'elle retourne null.
+     * Retourne null si le thread a été interrompu ou si l'échéance est passée.
+     */
+    private <T> T awaitAcross(Tuple template, boolean timed, long deadline, Supplier<T> attempt) {
+        while (true) {
+            Waiter waiter;
+            lockAll();
+            try {
+                T result = attempt.get();
+                if (result != null) {
+                    return result;
+                }
+                if (timed && deadline - System.nanoTime() <= 0) {
+                    return null;
+                }
+                // Toutes les attentes couvrant les partitions sont réveillées : le mode importe peu
+                waiter = new Waiter(template, eventMode.READ, spanningLock.newCondition());
+                spanningLock.lock();
+                spanningWaiters.add(waiter);
+                updateSpanningCount();
+            } finally {
+                unlockAll();
+            }
+            // spanningLock est encore détenu : une écriture ne peut pas signaler avant le début de l'attente
+            try {
+                while (!waiter.signalled) {
+                    if (!timed) {
+                        waiter.condition.await();
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            return null;
+                        }
+                        waiter.condition.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                spanningWaiters.remove(waiter);
+                updateSpanningCount();
+                spanningLock.unlock();
+            }
+        }
+    }
+
+    /** À appeler spanningLock détenu. */
+    private void updateSpanningCount() {
+        spanningCount = spanningCallbacks.size() + spanningWaiters.size();
+    }
+
+    /** Partition : un espace centralisé qui examine aussi les enregistrements couvrant toutes les partitions. */
+    private final class Stripe extends CentralizedLinda {
+
+        Stripe(CallbackDispatcher dispatcher, SpaceLimits limits, SharedQuota shared) {
+            super(dispatcher, limits, shared);
+        }
+
+        @Override
+        void written(Tuple t, long seq, long leaseExpiryMillis, CallbackDispatcher.Batch fired) {
+            if (spanningCount == 0) {
+                return;
+            }
+            spanningLock.lock();
+            try {
+                SpanningRegistration takeCallback = null;
+                for (SpanningRegistration registration : spanningCallbacks.matching(t)) {
+                    if (registration.mode == eventMode.READ) {
+                        spanningCallbacks.remove(registration);
+                        fired.add(registration.callback, share(t));
+                    } else if (takeCallback == null) {
+                        takeCallback = registration;
+                    }
+                }
+                if (takeCallback != null && tupleSpace.remove(seq, t)) {
+                    spanningCallbacks.remove(takeCallback);
+                    fired.add(taking(takeCallback.callback, leaseExpiryMillis), t);
+                }
+                // Toutes les attentes sont réveillées : celles qui arrivent trop tard se remettent en attente
+                if (tupleSpace.contains(seq, t)) {
+                    for (Waiter waiter : spanningWaiters.matching(t)) {
+                        spanningWaiters.remove(waiter);
+                        waiter.signal(t, seq);
+                    }
+                }
+                updateSpanningCount();
+            } finally {
+                spanningLock.unlock();
+            }
+        }
+    }
+
+    private final class SpanningRegistration extends TemplateRegistry.Registration implements EventRegistration {
+        final eventMode mode;
+        final Callback callback;
+
+        SpanningRegistration(eventMode mode, Tuple template, Callback callback) {
+            super(template);
+            this.mode = mode;
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean cancel() {
+            spanningLock.lock();
+            try {
+                boolean removed = spanningCallbacks.remove(this);
+                updateSpanningCount();
+                return removed;
+            } finally {
+                spanningLock.unlock();
+            }
+        }
+    }
+}
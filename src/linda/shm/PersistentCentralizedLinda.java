@@ -2,21 +2,98 @@ package linda.shm;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.locks.Lock;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.Condition;
 import linda.Tuple;
 import linda.shm.CentralizedLinda;
 
 
 /**
  * Extension de CentralizedLinda avec capacités de sauvegarde/restauration
+ *
+ * Avec un journal ({@link JournalPolicy}), chaque modification est de plus ajoutée à un journal
+ * (segments {@code <sauvegarde>.wal.<n>}) : la restauration recharge la dernière sauvegarde complète,
+ * puis rejoue le journal. Chaque sauvegarde complète dans le fichier principal supprime les segments qu'elle couvre.
+ *
+ * Les tuples restaurés gardent leur numéro d'insertion : les enregistrements du journal écrits avant et après
+ * un redémarrage désignent les mêmes tuples, même si un point de reprise n'a pas pu être écrit entre les deux.
+ *
+ * Dans le fichier principal, une sauvegarde n'écrit que les tuples ajoutés ou retirés depuis la précédente
+ * (delta {@code <sauvegarde>.delta.<n>}, voir {@link SnapshotChain}) ; une base complète n'est écrite qu'après
+ * une restauration ou un vidage, ou lorsque le delta serait plus gros qu'elle.
+ * Quand la chaîne dépasse {@link #MAX_DELTA_CHAIN} deltas, un thread d'arrière-plan les fusionne dans une
+ * nouvelle base, depuis les fichiers : ni l'espace ni les sauvegardes suivantes ne sont bloqués.
  */
 public class PersistentCentralizedLinda extends CentralizedLinda {
 
     private static final String DEFAULT_SAVE_FILE = "linda_tuples.ser";
+    /** Longueur de la chaîne de deltas au-delà de laquelle ils sont fusionnés dans la base. */
+    public static final int MAX_DELTA_CHAIN = Integer.getInteger("linda.snapshot.maxDeltas", 8);
     private final String saveFilePath;
+    private final JournalPolicy journalPolicy;
+    /** Base des noms des segments du journal ({@code <sauvegarde>.wal.<n>}). */
+    private final File journalBase;
+    /** Journal des modifications, ouvert à la première restauration ; null sans journal (verrou détenu). */
+    private WriteAheadLog journal;
+    /** Vrai pendant une restauration : les modifications rejouées ne sont pas journalisées (verrou détenu). */
+    private boolean restoring;
+    // Compteurs de modifications, incrémentés verrou détenu et lus sans verrou
+    private volatile long mutations;
+    private volatile long bytesChanged;
+    /** Valeurs des compteurs relevées avec la dernière sauvegarde publiée dans le fichier principal. */
+    private volatile long savedMutations;
+    private volatile long savedBytesChanged;
+    private volatile long lastSaveDurationNanos;
+    private volatile long lastSaveBytes;
+    private volatile long saveCount;
+
+    // Modifications depuis la dernière sauvegarde dans le fichier principal, pour le delta suivant (verrou détenu)
+    private final Map<Long, Tuple> addedSinceSave = new LinkedHashMap<>();
+    private final Set<Long> removedSinceSave = new HashSet<>();
+    private final Set<Long> leasedSinceSave = new HashSet<>();
+    /** Vrai si la prochaine sauvegarde doit être une base complète (verrou détenu). */
+    private boolean needsBase = true;
+    /** Numéro du dernier delta écrit (snapshotLock détenu). */
+    private long lastDelta;
+    /** Nombre de deltas qui suivent la base sur disque. */
+    private final AtomicInteger deltaChain = new AtomicInteger();
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private volatile long compactionCount;
+
+    /** Restauration à la construction : complétée quand l'espace est prêt. */
+    private final CompletableFuture<Void> recovery = new CompletableFuture<>();
+    /** Vrai si la restauration en arrière-plan a échoué : le fichier principal n'est alors plus remplacé. */
+    private volatile boolean recoveryFailed;
+
+    /** Sérialise les sauvegardes ; pris avant le verrou de l'espace. */
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    /** Sérialise les écritures de la base (sauvegarde complète, fusion) ; pris après snapshotLock. */
+    private final ReentrantLock baseLock = new ReentrantLock();
+
+    /** Thread commun des sauvegardes en arrière-plan. */
+    private static final ExecutorService SNAPSHOT_WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "linda-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Thread commun des fusions de deltas. */
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "linda-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
 
 
     public PersistentCentralizedLinda() {
@@ -26,6 +103,100 @@ public class PersistentCentralizedLinda extends CentralizedLinda {
     public PersistentCentralizedLinda(String saveFilePath) {
         super();
         this.saveFilePath = saveFilePath;
+        this.journalPolicy = JournalPolicy.disabled();
+        this.journalBase = new File(saveFilePath + ".wal");
+        tupleSpace.addObserver(new MutationCounter());
+        tupleSpace.addObserver(new DeltaTracker());
+        recovery.complete(null);
+    }
+
+    public PersistentCentralizedLinda(String saveFilePath, CallbackDispatcher dispatcher) {
+        this(saveFilePath, dispatcher, SpaceLimits.unbounded());
+    }
+
+    /** Espace borné ; le chargement d'une sauvegarde n'est pas soumis aux limites. */
+    public PersistentCentralizedLinda(String saveFilePath, CallbackDispatcher dispatcher, SpaceLimits limits) {
+        this(saveFilePath, dispatcher, limits, JournalPolicy.disabled());
+    }
+
+    /**
+     * Espace journalisé si la politique est active : il est alors restauré dès la construction
+     * (dernière sauvegarde complète puis journal), et une UncheckedIOException signale une restauration impossible.
+     */
+    public PersistentCentralizedLinda(String saveFilePath, CallbackDispatcher dispatcher, SpaceLimits limits,
+                                      JournalPolicy journalPolicy) {
+        this(saveFilePath, dispatcher, limits, journalPolicy, false);
+    }
+
+    /**
+     * Avec backgroundRecovery, la restauration (sauvegarde, puis journal s'il est actif) se fait dans un thread
+     * d'arrière-plan qui détient le verrou de l'espace jusqu'à la fin : l'espace est utilisable dès la construction,
+     * les opérations attendant simplement la fin de la restauration (voir {@link #recovery()}).
+     * Si elle échoue, l'espace reste vide et la sauvegarde n'est plus remplacée.
+     */
+    public PersistentCentralizedLinda(String saveFilePath, CallbackDispatcher dispatcher, SpaceLimits limits,
+                                      JournalPolicy journalPolicy, boolean backgroundRecovery) {
+        super(dispatcher, limits);
+        this.saveFilePath = saveFilePath;
+        this.journalPolicy = journalPolicy;
+        this.journalBase = new File(saveFilePath + ".wal");
+        tupleSpace.addObserver(new MutationCounter());
+        tupleSpace.addObserver(new DeltaTracker());
+        if (journalPolicy.isEnabled()) {
+            tupleSpace.addObserver(new JournalObserver());
+        }
+        if (backgroundRecovery) {
+            CountDownLatch locked = new CountDownLatch(1);
+            Thread recoverer = new Thread(() -> recoverHoldingLocks(locked), "linda-recovery");
+            recoverer.setDaemon(true);
+            recoverer.start();
+            // Aucune opération ne doit passer avant que le thread de restauration ne détienne le verrou
+            boolean interrupted = false;
+            while (locked.getCount() > 0) {
+                try {
+                    locked.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            if (journalPolicy.isEnabled()) {
+                try {
+                    loadTupleSpace();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Restauration impossible depuis " + saveFilePath, e);
+                } catch (ClassNotFoundException e) {
+                    throw new UncheckedIOException("Restauration impossible depuis " + saveFilePath, new IOException(e));
+                }
+            }
+            recovery.complete(null);
+        }
+    }
+
+    /** Restauration en arrière-plan : les verrous sont pris avant de libérer le constructeur. */
+    private void recoverHoldingLocks(CountDownLatch locked) {
+        snapshotLock.lock();
+        lock.lock();
+        locked.countDown();
+        try {
+            loadTupleSpace();
+            recovery.complete(null);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            recoveryFailed = true;
+            System.err.println("Erreur lors de la restauration depuis " + saveFilePath + ": " + e);
+            recovery.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+            snapshotLock.unlock();
+        }
+    }
+
+    /** Futur complété (éventuellement exceptionnellement) quand la restauration faite à la construction est terminée. */
+    public CompletableFuture<Void> recovery() {
+        return recovery;
     }
 
     /**
@@ -36,32 +207,224 @@ public class PersistentCentralizedLinda extends CentralizedLinda {
     }
 
     /**
-     * Sauvegarde l'espace de tuples dans le fichier spécifié
+     * Sauvegarde l'espace de tuples dans le fichier spécifié.
+     *
+     * Le verrou de l'espace n'est détenu que le temps de relever les références des tuples (ils sont
+     * immuables) : la sérialisation et l'écriture se font ensuite sans bloquer les opérations.
+     * Le fichier est remplacé atomiquement ; une sauvegarde dans le fichier principal est de préférence
+     * un delta, et supprime les segments du journal qu'elle couvre.
      */
     public void saveTupleSpace(String filename) throws IOException {
-        lock.lock();
+        // Une sauvegarde à la fois : elles sont publiées dans l'ordre de leurs relevés
+        snapshotLock.lock();
         try {
-            // Créer une copie sérialisable de l'espace de tuples
-            List<Tuple> tuplesToSave = new ArrayList<>();
-            for (Tuple t : tupleSpace) {
-                tuplesToSave.add(t.deepclone());
+            long start = System.nanoTime();
+            boolean main = isSaveFile(filename);
+            if (main && recoveryFailed) {
+                throw new IOException("Restauration en échec : la sauvegarde " + filename + " n'est pas remplacée");
+            }
+            Snapshot snapshot;
+            WriteAheadLog log = null;
+            long sealedSegment = -1;
+            lock.lock();
+            try {
+                snapshot = main ? captureForChain() : new Snapshot(capture(), null);
+                snapshot.mutations = mutations;
+                snapshot.bytesChanged = bytesChanged;
+                if (journal != null && main) {
+                    // Les modifications suivantes iront dans un nouveau segment, que cette sauvegarde ne couvre pas
+                    log = journal;
+                    snapshot.setLsn(journal.lastLsn());
+                    sealedSegment = journal.rotate();
+                }
+            } finally {
+                lock.unlock();
             }
 
-            // Sauvegarder dans le fichier
-            try (FileOutputStream fos = new FileOutputStream(filename);
-                 ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-                oos.writeObject(tuplesToSave);
-                oos.flush();
+            if (log != null) {
+                // Les segments terminés sont sur disque avant que la sauvegarde ne les remplace
+                log.sync();
+            }
+            long written;
+            try {
+                written = write(snapshot, new File(filename), main);
+            } catch (IOException | RuntimeException e) {
+                if (main) {
+                    // Les modifications relevées sont perdues pour les deltas : la prochaine sauvegarde sera complète
+                    lock.lock();
+                    try {
+                        needsBase = true;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                throw e;
+            }
+            if (log != null) {
+                log.deleteSegmentsUpTo(sealedSegment);
+            }
+            if (main) {
+                // Les modifications faites pendant l'écriture restent à sauvegarder
+                savedMutations = snapshot.mutations;
+                savedBytesChanged = snapshot.bytesChanged;
+                lastSaveDurationNanos = System.nanoTime() - start;
+                lastSaveBytes = written;
+                saveCount++;
             }
 
-            System.out.println("Espace de tuples sauvegardé dans: " + filename);
-            System.out.println("Nombre de tuples sauvegardés: " + tuplesToSave.size());
+            if (snapshot.delta != null) {
+                System.out.println("Delta de l'espace de tuples sauvegardé dans: " + filename
+                        + " (" + snapshot.delta.changes() + " modifications)");
+                if (deltaChain.get() >= MAX_DELTA_CHAIN) {
+                    compactInBackground();
+                }
+            } else {
+                System.out.println("Espace de tuples sauvegardé dans: " + filename);
+                System.out.println("Nombre de tuples sauvegardés: " + snapshot.base.tuples.size());
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
 
+    /**
+     * Sauvegarde l'espace de tuples dans le fichier par défaut, depuis un thread d'arrière-plan.
+     * Le futur est complété (éventuellement exceptionnellement) une fois la sauvegarde publiée.
+     */
+    public CompletableFuture<Void> saveTupleSpaceAsync() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        SNAPSHOT_WRITER.execute(() -> {
+            try {
+                saveTupleSpace();
+                done.complete(null);
+            } catch (IOException | RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    /** Relève, verrou détenu, les références des tuples de l'espace et les informations associées. */
+    private SnapshotChain.Base capture() {
+        int size = tupleSpace.size();
+        SnapshotChain.Base base = new SnapshotChain.Base(size);
+        boolean leased = hasLeases();
+        tupleSpace.forEachEntry((t, seq) -> {
+            int i = base.tuples.size();
+            base.tuples.add(t);
+            base.seqs[i] = seq;
+            if (leased) {
+                base.expiries[i] = leaseExpiryMillis(seq);
+            }
+        });
+        return base;
+    }
+
+    /**
+     * Relève, verrou détenu, la sauvegarde suivante du fichier principal : le delta des modifications
+     * depuis la précédente, ou une base complète si la chaîne doit repartir ou si le delta serait plus gros.
+     */
+    private Snapshot captureForChain() {
+        int changes = addedSinceSave.size() + removedSinceSave.size() + leasedSinceSave.size();
+        Snapshot snapshot;
+        if (needsBase || changes >= tupleSpace.size()) {
+            snapshot = new Snapshot(capture(), null);
+        } else {
+            SnapshotChain.Delta delta = new SnapshotChain.Delta();
+            boolean leased = hasLeases();
+            delta.added = new ArrayList<>(addedSinceSave.values());
+            delta.addedSeqs = new long[addedSinceSave.size()];
+            delta.addedExpiries = new long[addedSinceSave.size()];
+            int i = 0;
+            for (long seq : addedSinceSave.keySet()) {
+                delta.addedSeqs[i] = seq;
+                if (leased) {
+                    delta.addedExpiries[i] = leaseExpiryMillis(seq);
+                }
+                i++;
+            }
+            delta.removed = removedSinceSave.stream().mapToLong(Long::longValue).toArray();
+            delta.leasedSeqs = leasedSinceSave.stream().mapToLong(Long::longValue).toArray();
+            delta.leaseExpiries = new long[delta.leasedSeqs.length];
+            for (int j = 0; j < delta.leasedSeqs.length; j++) {
+                delta.leaseExpiries[j] = leaseExpiryMillis(delta.leasedSeqs[j]);
+            }
+            snapshot = new Snapshot(null, delta);
+        }
+        addedSinceSave.clear();
+        removedSinceSave.clear();
+        leasedSinceSave.clear();
+        needsBase = false;
+        return snapshot;
+    }
+
+    /** Écrit la sauvegarde relevée (snapshotLock détenu) ; retourne la taille du fichier écrit. */
+    private long write(Snapshot snapshot, File target, boolean main) throws IOException {
+        if (snapshot.delta != null) {
+            long written = SnapshotChain.writeDelta(SnapshotChain.deltaFile(target, lastDelta + 1), snapshot.delta);
+            lastDelta++;
+            deltaChain.incrementAndGet();
+            return written;
+        }
+        if (!main) {
+            return SnapshotChain.writeBase(target, snapshot.base);
+        }
+        baseLock.lock();
+        try {
+            // La nouvelle base remplace tous les deltas présents, y compris ceux d'une exécution précédente
+            lastDelta = Math.max(lastDelta, SnapshotChain.lastDeltaNumber(target));
+            snapshot.base.lastDelta = lastDelta;
+            long written = SnapshotChain.writeBase(target, snapshot.base);
+            SnapshotChain.deleteDeltasUpTo(target, lastDelta);
+            deltaChain.set(0);
+            return written;
         } finally {
-            lock.unlock();
+            baseLock.unlock();
         }
     }
 
+    /**
+     * Fusionne les deltas du fichier principal dans une nouvelle base. La fusion relit les fichiers :
+     * elle ne prend ni le verrou de l'espace ni celui des sauvegardes, qui peuvent ajouter des deltas pendant ce temps.
+     */
+    public void compactSnapshots() throws IOException {
+        File target = new File(saveFilePath);
+        baseLock.lock();
+        try {
+            SnapshotChain.State state;
+            try {
+                state = SnapshotChain.read(target);
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            if (state.deltas == 0) {
+                return;
+            }
+            SnapshotChain.writeBase(target, SnapshotChain.toBase(state));
+            SnapshotChain.deleteDeltasUpTo(target, state.lastDelta);
+            deltaChain.addAndGet(-state.deltas);
+            compactionCount++;
+            System.out.println("Deltas fusionnés dans la sauvegarde: " + state.deltas);
+        } finally {
+            baseLock.unlock();
+        }
+    }
+
+    /** Planifie une fusion des deltas, s'il n'y en a pas déjà une en attente. */
+    private void compactInBackground() {
+        if (!compactionPending.compareAndSet(false, true)) {
+            return;
+        }
+        COMPACTOR.execute(() -> {
+            compactionPending.set(false);
+            try {
+                compactSnapshots();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erreur lors de la fusion des deltas: " + e.getMessage());
+            }
+        });
+    }
+
     /**
      * Restaure l'espace de tuples depuis le fichier par défaut
      */
@@ -70,51 +433,360 @@ public class PersistentCentralizedLinda extends CentralizedLinda {
     }
 
     /**
-     * Restaure l'espace de tuples depuis le fichier spécifié
+     * Restaure l'espace de tuples depuis le fichier spécifié.
+     * Depuis le fichier principal, le journal est ensuite rejoué ; l'état restauré est alors sauvegardé
+     * (point de reprise), ce qui vide le journal.
      */
     @SuppressWarnings("unchecked")
     public void loadTupleSpace(String filename) throws IOException, ClassNotFoundException {
         File file = new File(filename);
-        if (!file.exists()) {
+        boolean replayJournal = journalPolicy.isEnabled() && isSaveFile(filename);
+        if (!file.exists() && !replayJournal) {
             System.out.println("Fichier de sauvegarde non trouvé: " + filename);
             return;
         }
 
-        lock.lock();
+        // Même ordre que saveTupleSpace, appelée pour le point de reprise
+        snapshotLock.lock();
         try {
-            // Charger les tuples depuis le fichier
-            List<Tuple> loadedTuples;
-            try (FileInputStream fis = new FileInputStream(filename);
-                 ObjectInputStream ois = new ObjectInputStream(fis)) {
-                loadedTuples = (List<Tuple>) ois.readObject();
+            // Charger la base et les deltas qui la suivent, sans bloquer l'espace pendant le décodage
+            SnapshotChain.State state;
+            if (file.exists()) {
+                state = SnapshotChain.read(file);
+            } else {
+                state = new SnapshotChain.State();
+                System.out.println("Fichier de sauvegarde non trouvé: " + filename);
+            }
+            boolean checkpoint;
+            lock.lock();
+            try {
+                restore(filename, state, replayJournal);
+                checkpoint = journal != null;
+            } finally {
+                lock.unlock();
+            }
+            // Point de reprise : l'état restauré est sauvegardé, et le journal vidé
+            if (checkpoint) {
+                saveTupleSpace(saveFilePath);
             }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
 
+    /** Remplace le contenu de l'espace par l'état relu, puis rejoue le journal ; verrou et snapshotLock détenus. */
+    private void restore(String filename, SnapshotChain.State state, boolean replayJournal)
+            throws IOException, ClassNotFoundException {
+        restoring = true;
+        int replayed = 0;
+        int expired = 0;
+        try {
             // Vider l'espace actuel et restaurer les tuples
             tupleSpace.clear();
-            for (Tuple t : loadedTuples) {
-                tupleSpace.add(t.deepclone());
+            clearLeases();
+            // Tuples restaurés, par numéro d'insertion
+            Map<Long, Tuple> restored = new HashMap<>();
+            // Les tuples viennent d'être désérialisés : personne d'autre ne les référence
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Long, SnapshotChain.Entry> e : state.entries.entrySet()) {
+                Tuple t = e.getValue().tuple;
+                long expiry = e.getValue().expiry;
+                if (expiry != 0 && expiry <= now) {
+                    expired++;
+                    continue;
+                }
+                // Une sauvegarde antérieure aux numéros d'insertion numérote ses tuples par rang
+                long seq = tupleSpace.insert(e.getKey(), t);
+                if (expiry != 0) {
+                    // Le bail reprend pour la durée qui lui restait
+                    lease(seq, t, TimeUnit.MILLISECONDS.toNanos(expiry - now));
+                }
+                if (state.originalSeqs) {
+                    restored.put(seq, t);
+                }
             }
 
             System.out.println("Espace de tuples restauré depuis: " + filename);
-            System.out.println("Nombre de tuples restaurés: " + loadedTuples.size());
+            System.out.println("Nombre de tuples restaurés: " + (state.entries.size() - expired));
+            if (expired > 0) {
+                System.out.println("Tuples dont le bail a expiré: " + expired);
+            }
+            if (state.deltas > 0) {
+                System.out.println("Deltas de sauvegarde appliqués: " + state.deltas);
+            }
 
-            // Signaler tous les threads en attente qu'il y a potentiellement de nouveaux tuples
-            condition.signalAll();
+            if (replayJournal) {
+                JournalReplay replay = new JournalReplay(restored);
+                long lastLsn = WriteAheadLog.replay(journalBase, state.lsn, replay);
+                replayed = replay.count;
+                if (journal == null) {
+                    journal = new WriteAheadLog(journalBase, journalPolicy, lastLsn);
+                }
+                System.out.println("Enregistrements du journal rejoués: " + replayed);
+            }
+        } finally {
+            restoring = false;
+            // Les modifications restaurées ne sont pas relevées : la chaîne de deltas repart d'une nouvelle base
+            needsBase = true;
+            addedSinceSave.clear();
+            removedSinceSave.clear();
+            leasedSinceSave.clear();
+            if (isSaveFile(filename)) {
+                deltaChain.set(state.deltas);
+            }
+        }
 
+        if (journal == null && isSaveFile(filename)) {
+            // L'espace est identique à sa sauvegarde
+            savedMutations = mutations;
+            savedBytesChanged = bytesChanged;
+        }
+
+        // Signaler tous les threads en attente qu'il y a potentiellement de nouveaux tuples
+        wakeAllWaiters();
+    }
+
+    /** Nombre de modifications (ajouts et retraits de tuples) depuis la création de l'espace. */
+    public long mutationCount() {
+        return mutations;
+    }
+
+    /** Nombre de modifications depuis le relevé de la dernière sauvegarde dans le fichier principal. */
+    public long mutationsSinceSave() {
+        return mutations - savedMutations;
+    }
+
+    /** Taille estimée des tuples ajoutés ou retirés depuis le relevé de la dernière sauvegarde, en octets. */
+    public long bytesChangedSinceSave() {
+        return bytesChanged - savedBytesChanged;
+    }
+
+    /** Durée de la dernière sauvegarde dans le fichier principal (relevé, écriture et publication), en ms. */
+    public long lastSaveDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastSaveDurationNanos);
+    }
+
+    /** Taille du fichier écrit par la dernière sauvegarde dans le fichier principal, en octets. */
+    public long lastSaveBytes() {
+        return lastSaveBytes;
+    }
+
+    /** Nombre de sauvegardes (bases et deltas) publiées dans le fichier principal. */
+    public long saveCount() {
+        return saveCount;
+    }
+
+    /** Nombre de deltas qui suivent la base du fichier principal. */
+    public int deltaChainLength() {
+        return deltaChain.get();
+    }
+
+    /** Nombre de fusions des deltas dans la base. */
+    public long compactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * Force sur disque les enregistrements du journal en attente, sans attendre le prochain lot.
+     */
+    public void syncJournal() throws IOException {
+        WriteAheadLog log;
+        lock.lock();
+        try {
+            log = journal;
         } finally {
             lock.unlock();
         }
+        if (log != null) {
+            log.sync();
+        }
     }
 
     /**
-     * Sauvegarde automatique lors de l'arrêt
+     * Sauvegarde automatique lors de l'arrêt ; le journal, devenu vide, est fermé
      */
     public void shutdown() {
         try {
             saveTupleSpace();
             System.out.println("Sauvegarde automatique effectuée lors de l'arrêt");
+            WriteAheadLog log;
+            lock.lock();
+            try {
+                log = journal;
+                journal = null;
+            } finally {
+                lock.unlock();
+            }
+            // Les modifications faites depuis la sauvegarde restent dans le dernier segment
+            if (log != null) {
+                log.close();
+            }
         } catch (IOException e) {
             System.err.println("Erreur lors de la sauvegarde automatique: " + e.getMessage());
         }
     }
+
+    @Override
+    void leased(long seq, long expiryMillis) {
+        if (restoring) {
+            return;
+        }
+        if (journal != null) {
+            journal.logLease(seq, expiryMillis);
+        }
+        if (!needsBase && !addedSinceSave.containsKey(seq)) {
+            leasedSinceSave.add(seq);
+        }
+    }
+
+    private boolean isSaveFile(String filename) {
+        return new File(filename).getAbsoluteFile().equals(new File(saveFilePath).getAbsoluteFile());
+    }
+
+    /** Ajoute au journal les modifications de l'index, hors restauration. */
+    private class JournalObserver implements TupleIndex.Observer {
+        @Override
+        public void added(long seq, Tuple t) {
+            if (journal != null && !restoring) {
+                journal.logWrite(seq, t);
+            }
+        }
+
+        @Override
+        public void removed(long seq, Tuple t) {
+            if (journal != null && !restoring) {
+                journal.logRemove(seq);
+            }
+        }
+
+        @Override
+        public void cleared() {
+            if (journal != null && !restoring) {
+                journal.logClear();
+            }
+        }
+    }
+
+    /** Compte les modifications de l'index, pour décider des sauvegardes (voir AutoSaveManager). */
+    private class MutationCounter implements TupleIndex.Observer {
+        @Override
+        public void added(long seq, Tuple t) {
+            count(t);
+        }
+
+        @Override
+        public void removed(long seq, Tuple t) {
+            count(t);
+        }
+
+        @Override
+        public void cleared() {
+            mutations++;
+        }
+
+        private void count(Tuple t) {
+            // Un seul écrivain à la fois (verrou détenu) : l'incrément n'a pas besoin d'être atomique
+            mutations++;
+            bytesChanged += SpaceQuota.estimateBytes(t);
+        }
+    }
+
+    /** Relève les modifications de l'index pour le prochain delta ; inutile tant qu'une base complète est attendue. */
+    private class DeltaTracker implements TupleIndex.Observer {
+        @Override
+        public void added(long seq, Tuple t) {
+            if (!needsBase && !restoring) {
+                addedSinceSave.put(seq, t);
+            }
+        }
+
+        @Override
+        public void removed(long seq, Tuple t) {
+            if (!needsBase && !restoring && addedSinceSave.remove(seq) == null) {
+                // Un tuple ajouté puis retiré depuis la dernière sauvegarde n'apparaît pas dans le delta
+                removedSinceSave.add(seq);
+                leasedSinceSave.remove(seq);
+            }
+        }
+
+        @Override
+        public void cleared() {
+            needsBase = true;
+            addedSinceSave.clear();
+            removedSinceSave.clear();
+            leasedSinceSave.clear();
+        }
+    }
+
+    /** Relevé de l'espace pour une sauvegarde : une base complète ou un delta, et les compteurs associés. */
+    private static final class Snapshot {
+        final SnapshotChain.Base base;
+        final SnapshotChain.Delta delta;
+        /** Compteurs de modifications au moment du relevé. */
+        long mutations;
+        long bytesChanged;
+
+        Snapshot(SnapshotChain.Base base, SnapshotChain.Delta delta) {
+            this.base = base;
+            this.delta = delta;
+        }
+
+        /** Dernier enregistrement du journal couvert par la sauvegarde. */
+        void setLsn(long lsn) {
+            if (base != null) {
+                base.lsn = lsn;
+            } else {
+                delta.lsn = lsn;
+            }
+        }
+    }
+
+    /** Rejoue le journal dans l'espace, verrou détenu, sous les numéros d'insertion d'origine. */
+    private class JournalReplay implements WriteAheadLog.Replay {
+        private final Map<Long, Tuple> restored;
+        int count;
+
+        JournalReplay(Map<Long, Tuple> restored) {
+            this.restored = restored;
+        }
+
+        @Override
+        public void write(long seq, Tuple t) {
+            count++;
+            restored.put(tupleSpace.insert(seq, t), t);
+        }
+
+        @Override
+        public void remove(long seq) {
+            count++;
+            Tuple t = restored.remove(seq);
+            if (t != null) {
+                tupleSpace.remove(seq, t);
+            }
+        }
+
+        @Override
+        public void lease(long seq, long expiryMillis) {
+            count++;
+            Tuple t = restored.get(seq);
+            if (t == null) {
+                return;
+            }
+            long remaining = expiryMillis - System.currentTimeMillis();
+            if (remaining > 0) {
+                PersistentCentralizedLinda.this.lease(seq, t, TimeUnit.MILLISECONDS.toNanos(remaining));
+            } else {
+                restored.remove(seq);
+                tupleSpace.remove(seq, t);
+            }
+        }
+
+        @Override
+        public void clear() {
+            count++;
+            restored.clear();
+            tupleSpace.clear();
+            clearLeases();
+        }
+    }
 }
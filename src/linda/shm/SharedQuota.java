@@ -0,0 +1,97 @@
+package linda.shm;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+import linda.Tuple;
+
+/**
+ * Limites globales d'un espace partitionné (nombre de tuples, taille estimée), communes à toutes ses partitions.
+ *
+ * Un écrivain réserve la place avant de prendre le verrou de sa partition, et l'attend au besoin selon
+ * la politique de débordement : une partition pleine n'est donc pas bloquée par ses propres écrivains,
+ * et tout retrait, dans n'importe quelle partition, les réveille. Les limites par famille restent appliquées
+ * par chaque partition, une famille tenant dans une seule.
+ */
+class SharedQuota {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Limites globales seules, appliquées sous lock. */
+    private final SpaceQuota quota;
+    private final boolean countBytes;
+
+    SharedQuota(SpaceLimits limits) {
+        SpaceLimits global = limits.globalOnly();
+        this.quota = new SpaceQuota(global, lock.newCondition());
+        this.countBytes = global.limitsBytes();
+    }
+
+    /** Retourne la taille estimée d'un tuple si les limites la comptent, 0 sinon. */
+    long size(Tuple t) {
+        return countBytes ? SpaceQuota.estimateBytes(t) : 0;
+    }
+
+    /**
+     * Réserve la place pour ces tuples, en attendant si besoin (voir {@link SpaceQuota#awaitRoom}).
+     * À appeler sans détenir le verrou d'une partition.
+     */
+    void reserve(Collection<Tuple> toAdd) {
+        lock.lock();
+        try {
+            quota.awaitRoom(toAdd);
+            for (Tuple t : toAdd) {
+                quota.added(0, t);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Comme {@link #reserve}, sans attendre : retourne faux si l'écrivain devrait attendre la place. */
+    boolean tryReserve(Collection<Tuple> toAdd) {
+        lock.lock();
+        try {
+            if (!quota.tryRoom(toAdd)) {
+                return false;
+            }
+            for (Tuple t : toAdd) {
+                quota.added(0, t);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Compte ces tuples sans attendre la place, au-delà des limites s'il le faut (tuple rendu à l'espace). */
+    void add(Collection<Tuple> toAdd) {
+        lock.lock();
+        try {
+            for (Tuple t : toAdd) {
+                quota.added(0, t);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Rend la place de tuples retirés d'une partition, ou d'une réservation abandonnée. */
+    void release(long tuples, long bytes) {
+        lock.lock();
+        try {
+            quota.released(tuples, bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Occupation de tout l'espace, réservations en cours comprises. */
+    Occupancy occupancy() {
+        lock.lock();
+        try {
+            return quota.occupancy();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
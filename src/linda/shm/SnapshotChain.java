@@ -0,0 +1,438 @@
+package linda.shm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import linda.Tuple;
+import linda.TupleCodec;
+
+/**
+ * Sauvegarde d'un espace de tuples sous forme d'une base et d'une chaîne de deltas.
+ * <pre>
+ *   base  ({@code <fichier>})          : en-tête (format, LSN, dernier delta intégré, nombre de tuples),
+ *                                        puis segments de {@link #SEGMENT_TUPLES} tuples (numéros d'insertion,
+ *                                        échéances des baux, tuples encodés), chacun précédé de sa longueur
+ *   delta ({@code <fichier>.delta.<n>}) : en-tête (format, LSN), numéros retirés, tuples ajoutés (numéros,
+ *                                        échéances, tuples encodés), baux modifiés (numéros, échéances)
+ * </pre>
+ * Les tuples sont encodés par {@link TupleCodec}, avec une table des classes par segment ou par delta.
+ * Les segments de la base sont indépendants : ils sont encodés et décodés en parallèle, sur tous les cœurs.
+ * Une sauvegarde des premières versions (une seule liste sérialisée, sans numéros ni baux) est toujours relue.
+ *
+ * Les numéros d'insertion sont ceux de l'index au moment de la sauvegarde : un delta n'a de sens que
+ * par rapport à la base (et aux deltas) qui le précèdent. La base indique le dernier delta qu'elle intègre ;
+ * les deltas de numéro inférieur ou égal, restes d'une fusion interrompue, sont ignorés à la relecture.
+ * Chaque fichier est écrit à côté puis substitué atomiquement : un fichier présent est toujours complet.
+ */
+final class SnapshotChain {
+
+    /** Début d'une base segmentée ; une sauvegarde des premières versions commence par l'en-tête de sérialisation Java. */
+    private static final int MAGIC = 0x4C534E50;
+    private static final int VERSION = 3;
+    /** Début d'un delta. */
+    private static final int DELTA_MAGIC = 0x4C53444C;
+    private static final int DELTA_VERSION = 1;
+    /** Nombre de tuples par segment de base. */
+    static final int SEGMENT_TUPLES = 16_384;
+
+    private SnapshotChain() {
+    }
+
+    /** Contenu d'une base : tuples dans l'ordre d'insertion. */
+    static final class Base {
+        final List<Tuple> tuples;
+        final long[] expiries;
+        final long[] seqs;
+        /** Dernier enregistrement du journal couvert. */
+        long lsn;
+        /** Dernier delta intégré à la base. */
+        long lastDelta;
+
+        Base(int size) {
+            this.tuples = new ArrayList<>(size);
+            this.expiries = new long[size];
+            this.seqs = new long[size];
+        }
+    }
+
+    /** Modifications depuis la sauvegarde précédente de la chaîne. */
+    static final class Delta {
+        long[] removed;
+        List<Tuple> added;
+        long[] addedSeqs;
+        long[] addedExpiries;
+        long[] leasedSeqs;
+        long[] leaseExpiries;
+        /** Dernier enregistrement du journal couvert. */
+        long lsn;
+
+        int changes() {
+            return removed.length + added.size() + leasedSeqs.length;
+        }
+    }
+
+    /** Tuple relu et l'échéance de son bail (0 sans bail). */
+    static final class Entry {
+        final Tuple tuple;
+        long expiry;
+
+        Entry(Tuple tuple, long expiry) {
+            this.tuple = tuple;
+            this.expiry = expiry;
+        }
+    }
+
+    /** État relu d'une base et des deltas qui la suivent. */
+    static final class State {
+        /**
+         * Tuples par numéro d'insertion d'origine, dans l'ordre d'insertion : la base est dans cet ordre,
+         * et chaque delta n'ajoute que des numéros postérieurs, dans l'ordre.
+         */
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+        /** Faux pour une sauvegarde antérieure aux numéros d'insertion : les clés sont alors des rangs. */
+        boolean originalSeqs = true;
+        long lsn;
+        long lastDelta;
+        /** Nombre de deltas appliqués à la base. */
+        int deltas;
+    }
+
+    static File deltaFile(File base, long number) {
+        return new File(base.getPath() + ".delta." + number);
+    }
+
+    /** Retourne les deltas présents à côté de cette base, dans l'ordre. */
+    static List<File> deltas(File base) {
+        File dir = base.getAbsoluteFile().getParentFile();
+        String prefix = base.getName() + ".delta.";
+        List<File> deltas = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.startsWith(prefix)
+                && name.length() > prefix.length() && name.substring(prefix.length()).chars().allMatch(Character::isDigit));
+        if (files != null) {
+            deltas.addAll(Arrays.asList(files));
+        }
+        deltas.sort(Comparator.comparingLong(f -> deltaNumber(base, f)));
+        return deltas;
+    }
+
+    static long deltaNumber(File base, File delta) {
+        return Long.parseLong(delta.getName().substring(base.getName().length() + ".delta.".length()));
+    }
+
+    /** Numéro du dernier delta présent sur disque, 0 s'il n'y en a pas. */
+    static long lastDeltaNumber(File base) {
+        List<File> deltas = deltas(base);
+        return deltas.isEmpty() ? 0 : deltaNumber(base, deltas.get(deltas.size() - 1));
+    }
+
+    /** Supprime les deltas intégrés à une base publiée. */
+    static void deleteDeltasUpTo(File base, long number) {
+        for (File f : deltas(base)) {
+            if (deltaNumber(base, f) <= number && !f.delete()) {
+                System.err.println("Impossible de supprimer le delta de sauvegarde: " + f);
+            }
+        }
+    }
+
+    /** Écrit une base ; retourne la taille du fichier écrit. Les segments sont encodés en parallèle. */
+    static long writeBase(File target, Base base) throws IOException {
+        int size = base.tuples.size();
+        int segments = (size + SEGMENT_TUPLES - 1) / SEGMENT_TUPLES;
+        byte[][] encoded = new byte[segments][];
+        try {
+            IntStream.range(0, segments).parallel().forEach(i -> encoded[i] = encodeSegment(base, i));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return publish(target, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(base.lsn);
+            out.writeLong(base.lastDelta);
+            out.writeInt(size);
+            out.writeInt(segments);
+            for (byte[] segment : encoded) {
+                out.writeInt(segment.length);
+                out.write(segment);
+            }
+        });
+    }
+
+    private static byte[] encodeSegment(Base base, int index) {
+        int from = index * SEGMENT_TUPLES;
+        int to = Math.min(from + SEGMENT_TUPLES, base.tuples.size());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + (to - from) * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(to - from);
+            for (int i = from; i < to; i++) {
+                out.writeLong(base.seqs[i]);
+                out.writeLong(base.expiries[i]);
+            }
+            TupleCodec.Writer codec = new TupleCodec.Writer();
+            for (int i = from; i < to; i++) {
+                codec.write(base.tuples.get(i));
+            }
+            codec.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Écrit un delta ; retourne la taille du fichier écrit. */
+    static long writeDelta(File target, Delta delta) throws IOException {
+        return publish(target, out -> {
+            out.writeInt(DELTA_MAGIC);
+            out.writeInt(DELTA_VERSION);
+            out.writeLong(delta.lsn);
+            out.writeInt(delta.removed.length);
+            for (long seq : delta.removed) {
+                out.writeLong(seq);
+            }
+            out.writeInt(delta.added.size());
+            TupleCodec.Writer codec = new TupleCodec.Writer();
+            for (int i = 0; i < delta.added.size(); i++) {
+                out.writeLong(delta.addedSeqs[i]);
+                out.writeLong(delta.addedExpiries[i]);
+                codec.write(delta.added.get(i));
+            }
+            out.writeInt(codec.size());
+            codec.writeTo(out);
+            out.writeInt(delta.leasedSeqs.length);
+            for (int i = 0; i < delta.leasedSeqs.length; i++) {
+                out.writeLong(delta.leasedSeqs[i]);
+                out.writeLong(delta.leaseExpiries[i]);
+            }
+        });
+    }
+
+    private interface Content {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    /** Écrit dans un fichier temporaire, forcé sur disque, puis substitué atomiquement à la cible. */
+    private static long publish(File target, Content content) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            content.writeTo(out);
+            out.flush();
+            fos.getFD().sync();
+        }
+        long size = temp.length();
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    /** Relit la base (si elle existe) puis, dans l'ordre, les deltas qu'elle n'intègre pas encore. */
+    static State read(File base) throws IOException, ClassNotFoundException {
+        State state = new State();
+        if (!base.exists()) {
+            return state;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(base)))) {
+            in.mark(Integer.BYTES);
+            if (in.readInt() == MAGIC) {
+                readSegmented(state, in);
+            } else {
+                in.reset();
+                readSingleList(state, in);
+            }
+        }
+        for (File f : deltas(base)) {
+            long number = deltaNumber(base, f);
+            if (number <= state.lastDelta) {
+                continue;
+            }
+            apply(state, f);
+            state.lastDelta = number;
+            state.deltas++;
+        }
+        return state;
+    }
+
+    /** Relit une base segmentée : les segments sont lus d'un trait, puis décodés en parallèle. */
+    private static void readSegmented(State state, DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Format de sauvegarde inconnu: " + version);
+        }
+        state.lsn = in.readLong();
+        state.lastDelta = in.readLong();
+        int size = in.readInt();
+        byte[][] encoded = new byte[in.readInt()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = new byte[in.readInt()];
+            in.readFully(encoded[i]);
+        }
+        Segment[] segments = new Segment[encoded.length];
+        try {
+            IntStream.range(0, encoded.length).parallel().forEach(i -> segments[i] = decodeSegment(encoded[i]));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        state.entries = new LinkedHashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+        for (Segment segment : segments) {
+            for (int i = 0; i < segment.tuples.size(); i++) {
+                state.entries.put(segment.seqs[i], new Entry(segment.tuples.get(i), segment.expiries[i]));
+            }
+        }
+    }
+
+    /** Segment décodé d'une base. */
+    private static final class Segment {
+        final List<Tuple> tuples;
+        final long[] expiries;
+        final long[] seqs;
+
+        Segment(List<Tuple> tuples, long[] expiries, long[] seqs) {
+            this.tuples = tuples;
+            this.expiries = expiries;
+            this.seqs = seqs;
+        }
+    }
+
+    private static Segment decodeSegment(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int count = in.readInt();
+            if (count < 0 || count > bytes.length) {
+                throw new StreamCorruptedException("Segment de sauvegarde invalide");
+            }
+            long[] seqs = new long[count];
+            long[] expiries = new long[count];
+            for (int i = 0; i < count; i++) {
+                seqs[i] = in.readLong();
+                expiries[i] = in.readLong();
+            }
+            int offset = Integer.BYTES + count * 2 * Long.BYTES;
+            TupleCodec.Reader codec = new TupleCodec.Reader(bytes, offset, bytes.length - offset);
+            List<Tuple> tuples = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tuples.add(codec.read());
+            }
+            return new Segment(tuples, expiries, seqs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Relit une sauvegarde des premières versions : la liste des tuples sérialisée d'un bloc, sans numéros
+     * d'insertion ni baux. Tuple était alors une LinkedList (voir {@link LegacyInputStream}).
+     */
+    @SuppressWarnings("unchecked")
+    private static void readSingleList(State state, InputStream in) throws IOException, ClassNotFoundException {
+        List<Tuple> tuples = (List<Tuple>) new LegacyInputStream(in).readObject();
+        state.originalSeqs = false;
+        for (int i = 0; i < tuples.size(); i++) {
+            state.entries.put((long) i, new Entry(tuples.get(i), 0));
+        }
+    }
+
+    /**
+     * Flux qui relit les tuples sérialisés par les premières versions, où Tuple dérivait de LinkedList
+     * (serialVersionUID 1) : leur descripteur est remplacé par celui de {@link LegacyTuple}, converti à la lecture.
+     */
+    private static final class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            if (desc.getName().equals(Tuple.class.getName())
+                    && desc.getSerialVersionUID() == LegacyTuple.serialVersionUID) {
+                return ObjectStreamClass.lookup(LegacyTuple.class);
+            }
+            return desc;
+        }
+    }
+
+    /** Forme sérialisée d'un tuple des premières versions, remplacée par le tuple à la lecture. */
+    private static final class LegacyTuple extends LinkedList<Serializable> {
+        private static final long serialVersionUID = 1L;
+
+        private Object readResolve() throws ObjectStreamException {
+            return Tuple.copyOf(this);
+        }
+    }
+
+    private static void apply(State state, File delta) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(delta)))) {
+            if (in.readInt() != DELTA_MAGIC) {
+                throw new StreamCorruptedException("Delta de sauvegarde invalide: " + delta);
+            }
+            int version = in.readInt();
+            if (version != DELTA_VERSION) {
+                throw new IOException("Format de delta inconnu: " + version);
+            }
+            state.lsn = in.readLong();
+            int removed = in.readInt();
+            for (int i = 0; i < removed; i++) {
+                state.entries.remove(in.readLong());
+            }
+            int added = in.readInt();
+            long[] seqs = new long[added];
+            long[] expiries = new long[added];
+            for (int i = 0; i < added; i++) {
+                seqs[i] = in.readLong();
+                expiries[i] = in.readLong();
+            }
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            TupleCodec.Reader codec = new TupleCodec.Reader(encoded);
+            for (int i = 0; i < added; i++) {
+                state.entries.put(seqs[i], new Entry(codec.read(), expiries[i]));
+            }
+            int leased = in.readInt();
+            for (int i = 0; i < leased; i++) {
+                Entry entry = state.entries.get(in.readLong());
+                long expiry = in.readLong();
+                if (entry != null) {
+                    entry.expiry = expiry;
+                }
+            }
+        }
+    }
+
+    /** Fusionne l'état relu en une base, qui intègre les deltas relus. */
+    static Base toBase(State state) {
+        Base base = new Base(state.entries.size());
+        int i = 0;
+        for (Map.Entry<Long, Entry> e : state.entries.entrySet()) {
+            base.tuples.add(e.getValue().tuple);
+            base.expiries[i] = e.getValue().expiry;
+            base.seqs[i] = e.getKey();
+            i++;
+        }
+        base.lsn = state.lsn;
+        base.lastDelta = state.lastDelta;
+        return base;
+    }
+}
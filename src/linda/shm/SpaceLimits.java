@@ -0,0 +1,178 @@
+package linda.shm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capacité d'un espace de tuples : nombre de tuples et taille estimée en octets,
+ * pour tout l'espace et pour chaque famille de tuples (même arité et même premier champ).
+ * Quand une écriture dépasserait une limite, la politique de débordement s'applique :
+ * l'écrivain attend qu'il y ait de la place ({@link Overflow#BLOCK}), attend au plus un délai
+ * ({@link Overflow#TIMEOUT}) ou est refusé immédiatement ({@link Overflow#REJECT}),
+ * par une {@link linda.SpaceFullException}.
+ *
+ * Les instances sont immuables ; chaque méthode {@code with...} retourne une copie modifiée.
+ */
+public final class SpaceLimits {
+
+    /** Absence de limite. */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /** Politique appliquée à une écriture qui dépasserait une limite. */
+    public enum Overflow { BLOCK, TIMEOUT, REJECT }
+
+    private static final SpaceLimits UNBOUNDED =
+            new SpaceLimits(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED, Overflow.BLOCK, 0);
+
+    private final long maxTuples;
+    private final long maxBytes;
+    private final long familyMaxTuples;
+    private final long familyMaxBytes;
+    private final Overflow overflow;
+    private final long timeoutNanos;
+
+    private SpaceLimits(long maxTuples, long maxBytes, long familyMaxTuples, long familyMaxBytes,
+                        Overflow overflow, long timeoutNanos) {
+        this.maxTuples = maxTuples;
+        this.maxBytes = maxBytes;
+        this.familyMaxTuples = familyMaxTuples;
+        this.familyMaxBytes = familyMaxBytes;
+        this.overflow = overflow;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /** Aucune limite : c'est la configuration par défaut des espaces. */
+    public static SpaceLimits unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Limites lues dans les propriétés système {@code linda.maxTuples}, {@code linda.maxBytes},
+     * {@code linda.familyMaxTuples}, {@code linda.familyMaxBytes}, {@code linda.overflow}
+     * ({@code block}, {@code reject} ou {@code timeout}) et {@code linda.overflowTimeoutMillis}.
+     * Une propriété absente ne limite rien.
+     */
+    public static SpaceLimits fromSystemProperties() {
+        SpaceLimits limits = unbounded()
+                .withMaxTuples(Long.getLong("linda.maxTuples", UNLIMITED))
+                .withMaxBytes(Long.getLong("linda.maxBytes", UNLIMITED))
+                .withFamilyMaxTuples(Long.getLong("linda.familyMaxTuples", UNLIMITED))
+                .withFamilyMaxBytes(Long.getLong("linda.familyMaxBytes", UNLIMITED));
+        String overflow = System.getProperty("linda.overflow", "block");
+        switch (overflow.toLowerCase()) {
+            case "block":
+                return limits.blockOnOverflow();
+            case "reject":
+                return limits.rejectOnOverflow();
+            case "timeout":
+                return limits.timeoutOnOverflow(Long.getLong("linda.overflowTimeoutMillis", 1000), TimeUnit.MILLISECONDS);
+            default:
+                throw new IllegalArgumentException("Politique de débordement inconnue: " + overflow);
+        }
+    }
+
+    public SpaceLimits withMaxTuples(long maxTuples) {
+        return new SpaceLimits(checkLimit(maxTuples), maxBytes, familyMaxTuples, familyMaxBytes, overflow, timeoutNanos);
+    }
+
+    public SpaceLimits withMaxBytes(long maxBytes) {
+        return new SpaceLimits(maxTuples, checkLimit(maxBytes), familyMaxTuples, familyMaxBytes, overflow, timeoutNanos);
+    }
+
+    /** Limite le nombre de tuples de chaque famille (même arité, même premier champ). */
+    public SpaceLimits withFamilyMaxTuples(long familyMaxTuples) {
+        return new SpaceLimits(maxTuples, maxBytes, checkLimit(familyMaxTuples), familyMaxBytes, overflow, timeoutNanos);
+    }
+
+    /** Limite la taille estimée de chaque famille (même arité, même premier champ). */
+    public SpaceLimits withFamilyMaxBytes(long familyMaxBytes) {
+        return new SpaceLimits(maxTuples, maxBytes, familyMaxTuples, checkLimit(familyMaxBytes), overflow, timeoutNanos);
+    }
+
+    /** L'écrivain attend qu'il y ait de la place (ou d'être interrompu). */
+    public SpaceLimits blockOnOverflow() {
+        return new SpaceLimits(maxTuples, maxBytes, familyMaxTuples, familyMaxBytes, Overflow.BLOCK, 0);
+    }
+
+    /** L'écrivain attend au plus le délai donné. */
+    public SpaceLimits timeoutOnOverflow(long timeout, TimeUnit unit) {
+        return new SpaceLimits(maxTuples, maxBytes, familyMaxTuples, familyMaxBytes, Overflow.TIMEOUT,
+                unit.toNanos(timeout));
+    }
+
+    /** L'écriture est refusée immédiatement. */
+    public SpaceLimits rejectOnOverflow() {
+        return new SpaceLimits(maxTuples, maxBytes, familyMaxTuples, familyMaxBytes, Overflow.REJECT, 0);
+    }
+
+    public long maxTuples() {
+        return maxTuples;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public long familyMaxTuples() {
+        return familyMaxTuples;
+    }
+
+    public long familyMaxBytes() {
+        return familyMaxBytes;
+    }
+
+    public Overflow overflow() {
+        return overflow;
+    }
+
+    /** Délai d'attente de la politique {@link Overflow#TIMEOUT}, en nanosecondes. */
+    public long timeoutNanos() {
+        return timeoutNanos;
+    }
+
+    /** Retourne vrai si aucune limite n'est fixée. */
+    public boolean isUnbounded() {
+        return maxTuples == UNLIMITED && maxBytes == UNLIMITED
+                && familyMaxTuples == UNLIMITED && familyMaxBytes == UNLIMITED;
+    }
+
+    /** Retourne vrai si une limite porte sur la taille estimée des tuples. */
+    boolean limitsBytes() {
+        return maxBytes != UNLIMITED || familyMaxBytes != UNLIMITED;
+    }
+
+    /** Retourne vrai si une limite porte sur chaque famille. */
+    boolean limitsFamilies() {
+        return familyMaxTuples != UNLIMITED || familyMaxBytes != UNLIMITED;
+    }
+
+    /** Les limites globales seules (espace entier), avec la même politique de débordement. */
+    SpaceLimits globalOnly() {
+        return new SpaceLimits(maxTuples, maxBytes, UNLIMITED, UNLIMITED, overflow, timeoutNanos);
+    }
+
+    /**
+     * Les limites par famille seules : celles de chaque partition d'un espace partitionné, puisqu'une famille
+     * tient dans une partition (les limites globales sont appliquées par {@link SharedQuota}).
+     */
+    SpaceLimits familiesOnly() {
+        return new SpaceLimits(UNLIMITED, UNLIMITED, familyMaxTuples, familyMaxBytes, overflow, timeoutNanos);
+    }
+
+    private static long checkLimit(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("La limite doit être positive: " + limit);
+        }
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "SpaceLimits[maxTuples=" + format(maxTuples) + ", maxBytes=" + format(maxBytes)
+                + ", familyMaxTuples=" + format(familyMaxTuples) + ", familyMaxBytes=" + format(familyMaxBytes)
+                + ", overflow=" + overflow + "]";
+    }
+
+    private static String format(long limit) {
+        return limit == UNLIMITED ? "-" : Long.toString(limit);
+    }
+}
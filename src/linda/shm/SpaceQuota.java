@@ -0,0 +1,240 @@
+package linda.shm;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+
+import linda.SpaceFullException;
+import linda.Tuple;
+
+/**
+ * Occupation d'un espace de tuples et application de ses limites.
+ *
+ * L'index ({@link TupleIndex}) signale chaque ajout et chaque retrait ; un retrait réveille les écrivains
+ * qui attendent de la place. Comme l'index, cette classe n'est pas synchronisée : l'appelant détient
+ * le verrou de l'espace, auquel la condition d'attente est associée.
+ */
+class SpaceQuota implements TupleIndex.Observer {
+
+    private final SpaceLimits limits;
+    private final Condition roomAvailable;
+    private final boolean countBytes;
+    private final boolean perFamily;
+
+    private long tuples;
+    private long bytes;
+    /** Occupation {tuples, octets} de chaque famille, par arité puis par premier champ. */
+    private final Map<Integer, Map<Serializable, long[]>> families = new HashMap<>();
+    private int blockedWriters;
+    private long rejectedWrites;
+
+    SpaceQuota(SpaceLimits limits, Condition roomAvailable) {
+        this.limits = limits;
+        this.roomAvailable = roomAvailable;
+        this.countBytes = limits.limitsBytes();
+        this.perFamily = limits.limitsFamilies();
+    }
+
+    SpaceLimits limits() {
+        return limits;
+    }
+
+    @Override
+    public void added(long seq, Tuple t) {
+        long size = countBytes ? estimateBytes(t) : 0;
+        tuples++;
+        bytes += size;
+        if (perFamily) {
+            long[] family = families.computeIfAbsent(t.size(), k -> new HashMap<>())
+                    .computeIfAbsent(leading(t), k -> new long[2]);
+            family[0]++;
+            family[1] += size;
+        }
+    }
+
+    @Override
+    public void removed(long seq, Tuple t) {
+        long size = countBytes ? estimateBytes(t) : 0;
+        tuples--;
+        bytes -= size;
+        if (perFamily) {
+            Map<Serializable, long[]> byLeading = families.get(t.size());
+            long[] family = byLeading.get(leading(t));
+            if (--family[0] == 0) {
+                byLeading.remove(leading(t));
+            } else {
+                family[1] -= size;
+            }
+        }
+        if (blockedWriters > 0) {
+            roomAvailable.signalAll();
+        }
+    }
+
+    /** Retire en bloc des tuples et leur taille, sans suivi par famille (voir {@link SharedQuota}). */
+    void released(long count, long size) {
+        tuples -= count;
+        bytes -= size;
+        if (blockedWriters > 0) {
+            roomAvailable.signalAll();
+        }
+    }
+
+    @Override
+    public void cleared() {
+        tuples = 0;
+        bytes = 0;
+        families.clear();
+        if (blockedWriters > 0) {
+            roomAvailable.signalAll();
+        }
+    }
+
+    /**
+     * Attend, verrou détenu, que les tuples puissent être ajoutés sans dépasser les limites,
+     * selon la politique de débordement. Lève {@link SpaceFullException} si l'écriture est abandonnée,
+     * ou d'emblée si les tuples ne tiendraient pas même dans un espace vide.
+     */
+    void awaitRoom(Collection<Tuple> toAdd) {
+        if (!fits(toAdd, true)) {
+            rejectedWrites++;
+            throw new SpaceFullException("Écriture plus grande que la capacité de l'espace (" + toAdd.size()
+                    + " tuples, " + limits + ")");
+        }
+        if (fits(toAdd, false)) {
+            return;
+        }
+        SpaceLimits.Overflow overflow = limits.overflow();
+        if (overflow == SpaceLimits.Overflow.REJECT) {
+            throw full("Espace plein");
+        }
+        long deadline = System.nanoTime() + limits.timeoutNanos();
+        blockedWriters++;
+        try {
+            while (!fits(toAdd, false)) {
+                if (overflow == SpaceLimits.Overflow.BLOCK) {
+                    roomAvailable.await();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw full("Espace plein après " + limits.timeoutNanos() / 1_000_000 + " ms d'attente");
+                    }
+                    roomAvailable.awaitNanos(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw full("Interrompu en attendant de la place");
+        } finally {
+            blockedWriters--;
+        }
+    }
+
+    /**
+     * Comme {@link #awaitRoom}, sans attendre : retourne faux si les tuples ne tiennent pas encore
+     * et que la politique de débordement ferait attendre l'écrivain.
+     */
+    boolean tryRoom(Collection<Tuple> toAdd) {
+        if (limits.overflow() != SpaceLimits.Overflow.REJECT && !fits(toAdd, false) && fits(toAdd, true)) {
+            return false;
+        }
+        // Place disponible, ou écriture refusée : awaitRoom ne bloque pas
+        awaitRoom(toAdd);
+        return true;
+    }
+
+    private SpaceFullException full(String message) {
+        rejectedWrites++;
+        return new SpaceFullException(message + " (" + occupancy() + ")");
+    }
+
+    /** Retourne vrai si les tuples tiennent dans l'espace dans son état actuel, ou vide si empty est vrai. */
+    private boolean fits(Collection<Tuple> toAdd, boolean empty) {
+        long addedBytes = 0;
+        Map<List<Object>, long[]> addedFamilies = perFamily ? new HashMap<>() : null;
+        for (Tuple t : toAdd) {
+            long size = countBytes ? estimateBytes(t) : 0;
+            addedBytes += size;
+            if (perFamily) {
+                long[] family = addedFamilies.computeIfAbsent(Arrays.asList(t.size(), leading(t)), k -> new long[2]);
+                family[0]++;
+                family[1] += size;
+                long[] present = empty ? null : presentFamily(t);
+                if (family[0] + (present != null ? present[0] : 0) > limits.familyMaxTuples()
+                        || family[1] + (present != null ? present[1] : 0) > limits.familyMaxBytes()) {
+                    return false;
+                }
+            }
+        }
+        return (empty ? 0 : tuples) + toAdd.size() <= limits.maxTuples()
+                && (empty ? 0 : bytes) + addedBytes <= limits.maxBytes();
+    }
+
+    private long[] presentFamily(Tuple t) {
+        Map<Serializable, long[]> byLeading = families.get(t.size());
+        return byLeading == null ? null : byLeading.get(leading(t));
+    }
+
+    private static Serializable leading(Tuple t) {
+        return t.isEmpty() ? null : t.get(0);
+    }
+
+    /** Occupation de tout l'espace. */
+    Occupancy occupancy() {
+        return new Occupancy(tuples, bytes, limits.maxTuples(), limits.maxBytes(), blockedWriters, rejectedWrites);
+    }
+
+    /** Occupation de la famille de ce tuple (ou motif de premier champ concret) ; suivie seulement si elle est limitée. */
+    Occupancy occupancy(Tuple family) {
+        long[] present = perFamily ? presentFamily(family) : null;
+        return new Occupancy(present != null ? present[0] : 0, present != null ? present[1] : 0,
+                limits.familyMaxTuples(), limits.familyMaxBytes(), 0, 0);
+    }
+
+    /**
+     * Estimation grossière de la mémoire occupée par un tuple, en octets (JVM 64 bits, références compressées).
+     * Elle ne parcourt que le tuple et ses sous-tuples, et compte un forfait pour les autres objets.
+     */
+    static long estimateBytes(Tuple t) {
+        // Objet Tuple et tableau des composants
+        long size = 32 + 4L * t.size();
+        for (Serializable component : t) {
+            size += estimateComponent(component);
+        }
+        return size;
+    }
+
+    private static long estimateComponent(Object o) {
+        if (o == null || o instanceof Class || o instanceof Enum) {
+            // Partagés, ou absents
+            return 0;
+        }
+        if (o instanceof Tuple) {
+            return estimateBytes((Tuple) o);
+        }
+        if (o instanceof String) {
+            return 40 + ((String) o).length();
+        }
+        if (o instanceof Long || o instanceof Double) {
+            return 24;
+        }
+        if (o instanceof Number || o instanceof Boolean || o instanceof Character) {
+            return 16;
+        }
+        if (o instanceof byte[]) {
+            return 16 + ((byte[]) o).length;
+        }
+        if (o instanceof Collection) {
+            long size = 40;
+            for (Object element : (Collection<?>) o) {
+                size += 8 + estimateComponent(element);
+            }
+            return size;
+        }
+        return 64;
+    }
+}
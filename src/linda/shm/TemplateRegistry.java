@@ -0,0 +1,196 @@
+package linda.shm;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import linda.TemplateMatcher;
+import linda.Tuple;
+
+/**
+ * Registre de motifs, indexé comme l'espace de tuples : par arité, puis par valeur du premier champ.
+ *
+ * Sert à retrouver, pour un tuple qui vient d'être écrit, les enregistrements (attentes, callbacks)
+ * dont le motif lui correspond, sans parcourir tout le registre. Les motifs dont le premier
+ * champ n'est pas une valeur concrète sont rangés dans le seau « joker » de leur arité.
+ *
+ * Chaque seau est une liste doublement chaînée intrusive : un enregistrement se retire en O(1).
+ * Cette classe n'est pas synchronisée : l'appelant doit détenir le verrou de l'espace.
+ */
+class TemplateRegistry<R extends TemplateRegistry.Registration> {
+
+    /** Enregistrement d'un motif. Un enregistrement n'appartient qu'à un registre à la fois. */
+    static class Registration {
+        final Tuple template;
+        final TemplateMatcher matcher;
+
+        private long seq;
+        private Bucket bucket;
+        private Registration prev;
+        private Registration next;
+
+        Registration(Tuple template) {
+            this.template = template;
+            this.matcher = TemplateMatcher.forTemplate(template);
+        }
+
+        /** Retourne vrai si l'enregistrement est actuellement dans un registre. */
+        boolean isRegistered() {
+            return bucket != null;
+        }
+    }
+
+    /** Liste chaînée des enregistrements d'un même seau, par numéro d'enregistrement croissant. */
+    private static final class Bucket {
+        final int arity;
+        final Map<Object, Bucket> owner;
+        final Object key;
+        Registration head;
+        Registration tail;
+
+        Bucket(int arity, Map<Object, Bucket> owner, Object key) {
+            this.arity = arity;
+            this.owner = owner;
+            this.key = key;
+        }
+    }
+
+    /** Seaux par arité puis par valeur du premier champ. */
+    private final Map<Integer, Map<Object, Bucket>> byLeading = new HashMap<>();
+    /** Seaux des motifs sans premier champ concret, par arité. */
+    private final Map<Object, Bucket> wildcards = new HashMap<>();
+    private long nextSeq = 0;
+    private int size = 0;
+
+    /** Enregistre un motif. */
+    void add(R registration) {
+        Registration r = registration;
+        if (r.isRegistered()) {
+            throw new IllegalStateException("Already registered");
+        }
+        Tuple template = r.template;
+        int arity = template.size();
+        Bucket bucket;
+        if (isWildcard(template)) {
+            bucket = wildcards.computeIfAbsent(arity, k -> new Bucket(arity, wildcards, k));
+        } else {
+            Map<Object, Bucket> leading = byLeading.computeIfAbsent(arity, k -> new HashMap<>());
+            bucket = leading.computeIfAbsent(template.get(0), k -> new Bucket(arity, leading, k));
+        }
+        r.seq = nextSeq++;
+        r.bucket = bucket;
+        r.prev = bucket.tail;
+        r.next = null;
+        if (bucket.tail == null) {
+            bucket.head = r;
+        } else {
+            bucket.tail.next = r;
+        }
+        bucket.tail = r;
+        size++;
+    }
+
+    /** Retire un enregistrement en O(1). Retourne faux s'il n'était pas enregistré. */
+    boolean remove(R registration) {
+        Registration r = registration;
+        Bucket bucket = r.bucket;
+        if (bucket == null) {
+            return false;
+        }
+        if (r.prev == null) {
+            bucket.head = r.next;
+        } else {
+            r.prev.next = r.next;
+        }
+        if (r.next == null) {
+            bucket.tail = r.prev;
+        } else {
+            r.next.prev = r.prev;
+        }
+        r.prev = null;
+        r.next = null;
+        r.bucket = null;
+        size--;
+        if (bucket.head == null) {
+            bucket.owner.remove(bucket.key);
+            if (bucket.owner != wildcards && bucket.owner.isEmpty()) {
+                byLeading.remove(bucket.arity);
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Retourne, par ordre d'enregistrement, les enregistrements dont le motif correspond au tuple.
+     * Seuls le seau de la valeur de tête du tuple et le seau joker de son arité sont parcourus.
+     */
+    List<R> matching(Tuple t) {
+        List<R> result = new ArrayList<>();
+        int arity = t.size();
+        Bucket wild = wildcards.get(arity);
+        Bucket exact = null;
+        if (arity > 0) {
+            Map<Object, Bucket> leading = byLeading.get(arity);
+            if (leading != null) {
+                exact = leading.get(t.get(0));
+            }
+        }
+        Registration a = exact == null ? null : exact.head;
+        Registration b = wild == null ? null : wild.head;
+        // Fusion des deux seaux par numéro d'enregistrement
+        while (a != null || b != null) {
+            Registration r;
+            if (b == null || (a != null && a.seq < b.seq)) {
+                r = a;
+                a = a.next;
+            } else {
+                r = b;
+                b = b.next;
+            }
+            if (r.matcher.matches(t)) {
+                result.add(cast(r));
+            }
+        }
+        return result;
+    }
+
+    /** Retourne tous les enregistrements, sans ordre particulier. */
+    List<R> all() {
+        List<R> result = new ArrayList<>(size);
+        for (Map<Object, Bucket> leading : byLeading.values()) {
+            for (Bucket bucket : leading.values()) {
+                collect(bucket, result);
+            }
+        }
+        for (Bucket bucket : wildcards.values()) {
+            collect(bucket, result);
+        }
+        return result;
+    }
+
+    private void collect(Bucket bucket, List<R> into) {
+        for (Registration r = bucket.head; r != null; r = r.next) {
+            into.add(cast(r));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private R cast(Registration r) {
+        return (R) r;
+    }
+
+    /** Un motif est un joker s'il n'a pas de premier champ concret. */
+    static boolean isWildcard(Tuple template) {
+        if (template.isEmpty()) {
+            return true;
+        }
+        Serializable lead = template.get(0);
+        return lead instanceof Class || lead instanceof Tuple;
+    }
+}
@@ -0,0 +1,155 @@
+package linda.shm;
+
+import java.util.List;
+
+/**
+ * Roue temporelle hiérarchique : échéances en nombre de tops, planifiées et annulées en O(1).
+ *
+ * Quatre niveaux de 64 cases : le niveau 0 couvre les 64 prochains tops, le niveau 1 les 64² suivants, etc.
+ * Quand le niveau inférieur a fait un tour complet, la case courante du niveau supérieur est redistribuée
+ * (cascade) dans les niveaux inférieurs. Une échéance au-delà de 64⁴ tops reste au dernier niveau
+ * et y est replacée à chaque passage de sa case.
+ *
+ * Chaque case est une liste doublement chaînée intrusive. Cette classe n'est pas synchronisée.
+ */
+class TimingWheel<T extends TimingWheel.Timer> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /** Échéance planifiée dans la roue. */
+    static class Timer {
+        private long deadline;
+        private Timer[] slots;
+        private int slot = -1;
+        private Timer prev;
+        private Timer next;
+
+        /** Retourne vrai si l'échéance est planifiée (ni échue, ni annulée). */
+        boolean isScheduled() {
+            return slot >= 0;
+        }
+
+        /** Retourne le top de l'échéance. */
+        long deadline() {
+            return deadline;
+        }
+    }
+
+    private final Timer[][] wheels = new Timer[LEVELS][SLOTS];
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long startTick) {
+        this.currentTick = startTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    /** Planifie (ou replanifie) une échéance. Une échéance passée échoit au prochain top. */
+    void schedule(T timer, long deadline) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+        }
+        ((Timer) timer).deadline = deadline;
+        place(timer, currentTick + 1);
+        size++;
+    }
+
+    /** Annule une échéance. Retourne faux si elle n'était pas planifiée. */
+    boolean cancel(T timer) {
+        if (!timer.isScheduled()) {
+            return false;
+        }
+        unlink(timer);
+        return true;
+    }
+
+    /** Avance jusqu'au top indiqué et ajoute à expired les échéances atteintes, dans l'ordre des tops. */
+    void advance(long tick, List<T> expired) {
+        if (size == 0) {
+            // Roue vide : rien ne peut échoir, on saute directement au top demandé
+            currentTick = Math.max(currentTick, tick);
+            return;
+        }
+        while (currentTick < tick) {
+            currentTick++;
+            int index = (int) (currentTick & MASK);
+            // Cascade : chaque niveau qui vient de faire un tour redistribue la case suivante du niveau supérieur
+            for (int level = 1; index == 0 && level < LEVELS; level++) {
+                index = (int) ((currentTick >>> (BITS * level)) & MASK);
+                cascade(wheels[level], index);
+            }
+            Timer[] level0 = wheels[0];
+            int slot = (int) (currentTick & MASK);
+            while (level0[slot] != null) {
+                Timer timer = level0[slot];
+                unlink(timer);
+                expired.add(cast(timer));
+            }
+        }
+    }
+
+    private void cascade(Timer[] slots, int index) {
+        Timer timer = slots[index];
+        slots[index] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.slot = -1;
+            // Une échéance du top courant va dans la case de niveau 0 traitée juste après la cascade
+            place(timer, currentTick);
+            timer = next;
+        }
+    }
+
+    /** Range l'échéance dans sa case, au plus tôt au top earliest. */
+    private void place(Timer timer, long earliest) {
+        long deadline = Math.max(timer.deadline, earliest);
+        long delta = deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((deadline >>> (BITS * level)) & MASK);
+        Timer[] slots = wheels[level];
+        timer.slots = slots;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].prev = timer;
+        }
+        slots[slot] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev == null) {
+            timer.slots[timer.slot] = timer.next;
+        } else {
+            timer.prev.next = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.slots = null;
+        timer.slot = -1;
+        size--;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Timer timer) {
+        return (T) timer;
+    }
+}
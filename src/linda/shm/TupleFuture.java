@@ -0,0 +1,59 @@
+package linda.shm;
+
+import java.util.concurrent.CompletableFuture;
+
+import linda.Callback;
+import linda.Linda;
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+
+/**
+ * Demande asynchrone en attente : un callback IMMEDIATE qui complète le futur.
+ * Aucun thread n'attend ; l'annulation du futur retire l'enregistrement du callback.
+ */
+final class TupleFuture extends CompletableFuture<Tuple> implements Callback {
+
+    /** Enregistrement d'un callback, par exemple {@link CentralizedLinda#registerEvent}. */
+    interface Registrar {
+        EventRegistration register(eventMode mode, eventTiming timing, Tuple template, Callback callback);
+    }
+
+    private final Linda space;
+    private final eventMode mode;
+    private volatile EventRegistration registration;
+
+    private TupleFuture(Linda space, eventMode mode) {
+        this.space = space;
+        this.mode = mode;
+    }
+
+    /** Enregistre la demande et retourne son futur, éventuellement déjà complété. */
+    static TupleFuture register(Linda space, Registrar registrar, eventMode mode, Tuple template) {
+        TupleFuture future = new TupleFuture(space, mode);
+        future.registration = registrar.register(mode, eventTiming.IMMEDIATE, template, future);
+        // Annulé avant que l'enregistrement ne soit connu
+        if (future.isCancelled()) {
+            future.registration.cancel();
+        }
+        return future;
+    }
+
+    @Override
+    public void call(Tuple t) {
+        if (!complete(t) && mode == eventMode.TAKE) {
+            // Le futur a été annulé pendant que le callback était déclenché : le tuple pris est rendu
+            space.write(t);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        EventRegistration r = registration;
+        if (cancelled && r != null) {
+            r.cancel();
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,346 @@
+package linda.shm;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.ObjLongConsumer;
+
+import linda.TemplateMatcher;
+import linda.Tuple;
+
+/**
+ * Index de l'espace de tuples : d'abord par arité, puis par valeur du premier champ.
+ *
+ * Un motif dont le premier champ est une valeur concrète ne parcourt que les tuples
+ * de même arité ayant ce premier champ. Un motif dont le premier champ est une classe
+ * (ou un tuple imbriqué) se replie sur l'ensemble des tuples de même arité.
+ * Dans chaque seau, les tuples sont rangés par numéro d'insertion croissant (ordre FIFO).
+ *
+ * Cette classe n'est pas synchronisée : l'appelant doit détenir le verrou de l'espace.
+ */
+class TupleIndex extends AbstractCollection<Tuple> {
+
+    /** Numéro de reprise d'un parcours par morceaux terminé. */
+    static final long END = Long.MAX_VALUE;
+
+    /** Seaux par arité, dans l'ordre de première apparition. */
+    private final Map<Integer, ArityBucket> byArity = new LinkedHashMap<>();
+    private long nextSeq = 0;
+    private int size = 0;
+    /** Observateurs des modifications (limites de capacité, journal), souvent aucun. */
+    private Observer[] observers = new Observer[0];
+
+    /** Modifications de l'index, signalées verrou détenu. */
+    interface Observer {
+        void added(long seq, Tuple t);
+
+        void removed(long seq, Tuple t);
+
+        void cleared();
+    }
+
+    /** Ajoute un observateur des modifications, à la construction de l'espace. */
+    void addObserver(Observer observer) {
+        observers = Arrays.copyOf(observers, observers.length + 1);
+        observers[observers.length - 1] = observer;
+    }
+
+    /** Tuples d'une même arité. */
+    private static final class ArityBucket {
+        /** Tous les tuples de cette arité : seau de repli pour les motifs sans premier champ concret. */
+        final TreeMap<Long, Tuple> all = new TreeMap<>();
+        /** Tuples de cette arité, par valeur du premier champ. */
+        final Map<Serializable, TreeMap<Long, Tuple>> byLeading = new HashMap<>();
+    }
+
+    /** Ajoute un tuple dans l'index. Le tuple ne doit plus être modifié ensuite. */
+    @Override
+    public boolean add(Tuple t) {
+        insert(t);
+        return true;
+    }
+
+    /** Ajoute un tuple et retourne son numéro d'insertion. */
+    long insert(Tuple t) {
+        return insert(nextSeq, t);
+    }
+
+    /**
+     * Ajoute un tuple sous un numéro d'insertion donné, celui qu'il avait avant un redémarrage ;
+     * les insertions suivantes sont numérotées après lui. Le numéro ne doit pas être déjà dans l'index.
+     */
+    long insert(long seq, Tuple t) {
+        nextSeq = Math.max(nextSeq, seq + 1);
+        ArityBucket bucket = byArity.computeIfAbsent(t.size(), k -> new ArityBucket());
+        bucket.all.put(seq, t);
+        if (!t.isEmpty()) {
+            bucket.byLeading.computeIfAbsent(t.get(0), k -> new TreeMap<>()).put(seq, t);
+        }
+        size++;
+        for (Observer observer : observers) {
+            observer.added(seq, t);
+        }
+        return seq;
+    }
+
+    /** Retourne vrai si ce tuple, inséré sous ce numéro, est toujours dans l'index. */
+    boolean contains(long seq, Tuple t) {
+        ArityBucket bucket = byArity.get(t.size());
+        return bucket != null && bucket.all.get(seq) == t;
+    }
+
+    /** Retire ce tuple, inséré sous ce numéro. Retourne faux s'il n'était plus dans l'index. */
+    boolean remove(long seq, Tuple t) {
+        if (!contains(seq, t)) {
+            return false;
+        }
+        unlink(seq, t);
+        return true;
+    }
+
+    /** Retourne le premier tuple correspondant au motif, ou null. */
+    Tuple find(Tuple template) {
+        Map.Entry<Long, Tuple> e = firstMatch(template);
+        return e == null ? null : e.getValue();
+    }
+
+    /** Retire et retourne le premier tuple correspondant au motif, ou null. */
+    Tuple removeMatching(Tuple template) {
+        Map.Entry<Long, Tuple> e = firstMatch(template);
+        if (e == null) {
+            return null;
+        }
+        // Lire l'entrée avant le retrait : TreeMap peut réutiliser le nœud supprimé
+        long seq = e.getKey();
+        Tuple t = e.getValue();
+        unlink(seq, t);
+        return t;
+    }
+
+    /** Retourne tous les tuples correspondant au motif. */
+    List<Tuple> findAll(Tuple template) {
+        return findAll(template, Integer.MAX_VALUE);
+    }
+
+    /** Retourne au plus max tuples correspondant au motif, les plus anciens d'abord. */
+    List<Tuple> findAll(Tuple template, int max) {
+        NavigableMap<Long, Tuple> candidates = candidates(template);
+        if (candidates == null || max <= 0) {
+            return new ArrayList<>();
+        }
+        TemplateMatcher matcher = TemplateMatcher.forTemplate(template);
+        List<Tuple> results = new ArrayList<>();
+        for (Tuple t : candidates.values()) {
+            if (matcher.matches(t)) {
+                results.add(t);
+                if (results.size() == max) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    /** Retire et retourne tous les tuples correspondant au motif. */
+    List<Tuple> removeAll(Tuple template) {
+        return removeAll(template, Integer.MAX_VALUE);
+    }
+
+    /** Retire et retourne au plus max tuples correspondant au motif, les plus anciens d'abord. */
+    List<Tuple> removeAll(Tuple template, int max) {
+        NavigableMap<Long, Tuple> candidates = candidates(template);
+        if (candidates == null || max <= 0) {
+            return new ArrayList<>();
+        }
+        TemplateMatcher matcher = TemplateMatcher.forTemplate(template);
+        List<Long> seqs = new ArrayList<>();
+        List<Tuple> results = new ArrayList<>();
+        for (Map.Entry<Long, Tuple> e : candidates.entrySet()) {
+            if (matcher.matches(e.getValue())) {
+                seqs.add(e.getKey());
+                results.add(e.getValue());
+                if (results.size() == max) {
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < seqs.size(); i++) {
+            unlink(seqs.get(i), results.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Parcours par morceaux : ajoute à into au plus max tuples correspondant au motif et insérés après afterSeq,
+     * en examinant au plus scanLimit candidats. Retourne le numéro après lequel reprendre, ou {@link #END}.
+     * Les numéros d'insertion étant croissants, un tuple n'est jamais retourné deux fois.
+     */
+    long findAfter(Tuple template, long afterSeq, int max, int scanLimit, List<Tuple> into) {
+        NavigableMap<Long, Tuple> candidates = candidates(template);
+        if (candidates == null) {
+            return END;
+        }
+        TemplateMatcher matcher = TemplateMatcher.forTemplate(template);
+        int found = 0;
+        int scanned = 0;
+        for (Map.Entry<Long, Tuple> e : candidates.tailMap(afterSeq, false).entrySet()) {
+            if (matcher.matches(e.getValue())) {
+                into.add(e.getValue());
+                found++;
+            }
+            if (found == max || ++scanned == scanLimit) {
+                return e.getKey();
+            }
+        }
+        return END;
+    }
+
+    /** Retire un tuple précis (comparaison par identité). */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Tuple)) {
+            return false;
+        }
+        Tuple t = (Tuple) o;
+        ArityBucket bucket = byArity.get(t.size());
+        if (bucket == null) {
+            return false;
+        }
+        NavigableMap<Long, Tuple> candidates = t.isEmpty() ? bucket.all : bucket.byLeading.get(t.get(0));
+        if (candidates == null) {
+            return false;
+        }
+        for (Map.Entry<Long, Tuple> e : candidates.entrySet()) {
+            if (e.getValue() == t) {
+                long seq = e.getKey();
+                unlink(seq, t);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        byArity.clear();
+        size = 0;
+        for (Observer observer : observers) {
+            observer.cleared();
+        }
+    }
+
+    /** Passe chaque tuple avec son numéro d'insertion, arité par arité. */
+    void forEachEntry(ObjLongConsumer<Tuple> action) {
+        for (ArityBucket bucket : byArity.values()) {
+            for (Map.Entry<Long, Tuple> e : bucket.all.entrySet()) {
+                action.accept(e.getValue(), e.getKey());
+            }
+        }
+    }
+
+    /** Parcourt tous les tuples, arité par arité. */
+    @Override
+    public Iterator<Tuple> iterator() {
+        return new Iterator<Tuple>() {
+            private final Iterator<ArityBucket> buckets = new ArrayList<>(byArity.values()).iterator();
+            private Iterator<Map.Entry<Long, Tuple>> current = Collections.emptyIterator();
+            private Map.Entry<Long, Tuple> last;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && buckets.hasNext()) {
+                    current = buckets.next().all.entrySet().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<Long, Tuple> e = current.next();
+                last = new AbstractMap.SimpleImmutableEntry<>(e);
+                return e.getValue();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                // Le retrait passe par l'itérateur courant pour ne pas l'invalider
+                current.remove();
+                unlinkLeading(last.getKey(), last.getValue());
+                last = null;
+            }
+        };
+    }
+
+    /** Seau à parcourir pour ce motif : le seau de la valeur de tête si elle est concrète, sinon toute l'arité. */
+    private NavigableMap<Long, Tuple> candidates(Tuple template) {
+        ArityBucket bucket = byArity.get(template.size());
+        if (bucket == null) {
+            return null;
+        }
+        if (TemplateRegistry.isWildcard(template)) {
+            return bucket.all;
+        }
+        return bucket.byLeading.get(template.get(0));
+    }
+
+    private Map.Entry<Long, Tuple> firstMatch(Tuple template) {
+        NavigableMap<Long, Tuple> candidates = candidates(template);
+        if (candidates == null) {
+            return null;
+        }
+        TemplateMatcher matcher = TemplateMatcher.forTemplate(template);
+        for (Map.Entry<Long, Tuple> e : candidates.entrySet()) {
+            if (matcher.matches(e.getValue())) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private void unlink(long seq, Tuple t) {
+        ArityBucket bucket = byArity.get(t.size());
+        bucket.all.remove(seq);
+        unlinkLeading(seq, t);
+    }
+
+    /** Retire le tuple du seau de sa valeur de tête, et supprime les seaux devenus vides. */
+    private void unlinkLeading(long seq, Tuple t) {
+        ArityBucket bucket = byArity.get(t.size());
+        if (!t.isEmpty()) {
+            TreeMap<Long, Tuple> leading = bucket.byLeading.get(t.get(0));
+            leading.remove(seq);
+            if (leading.isEmpty()) {
+                bucket.byLeading.remove(t.get(0));
+            }
+        }
+        if (bucket.all.isEmpty()) {
+            byArity.remove(t.size());
+        }
+        size--;
+        for (Observer observer : observers) {
+            observer.removed(seq, t);
+        }
+    }
+}
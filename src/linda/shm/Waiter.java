@@ -0,0 +1,36 @@
+package linda.shm;
+
+import java.util.concurrent.locks.Condition;
+
+import linda.Linda.eventMode;
+import linda.Tuple;
+
+/**
+ * Thread bloqué dans un take ou un read, en attente d'un tuple correspondant à son motif.
+ * Chaque attente a sa propre condition : une écriture ne réveille que les attentes concernées.
+ */
+class Waiter extends TemplateRegistry.Registration {
+
+    final eventMode mode;
+    final Condition condition;
+
+    /** Vrai une fois réveillé par une écriture. */
+    boolean signalled;
+    /** Tuple dont l'écriture a provoqué le réveil, et son numéro d'insertion. */
+    Tuple trigger;
+    long triggerSeq;
+
+    Waiter(Tuple template, eventMode mode, Condition condition) {
+        super(template);
+        this.mode = mode;
+        this.condition = condition;
+    }
+
+    /** Réveille le thread en attente. L'appelant doit détenir le verrou associé à la condition. */
+    void signal(Tuple t, long seq) {
+        signalled = true;
+        trigger = t;
+        triggerSeq = seq;
+        condition.signal();
+    }
+}
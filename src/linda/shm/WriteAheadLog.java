@@ -0,0 +1,348 @@
+package linda.shm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import linda.Tuple;
+import linda.TupleCodec;
+
+/**
+ * Journal en ajout seul des modifications d'un espace de tuples.
+ *
+ * Chaque enregistrement porte son numéro d'ordre dans le journal (LSN), le numéro d'insertion du tuple
+ * concerné dans l'index, et se termine par un CRC32 : à la relecture, un enregistrement incomplet ou
+ * corrompu (arrêt brutal pendant une écriture) marque la fin du journal.
+ * <pre>
+ *   WRITE  : type, lsn, seq, longueur, tuple encodé ({@link TupleCodec}), crc
+ *   REMOVE : type, lsn, seq, crc
+ *   LEASE  : type, lsn, seq, échéance (heure murale, ms), crc
+ *   CLEAR  : type, lsn, crc
+ * </pre>
+ * Chaque enregistrement est écrit dans le segment dès son ajout, verrou de l'espace détenu : il est alors
+ * dans le cache du système et survit à l'arrêt brutal du processus. Seul le fsync est groupé par lots
+ * (voir {@link JournalPolicy}), hors de ce verrou, par un thread commun.
+ *
+ * Le journal est découpé en segments numérotés ({@code <base>.<n>}). Une sauvegarde complète termine
+ * le segment courant ({@link #rotate}) : une fois la sauvegarde publiée, les segments terminés,
+ * qu'elle couvre entièrement, sont supprimés. Les segments sont écrits sur disque dans l'ordre :
+ * un segment n'est jamais forcé sur disque avant la fin des précédents. Chaque ouverture du journal
+ * commence un nouveau segment, si bien qu'on n'ajoute jamais derrière un enregistrement incomplet.
+ */
+class WriteAheadLog implements Closeable {
+
+    private static final byte REMOVE = 2;
+    private static final byte LEASE = 3;
+    private static final byte CLEAR = 4;
+    private static final byte WRITE = 5;
+
+    /** Thread commun qui force les journaux sur disque. */
+    private static final ScheduledExecutorService SYNCER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "linda-journal-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Modifications relues depuis le journal. */
+    interface Replay {
+        void write(long seq, Tuple t);
+
+        void remove(long seq);
+
+        void lease(long seq, long expiryMillis);
+
+        void clear();
+    }
+
+    private final File base;
+    private final JournalPolicy policy;
+    private final ScheduledFuture<?> periodicSync;
+    /** Sérialise les fsync, pour que les segments soient forcés sur disque dans l'ordre. */
+    private final Object ioLock = new Object();
+
+    // Protégés par this
+    private long segment;
+    private FileChannel channel;
+    /** Segments terminés dont les derniers enregistrements ne sont pas encore forcés sur disque. */
+    private final List<FileChannel> sealed = new ArrayList<>();
+    /** Enregistrements écrits dans le segment courant depuis le dernier fsync. */
+    private int pendingRecords;
+    private boolean syncScheduled;
+    private long lastLsn;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final TupleCodec.Writer codec = new TupleCodec.Writer();
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Ouvre le journal dans un nouveau segment, après les segments existants ;
+     * les enregistrements suivants sont numérotés après lastLsn.
+     */
+    WriteAheadLog(File base, JournalPolicy policy, long lastLsn) throws IOException {
+        this.base = base;
+        List<File> existing = segments(base);
+        this.segment = existing.isEmpty() ? 0 : segmentNumber(base, existing.get(existing.size() - 1)) + 1;
+        this.channel = open(segment);
+        this.policy = policy;
+        this.lastLsn = lastLsn;
+        this.periodicSync = SYNCER.scheduleWithFixedDelay(this::syncQuietly,
+                policy.syncIntervalMillis(), policy.syncIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private FileChannel open(long number) throws IOException {
+        return FileChannel.open(new File(base.getPath() + "." + number).toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /** Retourne les segments du journal de cette base, dans l'ordre. */
+    static List<File> segments(File base) {
+        File dir = base.getAbsoluteFile().getParentFile();
+        String prefix = base.getName() + ".";
+        List<File> segments = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.startsWith(prefix)
+                && name.length() > prefix.length() && name.substring(prefix.length()).chars().allMatch(Character::isDigit));
+        if (files != null) {
+            segments.addAll(Arrays.asList(files));
+        }
+        segments.sort(Comparator.comparingLong(f -> segmentNumber(base, f)));
+        return segments;
+    }
+
+    private static long segmentNumber(File base, File segment) {
+        return Long.parseLong(segment.getName().substring(base.getName().length() + 1));
+    }
+
+    /**
+     * Termine le segment courant, verrou de l'espace détenu : les enregistrements suivants vont dans
+     * un nouveau segment. Retourne le numéro du segment terminé, pour {@link #deleteSegmentsUpTo}.
+     * Le segment terminé est forcé sur disque et fermé au prochain {@link #sync}.
+     */
+    synchronized long rotate() throws IOException {
+        FileChannel next = open(segment + 1);
+        sealed.add(channel);
+        channel = next;
+        pendingRecords = 0;
+        return segment++;
+    }
+
+    /** Supprime les segments terminés jusqu'à celui-ci, couverts par une sauvegarde publiée. */
+    void deleteSegmentsUpTo(long number) {
+        for (File f : segments(base)) {
+            if (segmentNumber(base, f) <= number && !f.delete()) {
+                System.err.println("Impossible de supprimer le segment de journal: " + f);
+            }
+        }
+    }
+
+    /** Numéro du dernier enregistrement ajouté. */
+    synchronized long lastLsn() {
+        return lastLsn;
+    }
+
+    synchronized void logWrite(long seq, Tuple t) {
+        try {
+            begin(WRITE);
+            recordOut.writeLong(seq);
+            // Chaque enregistrement est décodable seul : la table des classes repart de zéro
+            codec.reset();
+            codec.write(t);
+            recordOut.writeInt(codec.size());
+            codec.writeTo(recordOut);
+            end();
+        } catch (IOException e) {
+            // Composant non sérialisable, ou écriture du segment impossible : l'opération échoue
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void logRemove(long seq) {
+        try {
+            begin(REMOVE);
+            recordOut.writeLong(seq);
+            end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void logLease(long seq, long expiryMillis) {
+        try {
+            begin(LEASE);
+            recordOut.writeLong(seq);
+            recordOut.writeLong(expiryMillis);
+            end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void logClear() {
+        try {
+            begin(CLEAR);
+            end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void begin(byte type) throws IOException {
+        record.reset();
+        recordOut.writeByte(type);
+        recordOut.writeLong(++lastLsn);
+    }
+
+    /** Termine l'enregistrement et l'écrit dans le segment courant, sans attendre le fsync. */
+    private void end() throws IOException {
+        crc.reset();
+        crc.update(record.toByteArray());
+        recordOut.writeInt((int) crc.getValue());
+        ByteBuffer buffer = ByteBuffer.wrap(record.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        // Lot complet : forcé sur disque par le thread commun, pas par l'écrivain qui détient le verrou de l'espace
+        if (++pendingRecords >= policy.syncEveryRecords() && !syncScheduled) {
+            syncScheduled = true;
+            SYNCER.execute(this::syncQuietly);
+        }
+    }
+
+    /** Force sur disque les enregistrements écrits, en commençant par ceux des segments terminés. */
+    void sync() throws IOException {
+        synchronized (ioLock) {
+            List<FileChannel> toSeal;
+            FileChannel target;
+            boolean pending;
+            synchronized (this) {
+                syncScheduled = false;
+                toSeal = new ArrayList<>(sealed);
+                sealed.clear();
+                target = channel;
+                pending = pendingRecords > 0;
+                pendingRecords = 0;
+            }
+            for (FileChannel c : toSeal) {
+                c.force(false);
+                c.close();
+            }
+            if (pending) {
+                target.force(false);
+            }
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de l'écriture du journal: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        periodicSync.cancel(false);
+        sync();
+        synchronized (this) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Rejoue les enregistrements des segments du journal postérieurs à afterLsn, jusqu'au premier
+     * enregistrement incomplet ou corrompu. Retourne le numéro du dernier enregistrement lu (ou afterLsn).
+     */
+    static long replay(File base, long afterLsn, Replay replay) throws IOException {
+        long last = afterLsn;
+        for (File segment : segments(base)) {
+            long[] lastRead = {last};
+            if (!replaySegment(segment, afterLsn, replay, lastRead)) {
+                // Les segments suivants n'ont pas pu être écrits après un enregistrement perdu
+                return lastRead[0];
+            }
+            last = lastRead[0];
+        }
+        return last;
+    }
+
+    /** Rejoue un segment ; retourne faux s'il se termine par un enregistrement incomplet ou corrompu. */
+    private static boolean replaySegment(File file, long afterLsn, Replay replay, long[] last) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), new CRC32());
+             DataInputStream in = new DataInputStream(checked)) {
+            while (true) {
+                checked.getChecksum().reset();
+                int type = in.read();
+                if (type < 0) {
+                    return true;
+                }
+                long lsn;
+                long seq = -1;
+                long expiry = 0;
+                byte[] bytes = null;
+                try {
+                    lsn = in.readLong();
+                    if (type == WRITE || type == REMOVE || type == LEASE) {
+                        seq = in.readLong();
+                    }
+                    if (type == WRITE) {
+                        int length = in.readInt();
+                        if (length < 0 || length > file.length()) {
+                            return false;
+                        }
+                        bytes = new byte[length];
+                        in.readFully(bytes);
+                    } else if (type == LEASE) {
+                        expiry = in.readLong();
+                    } else if (type != REMOVE && type != CLEAR) {
+                        return false;
+                    }
+                    int expected = (int) checked.getChecksum().getValue();
+                    if (in.readInt() != expected) {
+                        return false;
+                    }
+                } catch (EOFException e) {
+                    // Dernier enregistrement incomplet
+                    return false;
+                }
+                if (lsn <= afterLsn) {
+                    continue;
+                }
+                last[0] = lsn;
+                switch (type) {
+                    case WRITE:
+                        replay.write(seq, TupleCodec.decode(bytes));
+                        break;
+                    case REMOVE:
+                        replay.remove(seq);
+                        break;
+                    case LEASE:
+                        replay.lease(seq, expiry);
+                        break;
+                    default:
+                        replay.clear();
+                }
+            }
+        }
+    }
+}
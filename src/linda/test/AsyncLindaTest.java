@@ -0,0 +1,115 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.AsyncLinda;
+import linda.Linda;
+import linda.SpaceFullException;
+import linda.Tuple;
+import linda.shm.CallbackDispatcher;
+import linda.shm.CentralizedLinda;
+import linda.shm.PartitionedLinda;
+import linda.shm.SpaceLimits;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncLindaTest {
+
+    private static <L extends Linda & AsyncLinda> void checkPendingTake(L linda, Tuple template) throws Exception {
+        CompletableFuture<Tuple> future = linda.takeAsync(template);
+        assertFalse("No tuple yet", future.isDone());
+
+        linda.write(new Tuple("job", 1));
+        assertEquals(new Tuple("job", 1), future.get(1, TimeUnit.SECONDS));
+        assertNull("Tuple should have been taken", linda.tryRead(new Tuple("job", 1)));
+    }
+
+    @Test
+    public void testPendingTakeCompletedByWrite() throws Exception {
+        checkPendingTake(new CentralizedLinda(), new Tuple("job", Integer.class));
+        checkPendingTake(new PartitionedLinda(4), new Tuple("job", Integer.class));
+        checkPendingTake(new PartitionedLinda(4), new Tuple(String.class, Integer.class));
+    }
+
+    @Test
+    public void testPresentTupleCompletesImmediately() throws Exception {
+        CentralizedLinda linda = new CentralizedLinda();
+        linda.write(new Tuple("job", 1));
+
+        CompletableFuture<Tuple> read = linda.readAsync(new Tuple("job", Integer.class));
+        assertTrue(read.isDone());
+        assertEquals(new Tuple("job", 1), read.get());
+        assertNotNull("Read should leave the tuple", linda.tryRead(new Tuple("job", 1)));
+
+        assertEquals(new Tuple("job", 2), linda.writeAsync(new Tuple("job", 2)).get());
+        assertEquals(2, linda.readAll(new Tuple("job", Integer.class)).size());
+    }
+
+    private static <L extends Linda & AsyncLinda> void checkWriteIntoFullSpace(L linda) throws Exception {
+        linda.write(new Tuple("job", 1));
+        CompletableFuture<Tuple> written = linda.writeAsync(new Tuple("job", 2));
+        assertFalse("The write waits for room without blocking the caller", written.isDone());
+
+        assertEquals(new Tuple("job", 1), linda.take(new Tuple("job", 1)));
+        assertEquals(new Tuple("job", 2), written.get(1, TimeUnit.SECONDS));
+        assertNotNull(linda.tryRead(new Tuple("job", 2)));
+    }
+
+    @Test
+    public void testWriteIntoFullSpaceDoesNotBlock() throws Exception {
+        SpaceLimits limits = SpaceLimits.unbounded().withMaxTuples(1).blockOnOverflow();
+        checkWriteIntoFullSpace(new CentralizedLinda(CallbackDispatcher.direct(), limits));
+        checkWriteIntoFullSpace(new PartitionedLinda(4, CallbackDispatcher.direct(), limits));
+        checkWriteIntoFullSpace(new PartitionedLinda(4, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withFamilyMaxTuples(1).blockOnOverflow()));
+    }
+
+    @Test
+    public void testRejectedWriteFailsFuture() throws Exception {
+        CentralizedLinda linda = new CentralizedLinda(CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(1).rejectOnOverflow());
+        linda.write(new Tuple("job", 1));
+        CompletableFuture<Tuple> written = linda.writeAsync(new Tuple("job", 2));
+        assertTrue("A rejected write is reported through the future", written.isCompletedExceptionally());
+        try {
+            written.get();
+            fail("The space is full");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SpaceFullException);
+        }
+        assertNull(linda.tryRead(new Tuple("job", 2)));
+    }
+
+    @Test
+    public void testCancelledTakeLeavesTuple() throws Exception {
+        CentralizedLinda linda = new CentralizedLinda();
+        CompletableFuture<Tuple> future = linda.takeAsync(new Tuple("job", Integer.class));
+        assertTrue(future.cancel(false));
+
+        linda.write(new Tuple("job", 1));
+        assertNotNull("Cancelled request should not take the tuple", linda.tryRead(new Tuple("job", 1)));
+    }
+
+    @Test
+    public void testManyPendingRequestsWithoutThreads() throws Exception {
+        PartitionedLinda linda = new PartitionedLinda(8);
+        int requests = 10_000;
+        int threadsBefore = Thread.activeCount();
+        List<CompletableFuture<Tuple>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(linda.takeAsync(new Tuple("job", i)));
+        }
+        assertTrue("Pending requests should not hold threads", Thread.activeCount() <= threadsBefore + 1);
+
+        for (int i = requests - 1; i >= 0; i--) {
+            linda.write(new Tuple("job", i));
+        }
+        for (int i = 0; i < requests; i++) {
+            assertEquals(i, futures.get(i).get(1, TimeUnit.SECONDS).get(1));
+        }
+        assertTrue(linda.readAll(new Tuple("job", Integer.class)).isEmpty());
+    }
+}
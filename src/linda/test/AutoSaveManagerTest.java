@@ -0,0 +1,116 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.Tuple;
+import linda.server.AutoSaveManager;
+import linda.shm.PersistentCentralizedLinda;
+import java.io.File;
+import java.util.function.BooleanSupplier;
+
+public class AutoSaveManagerTest extends SaveFileTest {
+
+    private static boolean await(BooleanSupplier condition, long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Test
+    public void testSaveMetrics() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        assertEquals(0, linda.mutationsSinceSave());
+
+        linda.write(new Tuple("a", 1));
+        linda.write(new Tuple("a", 2));
+        linda.take(new Tuple("a", 1));
+        assertEquals(3, linda.mutationsSinceSave());
+        assertTrue(linda.bytesChangedSinceSave() > 0);
+
+        linda.saveTupleSpace();
+        assertEquals(0, linda.mutationsSinceSave());
+        assertEquals(0, linda.bytesChangedSinceSave());
+        assertEquals(3, linda.mutationCount());
+        assertEquals(1, linda.saveCount());
+        assertEquals(new File(saveFile).length(), linda.lastSaveBytes());
+
+        // Une copie dans un autre fichier ne marque pas l'espace comme sauvegardé
+        linda.write(new Tuple("a", 3));
+        linda.saveTupleSpace(new File(dir, "copy.ser").getPath());
+        assertEquals(1, linda.mutationsSinceSave());
+        assertEquals(1, linda.saveCount());
+
+        // Un espace rechargé est identique à sa sauvegarde
+        PersistentCentralizedLinda reloaded = new PersistentCentralizedLinda(saveFile);
+        reloaded.loadTupleSpace();
+        assertEquals(0, reloaded.mutationsSinceSave());
+    }
+
+    @Test
+    public void testCleanSpaceIsNotSaved() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        AutoSaveManager autoSave = new AutoSaveManager(linda, 0, 1000, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        autoSave.startAutoSave();
+        try {
+            assertTrue(await(() -> autoSave.skippedCleanChecks() >= 5, 2000));
+            assertEquals(0, autoSave.autoSaveCount());
+            assertFalse(new File(saveFile).exists());
+
+            linda.write(new Tuple("a", 1));
+            assertTrue(await(() -> linda.saveCount() == 1, 2000));
+            long skipped = autoSave.skippedCleanChecks();
+            assertTrue(await(() -> autoSave.skippedCleanChecks() > skipped + 5, 2000));
+            assertEquals(1, linda.saveCount());
+        } finally {
+            autoSave.stopAutoSave();
+        }
+    }
+
+    @Test
+    public void testEarlySaveAfterMutations() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        AutoSaveManager autoSave = new AutoSaveManager(linda, 3600, 100, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        autoSave.startAutoSave();
+        try {
+            for (int i = 0; i < 99; i++) {
+                linda.write(new Tuple("a", i));
+            }
+            Thread.sleep(100);
+            assertEquals("Below the threshold, the interval is not reached", 0, linda.saveCount());
+
+            linda.write(new Tuple("a", 99));
+            assertTrue(await(() -> autoSave.autoSaveCount() == 1, 2000));
+            assertEquals(1, linda.saveCount());
+        } finally {
+            autoSave.stopAutoSave();
+        }
+    }
+
+    @Test
+    public void testEarlySaveDeferredDuringBurst() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        AutoSaveManager autoSave = new AutoSaveManager(linda, 3600, 10, Long.MAX_VALUE, 100, 20);
+        autoSave.startAutoSave();
+        try {
+            // Rafale : largement plus de 100 modifications par seconde
+            long end = System.currentTimeMillis() + 300;
+            int i = 0;
+            while (System.currentTimeMillis() < end) {
+                linda.write(new Tuple("a", i++));
+                Thread.sleep(1);
+            }
+            assertEquals(0, linda.saveCount());
+            assertTrue(autoSave.deferredSaves() > 0);
+
+            // Accalmie : la sauvegarde anticipée a lieu
+            assertTrue(await(() -> linda.saveCount() == 1, 2000));
+        } finally {
+            autoSave.stopAutoSave();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import linda.Callback;
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+import linda.server.LindaClient;
+import linda.server.LindaServer;
+import linda.server.NioLindaServer;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CallbackChannelTest {
+
+    private static final int REGISTRY_PORT = 4098;
+    private static Registry registry;
+
+    private LindaServer server;
+    private NioLindaServer nio;
+
+    @Before
+    public void setUp() throws Exception {
+        if (registry == null) {
+            System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+            registry = LocateRegistry.createRegistry(REGISTRY_PORT);
+        }
+        server = new LindaServer();
+        registry.rebind("CallbackChannelTest", server);
+        nio = new NioLindaServer(server, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        nio.close();
+        registry.unbind("CallbackChannelTest");
+        UnicastRemoteObject.unexportObject(server, true);
+    }
+
+    /** Callback qui se réenregistre après chaque événement, comme le tableau blanc. */
+    private static final class Reregistering implements Callback {
+        private final LindaClient client;
+        private final CountDownLatch events;
+
+        Reregistering(LindaClient client, int events) {
+            this.client = client;
+            this.events = new CountDownLatch(events);
+        }
+
+        @Override
+        public void call(Tuple t) {
+            events.countDown();
+            if (events.getCount() > 0) {
+                client.eventRegister(eventMode.TAKE, eventTiming.IMMEDIATE, new Tuple("draw", Integer.class), this);
+            }
+        }
+    }
+
+    private void checkReregistration(LindaClient client, int exported) throws Exception {
+        int events = 200;
+        Reregistering callback = new Reregistering(client, events);
+        client.eventRegister(eventMode.TAKE, eventTiming.IMMEDIATE, new Tuple("draw", Integer.class), callback);
+        for (int i = 0; i < events; i++) {
+            client.write(new Tuple("draw", i));
+        }
+        assertTrue(callback.events.await(10, TimeUnit.SECONDS));
+
+        assertEquals("One endpoint per client, whatever the number of registrations", exported, client.exportedObjectCount());
+        // Les enregistrements déclenchés sont libérés aussitôt
+        assertEquals(0, client.callbackRegistrationCount());
+        assertEquals(0, server.callbackRegistrationCount());
+        assertTrue(client.readAll(new Tuple("draw", Integer.class)).isEmpty());
+    }
+
+    @Test
+    public void testRmiClientExportsOneChannel() throws Exception {
+        LindaClient client = new LindaClient("//localhost:" + REGISTRY_PORT + "/CallbackChannelTest");
+        assertEquals(0, client.exportedObjectCount());
+        checkReregistration(client, 1);
+    }
+
+    @Test
+    public void testNioClientExportsNothing() throws Exception {
+        LindaClient client = new LindaClient("nio://localhost:" + nio.port());
+        checkReregistration(client, 0);
+    }
+
+    @Test
+    public void testPendingRegistrationsShareChannel() throws Exception {
+        LindaClient client = new LindaClient("//localhost:" + REGISTRY_PORT + "/CallbackChannelTest");
+        AtomicInteger fired = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            client.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("event", i), t -> fired.incrementAndGet());
+        }
+        client.takeAsync(new Tuple("job", Integer.class));
+        assertEquals(10, client.callbackRegistrationCount());
+        assertEquals(10, server.callbackRegistrationCount());
+        assertEquals("Async requests and callbacks use the same channel", 1, server.clientChannelCount());
+        assertEquals(1, client.exportedObjectCount());
+
+        for (int i = 0; i < 10; i++) {
+            client.write(new Tuple("event", i));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fired.get() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(10, fired.get());
+        assertEquals(0, client.callbackRegistrationCount());
+        assertEquals(0, server.callbackRegistrationCount());
+    }
+}
@@ -0,0 +1,176 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+import linda.Callback;
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+import linda.shm.CallbackDispatcher;
+import linda.shm.CentralizedLinda;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CallbackDispatcherTest {
+
+    private CallbackDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testDirectCallbackRunsOutsideLock() throws InterruptedException {
+        CentralizedLinda linda = new CentralizedLinda();
+        final boolean[] otherThreadDone = { false };
+        linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("evt", Integer.class), t -> {
+            // Bloquerait si le callback était appelé verrou détenu
+            Thread other = new Thread(() -> linda.write(new Tuple("other", 1)));
+            other.start();
+            try {
+                other.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            otherThreadDone[0] = !other.isAlive();
+        });
+        linda.write(new Tuple("evt", 1));
+
+        assertTrue("Another thread should be able to write from the callback", otherThreadDone[0]);
+        assertNotNull(linda.tryRead(new Tuple("other", 1)));
+    }
+
+    @Test
+    public void testDirectLongBurstDoesNotGrowStack() throws InterruptedException {
+        dispatcher = CallbackDispatcher.direct();
+        final int count = 200_000;
+        final int[] received = { 0 };
+        Callback callback = t -> received[0]++;
+        // Petite pile : une reprogrammation récursive par tranche d'événements la ferait déborder
+        Thread burst = new Thread(null, () -> {
+            CallbackDispatcher.Batch batch = dispatcher.batch();
+            for (int i = 0; i < count; i++) {
+                batch.add(callback, new Tuple("evt", i));
+            }
+            batch.submit();
+        }, "burst", 128 * 1024);
+        burst.start();
+        burst.join(10_000);
+
+        assertEquals(count, received[0]);
+        assertEquals(0, dispatcher.queueDepth());
+    }
+
+    @Test
+    public void testPoolLongBurstWithFullQueueDoesNotGrowStack() throws InterruptedException {
+        dispatcher = CallbackDispatcher.boundedPool(1, 1);
+        final int count = 1_000_000;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(count + 1);
+        Callback slow = t -> {
+            if ((Integer) t.get(1) == 0) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            done.countDown();
+        };
+        Callback other = t -> done.countDown();
+
+        CallbackDispatcher.Batch batch = dispatcher.batch();
+        batch.add(slow, new Tuple("evt", 0));
+        batch.submit();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Tuple event = new Tuple("evt", 1);
+        for (int i = 1; i < count; i++) {
+            batch.add(slow, event);
+        }
+        // Occupe la seule place de la file : la boîte du callback lent ne peut plus s'y reprogrammer
+        batch.add(other, event);
+        batch.submit();
+        release.countDown();
+
+        assertTrue("All events should be delivered", done.await(30, TimeUnit.SECONDS));
+        for (int i = 0; i < 100 && dispatcher.queueDepth() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, dispatcher.queueDepth());
+    }
+
+    @Test
+    public void testEventsAfterShutdownAreNotCounted() {
+        dispatcher = CallbackDispatcher.boundedPool(1, 1);
+        dispatcher.shutdown();
+        final int[] received = { 0 };
+        CallbackDispatcher.Batch batch = dispatcher.batch();
+        batch.add(t -> received[0]++, new Tuple("evt", 1));
+        batch.submit();
+
+        assertEquals(0, received[0]);
+        assertEquals(0, dispatcher.queueDepth());
+    }
+
+    @Test
+    public void testPoolKeepsPerCallbackOrder() throws InterruptedException {
+        dispatcher = CallbackDispatcher.boundedPool(4, 8);
+        CentralizedLinda linda = new CentralizedLinda(dispatcher);
+        final int count = 500;
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(count);
+        Callback callback = t -> {
+            received.add((Integer) t.get(1));
+            done.countDown();
+        };
+        for (int i = 0; i < count; i++) {
+            linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("evt", Integer.class), callback);
+            linda.write(new Tuple("evt", i));
+        }
+
+        assertTrue("All events should be delivered", done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals("Events of one callback should be delivered in order", i, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void testSlowCallbackDoesNotBlockWriter() throws InterruptedException {
+        dispatcher = CallbackDispatcher.boundedPool(2, 16);
+        CentralizedLinda linda = new CentralizedLinda(dispatcher);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        Callback slow = t -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+        for (int i = 0; i < 3; i++) {
+            linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("evt", Integer.class), slow);
+            linda.write(new Tuple("evt", i));
+        }
+
+        assertEquals("Writes should return while the callback is blocked", 3, linda.readAll(new Tuple("evt", Integer.class)).size());
+        assertEquals("Undelivered events should be counted", 3, dispatcher.queueDepth());
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // Le compteur est décrémenté juste après le retour du callback
+        for (int i = 0; i < 100 && dispatcher.queueDepth() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, dispatcher.queueDepth());
+        assertEquals(3, dispatcher.deliveredCount());
+    }
+}
@@ -14,7 +14,12 @@ public class CentralizedLindaBasicTest {
 
     @Before
     public void setUp() {
-        linda = new CentralizedLinda();
+        linda = createLinda();
+    }
+
+    /** Implantation testée, redéfinie pour faire passer ces tests à PartitionedLinda. */
+    protected Linda createLinda() {
+        return new CentralizedLinda();
     }
 
     @Test
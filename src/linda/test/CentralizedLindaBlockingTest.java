@@ -9,6 +9,7 @@ import linda.shm.CentralizedLinda;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class CentralizedLindaBlockingTest {
 
@@ -16,7 +17,12 @@ public class CentralizedLindaBlockingTest {
 
     @Before
     public void setUp() {
-        linda = new CentralizedLinda();
+        linda = createLinda();
+    }
+
+    /** Implantation testée, redéfinie pour faire passer ces tests à PartitionedLinda. */
+    protected Linda createLinda() {
+        return new CentralizedLinda();
     }
 
     @Test(timeout = 5000)
@@ -122,4 +128,116 @@ public class CentralizedLindaBlockingTest {
             assertEquals("Reader " + i + " should find correct value", 999, results[i].get().get(0));
         }
     }
+
+    @Test(timeout = 5000)
+    public void testBlockedTakersOnDistinctTemplates() throws InterruptedException {
+        final int numTakers = 50;
+        final CountDownLatch latch = new CountDownLatch(numTakers);
+        final AtomicReferenceArray<Tuple> results = new AtomicReferenceArray<>(numTakers);
+
+        for (int i = 0; i < numTakers; i++) {
+            final int index = i;
+            new Thread(() -> {
+                results.set(index, linda.take(new Tuple("job", index, String.class)));
+                latch.countDown();
+            }).start();
+        }
+
+        Thread.sleep(100);
+
+        for (int i = numTakers - 1; i >= 0; i--) {
+            linda.write(new Tuple("job", i, "payload"));
+        }
+
+        assertTrue("All takers should complete", latch.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < numTakers; i++) {
+            assertEquals("Taker " + i + " should get its own tuple", i, results.get(i).get(1));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testEachWriteReleasesOneTaker() throws InterruptedException {
+        final int numTakers = 5;
+        final CountDownLatch latch = new CountDownLatch(numTakers);
+
+        for (int i = 0; i < numTakers; i++) {
+            // Motifs différents mais qui se recouvrent
+            final Tuple template = (i % 2 == 0) ? new Tuple("item", Integer.class) : new Tuple(String.class, Integer.class);
+            new Thread(() -> {
+                linda.take(template);
+                latch.countDown();
+            }).start();
+        }
+
+        Thread.sleep(100);
+
+        for (int i = 0; i < numTakers; i++) {
+            linda.write(new Tuple("item", i));
+        }
+
+        assertTrue("Every write should release one taker", latch.await(2, TimeUnit.SECONDS));
+        assertNull("All tuples should be taken", linda.tryRead(new Tuple(String.class, Integer.class)));
+    }
+
+    @Test(timeout = 5000)
+    public void testInterruptedTakerDoesNotStealWakeup() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Tuple> result = new AtomicReference<>();
+
+        Thread first = new Thread(() -> linda.take(new Tuple("item", Integer.class)));
+        first.start();
+        Thread.sleep(50);
+        Thread second = new Thread(() -> {
+            result.set(linda.take(new Tuple("item", Integer.class)));
+            latch.countDown();
+        });
+        second.start();
+        Thread.sleep(50);
+
+        // Le premier preneur, interrompu, ne doit pas capter le réveil destiné au second
+        first.interrupt();
+        first.join();
+        linda.write(new Tuple("item", 1));
+
+        assertTrue("Second taker should get the tuple", latch.await(2, TimeUnit.SECONDS));
+        assertEquals(1, result.get().get(1));
+    }
+
+    @Test(timeout = 5000)
+    public void testTimedTakeTimesOut() {
+        long start = System.nanoTime();
+        assertNull("Timed take should return null on timeout",
+                linda.take(new Tuple("timed", Integer.class), 100, TimeUnit.MILLISECONDS));
+        assertTrue("Timed take should wait for the timeout", System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+
+        // L'attente abandonnée ne doit pas prendre le tuple écrit ensuite
+        linda.write(new Tuple("timed", 1));
+        assertNotNull(linda.tryRead(new Tuple("timed", 1)));
+        assertNull(linda.read(new Tuple("other", Integer.class), 0, TimeUnit.SECONDS));
+        assertNotNull("Zero timeout should still find present tuples", linda.take(new Tuple("timed", Integer.class), 0, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void testTimedTakeReleasedByWrite() throws InterruptedException {
+        final AtomicReference<Tuple> taken = new AtomicReference<>();
+        final AtomicReference<Tuple> read = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        new Thread(() -> {
+            taken.set(linda.take(new Tuple("timed", Integer.class), 3, TimeUnit.SECONDS));
+            latch.countDown();
+        }).start();
+        new Thread(() -> {
+            read.set(linda.read(new Tuple("timed", Integer.class), 3, TimeUnit.SECONDS));
+            latch.countDown();
+        }).start();
+        Thread.sleep(100);
+
+        // Deux tuples : le preneur peut retirer le premier avant que le lecteur ne le voie
+        linda.write(new Tuple("timed", 7));
+        linda.write(new Tuple("timed", 8));
+
+        assertTrue("Timed operations should return before their timeout", latch.await(2, TimeUnit.SECONDS));
+        assertNotNull(taken.get());
+        assertNotNull(read.get());
+    }
 }
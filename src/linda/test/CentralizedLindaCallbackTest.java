@@ -0,0 +1,122 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import linda.Callback;
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+import linda.shm.CentralizedLinda;
+import linda.shm.EventRegistration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CentralizedLindaCallbackTest {
+
+    private CentralizedLinda linda;
+    private List<Tuple> received;
+
+    @Before
+    public void setUp() {
+        linda = new CentralizedLinda();
+        received = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    private Callback recorder() {
+        return t -> received.add(t);
+    }
+
+    @Test
+    public void testReadCallbackFiresOnce() {
+        linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("evt", Integer.class), recorder());
+        linda.write(new Tuple("evt", 1));
+        linda.write(new Tuple("evt", 2));
+
+        assertEquals("Callback should fire exactly once", 1, received.size());
+        assertEquals(1, received.get(0).get(1));
+        assertEquals("READ callback should leave the tuples", 2, linda.readAll(new Tuple("evt", Integer.class)).size());
+    }
+
+    @Test
+    public void testTakeCallbackTakesWrittenTuple() {
+        linda.write(new Tuple("evt", 1));
+        linda.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple("evt", Integer.class), recorder());
+        linda.write(new Tuple("evt", 2));
+
+        assertEquals(1, received.size());
+        assertEquals("TAKE callback should get the new tuple", 2, received.get(0).get(1));
+        assertEquals("Older tuple should remain", 1, linda.tryRead(new Tuple("evt", Integer.class)).get(1));
+    }
+
+    @Test
+    public void testOnlyOneTakeCallbackFires() {
+        linda.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple("evt", Integer.class), recorder());
+        linda.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple(String.class, Integer.class), recorder());
+        linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple(String.class, Integer.class), recorder());
+        linda.write(new Tuple("evt", 1));
+
+        assertEquals("All READ callbacks and one TAKE callback should fire", 2, received.size());
+        assertNull("Tuple should be taken", linda.tryRead(new Tuple("evt", Integer.class)));
+
+        linda.write(new Tuple("evt", 2));
+        assertEquals("Remaining TAKE callback should fire", 3, received.size());
+    }
+
+    @Test
+    public void testImmediate() {
+        linda.write(new Tuple("evt", 1));
+        linda.eventRegister(eventMode.TAKE, eventTiming.IMMEDIATE, new Tuple("evt", Integer.class), recorder());
+        assertEquals(1, received.size());
+        assertNull(linda.tryRead(new Tuple("evt", Integer.class)));
+    }
+
+    @Test
+    public void testNonMatchingCallbacksIgnored() {
+        for (int i = 0; i < 1000; i++) {
+            linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("other", i), recorder());
+        }
+        linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple(Object.class, 5), recorder());
+        linda.write(new Tuple("evt", 5));
+
+        assertEquals("Only the wildcard callback should fire", 1, received.size());
+    }
+
+    @Test
+    public void testCancel() {
+        EventRegistration registration = linda.registerEvent(eventMode.READ, eventTiming.FUTURE, new Tuple("evt", Integer.class), recorder());
+        assertTrue(registration.cancel());
+        assertFalse("Second cancel should fail", registration.cancel());
+        linda.write(new Tuple("evt", 1));
+        assertEquals("Cancelled callback should not fire", 0, received.size());
+    }
+
+    @Test
+    public void testReRegisterDuringCallback() {
+        final Tuple template = new Tuple("evt", Integer.class);
+        linda.eventRegister(eventMode.READ, eventTiming.FUTURE, template, new Callback() {
+            public void call(Tuple t) {
+                received.add(t);
+                linda.eventRegister(eventMode.READ, eventTiming.FUTURE, template, this);
+            }
+        });
+        linda.write(new Tuple("evt", 1));
+        assertEquals("Re-registered callback should not fire for the same tuple", 1, received.size());
+        linda.write(new Tuple("evt", 2));
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    public void testWriteAllFiresCallbacksOnce() {
+        linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("evt", Integer.class), recorder());
+        linda.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple("evt", Integer.class), recorder());
+        linda.writeAll(Arrays.asList(new Tuple("evt", 1), new Tuple("evt", 2), new Tuple("evt", 3)));
+
+        assertEquals("Each callback should fire once for the batch", 2, received.size());
+        assertEquals(new Tuple("evt", 1), received.get(0));
+        assertEquals(new Tuple("evt", 1), received.get(1));
+        assertEquals("TAKE callback should take only the first tuple", 2, linda.readAll(new Tuple("evt", Integer.class)).size());
+    }
+}
@@ -0,0 +1,218 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.Linda;
+import linda.SpaceFullException;
+import linda.Tuple;
+import linda.shm.CallbackDispatcher;
+import linda.shm.CentralizedLinda;
+import linda.shm.Occupancy;
+import linda.shm.PartitionedLinda;
+import linda.shm.SpaceLimits;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CentralizedLindaCapacityTest {
+
+    @Test
+    public void testRejectWhenFull() {
+        CentralizedLinda linda = new CentralizedLinda(CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(2).rejectOnOverflow());
+        linda.write(new Tuple("a", 1));
+        linda.write(new Tuple("a", 2));
+        try {
+            linda.write(new Tuple("a", 3));
+            fail("Write should be rejected");
+        } catch (SpaceFullException e) {
+            // attendu
+        }
+        assertNull(linda.tryRead(new Tuple("a", 3)));
+
+        Occupancy occupancy = linda.occupancy();
+        assertEquals(2, occupancy.tuples());
+        assertEquals(1.0, occupancy.fillRatio(), 0.0);
+        assertEquals(1, occupancy.rejectedWrites());
+
+        linda.take(new Tuple("a", 1));
+        linda.write(new Tuple("a", 3));
+        assertEquals(2, linda.occupancy().tuples());
+    }
+
+    @Test(timeout = 5000)
+    public void testBlockedWriterResumesAfterTake() throws InterruptedException {
+        CentralizedLinda linda = new CentralizedLinda(CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(1).blockOnOverflow());
+        linda.write(new Tuple("b", 1));
+
+        CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            linda.write(new Tuple("b", 2));
+            written.countDown();
+        });
+        writer.start();
+        assertFalse("Writer should wait for room", written.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, linda.occupancy().blockedWriters());
+
+        assertEquals(new Tuple("b", 1), linda.take(new Tuple("b", Integer.class)));
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+        assertEquals(new Tuple("b", 2), linda.tryTake(new Tuple("b", Integer.class)));
+        writer.join();
+    }
+
+    @Test(timeout = 5000)
+    public void testTimeoutWhenFull() {
+        CentralizedLinda linda = new CentralizedLinda(CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(1).timeoutOnOverflow(100, TimeUnit.MILLISECONDS));
+        linda.write(new Tuple("c", 1));
+        long start = System.nanoTime();
+        try {
+            linda.write(new Tuple("c", 2));
+            fail("Write should time out");
+        } catch (SpaceFullException e) {
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testInterruptedWriterGivesUp() throws InterruptedException {
+        CentralizedLinda linda = new CentralizedLinda(CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(1));
+        linda.write(new Tuple("d", 1));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                linda.write(new Tuple("d", 2));
+            } catch (SpaceFullException e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(100);
+        writer.interrupt();
+        writer.join();
+        assertNotNull(failure.get());
+        assertEquals(0, linda.occupancy().blockedWriters());
+    }
+
+    @Test
+    public void testByteLimit() {
+        CentralizedLinda linda = new CentralizedLinda(CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxBytes(1000).rejectOnOverflow());
+        char[] chars = new char[400];
+        Arrays.fill(chars, 'x');
+        String big = new String(chars);
+        linda.write(new Tuple("e", big));
+        assertTrue(linda.occupancy().bytes() > 400);
+        try {
+            linda.write(new Tuple("e", big));
+            fail("Second large tuple should not fit");
+        } catch (SpaceFullException e) {
+            // attendu
+        }
+        linda.write(new Tuple("e", 1));
+
+        linda.takeAll(new Tuple("e", Object.class));
+        assertEquals(0, linda.occupancy().bytes());
+        assertEquals(0, linda.occupancy().tuples());
+    }
+
+    @Test
+    public void testFamilyLimit() {
+        PartitionedLinda linda = new PartitionedLinda(4, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withFamilyMaxTuples(2).rejectOnOverflow());
+        linda.write(new Tuple("f", 1));
+        linda.write(new Tuple("f", 2));
+        try {
+            linda.write(new Tuple("f", 3));
+            fail("Family should be full");
+        } catch (SpaceFullException e) {
+            // attendu
+        }
+        // Les autres familles ne sont pas concernées
+        linda.write(new Tuple("g", 1));
+        linda.write(new Tuple("f", 1, 1));
+        assertEquals(2, linda.occupancy(new Tuple("f", Integer.class)).tuples());
+        assertEquals(4, linda.occupancy().tuples());
+    }
+
+    @Test
+    public void testPartitionedGlobalLimitIsShared() {
+        PartitionedLinda linda = new PartitionedLinda(32, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(100).rejectOnOverflow());
+        // Une seule famille, donc une seule partition : elle peut occuper toute la capacité
+        for (int i = 0; i < 100; i++) {
+            linda.write(new Tuple("work", i));
+        }
+        try {
+            linda.write(new Tuple("other", 1));
+            fail("Space should be full");
+        } catch (SpaceFullException e) {
+            // attendu
+        }
+        Occupancy occupancy = linda.occupancy();
+        assertEquals(100, occupancy.tuples());
+        assertEquals(1.0, occupancy.fillRatio(), 0.0);
+        assertEquals(1, occupancy.rejectedWrites());
+
+        linda.take(new Tuple("work", 0));
+        linda.write(new Tuple("other", 1));
+        assertEquals(100, linda.occupancy().tuples());
+    }
+
+    @Test(timeout = 5000)
+    public void testPartitionedWriterResumesAfterTakeInAnotherPartition() throws InterruptedException {
+        PartitionedLinda linda = new PartitionedLinda(32, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(1).blockOnOverflow());
+        linda.write(new Tuple("b", 1));
+
+        CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            linda.write(new Tuple("c", 1, 2));
+            written.countDown();
+        });
+        writer.start();
+        assertFalse("Writer should wait for room", written.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, linda.occupancy().blockedWriters());
+
+        assertEquals(new Tuple("b", 1), linda.take(new Tuple("b", Integer.class)));
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+        assertNotNull(linda.tryTake(new Tuple("c", 1, 2)));
+        writer.join();
+        assertEquals(0, linda.occupancy().tuples());
+    }
+
+    @Test
+    public void testWriteAllIsAllOrNothing() {
+        CentralizedLinda linda = new CentralizedLinda(CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(3).rejectOnOverflow());
+        linda.write(new Tuple("h", 0));
+        try {
+            linda.writeAll(Arrays.asList(new Tuple("h", 1), new Tuple("h", 2), new Tuple("h", 3)));
+            fail("Batch should not fit");
+        } catch (SpaceFullException e) {
+            // attendu
+        }
+        assertEquals(1, linda.readAll(new Tuple("h", Integer.class)).size());
+        try {
+            linda.writeAll(Arrays.asList(new Tuple("h", 1), new Tuple("h", 2), new Tuple("h", 3), new Tuple("h", 4)));
+            fail("Batch larger than the space should be rejected");
+        } catch (SpaceFullException e) {
+            // attendu
+        }
+        linda.writeAll(Arrays.asList(new Tuple("h", 1), new Tuple("h", 2)));
+        assertEquals(3, linda.occupancy().tuples());
+    }
+
+    @Test
+    public void testTupleTakenByCallbackFreesRoom() {
+        CentralizedLinda linda = new CentralizedLinda(CallbackDispatcher.direct(),
+                SpaceLimits.unbounded().withMaxTuples(1).rejectOnOverflow());
+        linda.eventRegister(Linda.eventMode.TAKE, Linda.eventTiming.FUTURE, new Tuple("i", Integer.class), t -> { });
+        linda.write(new Tuple("i", 1));
+        assertEquals(0, linda.occupancy().tuples());
+        linda.write(new Tuple("i", 2));
+    }
+}
@@ -5,8 +5,17 @@ import org.junit.Before;
 import org.junit.Test;
 import linda.Linda;
 import linda.Tuple;
+import linda.TupleCursor;
 import linda.shm.CentralizedLinda;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CentralizedLindaCollectionTest {
 
@@ -14,7 +23,12 @@ public class CentralizedLindaCollectionTest {
 
     @Before
     public void setUp() {
-        linda = new CentralizedLinda();
+        linda = createLinda();
+    }
+
+    /** Implantation testée, redéfinie pour faire passer ces tests à PartitionedLinda. */
+    protected Linda createLinda() {
+        return new CentralizedLinda();
     }
 
     @Test
@@ -72,4 +86,119 @@ public class CentralizedLindaCollectionTest {
         assertNotNull("Should return collection", results);
         assertEquals("Should return empty collection", 0, results.size());
     }
+
+    @Test
+    public void testWriteAllAndReadN() {
+        List<Tuple> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(new Tuple("batch", i));
+        }
+        batch.add(new Tuple(1, "other"));
+        linda.writeAll(batch);
+
+        assertEquals(10, linda.readAll(new Tuple("batch", Integer.class)).size());
+        assertEquals(11, linda.readAll(new Tuple(Object.class, Object.class)).size());
+        assertEquals("readN should return at most max tuples", 4, linda.readN(new Tuple("batch", Integer.class), 4).size());
+        assertEquals(4, linda.readN(new Tuple(Object.class, Object.class), 4).size());
+        assertEquals(10, linda.readN(new Tuple("batch", Integer.class), 100).size());
+        assertTrue(linda.readN(new Tuple("none", Integer.class), 5).isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void testTakeNWaitsForAllTuples() throws InterruptedException {
+        final AtomicReference<Collection<Tuple>> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(() -> {
+            result.set(linda.takeN(new Tuple("batch", Integer.class), 3));
+            done.countDown();
+        }).start();
+
+        linda.write(new Tuple("batch", 1));
+        linda.write(new Tuple("batch", 2));
+        assertFalse("takeN should wait for the third tuple", done.await(200, TimeUnit.MILLISECONDS));
+        assertEquals("No tuple should be taken before", 2, linda.readAll(new Tuple("batch", Integer.class)).size());
+
+        linda.writeAll(Arrays.asList(new Tuple("batch", 3), new Tuple("batch", 4)));
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(3, result.get().size());
+        assertEquals(1, linda.readAll(new Tuple("batch", Integer.class)).size());
+        assertTrue(linda.takeN(new Tuple(Object.class, Integer.class), 0).isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void testWriteAllReleasesBlockedTakers() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            new Thread(() -> {
+                linda.take(new Tuple("batch", Integer.class));
+                done.countDown();
+            }).start();
+        }
+        Thread.sleep(100);
+
+        linda.writeAll(Arrays.asList(new Tuple("batch", 1), new Tuple("batch", 2), new Tuple("batch", 3)));
+        assertTrue("Each tuple of the batch should release a taker", done.await(2, TimeUnit.SECONDS));
+        assertNull(linda.tryRead(new Tuple("batch", Integer.class)));
+    }
+
+    @Test
+    public void testReadCursorPagesAllTuples() {
+        for (int i = 0; i < 1000; i++) {
+            linda.write(new Tuple("page", i));
+            // Tuples de même arité qui ne correspondent pas : le parcours doit les passer
+            linda.write(new Tuple("skip", "x" + i));
+        }
+        for (Tuple template : new Tuple[] { new Tuple("page", Integer.class), new Tuple(String.class, Integer.class) }) {
+            Set<Tuple> seen = new HashSet<>();
+            try (TupleCursor cursor = linda.readCursor(template, 64)) {
+                List<Tuple> batch;
+                while (!(batch = cursor.nextBatch()).isEmpty()) {
+                    assertTrue("Batches should not exceed batchSize", batch.size() <= 64);
+                    for (Tuple t : batch) {
+                        assertTrue("No tuple should be returned twice", seen.add(t));
+                    }
+                }
+            }
+            assertEquals(1000, seen.size());
+        }
+        assertEquals("readCursor should leave the tuples", 1000, linda.readAll(new Tuple("page", Integer.class)).size());
+    }
+
+    @Test
+    public void testCursorToleratesConcurrentChanges() {
+        for (int i = 0; i < 100; i++) {
+            linda.write(new Tuple("page", i));
+        }
+        int count = 0;
+        TupleCursor cursor = linda.readCursor(new Tuple("page", Integer.class), 10);
+        while (cursor.hasNext()) {
+            Tuple t = cursor.next();
+            count++;
+            if (count == 50) {
+                linda.tryTake(new Tuple("page", 0));
+                linda.write(new Tuple("page", 1000));
+            }
+            assertTrue((Integer) t.get(1) >= 0);
+        }
+        assertTrue("Tuples present during the whole iteration should be returned", count >= 99);
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void testTakeCursorRemovesTuples() {
+        for (int i = 0; i < 250; i++) {
+            linda.write(new Tuple("page", i));
+        }
+        int count = 0;
+        for (TupleCursor cursor = linda.takeCursor(new Tuple(String.class, Integer.class), 100); cursor.hasNext(); cursor.next()) {
+            count++;
+        }
+        assertEquals(250, count);
+        assertNull(linda.tryRead(new Tuple("page", Integer.class)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCursorRejectsInvalidBatchSize() {
+        linda.readCursor(new Tuple("page", Integer.class), 0);
+    }
 }
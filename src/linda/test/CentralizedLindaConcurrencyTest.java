@@ -21,7 +21,12 @@ public class CentralizedLindaConcurrencyTest {
 
     @Before
     public void setUp() {
-        linda = new CentralizedLinda();
+        linda = createLinda();
+    }
+
+    /** Implantation testée, redéfinie pour faire passer ces tests à PartitionedLinda. */
+    protected Linda createLinda() {
+        return new CentralizedLinda();
     }
 
     @Test(timeout = 10000)
@@ -0,0 +1,56 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import linda.Linda;
+import linda.Tuple;
+import linda.shm.CentralizedLinda;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class CentralizedLindaFrozenTest {
+
+    private Linda linda;
+
+    @Before
+    public void setUp() {
+        linda = createLinda();
+    }
+
+    /** Implantation testée, redéfinie pour faire passer ces tests à PartitionedLinda. */
+    protected Linda createLinda() {
+        return new CentralizedLinda();
+    }
+
+    @Test
+    public void testFrozenTuple() {
+        assertTrue(new Tuple(1, "a", 'c', true, 2L, Integer.class, new Tuple(3.0, "b")).isFrozen());
+        assertFalse(new Tuple(1, new ArrayList<>(Arrays.asList(1, 2))).isFrozen());
+        assertFalse(new Tuple(1, new Tuple(new ArrayList<Integer>())).isFrozen());
+    }
+
+    @Test
+    public void testFrozenTupleIsShared() {
+        Tuple t = new Tuple("shared", 1);
+        linda.write(t);
+        assertSame("Frozen tuple should not be copied on read", t, linda.tryRead(new Tuple("shared", Integer.class)));
+        assertSame("Frozen tuple should not be copied on take", t, linda.tryTake(new Tuple("shared", Integer.class)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMutableComponentIsCopied() {
+        ArrayList<Integer> list = new ArrayList<>(Arrays.asList(1, 2));
+        linda.write(new Tuple("list", list));
+        list.add(3);
+
+        Tuple read = linda.tryRead(new Tuple("list", ArrayList.class));
+        assertEquals("Space should not see later changes of the component", 2, ((ArrayList<Integer>) read.get(1)).size());
+        ((ArrayList<Integer>) read.get(1)).clear();
+
+        Tuple again = linda.tryRead(new Tuple("list", ArrayList.class));
+        assertNotSame(read, again);
+        assertEquals("Space should not see changes made by readers", 2, ((ArrayList<Integer>) again.get(1)).size());
+    }
+}
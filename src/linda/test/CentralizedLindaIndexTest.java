@@ -0,0 +1,92 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import linda.Linda;
+import linda.Tuple;
+import linda.shm.CentralizedLinda;
+import java.util.Collection;
+
+public class CentralizedLindaIndexTest {
+
+    private Linda linda;
+
+    @Before
+    public void setUp() {
+        linda = createLinda();
+    }
+
+    /** Implantation testée, redéfinie pour faire passer ces tests à PartitionedLinda. */
+    protected Linda createLinda() {
+        return new CentralizedLinda();
+    }
+
+    @Test
+    public void testLeadingValueSelectsBucket() {
+        for (int i = 0; i < 100; i++) {
+            linda.write(new Tuple("other", i));
+        }
+        linda.write(new Tuple("job", 7));
+
+        Tuple result = linda.tryTake(new Tuple("job", Integer.class));
+        assertNotNull("Should find the job tuple", result);
+        assertEquals("Should match second element", 7, result.get(1));
+        assertNull("Job tuple should be removed", linda.tryRead(new Tuple("job", Integer.class)));
+        assertEquals("Other tuples should remain", 100, linda.readAll(new Tuple("other", Integer.class)).size());
+    }
+
+    @Test
+    public void testLeadingClassFallsBackOnArity() {
+        linda.write(new Tuple("a", 1));
+        linda.write(new Tuple(2, 3));
+        linda.write(new Tuple("b", 4, 5));
+
+        Collection<Tuple> results = linda.readAll(new Tuple(Object.class, Integer.class));
+        assertEquals("Should find both tuples of arity 2", 2, results.size());
+    }
+
+    @Test
+    public void testArityMismatch() {
+        linda.write(new Tuple("job", 1, 2));
+        assertNull("Different arity should not match", linda.tryRead(new Tuple("job", Integer.class)));
+    }
+
+    @Test
+    public void testFifoWithinBucket() {
+        linda.write(new Tuple("job", 1));
+        linda.write(new Tuple("job", 2));
+        linda.write(new Tuple("job", 3));
+
+        assertEquals(1, linda.take(new Tuple("job", Integer.class)).get(1));
+        assertEquals(2, linda.take(new Tuple(String.class, Integer.class)).get(1));
+        assertEquals(3, linda.take(new Tuple("job", 3)).get(1));
+    }
+
+    @Test
+    public void testDuplicateTuples() {
+        linda.write(new Tuple(4, 5));
+        linda.write(new Tuple(4, 5));
+
+        assertNotNull(linda.tryTake(new Tuple(4, 5)));
+        assertNotNull("Second copy should still be there", linda.tryTake(new Tuple(4, 5)));
+        assertNull(linda.tryTake(new Tuple(4, 5)));
+    }
+
+    @Test
+    public void testNestedLeadingTuple() {
+        linda.write(new Tuple(new Tuple("inner", 1), "outer"));
+
+        assertNotNull("Nested template should match", linda.tryRead(new Tuple(new Tuple(String.class, Integer.class), "outer")));
+        assertNotNull("Equal nested value should match", linda.tryRead(new Tuple(new Tuple("inner", 1), "outer")));
+        assertEquals(1, linda.takeAll(new Tuple(Tuple.class, String.class)).size());
+        assertNull(linda.tryRead(new Tuple(Tuple.class, String.class)));
+    }
+
+    @Test
+    public void testEmptyTuple() {
+        linda.write(new Tuple());
+        assertNotNull(linda.tryTake(new Tuple()));
+        assertNull(linda.tryTake(new Tuple()));
+    }
+}
@@ -0,0 +1,148 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import linda.Lease;
+import linda.Linda;
+import linda.Tuple;
+import linda.shm.CentralizedLinda;
+import linda.shm.PartitionedLinda;
+import linda.shm.PersistentCentralizedLinda;
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CentralizedLindaLeaseTest {
+
+    private Linda linda;
+
+    @Before
+    public void setUp() {
+        linda = createLinda();
+    }
+
+    /** Implantation testée, redéfinie pour faire passer ces tests à PartitionedLinda. */
+    protected Linda createLinda() {
+        return new CentralizedLinda();
+    }
+
+    @Test
+    public void testLeasedTupleExpires() throws InterruptedException {
+        Lease lease = linda.write(new Tuple("lease", 1), Duration.ofMillis(100));
+        linda.write(new Tuple("lease", 2));
+        assertTrue(lease.isActive());
+        assertNotNull(linda.tryRead(new Tuple("lease", 1)));
+
+        Thread.sleep(400);
+        assertNull("Tuple should have expired", linda.tryRead(new Tuple("lease", 1)));
+        assertFalse(lease.isActive());
+        assertFalse("Expired lease cannot be renewed", lease.renew(Duration.ofSeconds(1)));
+        assertNotNull("Tuple without lease should stay", linda.tryRead(new Tuple("lease", 2)));
+    }
+
+    @Test
+    public void testRenewExtendsLease() throws InterruptedException {
+        Lease lease = linda.write(new Tuple("renew", 1), Duration.ofMillis(200));
+        assertTrue(lease.renew(Duration.ofSeconds(10)));
+        Thread.sleep(400);
+        assertTrue(lease.isActive());
+        assertNotNull(linda.tryRead(new Tuple("renew", 1)));
+
+        assertTrue(lease.renew(Duration.ZERO));
+        Thread.sleep(300);
+        assertNull(linda.tryRead(new Tuple("renew", 1)));
+    }
+
+    @Test
+    public void testCancelRemovesTuple() {
+        Lease lease = linda.write(new Tuple("cancel", 1), Duration.ofSeconds(10));
+        assertTrue(lease.cancel());
+        assertNull(linda.tryRead(new Tuple("cancel", 1)));
+        assertFalse(lease.cancel());
+        assertFalse(lease.isActive());
+    }
+
+    @Test
+    public void testTakenTupleEndsLease() {
+        Lease lease = linda.write(new Tuple("taken", 1), Duration.ofSeconds(10));
+        assertEquals(new Tuple("taken", 1), linda.tryTake(new Tuple("taken", Integer.class)));
+        assertFalse(lease.isActive());
+        assertFalse(lease.renew(Duration.ofSeconds(10)));
+
+        // Un tuple égal écrit ensuite n'est pas concerné par l'ancien bail
+        linda.write(new Tuple("taken", 1));
+        assertFalse(lease.cancel());
+        assertNotNull(linda.tryRead(new Tuple("taken", 1)));
+    }
+
+    /** Écriture sous bail avec action de fin, propre aux implantations de linda.shm. */
+    private Lease write(Tuple t, Duration lease, Runnable onEnd) {
+        if (linda instanceof PartitionedLinda) {
+            return ((PartitionedLinda) linda).write(t, lease, onEnd);
+        }
+        return ((CentralizedLinda) linda).write(t, lease, onEnd);
+    }
+
+    @Test
+    public void testLeaseEndActionRunsOnce() throws InterruptedException {
+        AtomicInteger ended = new AtomicInteger();
+        Lease taken = write(new Tuple("end", 1), Duration.ofSeconds(10), ended::incrementAndGet);
+        Lease cancelled = write(new Tuple("end", 2), Duration.ofSeconds(10), ended::incrementAndGet);
+        write(new Tuple("end", 3), Duration.ofMillis(100), ended::incrementAndGet);
+        assertEquals(0, ended.get());
+
+        assertNotNull(linda.tryTake(new Tuple("end", 1)));
+        assertEquals("Taking the tuple ends its lease", 1, ended.get());
+        assertFalse(taken.cancel());
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(2, ended.get());
+
+        Thread.sleep(400);
+        assertNull(linda.tryRead(new Tuple("end", 3)));
+        assertEquals(3, ended.get());
+    }
+
+    @Test
+    public void testLeasedTupleWakesWaiter() throws Exception {
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            linda.write(new Tuple("wake", 1), Duration.ofSeconds(10));
+        });
+        writer.start();
+        assertEquals(new Tuple("wake", 1), linda.take(new Tuple("wake", Integer.class)));
+        writer.join();
+    }
+
+    @Test
+    public void testLeaseSurvivesSnapshot() throws Exception {
+        File file = File.createTempFile("linda-lease", ".ser");
+        file.deleteOnExit();
+        PersistentCentralizedLinda saved = new PersistentCentralizedLinda(file.getPath());
+        saved.write(new Tuple("kept", 1));
+        saved.write(new Tuple("long", 1), Duration.ofSeconds(10));
+        saved.write(new Tuple("short", 1), Duration.ofMillis(300));
+        saved.saveTupleSpace();
+
+        PersistentCentralizedLinda loaded = new PersistentCentralizedLinda(file.getPath());
+        loaded.loadTupleSpace();
+        assertNotNull(loaded.tryRead(new Tuple("kept", 1)));
+        assertNotNull(loaded.tryRead(new Tuple("long", 1)));
+        assertNotNull(loaded.tryRead(new Tuple("short", 1)));
+
+        Thread.sleep(600);
+        assertNull("Remaining lease should still expire after loading", loaded.tryRead(new Tuple("short", 1)));
+        assertNotNull(loaded.tryRead(new Tuple("long", 1)));
+
+        // Les baux échus pendant l'arrêt ne sont pas restaurés
+        PersistentCentralizedLinda late = new PersistentCentralizedLinda(file.getPath());
+        late.loadTupleSpace();
+        assertNull(late.tryRead(new Tuple("short", 1)));
+        assertNotNull(late.tryRead(new Tuple("kept", 1)));
+    }
+}
@@ -9,7 +9,13 @@ import org.junit.runners.Suite;
         CentralizedLindaBlockingTest.class,
         CentralizedLindaCollectionTest.class,
         CentralizedLindaPatternTest.class,
-        CentralizedLindaConcurrencyTest.class
+        CentralizedLindaConcurrencyTest.class,
+        CentralizedLindaIndexTest.class,
+        CentralizedLindaFrozenTest.class,
+        CentralizedLindaCallbackTest.class,
+        CentralizedLindaLeaseTest.class,
+        CentralizedLindaCapacityTest.class,
+        CallbackDispatcherTest.class
 })
 public class CentralizedLindaTestSuite {
     // Cette classe est vide. Elle sert uniquement à lancer les tests que nous avons écrits plus facieement
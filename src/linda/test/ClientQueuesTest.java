@@ -0,0 +1,325 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+import linda.server.ClientQueuePolicy;
+import linda.server.ClientQueueStats;
+import linda.server.LindaServer;
+import linda.server.RemoteCallback;
+import linda.server.ReplyChannel;
+import linda.shm.SpaceLimits;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class ClientQueuesTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private LindaServer server;
+
+    /** Client bloqué jusqu'à release. */
+    private final ReplyChannel slow = (requestId, t) -> {
+        stalled.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    };
+
+    private void start(ClientQueuePolicy policy) throws Exception {
+        server = new LindaServer(SpaceLimits.unbounded(), policy);
+        UnicastRemoteObject.unexportObject(server, true);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private int jobs() {
+        try {
+            return server.readAll(new Tuple("job", Integer.class)).size();
+        } catch (RemoteException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ClientQueueStats slowStats() {
+        return stats(slow);
+    }
+
+    private ClientQueueStats stats(Object client) {
+        for (ClientQueueStats stats : server.clientQueueStats()) {
+            if (stats.client().equals(String.valueOf(client))) {
+                return stats;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testSlowClientDoesNotDelayOthers() throws Exception {
+        start(ClientQueuePolicy.block(10));
+        for (int i = 0; i < 5; i++) {
+            server.readAsync(new Tuple("event", Integer.class), slow, i);
+        }
+        CompletableFuture<Tuple> fast = new CompletableFuture<>();
+        server.readAsync(new Tuple("event", Integer.class), (requestId, t) -> fast.complete(t), 1);
+
+        long start = System.nanoTime();
+        server.write(new Tuple("event", 1));
+        assertEquals(new Tuple("event", 1), fast.get(5, TimeUnit.SECONDS));
+        assertTrue("The writer does not wait for the slow client",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        assertTrue(await(() -> slowStats() != null && slowStats().depth() == 5));
+        Thread.sleep(50);
+        assertTrue("Lag of the stalled client is visible", slowStats().lagMillis() >= 50);
+
+        release.countDown();
+        assertTrue(await(() -> slowStats() == null));
+    }
+
+    @Test
+    public void testDropOldestDropsReadReplies() throws Exception {
+        start(ClientQueuePolicy.dropOldest(2));
+        for (int i = 0; i < 5; i++) {
+            server.readAsync(new Tuple("event", i), slow, i);
+        }
+        server.write(new Tuple("event", 0));
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 5; i++) {
+            server.write(new Tuple("event", i));
+        }
+        // Une livraison en cours, deux en file, deux abandonnées
+        assertTrue(await(() -> slowStats() != null && slowStats().dropped() == 2));
+        assertEquals(3, slowStats().depth());
+        assertFalse(slowStats().isDisconnected());
+    }
+
+    @Test
+    public void testDropOldestKeepsTakenTuples() throws Exception {
+        start(ClientQueuePolicy.dropOldest(2));
+        for (int i = 0; i < 5; i++) {
+            server.takeAsync(new Tuple("job", i), slow, i);
+        }
+        server.write(new Tuple("job", 0));
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 5; i++) {
+            server.write(new Tuple("job", i));
+        }
+        // Le client attend chacun de ces tuples : la file dépasse sa capacité plutôt que d'en abandonner un
+        assertTrue(await(() -> slowStats() != null && slowStats().depth() == 5));
+        assertEquals(0, slowStats().dropped());
+        assertEquals(0, jobs());
+
+        release.countDown();
+        assertTrue(await(() -> slowStats() == null));
+        assertEquals(0, jobs());
+    }
+
+    @Test
+    public void testUndeliveredTupleKeepsLease() throws Exception {
+        start(ClientQueuePolicy.block(10));
+        CountDownLatch refused = new CountDownLatch(1);
+        server.writeLeased(new Tuple("job", 1), 1000);
+        server.takeAsync(new Tuple("job", Integer.class), (requestId, t) -> {
+            refused.countDown();
+            return false;
+        }, 1);
+        assertTrue(refused.await(5, TimeUnit.SECONDS));
+        // Rendu à l'espace, puis retiré à l'échéance de son bail d'origine
+        assertTrue(await(() -> jobs() == 1));
+        assertTrue(await(() -> jobs() == 0));
+    }
+
+    @Test(timeout = 10000)
+    public void testUndeliveredTupleDoesNotWaitForRoom() throws Exception {
+        server = new LindaServer(SpaceLimits.unbounded().withMaxTuples(1).blockOnOverflow(), ClientQueuePolicy.block(10));
+        UnicastRemoteObject.unexportObject(server, true);
+        server.write(new Tuple("job", 1));
+        server.takeAsync(new Tuple("job", Integer.class), (requestId, t) -> {
+            // Un autre écrivain prend la place libérée avant que le tuple ne soit rendu
+            server.write(new Tuple("other", 1));
+            return false;
+        }, 1);
+        assertTrue(await(() -> jobs() == 1));
+        assertNotNull(server.tryRead(new Tuple("other", 1)));
+    }
+
+    @Test
+    public void testBurstIsDeliveredInOneCall() throws Exception {
+        start(ClientQueuePolicy.block(100));
+        List<long[]> calls = Collections.synchronizedList(new ArrayList<>());
+        List<Tuple> received = Collections.synchronizedList(new ArrayList<>());
+        ReplyChannel batching = new ReplyChannel() {
+            @Override
+            public boolean deliver(long requestId, Tuple t) {
+                throw new AssertionError("deliverAll expected");
+            }
+
+            @Override
+            public boolean[] deliverAll(long[] requestIds, Tuple[] tuples) throws RemoteException {
+                calls.add(requestIds);
+                received.addAll(Arrays.asList(tuples));
+                if (calls.size() == 1) {
+                    slow.deliver(requestIds[0], tuples[0]);
+                }
+                boolean[] accepted = new boolean[tuples.length];
+                Arrays.fill(accepted, true);
+                return accepted;
+            }
+        };
+        for (int i = 0; i < 20; i++) {
+            server.readAsync(new Tuple("event", i), batching, i);
+        }
+        server.write(new Tuple("event", 0));
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 20; i++) {
+            server.write(new Tuple("event", i));
+        }
+        assertTrue(await(() -> stats(batching) != null && stats(batching).depth() == 20));
+        release.countDown();
+        assertTrue(await(() -> received.size() == 20));
+
+        // Une livraison pour le premier tuple, une seule pour les 19 arrivés pendant qu'elle était en cours
+        assertEquals(2, calls.size());
+        assertEquals(19, calls.get(1).length);
+        assertEquals(new Tuple("event", 0), received.get(0));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(received.contains(new Tuple("event", i)));
+        }
+    }
+
+    @Test
+    public void testDisconnectCancelsRequests() throws Exception {
+        start(ClientQueuePolicy.disconnect(2));
+        for (int i = 0; i < 4; i++) {
+            server.takeAsync(new Tuple("job", i), slow, i);
+        }
+        server.takeAsync(new Tuple("later", Integer.class), slow, 10);
+        server.write(new Tuple("job", 0));
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 4; i++) {
+            server.write(new Tuple("job", i));
+        }
+        assertTrue(await(() -> slowStats() != null && slowStats().isDisconnected()));
+        // Les tuples en file sont rendus à l'espace, la demande en attente est annulée
+        assertTrue(await(() -> jobs() == 3));
+        assertTrue(await(() -> server.clientChannelCount() == 0));
+        server.write(new Tuple("later", 1));
+        assertNotNull(server.tryRead(new Tuple("later", 1)));
+    }
+
+    @Test
+    public void testDisconnectRemovesRegistrations() throws Exception {
+        start(ClientQueuePolicy.disconnect(2));
+        for (int i = 0; i < 6; i++) {
+            server.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple("job", Integer.class), slow, i);
+        }
+        server.write(new Tuple("job", 0));
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 4; i++) {
+            server.write(new Tuple("job", i));
+        }
+        assertTrue(await(() -> slowStats() != null && slowStats().isDisconnected()));
+        assertTrue(await(() -> server.callbackRegistrationCount() == 0));
+
+        // Les callbacks restants ont été retirés de l'espace : ils ne prennent plus rien
+        server.write(new Tuple("job", 10));
+        assertTrue(await(() -> jobs() == 4));
+        assertNotNull(server.tryRead(new Tuple("job", 10)));
+
+        // La file du client déconnecté disparaît quand sa dernière livraison se termine
+        release.countDown();
+        assertTrue(await(() -> slowStats() == null));
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockSlowsWritersNotDelivery() throws Exception {
+        start(ClientQueuePolicy.block(2));
+        for (int i = 0; i < 4; i++) {
+            server.readAsync(new Tuple("event", i), slow, i);
+        }
+        server.write(new Tuple("event", 0));
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+        server.write(new Tuple("event", 1));
+        server.write(new Tuple("event", 2));
+        assertTrue(await(() -> slowStats() != null && slowStats().depth() == 3));
+
+        // File pleine : l'écrivain suivant attend, avant d'écrire
+        CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try {
+                server.write(new Tuple("event", 3));
+            } catch (RemoteException e) {
+                throw new RuntimeException(e);
+            }
+            written.countDown();
+        });
+        writer.start();
+        assertFalse("Writer should wait for the full queue", written.await(200, TimeUnit.MILLISECONDS));
+        assertNull(server.tryRead(new Tuple("event", 3)));
+
+        release.countDown();
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertTrue(await(() -> slowStats() == null));
+    }
+
+    @Test
+    public void testLegacyCallbackFailureReturnsOnlyUndelivered() throws Exception {
+        start(ClientQueuePolicy.block(10));
+        List<Tuple> received = Collections.synchronizedList(new ArrayList<>());
+        RemoteCallback failing = t -> {
+            if (received.isEmpty()) {
+                slow.deliver(0, t);
+            } else if (received.size() == 2) {
+                throw new RemoteException("Client parti");
+            }
+            received.add(t);
+        };
+        for (int i = 0; i < 4; i++) {
+            server.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple("job", i), failing);
+        }
+        server.write(new Tuple("job", 0));
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 4; i++) {
+            server.write(new Tuple("job", i));
+        }
+        assertTrue(await(() -> stats(failing) != null && stats(failing).depth() == 4));
+        release.countDown();
+
+        // Les trois tuples suivants partent ensemble : le deuxième appel échoue
+        assertTrue(await(() -> stats(failing) == null));
+        assertEquals(2, received.size());
+        assertEquals(2, jobs());
+        for (Tuple t : received) {
+            assertNull("Delivered tuples are not returned", server.tryRead(t));
+        }
+    }
+}
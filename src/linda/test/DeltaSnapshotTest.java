@@ -0,0 +1,191 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.Lease;
+import linda.Tuple;
+import linda.shm.CallbackDispatcher;
+import linda.shm.JournalPolicy;
+import linda.shm.PersistentCentralizedLinda;
+import linda.shm.SpaceLimits;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DeltaSnapshotTest extends SaveFileTest {
+
+    private int deltaFiles() {
+        return dir.listFiles((d, name) -> name.startsWith("tuples.ser.delta.")).length;
+    }
+
+    private PersistentCentralizedLinda reload() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        linda.loadTupleSpace();
+        return linda;
+    }
+
+    @Test
+    public void testDeltasAfterBase() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        for (int i = 0; i < 100; i++) {
+            linda.write(new Tuple("a", i));
+        }
+        linda.saveTupleSpace();
+        assertEquals("The first save is a full base", 0, deltaFiles());
+        long baseBytes = linda.lastSaveBytes();
+
+        linda.write(new Tuple("b", 1));
+        linda.take(new Tuple("a", 0));
+        linda.write(new Tuple("c", 1));
+        linda.take(new Tuple("c", 1));
+        linda.saveTupleSpace();
+        assertEquals(1, deltaFiles());
+        assertEquals(1, linda.deltaChainLength());
+        assertTrue("A delta only holds the changes", linda.lastSaveBytes() < baseBytes);
+
+        linda.take(new Tuple("a", 1));
+        linda.saveTupleSpace();
+        assertEquals(2, deltaFiles());
+
+        PersistentCentralizedLinda recovered = reload();
+        assertNull(recovered.tryRead(new Tuple("a", 0)));
+        assertNull(recovered.tryRead(new Tuple("a", 1)));
+        assertNull(recovered.tryRead(new Tuple("c", 1)));
+        assertNotNull(recovered.tryRead(new Tuple("b", 1)));
+        assertEquals(98, recovered.readAll(new Tuple("a", Integer.class)).size());
+        // Insertion order survives the chain
+        assertEquals(new Tuple("a", 2), recovered.take(new Tuple("a", Integer.class)));
+
+        // Renumbered after recovery: the next save starts a new base and drops the old chain
+        recovered.saveTupleSpace();
+        assertEquals(0, deltaFiles());
+        assertEquals(97, reload().readAll(new Tuple("a", Integer.class)).size());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        for (int i = 0; i < 100; i++) {
+            linda.write(new Tuple("a", i));
+        }
+        linda.saveTupleSpace();
+        for (int i = 0; i < 3; i++) {
+            linda.take(new Tuple("a", i));
+            linda.write(new Tuple("b", i));
+            linda.saveTupleSpace();
+        }
+        assertEquals(3, deltaFiles());
+
+        linda.compactSnapshots();
+        assertEquals(0, deltaFiles());
+        assertEquals(0, linda.deltaChainLength());
+        assertEquals(1, linda.compactionCount());
+
+        // The chain goes on from the compacted base
+        linda.take(new Tuple("a", 3));
+        linda.saveTupleSpace();
+        assertEquals(1, deltaFiles());
+
+        PersistentCentralizedLinda recovered = reload();
+        assertEquals(96, recovered.readAll(new Tuple("a", Integer.class)).size());
+        assertEquals(3, recovered.readAll(new Tuple("b", Integer.class)).size());
+        assertNull(recovered.tryRead(new Tuple("a", 3)));
+    }
+
+    @Test
+    public void testBackgroundCompaction() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        for (int i = 0; i < 1000; i++) {
+            linda.write(new Tuple("a", i));
+        }
+        linda.saveTupleSpace();
+        for (int i = 0; i < PersistentCentralizedLinda.MAX_DELTA_CHAIN; i++) {
+            linda.take(new Tuple("a", i));
+            linda.saveTupleSpace();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (linda.compactionCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, linda.compactionCount());
+        assertEquals(1000 - PersistentCentralizedLinda.MAX_DELTA_CHAIN,
+                reload().readAll(new Tuple("a", Integer.class)).size());
+    }
+
+    @Test
+    public void testCompactionDoesNotBlockOperations() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        for (int i = 0; i < 20_000; i++) {
+            linda.write(new Tuple("a", i, "payload-" + i));
+        }
+        linda.saveTupleSpace();
+        for (int i = 0; i < 3; i++) {
+            linda.take(new Tuple("a", i, String.class));
+            linda.saveTupleSpace();
+        }
+
+        CountDownLatch started = new CountDownLatch(1);
+        Thread compactor = new Thread(() -> {
+            started.countDown();
+            try {
+                linda.compactSnapshots();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        compactor.start();
+        started.await();
+        // Operations and delta saves go on while the base is being rewritten
+        for (int i = 0; i < 100; i++) {
+            linda.write(new Tuple("b", i));
+        }
+        linda.saveTupleSpace();
+        compactor.join(TimeUnit.SECONDS.toMillis(10));
+
+        PersistentCentralizedLinda recovered = reload();
+        assertEquals(20_000 - 3, recovered.readAll(new Tuple("a", Integer.class, String.class)).size());
+        assertEquals(100, recovered.readAll(new Tuple("b", Integer.class)).size());
+    }
+
+    @Test
+    public void testLeasesInDeltas() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        for (int i = 0; i < 10; i++) {
+            linda.write(new Tuple("a", i));
+        }
+        Lease renewed = linda.write(new Tuple("lease", 1), Duration.ofMillis(200));
+        linda.saveTupleSpace();
+        linda.write(new Tuple("lease", 2), Duration.ofMillis(200));
+        renewed.renew(Duration.ofHours(1));
+        linda.saveTupleSpace();
+        assertEquals(1, deltaFiles());
+
+        Thread.sleep(400);
+        PersistentCentralizedLinda recovered = reload();
+        assertNotNull("Renewal is recorded in the delta", recovered.tryRead(new Tuple("lease", 1)));
+        assertNull("Leased tuple from the delta expired", recovered.tryRead(new Tuple("lease", 2)));
+    }
+
+    @Test
+    public void testDeltasWithJournal() throws Exception {
+        JournalPolicy policy = JournalPolicy.groupCommit(1000, 10_000);
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded(), policy);
+        for (int i = 0; i < 50; i++) {
+            linda.write(new Tuple("a", i));
+        }
+        linda.saveTupleSpace();
+        linda.take(new Tuple("a", 0));
+        linda.saveTupleSpace();
+        assertEquals(1, deltaFiles());
+        linda.take(new Tuple("a", 1));
+        linda.syncJournal();
+
+        // Base, delta, then the journal written after the delta
+        PersistentCentralizedLinda recovered = new PersistentCentralizedLinda(saveFile, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded(), policy);
+        assertEquals(48, recovered.readAll(new Tuple("a", Integer.class)).size());
+        assertNull(recovered.tryRead(new Tuple("a", 1)));
+    }
+}
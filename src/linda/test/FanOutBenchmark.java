@@ -0,0 +1,77 @@
+package linda.test;
+
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+import linda.server.ClientQueuePolicy;
+import linda.server.LindaClient;
+import linda.server.LindaServer;
+import linda.server.NioLindaServer;
+import linda.shm.SpaceLimits;
+
+/**
+ * Diffusion d'une rafale d'écritures à de nombreux abonnés distants, comme le tableau blanc :
+ * chaque abonné a un callback en attente sur chacun des tuples de la rafale, et le temps compte
+ * de la première écriture au dernier callback exécuté. Compare un appel au client par tuple
+ * (lots de 1) et les livraisons groupées, sur les transports RMI et NIO.
+ */
+public class FanOutBenchmark {
+
+    private static final int REGISTRY_PORT = 4097;
+    private static final int SUBSCRIBERS = 100;
+    private static final int WRITES = 200;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+        Registry registry = LocateRegistry.createRegistry(REGISTRY_PORT);
+        ClientQueuePolicy batched = ClientQueuePolicy.block(ClientQueuePolicy.DEFAULT_CAPACITY);
+
+        // Un tour à vide pour chauffer la JVM
+        run("échauffement", registry, batched, false);
+        run("RMI, un appel par tuple", registry, batched.withBatch(1), false);
+        run("RMI, livraisons groupées", registry, batched, false);
+        run("NIO, un appel par tuple", registry, batched.withBatch(1), true);
+        run("NIO, livraisons groupées", registry, batched, true);
+        System.exit(0);
+    }
+
+    private static void run(String name, Registry registry, ClientQueuePolicy policy, boolean nio) throws Exception {
+        LindaServer server = new LindaServer(SpaceLimits.unbounded(), policy);
+        registry.rebind("FanOut", server);
+        NioLindaServer nioServer = nio ? new NioLindaServer(server, 0) : null;
+        String uri = nio ? "nio://localhost:" + nioServer.port() : "//localhost:" + REGISTRY_PORT + "/FanOut";
+
+        CountDownLatch events = new CountDownLatch(SUBSCRIBERS * WRITES);
+        for (int s = 0; s < SUBSCRIBERS; s++) {
+            LindaClient subscriber = new LindaClient(uri);
+            for (int i = 0; i < WRITES; i++) {
+                subscriber.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("draw", i), t -> events.countDown());
+            }
+        }
+
+        LindaClient producer = new LindaClient(uri);
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITES; i++) {
+            producer.write(new Tuple("draw", i));
+        }
+        boolean done = events.await(120, TimeUnit.SECONDS);
+        long nanos = System.nanoTime() - start;
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        System.out.printf("%-26s %d abonnés x %d écritures: %s en %5d ms, %8.0f événements/s%n", name, SUBSCRIBERS, WRITES,
+                done ? "tout livré" : "INCOMPLET (" + events.getCount() + " manquants)", millis,
+                (SUBSCRIBERS * WRITES - events.getCount()) * 1e9 / nanos);
+
+        if (nioServer != null) {
+            nioServer.close();
+        }
+        registry.unbind("FanOut");
+        UnicastRemoteObject.unexportObject(server, true);
+    }
+}
@@ -0,0 +1,184 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.Tuple;
+import linda.shm.CallbackDispatcher;
+import linda.shm.JournalPolicy;
+import linda.shm.PersistentCentralizedLinda;
+import linda.shm.SpaceLimits;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class JournalRecoveryTest extends SaveFileTest {
+
+    /** Taille cumulée des segments du journal. */
+    private long journalSize() {
+        long size = 0;
+        for (File f : dir.listFiles((d, name) -> name.startsWith("tuples.ser.wal."))) {
+            size += f.length();
+        }
+        return size;
+    }
+
+    private File lastSegment() {
+        File last = null;
+        for (File f : dir.listFiles((d, name) -> name.startsWith("tuples.ser.wal."))) {
+            if (last == null || segment(f) > segment(last)) {
+                last = f;
+            }
+        }
+        return last;
+    }
+
+    private static long segment(File f) {
+        return Long.parseLong(f.getName().substring("tuples.ser.wal.".length()));
+    }
+
+    private PersistentCentralizedLinda open() {
+        return new PersistentCentralizedLinda(saveFile, CallbackDispatcher.direct(), SpaceLimits.unbounded(),
+                JournalPolicy.groupCommit(1000, 10_000));
+    }
+
+    @Test
+    public void testRecoveryWithoutSnapshot() throws IOException {
+        PersistentCentralizedLinda linda = open();
+        linda.write(new Tuple("a", 1));
+        linda.write(new Tuple("a", 2));
+        linda.write(new Tuple("b", 1));
+        linda.take(new Tuple("a", 1));
+        linda.syncJournal();
+
+        // Arrêt brutal : aucune sauvegarde, seul le journal a été écrit
+        PersistentCentralizedLinda recovered = open();
+        assertNull(recovered.tryRead(new Tuple("a", 1)));
+        assertNotNull(recovered.tryRead(new Tuple("a", 2)));
+        assertNotNull(recovered.tryRead(new Tuple("b", 1)));
+        assertEquals(2, recovered.readAll(new Tuple(String.class, Integer.class)).size());
+    }
+
+    @Test
+    public void testUnsyncedRecordsSurviveProcessCrash() throws IOException {
+        PersistentCentralizedLinda linda = open();
+        linda.write(new Tuple("k", 1));
+        linda.write(new Tuple("k", 2));
+        linda.take(new Tuple("k", 1));
+
+        // kill -9 : ni fsync ni sauvegarde, les enregistrements doivent déjà être dans le segment
+        PersistentCentralizedLinda recovered = open();
+        assertNull(recovered.tryRead(new Tuple("k", 1)));
+        assertNotNull(recovered.tryRead(new Tuple("k", 2)));
+    }
+
+    @Test
+    public void testSnapshotThenJournal() throws IOException {
+        PersistentCentralizedLinda linda = open();
+        linda.write(new Tuple("s", 1));
+        linda.write(new Tuple("s", 2));
+        linda.saveTupleSpace();
+        assertEquals("Snapshot should delete the journal segments it covers", 0, journalSize());
+
+        // Le journal désigne les tuples de la sauvegarde par leur numéro d'insertion
+        linda.take(new Tuple("s", 1));
+        linda.write(new Tuple("s", 3));
+        linda.syncJournal();
+
+        PersistentCentralizedLinda recovered = open();
+        assertNull(recovered.tryRead(new Tuple("s", 1)));
+        assertNotNull(recovered.tryRead(new Tuple("s", 2)));
+        assertNotNull(recovered.tryRead(new Tuple("s", 3)));
+
+        // Une seconde restauration part du point de reprise écrit par la première
+        recovered.take(new Tuple("s", 2));
+        recovered.syncJournal();
+        PersistentCentralizedLinda again = open();
+        assertEquals(1, again.readAll(new Tuple("s", Integer.class)).size());
+        assertNotNull(again.tryRead(new Tuple("s", 3)));
+    }
+
+    @Test
+    public void testFailedCheckpointKeepsNumbering() throws Exception {
+        PersistentCentralizedLinda linda = open();
+        linda.write(new Tuple("x", 0));
+        linda.write(new Tuple("c", 1));
+        linda.take(new Tuple("x", 0));
+        linda.saveTupleSpace();
+        linda.write(new Tuple("c", 2));
+        linda.syncJournal();
+
+        // Point de reprise impossible : le fichier temporaire de la sauvegarde est un répertoire
+        File blocker = new File(saveFile + ".tmp");
+        assertTrue(blocker.mkdir());
+        PersistentCentralizedLinda recovering = new PersistentCentralizedLinda(saveFile, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded(), JournalPolicy.groupCommit(1000, 10_000), true);
+        try {
+            recovering.recovery().get(10, TimeUnit.SECONDS);
+            fail("The checkpoint should fail");
+        } catch (ExecutionException e) {
+            // expected
+        }
+        // L'espace continue de journaliser, à côté des segments que le point de reprise n'a pas remplacés
+        assertEquals(new Tuple("c", 2), recovering.take(new Tuple("c", 2)));
+        recovering.syncJournal();
+        assertTrue(blocker.delete());
+
+        PersistentCentralizedLinda recovered = open();
+        assertNotNull(recovered.tryRead(new Tuple("c", 1)));
+        assertNull(recovered.tryRead(new Tuple("c", 2)));
+    }
+
+    @Test
+    public void testSnapshotDoesNotBlockWriters() throws Exception {
+        PersistentCentralizedLinda linda = open();
+        for (int i = 0; i < 20_000; i++) {
+            linda.write(new Tuple("n", i));
+        }
+        CompletableFuture<Void> saved = linda.saveTupleSpaceAsync();
+        // Les écritures pendant la sauvegarde vont dans le segment suivant du journal
+        for (int i = 20_000; i < 20_100; i++) {
+            linda.write(new Tuple("n", i));
+        }
+        linda.take(new Tuple("n", 0));
+        saved.get(10, TimeUnit.SECONDS);
+        linda.syncJournal();
+
+        PersistentCentralizedLinda recovered = open();
+        assertEquals(20_099, recovered.readAll(new Tuple("n", Integer.class)).size());
+        assertNull(recovered.tryRead(new Tuple("n", 0)));
+        assertNotNull(recovered.tryRead(new Tuple("n", 20_099)));
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        PersistentCentralizedLinda linda = open();
+        linda.write(new Tuple("t", 1));
+        linda.syncJournal();
+        // Enregistrement interrompu par un arrêt brutal
+        try (FileOutputStream out = new FileOutputStream(lastSegment(), true)) {
+            out.write(new byte[] {1, 0, 0, 0});
+        }
+
+        PersistentCentralizedLinda recovered = open();
+        assertNotNull(recovered.tryRead(new Tuple("t", 1)));
+        assertEquals(1, recovered.readAll(new Tuple("t", Integer.class)).size());
+    }
+
+    @Test
+    public void testLeaseIsJournaled() throws Exception {
+        PersistentCentralizedLinda linda = open();
+        linda.write(new Tuple("l", 1), Duration.ofMillis(300));
+        linda.write(new Tuple("l", 2), Duration.ofSeconds(10));
+        linda.syncJournal();
+
+        PersistentCentralizedLinda recovered = open();
+        assertNotNull(recovered.tryRead(new Tuple("l", 2)));
+        Thread.sleep(600);
+        assertNull("Lease should still expire after recovery", recovered.tryRead(new Tuple("l", 1)));
+        assertNotNull(recovered.tryRead(new Tuple("l", 2)));
+    }
+}
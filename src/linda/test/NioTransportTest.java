@@ -0,0 +1,281 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import linda.Lease;
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.SpaceFullException;
+import linda.Tuple;
+import linda.TupleCursor;
+import linda.server.LindaClient;
+import linda.server.LindaServer;
+import linda.server.NioLindaServer;
+import linda.shm.SpaceLimits;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class NioTransportTest {
+
+    private LindaServer server;
+    private NioLindaServer nio;
+    private LindaClient client;
+
+    private void start(SpaceLimits limits, int workers) throws Exception {
+        server = new LindaServer(limits);
+        UnicastRemoteObject.unexportObject(server, true);
+        nio = new NioLindaServer(server, 0, workers);
+        client = new LindaClient("nio://localhost:" + nio.port());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        start(SpaceLimits.unbounded(), 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        nio.close();
+    }
+
+    @Test
+    public void testBasicOperations() {
+        client.write(new Tuple("a", 1));
+        client.writeAll(Arrays.asList(new Tuple("b", 1), new Tuple("b", 2), new Tuple("b", 3)));
+
+        assertEquals(new Tuple("a", 1), client.read(new Tuple("a", Integer.class)));
+        assertEquals(new Tuple("a", 1), client.take(new Tuple("a", Integer.class)));
+        assertNull(client.tryTake(new Tuple("a", Integer.class)));
+        assertEquals(3, client.readAll(new Tuple("b", Integer.class)).size());
+        assertEquals(2, client.readN(new Tuple("b", Integer.class), 2).size());
+        assertEquals(2, client.takeN(new Tuple("b", Integer.class), 2).size());
+        assertEquals(1, client.takeAll(new Tuple("b", Integer.class)).size());
+        assertNull(client.tryRead(new Tuple(String.class, Integer.class)));
+        assertEquals(0, client.occupancy().tuples());
+    }
+
+    @Test
+    public void testBlockingAndTimeout() throws Exception {
+        assertNull(client.take(new Tuple("late", Integer.class), 50, TimeUnit.MILLISECONDS));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Tuple> taken = executor.submit(() -> client.take(new Tuple("late", Integer.class)));
+            Thread.sleep(50);
+            assertFalse(taken.isDone());
+            client.write(new Tuple("late", 1));
+            assertEquals(new Tuple("late", 1), taken.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBlockingCallsDoNotStarveWorkers() throws Exception {
+        nio.close();
+        start(SpaceLimits.unbounded(), 1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Tuple>> takes = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                takes.add(executor.submit(() -> client.take(new Tuple("job", Integer.class))));
+            }
+            Thread.sleep(50);
+            // Le seul thread de travail reste disponible malgré les quatre take en attente
+            for (int i = 0; i < 4; i++) {
+                client.write(new Tuple("job", i));
+            }
+            for (Future<Tuple> take : takes) {
+                assertNotNull(take.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBlockedWritersDoNotStarveWorkers() throws Exception {
+        nio.close();
+        start(SpaceLimits.unbounded().withMaxTuples(1).blockOnOverflow(), 1);
+        client.write(new Tuple("job", 0));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 1; i <= 3; i++) {
+                Tuple t = new Tuple("job", i);
+                writes.add(executor.submit(() -> client.write(t)));
+            }
+            Thread.sleep(50);
+            // Les écrivains en attente de place n'occupent pas le seul thread de travail : tryTake la libère
+            int taken = 0;
+            long deadline = System.currentTimeMillis() + 5000;
+            while (taken < 4 && System.currentTimeMillis() < deadline) {
+                if (client.tryTake(new Tuple("job", Integer.class)) != null) {
+                    taken++;
+                }
+            }
+            assertEquals(4, taken);
+            for (Future<?> write : writes) {
+                write.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncRequests() throws Exception {
+        CompletableFuture<Tuple> take = client.takeAsync(new Tuple("job", Integer.class));
+        assertFalse(take.isDone());
+        client.write(new Tuple("job", 1));
+        assertEquals(new Tuple("job", 1), take.get(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Tuple> cancelled = client.takeAsync(new Tuple("job", Integer.class));
+        assertTrue(cancelled.cancel(false));
+        client.write(new Tuple("job", 2));
+        assertNotNull("Cancelled request should not take the tuple", client.tryRead(new Tuple("job", 2)));
+    }
+
+    @Test
+    public void testCallbacks() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicReference<Tuple> received = new AtomicReference<>();
+        client.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple("event", Integer.class), t -> {
+            received.set(t);
+            fired.countDown();
+        });
+        client.write(new Tuple("event", 1));
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals(new Tuple("event", 1), received.get());
+        assertNull(client.tryRead(new Tuple("event", 1)));
+    }
+
+    @Test
+    public void testLeasesAndCursors() throws Exception {
+        Lease lease = client.write(new Tuple("lease", 1), Duration.ofHours(1));
+        assertTrue(lease.isActive());
+        assertTrue(lease.renew(Duration.ofHours(2)));
+        assertTrue(lease.cancel());
+        assertNull(client.tryRead(new Tuple("lease", 1)));
+
+        for (int i = 0; i < 25; i++) {
+            client.write(new Tuple("c", i));
+        }
+        int count = 0;
+        try (TupleCursor cursor = client.takeCursor(new Tuple("c", Integer.class), 10)) {
+            while (cursor.hasNext()) {
+                cursor.next();
+                count++;
+            }
+        }
+        assertEquals(25, count);
+        assertTrue(client.readAll(new Tuple("c", Integer.class)).isEmpty());
+    }
+
+    @Test
+    public void testServerExceptionsReachClient() throws Exception {
+        nio.close();
+        start(SpaceLimits.unbounded().withMaxTuples(1).rejectOnOverflow(), 2);
+        client.write(new Tuple("a", 1));
+        try {
+            client.write(new Tuple("a", 2));
+            fail("The space is full");
+        } catch (SpaceFullException e) {
+            // expected
+        }
+        // La connexion reste utilisable
+        assertEquals(new Tuple("a", 1), client.take(new Tuple("a", Integer.class)));
+    }
+
+    @Test
+    public void testConcurrentCallsShareConnection() throws Exception {
+        int threads = 8;
+        int rounds = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                done.add(executor.submit(() -> {
+                    for (int i = 0; i < rounds; i++) {
+                        client.write(new Tuple("t", thread, i));
+                        assertEquals(new Tuple("t", thread, i), client.take(new Tuple("t", thread, Integer.class)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, nio.connectionCount());
+        assertTrue(client.readAll(new Tuple("t", Integer.class, Integer.class)).isEmpty());
+    }
+
+    @Test
+    public void testDisconnectCancelsAsyncRequests() throws Exception {
+        LindaClient other = new LindaClient("nio://localhost:" + nio.port());
+        other.takeAsync(new Tuple("orphan", Integer.class));
+        nio.close();
+        // Le serveur a annulé la demande du client déconnecté : le tuple reste dans l'espace
+        server.write(new Tuple("orphan", 1));
+        assertNotNull(server.tryRead(new Tuple("orphan", 1)));
+        start(SpaceLimits.unbounded(), 2);
+    }
+
+    @Test
+    public void testDisconnectCancelsCallbacks() throws Exception {
+        LindaClient other = new LindaClient("nio://localhost:" + nio.port());
+        other.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple("orphan", Integer.class), t -> { });
+        other.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple("orphan", Integer.class), t -> { });
+        assertEquals(2, server.callbackRegistrationCount());
+        nio.close();
+        // Les callbacks du client déconnecté sont retirés de l'espace, sans attendre un tuple qui les déclencherait
+        assertEquals(0, server.callbackRegistrationCount());
+        server.write(new Tuple("orphan", 1));
+        assertNotNull(server.tryRead(new Tuple("orphan", 1)));
+        start(SpaceLimits.unbounded(), 2);
+    }
+
+    @Test
+    public void testBogusLengthIsRejected() throws Exception {
+        try (Socket socket = new Socket("localhost", nio.port())) {
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            // Requête TRY_READ dont le tuple annonce une longueur bien plus grande que la trame
+            out.writeInt(15);
+            out.writeByte(1);
+            out.writeLong(42);
+            out.writeByte(15);
+            out.writeBoolean(true);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            in.readInt();
+            assertEquals("Response", 2, in.readByte());
+            assertEquals(42, in.readLong());
+            assertEquals("Error", 1, in.readByte());
+        }
+        // Le serveur reste disponible
+        client.write(new Tuple("a", 1));
+        assertEquals(new Tuple("a", 1), client.tryTake(new Tuple("a", Integer.class)));
+    }
+}
@@ -0,0 +1,144 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.Tuple;
+import linda.shm.CallbackDispatcher;
+import linda.shm.JournalPolicy;
+import linda.shm.PersistentCentralizedLinda;
+import linda.shm.SpaceLimits;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelRecoveryTest extends SaveFileTest {
+
+    /**
+     * Save file written by the first versions, where Tuple was a LinkedList (serialVersionUID 1):
+     * [ "old" 1 ], [ "old" 2 ], [ "nested" [ 3 "x" ] ?Integer ], as an ArrayList.
+     */
+    private static final String BASELINE_SAVE = "rO0ABXNyABNqYXZhLnV0aWwuQXJyYXlMaXN0eIHSHZnHYZ0DAAFJAARzaXpleHAAAAADdwQAAAADc3IAC2xpbmRh"
+            + "LlR1cGxlAAAAAAAAAAECAAB4cgAUamF2YS51dGlsLkxpbmtlZExpc3QMKVNdSmCIIgMAAHhwdwQAAAACdAADb2xkc3IAEWphdmEubGFu"
+            + "Zy5JbnRlZ2VyEuKgpPeBhzgCAAFJAAV2YWx1ZXhyABBqYXZhLmxhbmcuTnVtYmVyhqyVHQuU4IsCAAB4cAAAAAF4c3EAfgACdwQAAAAC"
+            + "cQB+AAVzcQB+AAYAAAACeHNxAH4AAncEAAAAA3QABm5lc3RlZHNxAH4AAncEAAAAAnNxAH4ABgAAAAN0AAF4eHZxAH4ABnh4";
+
+    @Test
+    public void testSegmentedRoundTrip() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        int count = 50_000;
+        for (int i = 0; i < count; i++) {
+            linda.write(new Tuple("a", i, "payload-" + i));
+        }
+        linda.write(new Tuple("lease", 1), Duration.ofHours(1));
+        linda.saveTupleSpace();
+
+        PersistentCentralizedLinda recovered = new PersistentCentralizedLinda(saveFile);
+        recovered.loadTupleSpace();
+        assertNotNull(recovered.tryRead(new Tuple("lease", 1)));
+        // Insertion order is kept across segments
+        Iterator<Tuple> it = recovered.readAll(new Tuple("a", Integer.class, String.class)).iterator();
+        for (int i = 0; i < count; i++) {
+            assertEquals(new Tuple("a", i, "payload-" + i), it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testSingleListFormatStillLoads() throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        tuples.add(new Tuple("old", 1));
+        tuples.add(new Tuple("old", 2));
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(saveFile))) {
+            oos.writeObject(tuples);
+        }
+
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        linda.loadTupleSpace();
+        assertEquals(new Tuple("old", 1), linda.take(new Tuple("old", Integer.class)));
+        assertEquals(new Tuple("old", 2), linda.take(new Tuple("old", Integer.class)));
+    }
+
+    @Test
+    public void testBaselineSaveFileLoads() throws Exception {
+        Files.write(new File(saveFile).toPath(), Base64.getDecoder().decode(BASELINE_SAVE));
+
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        linda.loadTupleSpace();
+        assertBaselineTuples(linda);
+    }
+
+    @Test
+    public void testBaselineSaveFileLoadsWithJournal() throws Exception {
+        Files.write(new File(saveFile).toPath(), Base64.getDecoder().decode(BASELINE_SAVE));
+
+        // The journaled space recovers at construction, then checkpoints in the current format
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded(), JournalPolicy.groupCommit(1000, 10_000));
+        assertBaselineTuples(linda);
+        linda.shutdown();
+
+        PersistentCentralizedLinda reloaded = new PersistentCentralizedLinda(saveFile);
+        reloaded.loadTupleSpace();
+        assertBaselineTuples(reloaded);
+    }
+
+    private static void assertBaselineTuples(PersistentCentralizedLinda linda) {
+        assertEquals(new Tuple("old", 1), linda.take(new Tuple("old", Integer.class)));
+        assertEquals(new Tuple("old", 2), linda.take(new Tuple("old", Integer.class)));
+        Tuple nested = linda.take(new Tuple("nested", Tuple.class, Integer.class));
+        assertEquals(new Tuple("nested", new Tuple(3, "x"), Integer.class), nested);
+        assertTrue(nested.isFrozen());
+        assertNull(linda.tryRead(new Tuple(Object.class, Object.class)));
+        linda.write(new Tuple("old", 1));
+        linda.write(new Tuple("old", 2));
+        linda.write(nested);
+    }
+
+    @Test
+    public void testBackgroundRecovery() throws Exception {
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile);
+        for (int i = 0; i < 100_000; i++) {
+            linda.write(new Tuple("a", i));
+        }
+        linda.saveTupleSpace();
+
+        PersistentCentralizedLinda recovered = new PersistentCentralizedLinda(saveFile, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded(), JournalPolicy.disabled(), true);
+        // Operations issued right away wait for the recovery instead of seeing an empty space
+        assertNotNull(recovered.tryRead(new Tuple("a", 99_999)));
+        assertTrue(recovered.recovery().isDone());
+        assertEquals(100_000, recovered.readAll(new Tuple("a", Integer.class)).size());
+        assertEquals(0, recovered.mutationsSinceSave());
+    }
+
+    @Test
+    public void testFailedBackgroundRecoveryKeepsSave() throws Exception {
+        Files.write(new File(saveFile).toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+        PersistentCentralizedLinda linda = new PersistentCentralizedLinda(saveFile, CallbackDispatcher.direct(),
+                SpaceLimits.unbounded(), JournalPolicy.disabled(), true);
+        try {
+            linda.recovery().get(5, TimeUnit.SECONDS);
+            fail("Recovery should fail");
+        } catch (ExecutionException e) {
+            // expected
+        }
+        linda.write(new Tuple("a", 1));
+        try {
+            linda.saveTupleSpace();
+            fail("The unreadable save must not be replaced");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(8, new File(saveFile).length());
+    }
+}
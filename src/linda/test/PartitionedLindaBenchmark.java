@@ -0,0 +1,72 @@
+package linda.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import linda.Linda;
+import linda.Tuple;
+import linda.shm.CentralizedLinda;
+import linda.shm.PartitionedLinda;
+
+/**
+ * Débit en fonction du nombre de threads : chaque thread écrit puis prend des tuples de sa propre famille.
+ * Compare CentralizedLinda (un seul verrou) et PartitionedLinda (un verrou par partition).
+ * Les threads vont de 1 au nombre de processeurs (au moins 4), en doublant.
+ */
+public class PartitionedLindaBenchmark {
+
+    private static final int OPERATIONS_PER_THREAD = 200_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(cores, 4);
+        System.out.println("Processeurs : " + cores);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double centralized = best(CentralizedLinda::new, threads);
+            double partitioned = best(PartitionedLinda::new, threads);
+            System.out.printf("%3d threads   avant (verrou unique) %10.0f op/s   après (partitions) %10.0f op/s   x%.2f%n",
+                    threads, centralized, partitioned, partitioned / centralized);
+        }
+    }
+
+    private static double best(Supplier<Linda> factory, int threads) throws Exception {
+        double best = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            best = Math.max(best, run(factory.get(), threads));
+        }
+        return best;
+    }
+
+    /** Retourne le nombre d'opérations (write ou take) par seconde. */
+    private static double run(Linda linda, int threads) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final String family = "family" + t;
+            final Tuple template = new Tuple(family, Integer.class);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < OPERATIONS_PER_THREAD / 2; i++) {
+                    linda.write(new Tuple(family, i));
+                    linda.take(template);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return (double) threads * OPERATIONS_PER_THREAD / (elapsed / 1e9);
+    }
+}
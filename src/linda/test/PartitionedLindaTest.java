@@ -0,0 +1,137 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import linda.Linda.eventMode;
+import linda.Linda.eventTiming;
+import linda.Tuple;
+import linda.shm.EventRegistration;
+import linda.shm.PartitionedLinda;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class PartitionedLindaTest {
+
+    private PartitionedLinda linda;
+    private List<Tuple> received;
+
+    @Before
+    public void setUp() {
+        linda = new PartitionedLinda(8);
+        received = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    public void testPartitionCountIsPowerOfTwo() {
+        assertEquals(8, new PartitionedLinda(5).partitions());
+        assertEquals(1, new PartitionedLinda(1).partitions());
+    }
+
+    @Test
+    public void testSpanningTemplateSeesAllPartitions() {
+        for (int i = 0; i < 50; i++) {
+            linda.write(new Tuple("family" + i, i));
+        }
+        assertEquals(50, linda.readAll(new Tuple(String.class, Integer.class)).size());
+        assertEquals(50, linda.takeAll(new Tuple(String.class, Integer.class)).size());
+        assertNull(linda.tryRead(new Tuple(String.class, Integer.class)));
+    }
+
+    @Test(timeout = 5000)
+    public void testBlockedSpanningTakeReleasedByAnyPartition() throws InterruptedException {
+        final AtomicReference<Tuple> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread taker = new Thread(() -> {
+            result.set(linda.take(new Tuple(String.class, Integer.class)));
+            done.countDown();
+        });
+        taker.start();
+        Thread.sleep(100);
+
+        linda.write(new Tuple(1, 2));
+        linda.write(new Tuple("family7", 7));
+
+        assertTrue("Spanning take should be released", done.await(2, TimeUnit.SECONDS));
+        assertEquals(new Tuple("family7", 7), result.get());
+        assertNotNull("Unrelated tuple should remain", linda.tryRead(new Tuple(1, 2)));
+    }
+
+    @Test(timeout = 5000)
+    public void testTimedSpanningTake() {
+        assertNull(linda.take(new Tuple(String.class, Integer.class), 100, TimeUnit.MILLISECONDS));
+        linda.write(new Tuple("family5", 5));
+        assertNotNull("Abandoned spanning waiter should not take the tuple", linda.tryRead(new Tuple("family5", 5)));
+        assertEquals(new Tuple("family5", 5), linda.take(new Tuple(String.class, Integer.class), 1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSpanningCallbacks() {
+        linda.eventRegister(eventMode.READ, eventTiming.FUTURE, new Tuple(String.class, Integer.class), t -> received.add(t));
+        linda.eventRegister(eventMode.TAKE, eventTiming.FUTURE, new Tuple(String.class, Integer.class), t -> received.add(t));
+        linda.write(new Tuple("family3", 3));
+
+        assertEquals("READ and TAKE spanning callbacks should fire", 2, received.size());
+        assertNull("TAKE callback should have taken the tuple", linda.tryRead(new Tuple("family3", 3)));
+
+        linda.write(new Tuple("family4", 4));
+        assertEquals("Callbacks should fire once", 2, received.size());
+    }
+
+    @Test
+    public void testSpanningImmediateCallbackAndCancel() {
+        linda.write(new Tuple("family1", 1));
+        linda.eventRegister(eventMode.TAKE, eventTiming.IMMEDIATE, new Tuple(String.class, Integer.class), t -> received.add(t));
+        assertEquals(1, received.size());
+        assertNull(linda.tryRead(new Tuple("family1", 1)));
+
+        EventRegistration registration = linda.registerEvent(eventMode.READ, eventTiming.FUTURE,
+                new Tuple(String.class, Integer.class), t -> received.add(t));
+        assertTrue(registration.cancel());
+        linda.write(new Tuple("family2", 2));
+        assertEquals("Cancelled callback should not fire", 1, received.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentFamiliesAndSpanningTakers() throws InterruptedException {
+        final int families = 8;
+        final int perFamily = 200;
+        final Set<Tuple> taken = Collections.synchronizedSet(new HashSet<>());
+        final List<Thread> threads = new ArrayList<>();
+        for (int f = 0; f < families; f++) {
+            final String family = "family" + f;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perFamily; i++) {
+                    linda.write(new Tuple(family, i));
+                    // Tuples de même famille, mais que seul le motif couvrant toutes les partitions prend
+                    linda.write(new Tuple(family, i, true));
+                }
+            }));
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perFamily; i++) {
+                    assertTrue(taken.add(linda.take(new Tuple(family, Integer.class))));
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            for (int i = 0; i < families * perFamily; i++) {
+                assertTrue(taken.add(linda.take(new Tuple(String.class, Integer.class, Boolean.class))));
+            }
+        }));
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals("Every tuple should be taken exactly once", 2 * families * perFamily, taken.size());
+        assertTrue(linda.readAll(new Tuple(String.class, Integer.class)).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package linda.test;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import linda.Linda;
+import linda.shm.PartitionedLinda;
+
+/** Les tests de CentralizedLinda, appliqués à PartitionedLinda. */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+        PartitionedLindaTestSuite.Basic.class,
+        PartitionedLindaTestSuite.Blocking.class,
+        PartitionedLindaTestSuite.Collection.class,
+        PartitionedLindaTestSuite.Pattern.class,
+        PartitionedLindaTestSuite.Concurrency.class,
+        PartitionedLindaTestSuite.Index.class,
+        PartitionedLindaTestSuite.Frozen.class,
+        PartitionedLindaTestSuite.Lease.class,
+        PartitionedLindaTest.class
+})
+public class PartitionedLindaTestSuite {
+
+    public static class Basic extends CentralizedLindaBasicTest {
+        @Override
+        protected Linda createLinda() {
+            return new PartitionedLinda(8);
+        }
+    }
+
+    public static class Blocking extends CentralizedLindaBlockingTest {
+        @Override
+        protected Linda createLinda() {
+            return new PartitionedLinda(8);
+        }
+    }
+
+    public static class Collection extends CentralizedLindaCollectionTest {
+        @Override
+        protected Linda createLinda() {
+            return new PartitionedLinda(8);
+        }
+    }
+
+    public static class Pattern extends CentralizedLindaPatternTest {
+        @Override
+        protected Linda createLinda() {
+            return new PartitionedLinda(8);
+        }
+    }
+
+    public static class Concurrency extends CentralizedLindaConcurrencyTest {
+        @Override
+        protected Linda createLinda() {
+            return new PartitionedLinda(8);
+        }
+    }
+
+    public static class Index extends CentralizedLindaIndexTest {
+        @Override
+        protected Linda createLinda() {
+            return new PartitionedLinda(8);
+        }
+    }
+
+    public static class Frozen extends CentralizedLindaFrozenTest {
+        @Override
+        protected Linda createLinda() {
+            return new PartitionedLinda(8);
+        }
+    }
+
+    public static class Lease extends CentralizedLindaLeaseTest {
+        @Override
+        protected Linda createLinda() {
+            return new PartitionedLinda(8);
+        }
+    }
+}
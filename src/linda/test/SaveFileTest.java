@@ -0,0 +1,38 @@
+package linda.test;
+
+import org.junit.After;
+import org.junit.Before;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Base des tests de persistance : chaque test dispose d'un répertoire temporaire, où se trouve
+ * son fichier de sauvegarde, supprimé avec tout son contenu à la fin du test.
+ */
+public abstract class SaveFileTest {
+
+    protected File dir;
+    protected String saveFile;
+
+    @Before
+    public void createSaveDir() throws IOException {
+        dir = Files.createTempDirectory("linda-" + getClass().getSimpleName()).toFile();
+        saveFile = new File(dir, "tuples.ser").getPath();
+    }
+
+    @After
+    public void deleteSaveDir() {
+        delete(dir);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
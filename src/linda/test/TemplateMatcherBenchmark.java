@@ -0,0 +1,103 @@
+package linda.test;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+import linda.TemplateMatcher;
+import linda.Tuple;
+
+/** Mesure le coût d'un appariement tuple/motif : ancien parcours interprété contre motif compilé. */
+public class TemplateMatcherBenchmark {
+
+    private static final int ITERATIONS = 2_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Tuple[] tuples = {
+            new Tuple("job", 42, "payload", true),
+            new Tuple("other", 42, "payload", true),
+            new Tuple("job", new Tuple(1, 2), 'x', 3),
+        };
+        Tuple[][] cases = {
+            { tuples[0], new Tuple("job", Integer.class, String.class, Boolean.class) },
+            { tuples[1], new Tuple("job", Integer.class, String.class, Boolean.class) },
+            { tuples[0], new Tuple(String.class, Integer.class, Serializable.class, Object.class) },
+            { tuples[2], new Tuple("job", new Tuple(Integer.class, 2), Character.class, Integer.class) },
+        };
+        String[] names = { "valeur + types (succès)", "valeur (échec)", "interfaces", "tuple imbriqué" };
+
+        for (int c = 0; c < cases.length; c++) {
+            Tuple t = cases[c][0];
+            Tuple template = cases[c][1];
+            double legacy = Double.MAX_VALUE;
+            double compiled = Double.MAX_VALUE;
+            for (int r = 0; r < ROUNDS; r++) {
+                legacy = Math.min(legacy, measureLegacy(t, template));
+                compiled = Math.min(compiled, measureCompiled(t, template));
+            }
+            System.out.printf("%-25s avant: %6.1f ns/appariement   après: %6.1f ns/appariement%n", names[c], legacy, compiled);
+        }
+    }
+
+    private static double measureLegacy(Tuple t, Tuple template) {
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (legacyMatches(t, template)) {
+                hits++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        blackhole(hits);
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private static double measureCompiled(Tuple t, Tuple template) {
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            // Comme un take bloqué réveillé : le motif est réévalué, sa forme compilée est en cache
+            if (TemplateMatcher.forTemplate(template).matches(t)) {
+                hits++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        blackhole(hits);
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private static volatile int sink;
+
+    private static void blackhole(int v) {
+        sink += v;
+    }
+
+    /** Ancienne implantation de Tuple.matches, conservée comme référence. */
+    private static boolean legacyMatches(Tuple t, Tuple template) {
+        if (t.size() != template.size())
+          return false;
+        Iterator<Serializable> itthis = t.iterator();
+        Iterator<Serializable> itmotif = template.iterator();
+        while (itthis.hasNext()) {
+            if (! legacyMatches(itthis.next(), itmotif.next()))
+              return false;
+        }
+        return true;
+    }
+
+    private static boolean legacyMatches(Serializable thiscomponent, Serializable templatecomponent) {
+        if (templatecomponent instanceof Tuple) {
+            if (! (thiscomponent instanceof Tuple))
+              return false;
+            else
+              return legacyMatches((Tuple) thiscomponent, (Tuple) templatecomponent);
+        } else if (templatecomponent instanceof Class) {
+            if (thiscomponent instanceof Class)
+              return ((Class<?>) templatecomponent).isAssignableFrom((Class<?>) thiscomponent);
+            else
+              return ((Class<?>) templatecomponent).isInstance(thiscomponent);
+        } else {
+            return thiscomponent.equals(templatecomponent);
+        }
+    }
+}
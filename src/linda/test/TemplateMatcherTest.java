@@ -0,0 +1,54 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.TemplateMatcher;
+import linda.Tuple;
+import java.io.Serializable;
+
+public class TemplateMatcherTest {
+
+    @Test
+    public void testValuesAndClasses() {
+        Tuple t = new Tuple(3, 5, "foo");
+        assertTrue(t.matches(new Tuple(3, 5, "foo")));
+        assertTrue(t.matches(new Tuple(Integer.class, 5, "foo")));
+        assertTrue(t.matches(new Tuple(Integer.class, Integer.class, String.class)));
+        assertTrue(t.matches(new Tuple(Number.class, Comparable.class, Serializable.class)));
+        assertFalse(t.matches(new Tuple(3, 6, "foo")));
+        assertFalse(t.matches(new Tuple(Long.class, 5, "foo")));
+        assertFalse(t.matches(new Tuple(3, 5)));
+    }
+
+    @Test
+    public void testClassComponents() {
+        Tuple t = new Tuple(Integer.class, String.class);
+        assertTrue("A class matches itself", t.matches(new Tuple(Integer.class, String.class)));
+        assertTrue("A class matches its superclass", t.matches(new Tuple(Number.class, Object.class)));
+        assertFalse("A class is not an instance of ?Class", t.matches(new Tuple(Class.class, Class.class)));
+    }
+
+    @Test
+    public void testNestedTuples() {
+        Tuple t = new Tuple(3, 4, new Tuple(6, 7), new Tuple(7, 8));
+        assertTrue(t.matches(new Tuple(Integer.class, Integer.class, new Tuple(Integer.class, 7), Tuple.class)));
+        assertTrue(t.matches(new Tuple(3, Integer.class, Tuple.class, Tuple.class)));
+        assertFalse(t.matches(new Tuple(3, Integer.class, new Tuple(Integer.class, 8), Tuple.class)));
+        assertFalse(new Tuple(3, 4, 5, 6).matches(new Tuple(3, 4, new Tuple(5), Integer.class)));
+    }
+
+    @Test
+    public void testCompiledOnce() {
+        Tuple template = new Tuple("job", Integer.class);
+        assertSame("The compiled template should be cached",
+                TemplateMatcher.forTemplate(template), TemplateMatcher.forTemplate(template));
+    }
+
+    @Test
+    public void testValueSignature() {
+        Tuple template = new Tuple("job", 7);
+        assertTrue(new Tuple("job", 7).matches(template));
+        assertFalse(new Tuple("job", 7L).matches(template));
+        assertFalse(new Tuple("job", "7").matches(template));
+    }
+}
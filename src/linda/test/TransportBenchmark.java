@@ -0,0 +1,111 @@
+package linda.test;
+
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import linda.Linda;
+import linda.Tuple;
+import linda.server.LindaClient;
+import linda.server.LindaServer;
+import linda.server.NioLindaServer;
+import linda.server.WritePipelining;
+
+/**
+ * Compare les transports RMI et NIO sur localhost, avec le même serveur derrière les deux :
+ * latence d'un aller-retour (write puis take, un seul thread), débit avec plusieurs threads sur un même client,
+ * et débit d'un producteur qui ne fait qu'écrire, avec et sans pipeline des écritures.
+ */
+public class TransportBenchmark {
+
+    private static final int REGISTRY_PORT = 4099;
+    private static final int LATENCY_CALLS = 20_000;
+    private static final int WARMUP_CALLS = 5_000;
+    private static final long THROUGHPUT_MILLIS = 3_000;
+    private static final int[] THREADS = { 1, 4, 16 };
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+        LindaServer server = new LindaServer();
+        Registry registry = LocateRegistry.createRegistry(REGISTRY_PORT);
+        registry.rebind("Benchmark", server);
+        NioLindaServer nio = new NioLindaServer(server, 0);
+
+        LindaClient rmiClient = new LindaClient("//localhost:" + REGISTRY_PORT + "/Benchmark");
+        LindaClient nioClient = new LindaClient("nio://localhost:" + nio.port());
+
+        latency("RMI", rmiClient);
+        latency("NIO", nioClient);
+        for (int threads : THREADS) {
+            throughput("RMI", rmiClient, threads);
+            throughput("NIO", nioClient, threads);
+        }
+
+        WritePipelining pipelining = WritePipelining.batched(1000, 5);
+        producer("RMI", rmiClient);
+        producer("RMI en pipeline", new LindaClient("//localhost:" + REGISTRY_PORT + "/Benchmark", pipelining));
+        producer("NIO", nioClient);
+        producer("NIO en pipeline", new LindaClient("nio://localhost:" + nio.port(), pipelining));
+        nio.close();
+        System.exit(0);
+    }
+
+    private static void latency(String name, Linda linda) {
+        Tuple tuple = new Tuple("bench", 1, "payload");
+        Tuple template = new Tuple("bench", Integer.class, String.class);
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            linda.write(tuple);
+            linda.take(template);
+        }
+        long[] nanos = new long[LATENCY_CALLS];
+        for (int i = 0; i < LATENCY_CALLS; i++) {
+            long start = System.nanoTime();
+            linda.write(tuple);
+            linda.take(template);
+            nanos[i] = (System.nanoTime() - start) / 2;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%s latence par appel: médiane %5.1f µs, p99 %6.1f µs, p99.9 %6.1f µs%n", name,
+                nanos[LATENCY_CALLS / 2] / 1000.0, nanos[LATENCY_CALLS * 99 / 100] / 1000.0,
+                nanos[LATENCY_CALLS * 999 / 1000] / 1000.0);
+    }
+
+    /** Un seul thread écrit sans relâche ; le temps compte jusqu'à l'accusé de réception de la dernière écriture. */
+    private static void producer(String name, LindaClient linda) {
+        long start = System.nanoTime();
+        long end = start + THROUGHPUT_MILLIS * 1_000_000;
+        long writes = 0;
+        while (System.nanoTime() < end) {
+            linda.write(new Tuple("telemetry", writes++));
+        }
+        linda.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-16s producteur seul: %10.0f écritures/s%n", name, writes / seconds);
+        linda.takeAll(new Tuple("telemetry", Long.class));
+    }
+
+    private static void throughput(String name, Linda linda, int threads) throws InterruptedException {
+        AtomicLong calls = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.currentTimeMillis() + THROUGHPUT_MILLIS;
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(() -> {
+                Tuple template = new Tuple("bench", thread, Integer.class);
+                long local = 0;
+                for (int i = 0; System.currentTimeMillis() < end; i++) {
+                    linda.write(new Tuple("bench", thread, i));
+                    linda.take(template);
+                    local += 2;
+                }
+                calls.addAndGet(local);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        System.out.printf("%s débit avec %2d threads: %8.0f appels/s%n", name, threads,
+                calls.get() * 1000.0 / THROUGHPUT_MILLIS);
+    }
+}
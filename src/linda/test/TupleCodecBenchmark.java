@@ -0,0 +1,109 @@
+package linda.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import linda.Tuple;
+import linda.TupleCodec;
+
+/**
+ * Compare l'encodage binaire des tuples (TupleCodec) à la sérialisation Java des composants
+ * (format utilisé jusqu'ici par deepclone, les sauvegardes et RMI) : octets par tuple, débit d'encodage et de décodage.
+ */
+public class TupleCodecBenchmark {
+
+    private static final int TUPLES = 100_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        Tuple[][] cases = {
+            tuples(i -> new Tuple("job", i)),
+            tuples(i -> new Tuple("job", i, "payload-" + i, true, 'x')),
+            tuples(i -> new Tuple("job", Integer.class, String.class)),
+            tuples(i -> new Tuple("job", new Tuple(i, (long) i), 1.5)),
+        };
+        String[] names = { "[ chaîne entier ]", "[ 5 composants ]", "motif (classes)", "tuple imbriqué" };
+
+        for (int c = 0; c < cases.length; c++) {
+            Tuple[] tuples = cases[c];
+            long serializedBytes = serialize(tuples).length;
+            long codecBytes = encode(tuples).length;
+            double serializedEncode = Double.MAX_VALUE;
+            double serializedDecode = Double.MAX_VALUE;
+            double codecEncode = Double.MAX_VALUE;
+            double codecDecode = Double.MAX_VALUE;
+            for (int r = 0; r < ROUNDS; r++) {
+                long start = System.nanoTime();
+                byte[] serialized = serialize(tuples);
+                serializedEncode = Math.min(serializedEncode, perTuple(start));
+                start = System.nanoTime();
+                deserialize(serialized);
+                serializedDecode = Math.min(serializedDecode, perTuple(start));
+                start = System.nanoTime();
+                byte[] encoded = encode(tuples);
+                codecEncode = Math.min(codecEncode, perTuple(start));
+                start = System.nanoTime();
+                decode(encoded);
+                codecDecode = Math.min(codecDecode, perTuple(start));
+            }
+            System.out.printf("%-20s sérialisation: %5.1f o/tuple, %6.0f ns/encodage, %6.0f ns/décodage%n",
+                    names[c], (double) serializedBytes / TUPLES, serializedEncode, serializedDecode);
+            System.out.printf("%-20s TupleCodec:    %5.1f o/tuple, %6.0f ns/encodage, %6.0f ns/décodage%n",
+                    "", (double) codecBytes / TUPLES, codecEncode, codecDecode);
+        }
+    }
+
+    private interface Factory {
+        Tuple create(int i);
+    }
+
+    private static Tuple[] tuples(Factory factory) {
+        Tuple[] tuples = new Tuple[TUPLES];
+        for (int i = 0; i < TUPLES; i++) {
+            tuples[i] = factory.create(i);
+        }
+        return tuples;
+    }
+
+    private static double perTuple(long start) {
+        return (double) (System.nanoTime() - start) / TUPLES;
+    }
+
+    /** Ancien format : chaque tuple sérialisé comme son tableau de composants, dans un même flux. */
+    private static byte[] serialize(Tuple[] tuples) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            for (Tuple t : tuples) {
+                out.writeObject(t.toArray(new Serializable[0]));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void deserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            for (int i = 0; i < TUPLES; i++) {
+                new Tuple((Serializable[]) in.readObject());
+            }
+        }
+    }
+
+    private static byte[] encode(Tuple[] tuples) throws IOException {
+        TupleCodec.Writer writer = new TupleCodec.Writer();
+        for (Tuple t : tuples) {
+            writer.write(t);
+        }
+        return writer.toByteArray();
+    }
+
+    private static void decode(byte[] bytes) throws IOException {
+        TupleCodec.Reader reader = new TupleCodec.Reader(bytes);
+        for (int i = 0; i < TUPLES; i++) {
+            reader.read();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.Tuple;
+import linda.TupleCodec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class TupleCodecTest {
+
+    private static Tuple roundTrip(Tuple t) throws IOException {
+        return TupleCodec.decode(TupleCodec.encode(t));
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    @Test
+    public void testCommonComponents() throws IOException {
+        Tuple t = new Tuple(0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, 42L, "", "foo", "été ✓",
+                true, false, 'x', '€', 1.5, -0.0f, (short) -3, (byte) 7, null,
+                new Tuple(1, new Tuple("nested")));
+        Tuple copy = roundTrip(t);
+        assertEquals(t, copy);
+        for (int i = 0; i < t.size(); i++) {
+            assertEquals("Component " + i, t.get(i) == null ? null : t.get(i).getClass(),
+                    copy.get(i) == null ? null : copy.get(i).getClass());
+        }
+        assertEquals(t.signature(), copy.signature());
+        assertTrue(copy.isFrozen());
+    }
+
+    @Test
+    public void testClasses() throws IOException {
+        Tuple template = new Tuple(Integer.class, String.class, TimeUnit.class, TimeUnit.class, int.class, Tuple.class);
+        Tuple copy = roundTrip(template);
+        assertEquals(template, copy);
+        assertSame(TimeUnit.class, copy.get(3));
+        assertTrue(new Tuple(1, "a", TimeUnit.SECONDS, TimeUnit.DAYS, int.class, new Tuple()).matches(copy));
+    }
+
+    @Test
+    public void testSerializableFallback() throws IOException {
+        ArrayList<Integer> list = new ArrayList<>(Arrays.asList(1, 2, 3));
+        Tuple t = new Tuple("list", list, TimeUnit.SECONDS);
+        assertFalse(t.isFrozen());
+        Tuple copy = roundTrip(t);
+        assertEquals(t, copy);
+        assertNotSame("Mutable components are copied", list, copy.get(1));
+        assertSame("Enum constants keep their identity", TimeUnit.SECONDS, copy.get(2));
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        TupleCodec.Writer writer = new TupleCodec.Writer();
+        for (int i = 0; i < 100; i++) {
+            writer.write(new Tuple("job", i, TimeUnit.class));
+        }
+        TupleCodec.Reader reader = new TupleCodec.Reader(writer.toByteArray());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new Tuple("job", i, TimeUnit.class), reader.read());
+        }
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        byte[] bytes = TupleCodec.encode(new Tuple("foo", 1234567, "bar"));
+        TupleCodec.decode(Arrays.copyOf(bytes, bytes.length - 2));
+    }
+
+    @Test
+    public void testJavaSerializationUsesCodec() throws Exception {
+        Tuple t = new Tuple("job", 42, String.class, new Tuple(1, 2));
+        byte[] bytes = serialize(t);
+        assertEquals(t, deserialize(bytes));
+
+        ArrayList<Serializable> tuples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tuples.add(new Tuple("job", i, "payload"));
+        }
+        assertEquals(tuples, deserialize(serialize(tuples)));
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws IOException {
+        Tuple t = new Tuple("job", 42, "payload", true);
+        assertTrue(TupleCodec.encode(t).length * 5 < serialize(Arrays.asList(t.toArray())).length);
+    }
+}
@@ -0,0 +1,71 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import linda.Tuple;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+public class TupleTest {
+
+    @Test
+    public void testComponents() {
+        Tuple t = new Tuple(4, "foo", true);
+        assertEquals(3, t.size());
+        assertEquals(4, t.get(0));
+        assertEquals("foo", t.get(1));
+        assertEquals(true, t.get(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        new Tuple(4, 5).add(6);
+    }
+
+    @Test
+    public void testComponentsArrayIsCopied() {
+        Serializable[] components = { 1, 2 };
+        Tuple t = new Tuple(components);
+        components[0] = 3;
+        assertEquals("Tuple should not see later changes of the array", 1, t.get(0));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        Tuple a = new Tuple(4, "foo", new Tuple(1, 2));
+        Tuple b = new Tuple(4, "foo", new Tuple(1, 2));
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.signature(), b.signature());
+        assertNotEquals(a, new Tuple(4, "foo", new Tuple(1, 3)));
+
+        List<Serializable> list = new LinkedList<>(Arrays.asList(4, "foo", new Tuple(1, 2)));
+        assertEquals("Tuples are lists", list, a);
+        assertEquals(list.hashCode(), a.hashCode());
+    }
+
+    @Test
+    public void testCopyOf() {
+        Tuple t = Tuple.copyOf(Arrays.asList(4, "foo"));
+        assertEquals(new Tuple(4, "foo"), t);
+    }
+
+    @Test
+    public void testValueOf() {
+        Tuple t = Tuple.valueOf("[ ?Integer \"toto\" true 78 [ 3 'c' ] ]");
+        assertEquals(new Tuple(Integer.class, "toto", true, 78, new Tuple(3, 'c')), t);
+        assertEquals("[ ?java.lang.Integer \"toto\" true 78 [ 3 'c' ] ]", t.toString());
+    }
+
+    @Test
+    public void testDeepclone() {
+        Tuple t = new Tuple(4, "foo", new Tuple(Integer.class, 2));
+        Tuple copy = t.deepclone();
+        assertNotSame(t, copy);
+        assertEquals(t, copy);
+        assertEquals(t.signature(), copy.signature());
+        assertTrue(new Tuple(4, "foo", new Tuple(1, 2)).matches(copy));
+    }
+}
@@ -0,0 +1,159 @@
+package linda.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import linda.Tuple;
+import linda.shm.CentralizedLinda;
+
+/**
+ * Nombreux preneurs bloqués sur des motifs différents : compare le réveil ciblé de CentralizedLinda
+ * avec l'ancien réveil général (signalAll sur une condition unique).
+ * Affiche la latence entre l'écriture et le retour du take, et les changements de contexte (Linux).
+ * En mode « rafale » les tuples sont écrits d'un coup ; en mode « cadencé » chaque écriture attend
+ * que le tuple précédent ait été pris, comme pour des requêtes/réponses.
+ */
+public class WaiterWakeupBenchmark {
+
+    private static final int TAKERS = 500;
+
+    /** Opérations mesurées : l'espace de tuples vu par le banc d'essai. */
+    private interface Space {
+        void write(Tuple t);
+        Tuple take(Tuple template);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int takers = args.length > 0 ? Integer.parseInt(args[0]) : TAKERS;
+        for (boolean paced : new boolean[] { false, true }) {
+            System.out.println(paced ? "Écritures cadencées :" : "Écritures en rafale :");
+            for (int round = 0; round < 3; round++) {
+                run("  avant (signalAll)", new BroadcastSpace(), takers, paced);
+                CentralizedLinda linda = new CentralizedLinda();
+                run("  après (réveil ciblé)", new Space() {
+                    public void write(Tuple t) { linda.write(t); }
+                    public Tuple take(Tuple template) { return linda.take(template); }
+                }, takers, paced);
+            }
+        }
+    }
+
+    private static void run(String name, Space space, int takers, boolean paced) throws Exception {
+        final long[] writtenAt = new long[takers];
+        final long[] latencies = new long[takers];
+        final CountDownLatch ready = new CountDownLatch(takers);
+        final CountDownLatch done = new CountDownLatch(takers);
+        final CountDownLatch[] taken = new CountDownLatch[takers];
+        // Les preneurs restent en vie jusqu'à la mesure : les compteurs d'un thread terminé disparaissent
+        final CountDownLatch measured = new CountDownLatch(1);
+        for (int i = 0; i < takers; i++) {
+            final int id = i;
+            taken[i] = new CountDownLatch(1);
+            new Thread(() -> {
+                ready.countDown();
+                Tuple t = space.take(new Tuple("job", id, Integer.class));
+                latencies[id] = System.nanoTime() - writtenAt[(Integer) t.get(1)];
+                taken[id].countDown();
+                done.countDown();
+                try {
+                    measured.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).start();
+        }
+        ready.await();
+        Thread.sleep(200); // laisse tous les preneurs se bloquer
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < takers; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order);
+
+        long switchesBefore = contextSwitches();
+        long start = System.nanoTime();
+        for (int id : order) {
+            writtenAt[id] = System.nanoTime();
+            space.write(new Tuple("job", id, 0));
+            if (paced) {
+                taken[id].await();
+            }
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        long switches = contextSwitches() - switchesBefore;
+        measured.countDown();
+
+        Arrays.sort(latencies);
+        System.out.printf("%-22s total %6.1f ms  p50 %8.1f µs  p99 %8.1f µs  max %8.1f µs  changements de contexte %s%n",
+                name, elapsed / 1e6,
+                latencies[takers / 2] / 1e3, latencies[takers * 99 / 100] / 1e3, latencies[takers - 1] / 1e3,
+                switchesBefore < 0 ? "n/d" : Long.toString(switches));
+    }
+
+    /** Somme des changements de contexte de tous les threads du processus, ou -1 hors Linux. */
+    private static long contextSwitches() {
+        String[] threads = new File("/proc/self/task").list();
+        if (threads == null) {
+            return -1;
+        }
+        long total = 0;
+        for (String thread : threads) {
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc/self/task", thread, "status"))) {
+                    if (line.startsWith("voluntary_ctxt_switches") || line.startsWith("nonvoluntary_ctxt_switches")) {
+                        total += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                    }
+                }
+            } catch (IOException e) {
+                // le thread s'est terminé entre-temps
+            }
+        }
+        return total;
+    }
+
+    /** Ancien fonctionnement : parcours linéaire et réveil de tous les threads à chaque écriture. */
+    private static class BroadcastSpace implements Space {
+        private final List<Tuple> tuples = new ArrayList<>();
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+
+        public void write(Tuple t) {
+            lock.lock();
+            try {
+                tuples.add(t);
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Tuple take(Tuple template) {
+            lock.lock();
+            try {
+                while (true) {
+                    for (Tuple t : tuples) {
+                        if (t.matches(template)) {
+                            tuples.remove(t);
+                            return t;
+                        }
+                    }
+                    condition.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package linda.test;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+import linda.SpaceFullException;
+import linda.Tuple;
+import linda.server.LindaClient;
+import linda.server.LindaServer;
+import linda.server.NioLindaServer;
+import linda.server.WritePipelining;
+import linda.shm.SpaceLimits;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class WritePipelineTest {
+
+    private LindaServer server;
+    private NioLindaServer nio;
+
+    private LindaClient start(SpaceLimits limits, WritePipelining pipelining) throws Exception {
+        server = new LindaServer(limits);
+        UnicastRemoteObject.unexportObject(server, true);
+        nio = new NioLindaServer(server, 0);
+        return new LindaClient("nio://localhost:" + nio.port(), pipelining);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        nio.close();
+    }
+
+    @Test
+    public void testWritesWaitForBatchOrFlush() throws Exception {
+        LindaClient client = start(SpaceLimits.unbounded(), WritePipelining.batched(1000, 60_000));
+        for (int i = 0; i < 10; i++) {
+            client.write(new Tuple("a", i));
+        }
+        Thread.sleep(50);
+        assertNull("Queued locally until the batch is full", server.tryRead(new Tuple("a", 0)));
+
+        client.flush();
+        assertEquals(10, server.readAll(new Tuple("a", Integer.class)).size());
+    }
+
+    @Test
+    public void testLingerShipsPartialBatch() throws Exception {
+        LindaClient client = start(SpaceLimits.unbounded(), WritePipelining.batched(1000, 20));
+        client.write(new Tuple("a", 1));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.tryRead(new Tuple("a", 1)) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertNotNull(server.tryRead(new Tuple("a", 1)));
+    }
+
+    @Test
+    public void testTakeSeesEarlierWrites() throws Exception {
+        LindaClient client = start(SpaceLimits.unbounded(), WritePipelining.batched(1000, 60_000));
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            client.write(new Tuple("a", i));
+        }
+        // Le take attend l'accusé de réception des écritures précédentes
+        assertEquals(new Tuple("a", 0), client.tryTake(new Tuple("a", Integer.class)));
+        Iterator<Tuple> it = client.readAll(new Tuple("a", Integer.class)).iterator();
+        for (int i = 1; i < count; i++) {
+            assertEquals("Writes keep their order", new Tuple("a", i), it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testFlushIsNotDelayedByLaterWrites() throws Exception {
+        LindaClient client = start(SpaceLimits.unbounded().withFamilyMaxTuples(1).blockOnOverflow(),
+                WritePipelining.batched(1, 60_000));
+        server.write(new Tuple("mine", 0));
+        server.write(new Tuple("busy", 0));
+        client.write(new Tuple("mine", 1));
+        CompletableFuture<Void> flushed = CompletableFuture.runAsync(client::flush);
+        Thread.sleep(100);
+        // Écrit après le flush, et bloqué sur le serveur tant que sa famille est pleine
+        client.write(new Tuple("busy", 1));
+        server.take(new Tuple("mine", 0));
+        try {
+            // Le flush n'attend que les écritures faites avant lui
+            flushed.get(10, TimeUnit.SECONDS);
+            assertEquals(new Tuple("mine", 1), server.tryRead(new Tuple("mine", Integer.class)));
+        } finally {
+            server.take(new Tuple("busy", 0));
+        }
+    }
+
+    @Test
+    public void testMutableTupleIsSentAsWritten() throws Exception {
+        LindaClient client = start(SpaceLimits.unbounded(), WritePipelining.batched(1000, 60_000));
+        ArrayList<Integer> values = new ArrayList<>(Arrays.asList(1, 2));
+        client.write(new Tuple("list", values));
+        values.add(3);
+        client.flush();
+        assertEquals(new Tuple("list", new ArrayList<>(Arrays.asList(1, 2))), server.tryRead(new Tuple("list", ArrayList.class)));
+    }
+
+    @Test
+    public void testRejectedBatchIsReported() throws Exception {
+        LindaClient client = start(SpaceLimits.unbounded().withMaxTuples(1).rejectOnOverflow(),
+                WritePipelining.batched(10, 60_000));
+        client.write(new Tuple("a", 1));
+        client.write(new Tuple("a", 2));
+        try {
+            client.flush();
+            fail("The space is full");
+        } catch (SpaceFullException e) {
+            // expected
+        }
+        // Le lot est refusé en entier ; l'échec n'est signalé qu'une fois et le client reste utilisable
+        assertNull(client.tryRead(new Tuple("a", Integer.class)));
+        client.write(new Tuple("a", 3));
+        assertEquals(new Tuple("a", 3), client.tryTake(new Tuple("a", Integer.class)));
+    }
+}